@@ -31,6 +31,18 @@ import java.io.Serializable;
 public class Globals implements Serializable {
     // ----------------------------------------------------- Manifest Constants
 
+    /**
+     * The base of the context attributes key under which the
+     * <code>ActionRegistry</code> holding the <code>Action</code> instances
+     * of a module will be stored.  This will be suffixed with the actual
+     * module prefix (including the leading "/" character) to form the actual
+     * attributes key.
+     *
+     * @since Struts 1.4
+     */
+    public static final String ACTION_REGISTRY_KEY =
+        "org.apache.struts.action.ACTION_REGISTRY";
+
     /**
      * The context attributes key under which our <code>ActionServlet</code>
      * instance will be stored.
@@ -161,6 +173,27 @@ public class Globals implements Serializable {
     public static final String PLUG_INS_KEY =
         "org.apache.struts.action.PLUG_INS";
 
+    /**
+     * <p>The context attributes key under which the number of transaction
+     * tokens that may be outstanding in a session at once is stored, as an
+     * <code>Integer</code>, if the <code>maxTokens</code> init-param of the
+     * controller servlet is set.</p>
+     *
+     * @since Struts 1.4
+     */
+    public static final String MAX_TOKENS_KEY =
+        "org.apache.struts.action.MAX_TOKENS";
+
+    /**
+     * <p>The context attributes key under which the
+     * <code>RequestMetrics</code> of this application will be stored, if
+     * metrics are enabled.</p>
+     *
+     * @since Struts 1.4
+     */
+    public static final String REQUEST_METRICS_KEY =
+        "org.apache.struts.action.REQUEST_METRICS";
+
     /**
      * <p>The base of the context attributes key under which our
      * <code>RequestProcessor</code> instance will be stored.  This will be
@@ -188,6 +221,15 @@ public class Globals implements Serializable {
     public static final String TRANSACTION_TOKEN_KEY =
         "org.apache.struts.action.TOKEN";
 
+    /**
+     * The session attributes key under which the outstanding transaction
+     * tokens are stored, when more than one is allowed per session.
+     *
+     * @since Struts 1.4
+     */
+    public static final String TRANSACTION_TOKENS_KEY =
+        "org.apache.struts.action.TOKENS";
+
     /**
      * The page attributes key under which xhtml status is stored.  This may
      * be "true" or "false".  When set to true, the html tags output xhtml.
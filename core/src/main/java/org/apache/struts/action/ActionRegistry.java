@@ -0,0 +1,195 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import org.apache.struts.Globals;
+import org.apache.struts.config.ModuleConfig;
+
+import javax.servlet.ServletContext;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>The singleton <code>Action</code> instances of one module, keyed by the
+ * fully qualified Java class name of the <code>Action</code>.  The registry
+ * is shared by the classic {@link RequestProcessor} and the chain
+ * <code>CreateAction</code> command.</p>
+ *
+ * <p>Lookups of existing instances read an immutable snapshot and never
+ * lock.  The first request for a type creates the instance while holding
+ * the registry monitor, so each type is instantiated exactly once, and then
+ * publishes a new snapshot that includes it.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class ActionRegistry {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The current snapshot of <code>Action</code> instances, keyed by
+     * class name.  The map referenced by this field is unmodifiable, and is
+     * replaced when an instance is added.</p>
+     */
+    private volatile Map actions = Collections.EMPTY_MAP;
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the <code>ActionRegistry</code> for the specified module,
+     * creating and storing it in the servlet context if necessary.</p>
+     *
+     * @param context      The servlet context of the application
+     * @param moduleConfig The module configuration
+     * @return The registry for that module
+     */
+    public static ActionRegistry getActionRegistry(ServletContext context,
+        ModuleConfig moduleConfig) {
+        String key = Globals.ACTION_REGISTRY_KEY + moduleConfig.getPrefix();
+        ActionRegistry registry = (ActionRegistry) context.getAttribute(key);
+
+        if (registry == null) {
+            synchronized (ActionRegistry.class) {
+                registry = (ActionRegistry) context.getAttribute(key);
+
+                if (registry == null) {
+                    registry = new ActionRegistry();
+                    context.setAttribute(key, registry);
+                }
+            }
+        }
+
+        return registry;
+    }
+
+    /**
+     * <p>Return the instance registered for the specified type, or
+     * <code>null</code> if it has not been created yet.  This method does
+     * not lock.</p>
+     *
+     * @param type Fully qualified class name of the <code>Action</code>
+     * @return The registered instance, or <code>null</code>
+     */
+    public Action getAction(String type) {
+        return (Action) actions.get(type);
+    }
+
+    /**
+     * <p>Return the instance registered for the specified type, using the
+     * specified factory to create and register it if it does not exist yet.
+     * The factory is called at most once per type.</p>
+     *
+     * @param type    Fully qualified class name of the <code>Action</code>
+     * @param factory Creates the instance on the first request for the type
+     * @return The registered instance
+     * @throws Exception if the factory cannot create the instance
+     */
+    public Action getAction(String type, Factory factory)
+        throws Exception {
+        Action action = (Action) actions.get(type);
+
+        if (action != null) {
+            return action;
+        }
+
+        synchronized (this) {
+            action = (Action) actions.get(type);
+
+            if (action == null) {
+                action = factory.createAction(type);
+
+                Map updated = new HashMap(actions);
+
+                updated.put(type, action);
+                actions = Collections.unmodifiableMap(updated);
+            }
+        }
+
+        return action;
+    }
+
+    /**
+     * <p>Return the instances currently registered.</p>
+     *
+     * @return An array of the registered <code>Action</code> instances
+     */
+    public Action[] getActions() {
+        Collection values = actions.values();
+
+        return (Action[]) values.toArray(new Action[values.size()]);
+    }
+
+    /**
+     * <p>Return the instances currently registered, keyed by class name.
+     * The map is unmodifiable, and is the same instance until an instance is
+     * added to or removed from this registry.</p>
+     *
+     * @return The registered instances, keyed by class name
+     */
+    public Map getActionMap() {
+        return actions;
+    }
+
+    /**
+     * <p>Return the number of instances currently registered.</p>
+     *
+     * @return The number of registered instances
+     */
+    public int size() {
+        return actions.size();
+    }
+
+    /**
+     * <p>Remove every registered instance, detaching each one from its
+     * servlet.</p>
+     */
+    public synchronized void clear() {
+        Action[] current = getActions();
+
+        for (int i = 0; i < current.length; i++) {
+            current[i].setServlet(null);
+        }
+
+        actions = Collections.EMPTY_MAP;
+    }
+
+    // ----------------------------------------------------------- Inner Types
+
+    /**
+     * <p>Creates an <code>Action</code> instance the first time its type is
+     * requested from an <code>ActionRegistry</code>.</p>
+     */
+    public interface Factory {
+        /**
+         * <p>Create a new instance of the specified <code>Action</code>
+         * type.</p>
+         *
+         * @param type Fully qualified class name of the <code>Action</code>
+         * @return The new instance
+         * @throws Exception if the instance cannot be created
+         */
+        Action createAction(String type)
+            throws Exception;
+    }
+}
@@ -56,6 +56,8 @@ import org.apache.struts.config.PlugInConfig;
 import org.apache.struts.util.MessageResources;
 import org.apache.struts.util.MessageResourcesFactory;
 import org.apache.struts.util.ModuleUtils;
+import org.apache.struts.util.PopulatePlan;
+import org.apache.struts.util.ReloadablePropertyMessageResources;
 import org.apache.struts.util.RequestUtils;
 import org.xml.sax.SAXException;
 
@@ -66,6 +68,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
@@ -74,8 +77,10 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.MissingResourceException;
 
 /**
@@ -172,6 +177,14 @@ import java.util.MissingResourceException;
  * (/${module}). This can be repeated as many times as required for multiple
  * modules. (Since Struts 1.1)</li>
  *
+ * <li><strong>configCache</strong> - Directory in which to keep a binary copy
+ * of each module's parsed configuration, keyed by a hash of the content of
+ * its configuration files.  On later startups a module whose files have not
+ * changed is read from this copy instead of being parsed.  A value of
+ * <code>true</code> uses the temporary directory provided by the container.
+ * Plug-ins and <code>extends</code> inheritance are still applied at every
+ * startup.  (Since Struts 1.4) [none]</li>
+ *
  * <li><strong>configFactory</strong> - The Java class name of the
  * <code>ModuleConfigFactory</code> used to create the implementation of the
  * ModuleConfig interface. </li>
@@ -181,6 +194,52 @@ import java.util.MissingResourceException;
  * class types (like <code>java.lang.Integer</code>) will default to null
  * (rather than 0). (Since Struts 1.1) [false] </li>
  *
+ * <li><strong>lazyModules</strong> - Should modules other than the default
+ * module be initialized on the first request into them, rather than at
+ * startup?  Only their prefixes are registered at startup.  Concurrent first
+ * requests into a module wait for a single initialization.  Modules
+ * referenced before their first request, for example by tags linking to
+ * another module, are not available until then.  (Since Struts 1.4)
+ * [false]</li>
+ *
+ * <li><strong>lazyModuleIdleTimeout</strong> - The number of seconds after
+ * which a module initialized on demand, and which has received no request
+ * since, is destroyed.  Its next request initializes it again.  Zero means
+ * such modules are never destroyed.  Only used with
+ * <code>lazyModules</code>.  (Since Struts 1.4) [0]</li>
+ *
+ * <li><strong>maxTokens</strong> - The number of transaction tokens that
+ * may be outstanding in a session of this web application at once.  With a
+ * value greater than 1, each of the most recently saved tokens of a session
+ * can be submitted once, so that forms opened in several windows all remain
+ * valid.  (Since Struts 1.4) [1]</li>
+ *
+ * <li><strong>metrics</strong> - Should the time taken by each phase of
+ * request processing, each action mapping and each chain command be
+ * recorded?  The statistics are available from
+ * <code>RequestMetrics.getInstance(ServletContext)</code>.  (Since Struts
+ * 1.4) [false]</li>
+ *
+ * <li><strong>metricsMBean</strong> - Should the request metrics be
+ * registered as a JMX MBean with the platform MBean server?  Only used with
+ * <code>metrics</code>.  (Since Struts 1.4) [false]</li>
+ *
+ * <li><strong>moduleInitThreads</strong> - The number of threads used to
+ * initialize modules.  With a value greater than 1, the configuration files
+ * of all modules are parsed concurrently, each with its own
+ * <code>Digester</code>, and their form beans, forwards, exceptions and
+ * actions are then processed and frozen concurrently.  Message resources and
+ * plug-ins are still initialized one module at a time, in declaration order,
+ * and every module is processed one at a time if any plug-in implements
+ * <code>ModuleConfigPostProcessor</code>.  Subclasses that customize
+ * <code>initModuleConfig</code> or <code>initConfigDigester</code> should
+ * leave this at 1.  (Since Struts 1.4) [1]</li>
+ *
+ * <li><strong>preloadActions</strong> - Should the singleton
+ * <code>Action</code> instances of every module be created during
+ * initialization, rather than on the first request that uses them? (Since
+ * Struts 1.4) [false]</li>
+ *
  * <li><strong>rulesets </strong> - Comma-delimited list of fully qualified
  * classnames of additional <code>org.apache.commons.digester.RuleSet</code>
  * instances that should be added to the <code>Digester</code> that will be
@@ -240,6 +299,57 @@ public class ActionServlet extends HttpServlet {
      */
     protected boolean convertNull = false;
 
+    /**
+     * <p>The flag to request that the singleton <code>Action</code> instances
+     * of every module are created during initialization.</p>
+     *
+     * @since Struts 1.4
+     */
+    protected boolean preloadActions = false;
+
+    /**
+     * <p>The cache of parsed module configurations, or <code>null</code> if
+     * the <code>configCache</code> init-param is not set.</p>
+     */
+    private ModuleConfigCache configCache = null;
+
+    /**
+     * <p>The flag to request that modules other than the default module are
+     * initialized on their first request.</p>
+     *
+     * @since Struts 1.4
+     */
+    protected boolean lazyModules = false;
+
+    /**
+     * <p>The time after which an idle module initialized on demand is
+     * destroyed, in milliseconds, or 0 to keep such modules.</p>
+     *
+     * @since Struts 1.4
+     */
+    protected long lazyModuleIdleTimeout = 0;
+
+    /**
+     * <p>The modules initialized on demand, keyed by prefix, or
+     * <code>null</code> if there are none.  Not modified after
+     * <code>init()</code>.</p>
+     */
+    private Map deferredModules = null;
+
+    /**
+     * <p>The earliest time at which to look for idle modules to destroy
+     * again.</p>
+     */
+    private volatile long nextEviction = 0;
+
+    /**
+     * <p>The number of threads used to initialize modules.  Modules are
+     * initialized one at a time unless this is greater than 1.</p>
+     *
+     * @since Struts 1.4
+     */
+    protected int moduleInitThreads = 1;
+
     /**
      * <p>The resources object for our internal resources.</p>
      */
@@ -285,6 +395,15 @@ public class ActionServlet extends HttpServlet {
      */
     protected String servletName = null;
 
+    /**
+     * <p>The request processors for each initialized module, consulted
+     * without locking on every request.</p>
+     *
+     * @since Struts 1.4
+     */
+    protected RequestProcessorRegistry processors =
+        new RequestProcessorRegistry();
+
     // ---------------------------------------------------- HttpServlet Methods
 
     /**
@@ -298,10 +417,19 @@ public class ActionServlet extends HttpServlet {
 
         destroyModules();
         destroyInternal();
+
+        RequestMetrics metrics = RequestMetrics.getInstance(getServletContext());
+
+        if (metrics != null) {
+            metrics.unregisterMBean();
+            getServletContext().removeAttribute(Globals.REQUEST_METRICS_KEY);
+        }
         getServletContext().removeAttribute(Globals.ACTION_SERVLET_KEY);
+        getServletContext().removeAttribute(Globals.MAX_TOKENS_KEY);
 
         CatalogFactory.clear();
         PropertyUtils.clearDescriptors();
+        PopulatePlan.clear();
 
         // Release our LogFactory and Log instances (if any)
         ClassLoader classLoader =
@@ -353,16 +481,11 @@ public class ActionServlet extends HttpServlet {
             initModuleConfigFactory();
 
             // Initialize modules as needed
-            ModuleConfig moduleConfig = initModuleConfig("", config);
+            List prefixes = new ArrayList();
+            List paths = new ArrayList();
 
-            initModuleMessageResources(moduleConfig);
-            initModulePlugIns(moduleConfig);
-            initModuleFormBeans(moduleConfig);
-            initModuleForwards(moduleConfig);
-            initModuleExceptionConfigs(moduleConfig);
-            initModuleActions(moduleConfig);
-            postProcessConfig(moduleConfig);
-            moduleConfig.freeze();
+            prefixes.add("");
+            paths.add(config);
 
             Enumeration names = getServletConfig().getInitParameterNames();
 
@@ -373,22 +496,33 @@ public class ActionServlet extends HttpServlet {
                     continue;
                 }
 
-                String prefix = name.substring(configPrefixLength);
-
-                moduleConfig =
-                    initModuleConfig(prefix,
-                        getServletConfig().getInitParameter(name));
-                initModuleMessageResources(moduleConfig);
-                initModulePlugIns(moduleConfig);
-                initModuleFormBeans(moduleConfig);
-                initModuleForwards(moduleConfig);
-                initModuleExceptionConfigs(moduleConfig);
-                initModuleActions(moduleConfig);
-                postProcessConfig(moduleConfig);
-                moduleConfig.freeze();
+                prefixes.add(name.substring(configPrefixLength));
+                paths.add(getServletConfig().getInitParameter(name));
+            }
+
+            if (lazyModules && (prefixes.size() > 1)) {
+                deferredModules = new HashMap();
+
+                while (prefixes.size() > 1) {
+                    String prefix = (String) prefixes.remove(1);
+
+                    deferredModules.put(prefix,
+                        new LazyModule(prefix, (String) paths.remove(1)));
+                }
+            }
+
+            if ((moduleInitThreads > 1) && (prefixes.size() > 1)) {
+                initModulesInParallel(
+                    (String[]) prefixes.toArray(new String[prefixes.size()]),
+                    (String[]) paths.toArray(new String[paths.size()]));
+            } else {
+                for (int i = 0; i < prefixes.size(); i++) {
+                    initModule((String) prefixes.get(i), (String) paths.get(i));
+                }
             }
 
             this.initModulePrefixes(this.getServletContext());
+            this.initRequestProcessors();
 
             this.destroyConfigDigester();
         } catch (UnavailableException ex) {
@@ -407,6 +541,142 @@ public class ActionServlet extends HttpServlet {
         }
     }
 
+    /**
+     * <p>Initialize the module with the specified prefix: parse its
+     * configuration, then initialize its message resources, plug-ins, form
+     * beans, forwards, exception handlers and actions, and freeze it.</p>
+     *
+     * @param prefix Module prefix for this module
+     * @param paths  Comma-separated list of context-relative resource path(s)
+     *               for this modules's configuration resource(s)
+     * @throws ServletException if initialization cannot be performed
+     * @since Struts 1.4
+     */
+    protected void initModule(String prefix, String paths)
+        throws ServletException {
+        ModuleConfig moduleConfig = initModuleConfig(prefix, paths);
+
+        initModuleMessageResources(moduleConfig);
+        initModulePlugIns(moduleConfig);
+        configureModule(moduleConfig);
+    }
+
+    /**
+     * <p>Initialize the specified modules using up to
+     * <code>moduleInitThreads</code> threads.  The configuration of every
+     * module is parsed concurrently, each with its own <code>Digester</code>.
+     * Message resources and plug-ins are then initialized one module at a
+     * time, in the order the modules are listed, so plug-ins start in a
+     * deterministic order.  Finally form beans, forwards, exception handlers
+     * and actions are processed and each module is frozen, concurrently
+     * again unless a module has a plug-in implementing
+     * <code>ModuleConfigPostProcessor</code>: plug-ins need not be
+     * thread-safe, so their post-processors are then applied one module at
+     * a time, in order, as they are without parallel initialization.  The
+     * time taken by each phase is logged.</p>
+     *
+     * @param prefixes The module prefixes, the default module first
+     * @param paths    The configuration resource path(s) of each module
+     * @throws ServletException if initialization cannot be performed
+     * @since Struts 1.4
+     */
+    protected void initModulesInParallel(final String[] prefixes,
+        final String[] paths)
+        throws ServletException {
+        final ModuleConfig[] moduleConfigs = new ModuleConfig[prefixes.length];
+        ModuleTaskRunner runner = new ModuleTaskRunner(moduleInitThreads);
+
+        runner.run("parse", prefixes.length,
+            new ModuleTaskRunner.Task() {
+                public void run(int index)
+                    throws Exception {
+                    moduleConfigs[index] =
+                        readModuleConfig(prefixes[index], paths[index],
+                            false);
+                }
+            });
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < moduleConfigs.length; i++) {
+            getServletContext().setAttribute(Globals.MODULE_KEY
+                + moduleConfigs[i].getPrefix(), moduleConfigs[i]);
+            initModuleMessageResources(moduleConfigs[i]);
+            initModulePlugIns(moduleConfigs[i]);
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info("Module initialization phase 'plug-ins' completed for "
+                + moduleConfigs.length + " module(s) in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        if (hasPostProcessors(moduleConfigs)) {
+            start = System.currentTimeMillis();
+
+            for (int i = 0; i < moduleConfigs.length; i++) {
+                configureModule(moduleConfigs[i]);
+            }
+
+            if (log.isInfoEnabled()) {
+                log.info("Module initialization phase 'configure' completed "
+                    + "for " + moduleConfigs.length + " module(s) one at a "
+                    + "time, as plug-in post-processors are configured, in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            }
+
+            return;
+        }
+
+        runner.run("configure", moduleConfigs.length,
+            new ModuleTaskRunner.Task() {
+                public void run(int index)
+                    throws Exception {
+                    configureModule(moduleConfigs[index]);
+                }
+            });
+    }
+
+    /**
+     * <p>Return whether any of the specified modules has a plug-in
+     * implementing <code>ModuleConfigPostProcessor</code>.</p>
+     *
+     * @param moduleConfigs The module configurations
+     * @return Whether plug-in post-processors are configured
+     */
+    private boolean hasPostProcessors(ModuleConfig[] moduleConfigs) {
+        for (int i = 0; i < moduleConfigs.length; i++) {
+            PlugIn[] plugIns = getModulePlugIns(moduleConfigs[i]);
+
+            for (int j = 0; (plugIns != null) && (j < plugIns.length); j++) {
+                if (plugIns[j] instanceof ModuleConfigPostProcessor) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>Initialize the form beans, forwards, exception handlers and actions
+     * of a module whose plug-ins have been initialized, apply the plug-in
+     * post-processors, and freeze it.</p>
+     *
+     * @param moduleConfig The module configuration
+     * @throws ServletException if initialization cannot be performed
+     */
+    private void configureModule(ModuleConfig moduleConfig)
+        throws ServletException {
+        initModuleFormBeans(moduleConfig);
+        initModuleForwards(moduleConfig);
+        initModuleExceptionConfigs(moduleConfig);
+        initModuleActions(moduleConfig);
+        postProcessConfig(moduleConfig);
+        moduleConfig.freeze();
+        initModuleActionInstances(moduleConfig);
+    }
+
     /**
      * <p>Saves a String[] of module prefixes in the ServletContext under
      * Globals.MODULE_PREFIXES_KEY.  <strong>NOTE</strong> - the "" prefix for
@@ -434,12 +704,64 @@ public class ActionServlet extends HttpServlet {
             }
         }
 
+        if (deferredModules != null) {
+            for (Iterator i = deferredModules.keySet().iterator(); i.hasNext();) {
+                Object prefix = i.next();
+
+                if (!prefixList.contains(prefix)) {
+                    prefixList.add(prefix);
+                }
+            }
+        }
+
         String[] prefixes =
             (String[]) prefixList.toArray(new String[prefixList.size()]);
 
         context.setAttribute(Globals.MODULE_PREFIXES_KEY, prefixes);
     }
 
+    /**
+     * <p>Create the {@link RequestProcessor} for the default module and for
+     * every module listed under <code>Globals.MODULE_PREFIXES_KEY</code>, so
+     * that request processing finds them in the processor registry without
+     * taking the servlet monitor.</p>
+     *
+     * @throws ServletException if a processor cannot be created
+     * @since Struts 1.4
+     */
+    protected void initRequestProcessors()
+        throws ServletException {
+        ServletContext context = getServletContext();
+        String[] prefixes =
+            (String[]) context.getAttribute(Globals.MODULE_PREFIXES_KEY);
+
+        initRequestProcessor("");
+
+        if (prefixes != null) {
+            for (int i = 0; i < prefixes.length; i++) {
+                initRequestProcessor(prefixes[i]);
+            }
+        }
+    }
+
+    /**
+     * <p>Create and register the {@link RequestProcessor} for the module
+     * with the specified prefix, if that module has been configured.</p>
+     *
+     * @param prefix The module prefix
+     * @throws ServletException if the processor cannot be created
+     */
+    private void initRequestProcessor(String prefix)
+        throws ServletException {
+        ModuleConfig moduleConfig =
+            (ModuleConfig) getServletContext().getAttribute(Globals.MODULE_KEY
+                + prefix);
+
+        if (moduleConfig != null) {
+            getRequestProcessor(moduleConfig);
+        }
+    }
+
     /**
      * <p>Process an HTTP "GET" request.</p>
      *
@@ -528,28 +850,137 @@ public class ActionServlet extends HttpServlet {
                 continue;
             }
 
-            ModuleConfig config = (ModuleConfig) value;
+            destroyModule(name, (ModuleConfig) value);
+        }
+
+        processors.clear();
+    }
+
+    /**
+     * <p>Destroy the request processor, plug-ins and message resources of a
+     * module, and remove it from the servlet context.</p>
+     *
+     * @param name   The name of the servlet context attribute holding the
+     *               module configuration
+     * @param config The module configuration
+     */
+    private void destroyModule(String name, ModuleConfig config) {
+        if (this.getProcessorForModule(config) != null) {
+            this.getProcessorForModule(config).destroy();
+        }
+
+        MessageResourcesConfig[] mrcs = config.findMessageResourcesConfigs();
+
+        for (int i = 0; i < mrcs.length; i++) {
+            String key = mrcs[i].getKey() + config.getPrefix();
+            Object resources = getServletContext().getAttribute(key);
 
-            if (this.getProcessorForModule(config) != null) {
-                this.getProcessorForModule(config).destroy();
+            if (resources instanceof ReloadablePropertyMessageResources) {
+                ((ReloadablePropertyMessageResources) resources).stop();
             }
 
-            getServletContext().removeAttribute(name);
+            getServletContext().removeAttribute(key);
+        }
 
-            PlugIn[] plugIns =
-                (PlugIn[]) getServletContext().getAttribute(Globals.PLUG_INS_KEY
-                    + config.getPrefix());
+        getServletContext().removeAttribute(name);
+        getServletContext().removeAttribute(Globals.ACTION_REGISTRY_KEY
+            + config.getPrefix());
 
-            if (plugIns != null) {
-                for (int i = 0; i < plugIns.length; i++) {
-                    int j = plugIns.length - (i + 1);
+        PlugIn[] plugIns =
+            (PlugIn[]) getServletContext().getAttribute(Globals.PLUG_INS_KEY
+                + config.getPrefix());
 
-                    plugIns[j].destroy();
-                }
+        if (plugIns != null) {
+            for (int i = 0; i < plugIns.length; i++) {
+                int j = plugIns.length - (i + 1);
 
-                getServletContext().removeAttribute(Globals.PLUG_INS_KEY
-                    + config.getPrefix());
+                plugIns[j].destroy();
             }
+
+            getServletContext().removeAttribute(Globals.PLUG_INS_KEY
+                + config.getPrefix());
+        }
+    }
+
+    /**
+     * <p>Initialize a module on its first request, when
+     * <code>lazyModules</code> is set.  Unlike at startup, the module is
+     * parsed with a <code>Digester</code> of its own, since other modules
+     * may be initializing at the same time.</p>
+     *
+     * @param prefix The module prefix
+     * @param paths  Comma-separated list of context-relative resource path(s)
+     *               for this modules's configuration resource(s)
+     * @throws ServletException if initialization cannot be performed
+     */
+    void initLazyModule(String prefix, String paths)
+        throws ServletException {
+        long start = System.currentTimeMillis();
+
+        try {
+            ModuleConfig moduleConfig = readModuleConfig(prefix, paths, false);
+
+            getServletContext().setAttribute(Globals.MODULE_KEY
+                + moduleConfig.getPrefix(), moduleConfig);
+            initModuleMessageResources(moduleConfig);
+            initModulePlugIns(moduleConfig);
+            configureModule(moduleConfig);
+            initRequestProcessor(prefix);
+        } catch (ServletException e) {
+            destroyLazyModule(prefix);
+            throw e;
+        } catch (RuntimeException e) {
+            destroyLazyModule(prefix);
+            throw e;
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info("Initialized module '" + prefix + "' on demand in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * <p>Destroy a module initialized on demand, and release everything it
+     * holds, so that its next request initializes it again.</p>
+     *
+     * @param prefix The module prefix
+     */
+    void destroyLazyModule(String prefix) {
+        ServletContext context = getServletContext();
+        ModuleConfig config =
+            (ModuleConfig) context.getAttribute(Globals.MODULE_KEY + prefix);
+
+        if (config == null) {
+            return;
+        }
+
+        destroyModule(Globals.MODULE_KEY + prefix, config);
+        processors.remove(config);
+        context.removeAttribute(Globals.REQUEST_PROCESSOR_KEY + prefix);
+
+        if (log.isInfoEnabled()) {
+            log.info("Destroyed idle module '" + prefix + "'");
+        }
+    }
+
+    /**
+     * <p>Destroy the modules initialized on demand that have been idle for
+     * longer than <code>lazyModuleIdleTimeout</code>.  Modules are checked at
+     * most once a minute, or once per timeout if that is shorter.</p>
+     */
+    private void evictIdleModules() {
+        long now = System.currentTimeMillis();
+
+        if ((lazyModuleIdleTimeout <= 0) || (now < nextEviction)) {
+            return;
+        }
+
+        nextEviction = now + Math.min(lazyModuleIdleTimeout, 60000);
+
+        for (Iterator i = deferredModules.values().iterator(); i.hasNext();) {
+            ((LazyModule) i.next()).evictIfIdle(this, now,
+                lazyModuleIdleTimeout);
         }
     }
 
@@ -638,6 +1069,8 @@ public class ActionServlet extends HttpServlet {
             getServletContext().setAttribute(key, processor);
         }
 
+        processors.register(config, processor);
+
         return (processor);
     }
 
@@ -681,6 +1114,31 @@ public class ActionServlet extends HttpServlet {
      * @since Struts 1.1
      */
     protected ModuleConfig initModuleConfig(String prefix, String paths)
+        throws ServletException {
+        ModuleConfig config = readModuleConfig(prefix, paths, true);
+
+        getServletContext().setAttribute(Globals.MODULE_KEY
+            + config.getPrefix(), config);
+
+        return config;
+    }
+
+    /**
+     * <p>Create the module configuration for the specified module and parse
+     * its configuration resources into it with the specified
+     * <code>Digester</code>.  The configuration is not stored in the servlet
+     * context.</p>
+     *
+     * @param prefix   Module prefix for this module
+     * @param paths    Comma-separated list of context-relative resource
+     *                 path(s) for this modules's configuration resource(s)
+     * @param digester Digester instance that does the parsing
+     * @return The new module configuration instance.
+     * @throws ServletException if initialization cannot be performed
+     * @since Struts 1.4
+     */
+    protected ModuleConfig parseModuleConfig(String prefix, String paths,
+        Digester digester)
         throws ServletException {
         if (log.isDebugEnabled()) {
             log.debug("Initializing module path '" + prefix
@@ -691,9 +1149,6 @@ public class ActionServlet extends HttpServlet {
         ModuleConfigFactory factoryObject = ModuleConfigFactory.createFactory();
         ModuleConfig config = factoryObject.createModuleConfig(prefix);
 
-        // Configure the Digester instance we will use
-        Digester digester = initConfigDigester();
-
         List urls = splitAndResolvePaths(paths);
         URL url;
 
@@ -703,8 +1158,52 @@ public class ActionServlet extends HttpServlet {
             this.parseModuleConfigFile(digester, url);
         }
 
-        getServletContext().setAttribute(Globals.MODULE_KEY
-            + config.getPrefix(), config);
+        return config;
+    }
+
+    /**
+     * <p>Return the configuration of the specified module from the
+     * configuration cache if it holds a copy parsed from the same resources,
+     * or else parse it and store it in the cache.</p>
+     *
+     * @param prefix The module prefix
+     * @param paths  Comma-separated list of context-relative resource path(s)
+     *               for this modules's configuration resource(s)
+     * @param shared Whether to parse with the shared <code>Digester</code>
+     *               rather than a new one
+     * @return The new module configuration instance.
+     * @throws ServletException if the configuration cannot be parsed
+     */
+    private ModuleConfig readModuleConfig(String prefix, String paths,
+        boolean shared)
+        throws ServletException {
+        String key = null;
+
+        if (configCache != null) {
+            try {
+                key = configCache.computeKey(prefix,
+                        splitAndResolvePaths(paths));
+            } catch (IOException e) {
+                log.warn("Unable to compute the configuration cache key of "
+                    + "module '" + prefix + "'", e);
+            }
+
+            if (key != null) {
+                ModuleConfig cached = configCache.load(prefix, key);
+
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        Digester digester =
+            shared ? initConfigDigester() : createConfigDigester();
+        ModuleConfig config = parseModuleConfig(prefix, paths, digester);
+
+        if (key != null) {
+            configCache.store(prefix, key, config);
+        }
 
         return config;
     }
@@ -837,6 +1336,66 @@ public class ActionServlet extends HttpServlet {
         throw new UnavailableException(errorMessage);
     }
 
+    /**
+     * <p>Create the singleton <code>Action</code> instances of the specified
+     * module in its {@link ActionRegistry}, if <code>preloadActions</code>
+     * is enabled.</p>
+     *
+     * @param config ModuleConfig information for this module
+     * @throws ServletException if an Action cannot be created
+     * @since Struts 1.4
+     */
+    protected void initModuleActionInstances(ModuleConfig config)
+        throws ServletException {
+        if (!preloadActions) {
+            return;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Creating action instances of module path '"
+                + config.getPrefix() + "'");
+        }
+
+        ActionRegistry registry =
+            ActionRegistry.getActionRegistry(getServletContext(), config);
+        ActionRegistry.Factory factory =
+            new ActionRegistry.Factory() {
+                public Action createAction(String type)
+                    throws Exception {
+                    Action action =
+                        (Action) RequestUtils.applicationInstance(type);
+
+                    action.setServlet(ActionServlet.this);
+
+                    return action;
+                }
+            };
+
+        ActionConfig[] actionConfigs = config.findActionConfigs();
+
+        for (int i = 0; i < actionConfigs.length; i++) {
+            ActionConfig actionConfig = actionConfigs[i];
+            String type = actionConfig.getType();
+
+            if ((type == null) || !actionConfig.isSingleton()) {
+                continue;
+            }
+
+            try {
+                registry.getAction(type, factory);
+            } catch (Exception e) {
+                String msg =
+                    internal.getMessage("actionCreate",
+                        actionConfig.getPath(), actionConfig.toString());
+
+                log.error(msg, e);
+                UnavailableException e2 = new UnavailableException(msg);
+                e2.initCause(e);
+                throw e2;
+            }
+        }
+    }
+
     /**
      * <p>Initialize the plug ins for the specified module.</p>
      *
@@ -1604,34 +2163,52 @@ public class ActionServlet extends HttpServlet {
             return (configDigester);
         }
 
+        configDigester = createConfigDigester();
+
+        // Return the completely configured Digester instance
+        return (configDigester);
+    }
+
+    /**
+     * <p>Create and return a new <code>Digester</code> instance that has
+     * been initialized to process Struts module configuration files.  Unlike
+     * {@link #initConfigDigester()}, this always creates a new instance,
+     * which is not shared.</p>
+     *
+     * @return A new configured <code>Digester</code> instance.
+     * @throws ServletException if a Digester cannot be configured
+     * @since Struts 1.4
+     */
+    protected Digester createConfigDigester()
+        throws ServletException {
         // Create a new Digester instance with standard capabilities
-        configDigester = new Digester();
-        configDigester.setNamespaceAware(true);
-        configDigester.setValidating(this.isValidating());
-        configDigester.setUseContextClassLoader(true);
-        configDigester.addRuleSet(new ConfigRuleSet());
+        Digester digester = new Digester();
+        digester.setNamespaceAware(true);
+        digester.setValidating(this.isValidating());
+        digester.setUseContextClassLoader(true);
+        digester.addRuleSet(new ConfigRuleSet());
 
         for (int i = 0; i < registrations.length; i += 2) {
             URL url = this.getClass().getResource(registrations[i + 1]);
 
             if (url != null) {
-                configDigester.register(registrations[i], url.toString());
+                digester.register(registrations[i], url.toString());
             }
         }
 
-        this.addRuleSets();
+        this.addRuleSets(digester);
 
-        // Return the completely configured Digester instance
-        return (configDigester);
+        return (digester);
     }
 
     /**
-     * <p>Add any custom RuleSet instances to configDigester that have been
+     * <p>Add any custom RuleSet instances to a Digester that have been
      * specified in the <code>rulesets</code> init parameter.</p>
      *
+     * @param digester The Digester to add the RuleSets to
      * @throws ServletException if an error occurs
      */
-    private void addRuleSets()
+    private void addRuleSets(Digester digester)
         throws ServletException {
         String rulesets = getServletConfig().getInitParameter("rulesets");
 
@@ -1663,7 +2240,7 @@ public class ActionServlet extends HttpServlet {
                 RuleSet instance =
                     (RuleSet) RequestUtils.applicationInstance(ruleset);
 
-                this.configDigester.addRuleSet(instance);
+                digester.addRuleSet(instance);
             } catch (Exception e) {
                 log.error("Exception configuring custom Digester RuleSet", e);
                 throw new ServletException(e);
@@ -1785,6 +2362,111 @@ public class ActionServlet extends HttpServlet {
             ConvertUtils.register(new LongConverter(null), Long.class);
             ConvertUtils.register(new ShortConverter(null), Short.class);
         }
+
+        value = getServletConfig().getInitParameter("configCache");
+
+        if ((value != null) && (value.trim().length() > 0)
+            && !"false".equalsIgnoreCase(value.trim())) {
+            File directory;
+
+            if ("true".equalsIgnoreCase(value.trim())) {
+                directory =
+                    (File) getServletContext().getAttribute(
+                        "javax.servlet.context.tempdir");
+            } else {
+                directory = new File(value.trim());
+            }
+
+            if (directory == null) {
+                log.warn("No temporary directory is available, the "
+                    + "configuration cache is disabled");
+            } else {
+                configCache =
+                    new ModuleConfigCache(directory,
+                        getClass().getName() + ";"
+                        + getServletConfig().getInitParameter("configFactory")
+                        + ";" + getServletConfig().getInitParameter("rulesets")
+                        + ";" + isValidating());
+            }
+        }
+
+        value = getServletConfig().getInitParameter("lazyModules");
+
+        if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)
+            || "on".equalsIgnoreCase(value) || "y".equalsIgnoreCase(value)
+            || "1".equalsIgnoreCase(value)) {
+            lazyModules = true;
+        }
+
+        value = getServletConfig().getInitParameter("lazyModuleIdleTimeout");
+
+        if (value != null) {
+            try {
+                lazyModuleIdleTimeout = Long.parseLong(value.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                log.error("Invalid lazyModuleIdleTimeout value '" + value
+                    + "', idle modules will not be destroyed");
+                lazyModuleIdleTimeout = 0;
+            }
+        }
+
+        value = getServletConfig().getInitParameter("maxTokens");
+
+        if (value != null) {
+            try {
+                int maxTokens = Integer.parseInt(value.trim());
+
+                if (maxTokens < 1) {
+                    throw new NumberFormatException();
+                }
+
+                getServletContext().setAttribute(Globals.MAX_TOKENS_KEY,
+                    new Integer(maxTokens));
+            } catch (NumberFormatException e) {
+                log.error("Invalid maxTokens value '" + value
+                    + "', keeping one token per session");
+            }
+        }
+
+        value = getServletConfig().getInitParameter("metrics");
+
+        if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)
+            || "on".equalsIgnoreCase(value) || "y".equalsIgnoreCase(value)
+            || "1".equalsIgnoreCase(value)) {
+            RequestMetrics metrics = new RequestMetrics();
+
+            getServletContext().setAttribute(Globals.REQUEST_METRICS_KEY,
+                metrics);
+
+            value = getServletConfig().getInitParameter("metricsMBean");
+
+            if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)
+                || "on".equalsIgnoreCase(value) || "y".equalsIgnoreCase(value)
+                || "1".equalsIgnoreCase(value)) {
+                metrics.registerMBean(getServletConfig().getServletName(),
+                    getServletContext().getServletContextName());
+            }
+        }
+
+        value = getServletConfig().getInitParameter("moduleInitThreads");
+
+        if (value != null) {
+            try {
+                moduleInitThreads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.error("Invalid moduleInitThreads value '" + value
+                    + "', initializing modules one at a time");
+                moduleInitThreads = 1;
+            }
+        }
+
+        value = getServletConfig().getInitParameter("preloadActions");
+
+        if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)
+            || "on".equalsIgnoreCase(value) || "y".equalsIgnoreCase(value)
+            || "1".equalsIgnoreCase(value)) {
+            preloadActions = true;
+        }
     }
 
     /**
@@ -1952,17 +2634,41 @@ public class ActionServlet extends HttpServlet {
     protected void process(HttpServletRequest request,
         HttpServletResponse response)
         throws IOException, ServletException {
-        ModuleUtils.getInstance().selectModule(request, getServletContext());
+        LazyModule lazyModule = null;
 
-        ModuleConfig config = getModuleConfig(request);
+        if (deferredModules != null) {
+            String prefix =
+                ModuleUtils.getInstance().getModuleName(request,
+                    getServletContext());
 
-        RequestProcessor processor = getProcessorForModule(config);
+            lazyModule = (LazyModule) deferredModules.get(prefix);
 
-        if (processor == null) {
-            processor = getRequestProcessor(config);
+            if (lazyModule != null) {
+                lazyModule.enter(this);
+            }
         }
 
-        processor.process(request, response);
+        try {
+            ModuleUtils.getInstance().selectModule(request, getServletContext());
+
+            ModuleConfig config = getModuleConfig(request);
+
+            RequestProcessor processor = processors.get(config);
+
+            if (processor == null) {
+                processor = getRequestProcessor(config);
+            }
+
+            processor.process(request, response);
+        } finally {
+            if (lazyModule != null) {
+                lazyModule.exit();
+            }
+
+            if (deferredModules != null) {
+                evictIdleModules();
+            }
+        }
     }
     
     /**
@@ -36,7 +36,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 /**
  * <p>Specialized subclass of <code>ActionForm</code> that allows the creation
@@ -101,6 +100,12 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      * @param config The configuration for the form bean to initialize.
      */
     public void initialize(FormBeanConfig config) {
+        if ((dynaClass != null) && (dynaClass.config == config)) {
+            initializeValues(dynaClass.createInitialValues());
+
+            return;
+        }
+
         FormPropertyConfig[] props = config.findFormPropertyConfigs();
 
         for (int i = 0; i < props.length; i++) {
@@ -131,56 +136,25 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      * <code>reset</code> is set to a list of HTTP request methods that
      * includes the method of given <code>request</code> object.</p>
      *
+     * <p>The <code>reset</code> configuration of the form bean this form was
+     * created from is parsed once, by its <code>DynaActionFormClass</code>,
+     * into the list of properties to reset for each HTTP method.</p>
+     *
      * @param mapping The mapping used to select this instance
      * @param request The servlet request we are processing
      */
     public void reset(ActionMapping mapping, HttpServletRequest request) {
-        String name = getDynaClass().getName();
-
-        if (name == null) {
+        if ((dynaClass == null) || (dynaClass.getName() == null)) {
             return;
         }
 
-        FormBeanConfig config =
-            mapping.getModuleConfig().findFormBeanConfig(name);
-
-        if (config == null) {
-            return;
-        }
-
-        // look for properties we should reset
-        FormPropertyConfig[] props = config.findFormPropertyConfigs();
-
-        for (int i = 0; i < props.length; i++) {
-            String resetValue = props[i].getReset();
-
-            // skip this property if there's no reset value
-            if ((resetValue == null) || (resetValue.length() <= 0)) {
-                continue;
-            }
-
-            boolean reset = Boolean.valueOf(resetValue).booleanValue();
-
-            if (!reset) {
-                // check for the request method
-                // use a StringTokenizer with the default delimiters + a comma
-                StringTokenizer st =
-                    new StringTokenizer(resetValue, ", \t\n\r\f");
-
-                while (st.hasMoreTokens()) {
-                    String token = st.nextToken();
-
-                    if (token.equalsIgnoreCase(request.getMethod())) {
-                        reset = true;
-
-                        break;
-                    }
-                }
-            }
+        // reset the properties whose configuration applies to this method
+        int[] indexes = dynaClass.getResetIndexes(request.getMethod());
+        DynaProperty[] props = dynaClass.getDynaProperties();
 
-            if (reset) {
-                set(props[i].getName(), props[i].initial());
-            }
+        for (int i = 0; i < indexes.length; i++) {
+            set(props[indexes[i]].getName(),
+                dynaClass.createInitialValue(indexes[i]));
         }
     }
 
@@ -201,7 +175,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      *                                  specified name
      */
     public boolean contains(String name, String key) {
-        Object value = dynaValues.get(name);
+        Object value = getValue(name);
 
         if (value == null) {
             throw new NullPointerException("No mapped value for '" + name + "("
@@ -226,7 +200,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      */
     public Object get(String name) {
         // Return any non-null value for the specified property
-        Object value = dynaValues.get(name);
+        Object value = getValue(name);
 
         if (value != null) {
             return (value);
@@ -281,7 +255,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      *                                  initialized for this property
      */
     public Object get(String name, int index) {
-        Object value = dynaValues.get(name);
+        Object value = getValue(name);
 
         if (value == null) {
             throw new NullPointerException("No indexed value for '" + name
@@ -310,7 +284,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      *                                  is not mapped
      */
     public Object get(String name, String key) {
-        Object value = dynaValues.get(name);
+        Object value = getValue(name);
 
         if (value == null) {
             throw new NullPointerException("No mapped value for '" + name + "("
@@ -407,7 +381,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      *                                  specified name
      */
     public void remove(String name, String key) {
-        Object value = dynaValues.get(name);
+        Object value = getValue(name);
 
         if (value == null) {
             throw new NullPointerException("No mapped value for '" + name + "("
@@ -454,7 +428,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
                 + "' of type '" + descriptor.getType().getName() + "'");
         }
 
-        dynaValues.put(name, value);
+        setValue(name, value);
     }
 
     /**
@@ -474,7 +448,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      *                                   range of the underlying property
      */
     public void set(String name, int index, Object value) {
-        Object prop = dynaValues.get(name);
+        Object prop = getValue(name);
 
         if (prop == null) {
             throw new NullPointerException("No indexed value for '" + name
@@ -505,7 +479,7 @@ public class DynaActionForm extends ActionForm implements DynaBean {
      *                                  is not mapped
      */
     public void set(String name, String key, Object value) {
-        Object prop = dynaValues.get(name);
+        Object prop = getValue(name);
 
         if (prop == null) {
             throw new NullPointerException("No mapped value for '" + name + "("
@@ -621,8 +595,46 @@ public class DynaActionForm extends ActionForm implements DynaBean {
         this.dynaClass = dynaClass;
     }
 
+    /**
+     * <p>Set all properties to the specified values, in the order of the
+     * properties of our <code>DynaActionFormClass</code>.</p>
+     *
+     * @param values The new values of the properties
+     */
+    void initializeValues(Object[] values) {
+        DynaProperty[] props = dynaClass.getDynaProperties();
+
+        for (int i = 0; i < props.length; i++) {
+            set(props[i].getName(), values[i]);
+        }
+    }
+
     // ------------------------------------------------------ Protected Methods
 
+    /**
+     * <p>Return the stored value of the specified property, without any
+     * checks.</p>
+     *
+     * @param name Name of the property
+     * @return The stored value, or <code>null</code> if there is none
+     * @since Struts 1.4
+     */
+    protected Object getValue(String name) {
+        return (dynaValues.get(name));
+    }
+
+    /**
+     * <p>Store the value of the specified property, which has already been
+     * checked against the property type.</p>
+     *
+     * @param name  Name of the property
+     * @param value The value
+     * @since Struts 1.4
+     */
+    protected void setValue(String name, Object value) {
+        dynaValues.put(name, value);
+    }
+
     /**
      * <p>Return the property descriptor for the specified property name.</p>
      *
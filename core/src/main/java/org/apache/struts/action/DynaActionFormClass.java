@@ -27,9 +27,22 @@ import org.apache.struts.config.FormBeanConfig;
 import org.apache.struts.config.FormPropertyConfig;
 import org.apache.struts.util.RequestUtils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
+import java.lang.reflect.Array;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringTokenizer;
 
 /**
  * <p>Implementation of <code>DynaClass</code> for <code>DynaActionForm</code>
@@ -43,6 +56,12 @@ import java.util.HashMap;
  * @since Struts 1.1
  */
 public class DynaActionFormClass implements DynaClass, Serializable {
+    /**
+     * <p>The serialization identifier of Struts 1.3, so that instances
+     * serialized by it can still be read.</p>
+     */
+    private static final long serialVersionUID = -2692754660713377968L;
+
     // ----------------------------------------------------- Instance Variables
 
     /**
@@ -74,6 +93,23 @@ public class DynaActionFormClass implements DynaClass, Serializable {
      */
     protected HashMap propertiesMap = new HashMap();
 
+    /**
+     * <p>The index of each property in the <code>properties</code> list,
+     * keyed by the property name.</p>
+     */
+    protected HashMap indexesMap = new HashMap();
+
+    /**
+     * <p>The initial values of the properties, computed on first use.</p>
+     */
+    private transient volatile InitialValues initialValues = null;
+
+    /**
+     * <p>The properties to reset for each HTTP method, computed on first
+     * use.</p>
+     */
+    private transient volatile ResetPlan resetPlan = null;
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -160,18 +196,28 @@ public class DynaActionFormClass implements DynaClass, Serializable {
         DynaActionForm dynaBean = (DynaActionForm) getBeanClass().newInstance();
 
         dynaBean.setDynaActionFormClass(this);
-
-        FormPropertyConfig[] props = config.findFormPropertyConfigs();
-
-        for (int i = 0; i < props.length; i++) {
-            dynaBean.set(props[i].getName(), props[i].initial());
-        }
+        dynaBean.initializeValues(createInitialValues());
 
         return (dynaBean);
     }
 
     // --------------------------------------------------------- Public Methods
 
+    /**
+     * <p>Return the index of the specified property in the list returned by
+     * <code>getDynaProperties()</code>, or -1 if there is no such
+     * property.</p>
+     *
+     * @param name Name of the property
+     * @return The index of the property, or -1
+     * @since Struts 1.4
+     */
+    public int getPropertyIndex(String name) {
+        Integer index = (Integer) indexesMap.get(name);
+
+        return (index == null) ? (-1) : index.intValue();
+    }
+
     /**
      * <p>Render a <code>String</code> representation of this object.</p>
      *
@@ -281,8 +327,319 @@ public class DynaActionFormClass implements DynaClass, Serializable {
                 new DynaProperty(descriptors[i].getName(),
                     descriptors[i].getTypeClass());
             propertiesMap.put(properties[i].getName(), properties[i]);
+            indexesMap.put(properties[i].getName(), new Integer(i));
         }
     }
 
+    // -------------------------------------------------------- Package Methods
+
+    /**
+     * <p>Return the initial values of all properties, in the order of
+     * <code>getDynaProperties()</code>.  The values are those returned by
+     * <code>FormPropertyConfig.initial()</code>, but immutable values are
+     * shared and arrays of immutable values are copied, so that
+     * <code>initial()</code> is only called again for mutable values.</p>
+     *
+     * @return A new array of initial values
+     */
+    Object[] createInitialValues() {
+        InitialValues initial = getInitialValues();
+        Object[] values = new Object[initial.values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = initial.copy(i);
+        }
+
+        return values;
+    }
+
+    /**
+     * <p>Return the initial value of the property at the specified index, as
+     * <code>createInitialValues()</code> would.</p>
+     *
+     * @param index The index of the property
+     * @return The initial value
+     */
+    Object createInitialValue(int index) {
+        return getInitialValues().copy(index);
+    }
+
+    /**
+     * <p>Return the indexes of the properties whose <code>reset</code>
+     * configuration applies to requests with the specified HTTP method: the
+     * properties whose <code>reset</code> is <code>true</code>, and those
+     * whose <code>reset</code> lists the method.</p>
+     *
+     * @param method The HTTP method of the request
+     * @return The indexes of the properties to reset, in property order
+     */
+    int[] getResetIndexes(String method) {
+        ResetPlan plan = resetPlan;
+
+        if (plan == null) {
+            plan = new ResetPlan(config.findFormPropertyConfigs());
+            resetPlan = plan;
+        }
+
+        return plan.getIndexes(method);
+    }
+
     // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Read an instance, rebuilding the property indexes when it was
+     * serialized by a version that did not keep them.</p>
+     *
+     * @param in The stream to read from
+     * @throws IOException            if the stream cannot be read
+     * @throws ClassNotFoundException if a class of the instance cannot be
+     *                                found
+     */
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        if (indexesMap == null) {
+            indexesMap = new HashMap();
+
+            for (int i = 0; (properties != null) && (i < properties.length);
+                i++) {
+                indexesMap.put(properties[i].getName(), new Integer(i));
+            }
+        }
+    }
+
+    /**
+     * <p>Return the initial values, computing them on first use.</p>
+     *
+     * @return The initial values
+     */
+    private InitialValues getInitialValues() {
+        InitialValues initial = initialValues;
+
+        if (initial == null) {
+            initial = new InitialValues(config.findFormPropertyConfigs());
+            initialValues = initial;
+        }
+
+        return initial;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>The parsed <code>reset</code> configuration of the properties.</p>
+     */
+    private static class ResetPlan {
+        /**
+         * <p>The properties reset for every HTTP method.</p>
+         */
+        private final int[] always;
+
+        /**
+         * <p>The properties reset for each HTTP method listed by at least
+         * one property, keyed by the upper case method name.</p>
+         */
+        private final Map byMethod = new HashMap();
+
+        ResetPlan(FormPropertyConfig[] configs) {
+            List alwaysList = new ArrayList();
+            Map methods = new HashMap();
+
+            for (int i = 0; i < configs.length; i++) {
+                String resetValue = configs[i].getReset();
+
+                if ((resetValue == null) || (resetValue.length() <= 0)) {
+                    continue;
+                }
+
+                if (Boolean.valueOf(resetValue).booleanValue()) {
+                    alwaysList.add(new Integer(i));
+
+                    continue;
+                }
+
+                StringTokenizer st =
+                    new StringTokenizer(resetValue, ", \t\n\r\f");
+
+                while (st.hasMoreTokens()) {
+                    methods.put(st.nextToken().toUpperCase(Locale.ENGLISH), null);
+                }
+            }
+
+            always = toArray(alwaysList);
+
+            for (Iterator names = methods.keySet().iterator();
+                names.hasNext();) {
+                String method = (String) names.next();
+                List indexes = new ArrayList();
+
+                for (int i = 0; i < configs.length; i++) {
+                    if (isReset(configs[i].getReset(), method)) {
+                        indexes.add(new Integer(i));
+                    }
+                }
+
+                byMethod.put(method, toArray(indexes));
+            }
+        }
+
+        /**
+         * <p>Return the properties to reset for the specified HTTP
+         * method.</p>
+         *
+         * @param method The HTTP method
+         * @return The indexes of the properties
+         */
+        int[] getIndexes(String method) {
+            if (method == null) {
+                return always;
+            }
+
+            int[] indexes = (int[]) byMethod.get(method);
+
+            if (indexes == null) {
+                indexes = (int[]) byMethod.get(method.toUpperCase(Locale.ENGLISH));
+            }
+
+            return (indexes == null) ? always : indexes;
+        }
+
+        /**
+         * <p>Return whether the specified <code>reset</code> configuration
+         * applies to the specified HTTP method.</p>
+         *
+         * @param resetValue The <code>reset</code> configuration
+         * @param method     The upper case HTTP method
+         * @return Whether the property is reset
+         */
+        private static boolean isReset(String resetValue, String method) {
+            if ((resetValue == null) || (resetValue.length() <= 0)) {
+                return false;
+            }
+
+            if (Boolean.valueOf(resetValue).booleanValue()) {
+                return true;
+            }
+
+            StringTokenizer st =
+                new StringTokenizer(resetValue, ", \t\n\r\f");
+
+            while (st.hasMoreTokens()) {
+                if (st.nextToken().equalsIgnoreCase(method)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static int[] toArray(List list) {
+            int[] array = new int[list.size()];
+
+            for (int i = 0; i < array.length; i++) {
+                array[i] = ((Integer) list.get(i)).intValue();
+            }
+
+            return array;
+        }
+    }
+
+    /**
+     * <p>The initial values of the properties and how to copy each of
+     * them.</p>
+     */
+    private static class InitialValues {
+        /**
+         * <p>The value is immutable and is shared.</p>
+         */
+        private static final int SHARE = 0;
+
+        /**
+         * <p>The value is an array of immutable values and is copied.</p>
+         */
+        private static final int COPY = 1;
+
+        /**
+         * <p>The value is mutable and is created again.</p>
+         */
+        private static final int CREATE = 2;
+
+        /**
+         * <p>The classes whose instances are immutable.</p>
+         */
+        private static final Class[] IMMUTABLE =
+            {
+                String.class, Boolean.class, Byte.class, Character.class,
+                Short.class, Integer.class, Long.class, Float.class,
+                Double.class, BigDecimal.class, BigInteger.class
+            };
+
+        private final FormPropertyConfig[] configs;
+        private final Object[] values;
+        private final int[] modes;
+
+        InitialValues(FormPropertyConfig[] configs) {
+            this.configs = configs;
+            this.values = new Object[configs.length];
+            this.modes = new int[configs.length];
+
+            for (int i = 0; i < configs.length; i++) {
+                Object value = configs[i].initial();
+
+                values[i] = value;
+
+                if ((value == null) || isImmutable(value.getClass())) {
+                    modes[i] = SHARE;
+                } else if (value.getClass().isArray()
+                    && (value.getClass().getComponentType().isPrimitive()
+                    || isImmutable(value.getClass().getComponentType()))) {
+                    modes[i] = COPY;
+                } else {
+                    modes[i] = CREATE;
+                }
+            }
+        }
+
+        /**
+         * <p>Return the initial value at the specified index.</p>
+         *
+         * @param index The index of the property
+         * @return Its initial value
+         */
+        Object copy(int index) {
+            Object value = values[index];
+
+            if (modes[index] == SHARE) {
+                return value;
+            } else if (modes[index] == CREATE) {
+                return configs[index].initial();
+            }
+
+            int length = Array.getLength(value);
+            Object copy =
+                Array.newInstance(value.getClass().getComponentType(), length);
+
+            System.arraycopy(value, 0, copy, 0, length);
+
+            return copy;
+        }
+
+        /**
+         * <p>Return whether instances of the specified class are
+         * immutable.</p>
+         *
+         * @param clazz The class
+         * @return Whether its instances are immutable
+         */
+        private static boolean isImmutable(Class clazz) {
+            for (int i = 0; i < IMMUTABLE.length; i++) {
+                if (IMMUTABLE[i] == clazz) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
 }
@@ -0,0 +1,293 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import javax.servlet.ServletException;
+
+/**
+ * <p>Tracks a module that {@link ActionServlet} initializes on its first
+ * request rather than at startup.  The first request into the module
+ * initializes it while holding this object's lock, so concurrent requests
+ * into the same module wait for that one initialization to finish instead
+ * of starting their own.  Once the module is initialized, requests enter and
+ * leave it without taking that lock: they are counted on a few striped
+ * counters, so that an idle module can be destroyed without pulling it out
+ * from under a request.</p>
+ *
+ * <p>If initialization fails, requests into the module fail straight away
+ * for a while instead of each trying again.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class LazyModule {
+    /**
+     * <p>How long requests fail without retrying after the module failed to
+     * initialize, in milliseconds.</p>
+     */
+    static final long RETRY_DELAY = 30000;
+
+    /**
+     * <p>The number of request counters, a power of two.</p>
+     */
+    private static final int STRIPES = 16;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The module prefix.</p>
+     */
+    private final String prefix;
+
+    /**
+     * <p>The comma-separated configuration resource path(s).</p>
+     */
+    private final String paths;
+
+    /**
+     * <p>How long to wait before initializing again after a failure.</p>
+     */
+    private final long retryDelay;
+
+    /**
+     * <p>Whether the module is currently initialized.  Only set while
+     * holding this object's lock.</p>
+     */
+    private volatile boolean initialized = false;
+
+    /**
+     * <p>The counters of the requests currently in the module.  Each is
+     * guarded by its own lock.</p>
+     */
+    private final int[][] active;
+
+    /**
+     * <p>When the last request entered or left the module.</p>
+     */
+    private volatile long lastAccess = 0;
+
+    /**
+     * <p>Why the last initialization failed, or <code>null</code>.</p>
+     */
+    private Throwable failure = null;
+
+    /**
+     * <p>When the last initialization failed.</p>
+     */
+    private long failedAt = 0;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a module that is not initialized yet.</p>
+     *
+     * @param prefix The module prefix
+     * @param paths  The comma-separated configuration resource path(s)
+     */
+    LazyModule(String prefix, String paths) {
+        this(prefix, paths, RETRY_DELAY);
+    }
+
+    /**
+     * <p>Construct a module that is not initialized yet.</p>
+     *
+     * @param prefix     The module prefix
+     * @param paths      The comma-separated configuration resource path(s)
+     * @param retryDelay How long to wait before initializing again after a
+     *                   failure, in milliseconds
+     */
+    LazyModule(String prefix, String paths, long retryDelay) {
+        this.prefix = prefix;
+        this.paths = paths;
+        this.retryDelay = retryDelay;
+        this.active = new int[STRIPES][1];
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Record a request entering the module, initializing the module
+     * first if needed.  Every call that returns normally must be followed by
+     * a call to {@link #exit()} from the same thread.</p>
+     *
+     * @param servlet The servlet that owns the module
+     * @throws ServletException if the module cannot be initialized
+     */
+    void enter(ActionServlet servlet)
+        throws ServletException {
+        int[] counter = counter();
+
+        if (initialized) {
+            increment(counter, 1);
+
+            // Eviction clears the flag before it counts the requests in
+            if (initialized) {
+                lastAccess = System.currentTimeMillis();
+
+                return;
+            }
+
+            increment(counter, -1);
+        }
+
+        synchronized (this) {
+            if (!initialized) {
+                initialize(servlet);
+            }
+
+            increment(counter, 1);
+        }
+
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * <p>Record a request leaving the module.</p>
+     */
+    void exit() {
+        increment(counter(), -1);
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * <p>Destroy the module if it is initialized, no request is in it, and
+     * none has been for at least the specified time.  The next request
+     * initializes it again.</p>
+     *
+     * @param servlet The servlet that owns the module
+     * @param now     The current time
+     * @param timeout The idle time after which to destroy the module, in
+     *                milliseconds
+     * @return Whether the module was destroyed
+     */
+    synchronized boolean evictIfIdle(ActionServlet servlet, long now,
+        long timeout) {
+        if (!initialized || ((now - lastAccess) < timeout)) {
+            return false;
+        }
+
+        // New requests now take the lock, and wait until this is decided
+        initialized = false;
+
+        if (getActiveCount() > 0) {
+            initialized = true;
+
+            return false;
+        }
+
+        servlet.destroyLazyModule(prefix);
+
+        return true;
+    }
+
+    /**
+     * <p>Return whether the module is currently initialized.</p>
+     *
+     * @return Whether the module is initialized
+     */
+    boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * <p>Return the number of requests currently in the module.</p>
+     *
+     * @return The number of requests
+     */
+    int getActiveCount() {
+        int count = 0;
+
+        for (int i = 0; i < active.length; i++) {
+            synchronized (active[i]) {
+                count += active[i][0];
+            }
+        }
+
+        return count;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Initialize the module, unless it failed to less than
+     * <code>retryDelay</code> ago.  Called while holding this object's
+     * lock.</p>
+     *
+     * @param servlet The servlet that owns the module
+     * @throws ServletException if the module cannot be initialized
+     */
+    private void initialize(ActionServlet servlet)
+        throws ServletException {
+        long now = System.currentTimeMillis();
+
+        if ((failure != null) && ((now - failedAt) < retryDelay)) {
+            throw new ServletException("Module '" + prefix
+                + "' failed to initialize, not retrying before "
+                + (retryDelay - (now - failedAt)) + " ms", failure);
+        }
+
+        try {
+            servlet.initLazyModule(prefix, paths);
+        } catch (ServletException e) {
+            failed(e);
+            throw e;
+        } catch (RuntimeException e) {
+            failed(e);
+            throw e;
+        }
+
+        failure = null;
+        initialized = true;
+    }
+
+    /**
+     * <p>Record an initialization failure.</p>
+     *
+     * @param e What initialization threw
+     */
+    private void failed(Throwable e) {
+        failure = e;
+        failedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * <p>Return the request counter of the current thread.</p>
+     *
+     * @return The counter
+     */
+    private int[] counter() {
+        int h = System.identityHashCode(Thread.currentThread());
+
+        return active[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * <p>Add to a request counter.</p>
+     *
+     * @param counter The counter
+     * @param delta   The amount to add
+     */
+    private void increment(int[] counter, int delta) {
+        synchronized (counter) {
+            counter[0] += delta;
+        }
+    }
+}
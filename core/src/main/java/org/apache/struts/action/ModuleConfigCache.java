@@ -0,0 +1,417 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.struts.config.BaseConfig;
+import org.apache.struts.config.ModuleConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.UnsupportedEncodingException;
+
+import java.net.URL;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Keeps a serialized copy of each parsed module configuration in a
+ * directory, so that a later startup with the same configuration resources
+ * can read it back instead of parsing the XML again.  Each file records a
+ * key computed from the content of the resources it was parsed from; a file
+ * whose key does not match is ignored and replaced.</p>
+ *
+ * <p>The configuration is stored as the <code>Digester</code> produced it,
+ * before plug-ins run and before <code>extends</code> inheritance is
+ * resolved, since plug-ins may still change it at that point.  Any failure
+ * to read or write a file is logged and treated as a cache miss.</p>
+ *
+ * <p>Only configuration classes, and the <code>java.lang</code> and
+ * <code>java.util</code> types their properties are made of, are read back
+ * from a file; a file naming any other class is rejected as a miss, so the
+ * cache directory cannot be used to instantiate arbitrary classes.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class ModuleConfigCache {
+    /**
+     * <p>Commons Logging instance.</p>
+     */
+    private static final Log log = LogFactory.getLog(ModuleConfigCache.class);
+
+    /**
+     * <p>Written at the start of every file, to recognize the format.</p>
+     */
+    private static final String HEADER = "struts-module-config-cache/1";
+
+    /**
+     * <p>The JDK classes a cached configuration may contain.</p>
+     */
+    private static final Set JDK_CLASSES =
+        new HashSet(Arrays.asList(
+                new String[] {
+                    "java.lang.Boolean", "java.lang.Byte",
+                    "java.lang.Character", "java.lang.Double",
+                    "java.lang.Float", "java.lang.Integer", "java.lang.Long",
+                    "java.lang.Number", "java.lang.Short", "java.lang.String",
+                    "java.lang.String$CaseInsensitiveComparator",
+                    "java.util.ArrayList", "java.util.HashMap",
+                    "java.util.HashSet", "java.util.Hashtable",
+                    "java.util.LinkedHashMap", "java.util.LinkedList",
+                    "java.util.Properties", "java.util.TreeMap",
+                    "java.util.Vector"
+                }));
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The directory holding the cache files.</p>
+     */
+    private final File directory;
+
+    /**
+     * <p>Included in every key, for settings other than the resources
+     * themselves that change the parsed configuration.</p>
+     */
+    private final String settings;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a cache keeping its files in the specified directory.</p>
+     *
+     * @param directory The directory holding the cache files
+     * @param settings  Anything besides the configuration resources that
+     *                  affects how they are parsed, such as custom rule
+     *                  sets
+     */
+    ModuleConfigCache(File directory, String settings) {
+        this.directory = directory;
+        this.settings = settings;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Compute the key of a module configuration from the content of the
+     * resources it is parsed from.</p>
+     *
+     * @param prefix The module prefix
+     * @param urls   The <code>URL</code>s of the configuration resources
+     * @return The key
+     * @throws IOException if a resource cannot be read
+     */
+    String computeKey(String prefix, List urls)
+        throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 is not available: " + e.getMessage());
+        }
+
+        update(digest, settings);
+        update(digest, prefix);
+
+        byte[] buffer = new byte[4096];
+
+        for (Iterator i = urls.iterator(); i.hasNext();) {
+            URL url = (URL) i.next();
+            InputStream input = url.openStream();
+
+            update(digest, url.toExternalForm());
+
+            try {
+                int read;
+
+                while ((read = input.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                input.close();
+            }
+        }
+
+        byte[] hash = digest.digest();
+        StringBuffer key = new StringBuffer(hash.length * 2);
+
+        for (int i = 0; i < hash.length; i++) {
+            key.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+            key.append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * <p>Return the configuration cached for the specified module, or
+     * <code>null</code> if there is none with the specified key.</p>
+     *
+     * @param prefix The module prefix
+     * @param key    The key computed for its resources
+     * @return The cached configuration, or <code>null</code>
+     */
+    ModuleConfig load(String prefix, String key) {
+        File file = getFile(prefix);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        ObjectInputStream input = null;
+
+        try {
+            input =
+                new ContextObjectInputStream(new BufferedInputStream(
+                        new FileInputStream(file)));
+
+            if (!HEADER.equals(input.readUTF()) || !key.equals(input.readUTF())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Ignoring stale configuration cache " + file);
+                }
+
+                return null;
+            }
+
+            ModuleConfig config = (ModuleConfig) input.readObject();
+
+            if (log.isDebugEnabled()) {
+                log.debug("Loaded module '" + prefix
+                    + "' configuration from cache " + file);
+            }
+
+            return config;
+        } catch (Exception e) {
+            log.warn("Unable to read configuration cache " + file, e);
+
+            return null;
+        } finally {
+            close(input, file);
+        }
+    }
+
+    /**
+     * <p>Cache the configuration of the specified module.  The file is
+     * written under a temporary name and then renamed, so a concurrent
+     * reader never sees a partial file.</p>
+     *
+     * @param prefix The module prefix
+     * @param key    The key computed for its resources
+     * @param config The freshly parsed configuration
+     */
+    void store(String prefix, String key, ModuleConfig config) {
+        File file = getFile(prefix);
+        File temp = null;
+        ObjectOutputStream output = null;
+
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+
+            temp = File.createTempFile("struts", ".tmp", directory);
+            output =
+                new ObjectOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(temp)));
+            output.writeUTF(HEADER);
+            output.writeUTF(key);
+            output.writeObject(config);
+            output.close();
+            output = null;
+
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot replace " + file);
+            }
+
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot rename " + temp + " to " + file);
+            }
+
+            temp = null;
+
+            if (log.isDebugEnabled()) {
+                log.debug("Stored module '" + prefix
+                    + "' configuration in cache " + file);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to write configuration cache " + file, e);
+        } finally {
+            close(output, file);
+
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * <p>Return the cache file of the specified module.</p>
+     *
+     * @param prefix The module prefix
+     * @return The cache file
+     */
+    File getFile(String prefix) {
+        return new File(directory,
+            "struts-config" + prefix.replace('/', '_') + ".cache");
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Add a string to a digest, followed by a separator.</p>
+     *
+     * @param digest The digest
+     * @param value  The string, may be <code>null</code>
+     * @throws UnsupportedEncodingException never, UTF-8 is always supported
+     */
+    private void update(MessageDigest digest, String value)
+        throws UnsupportedEncodingException {
+        if (value != null) {
+            digest.update(value.getBytes("UTF-8"));
+        }
+
+        digest.update((byte) 0);
+    }
+
+    /**
+     * <p>Close a stream, logging any failure.</p>
+     *
+     * @param stream The stream, may be <code>null</code>
+     * @param file   The file it reads or writes, for logging
+     */
+    private void close(Object stream, File file) {
+        try {
+            if (stream instanceof ObjectInputStream) {
+                ((ObjectInputStream) stream).close();
+            } else if (stream instanceof ObjectOutputStream) {
+                ((ObjectOutputStream) stream).close();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to close configuration cache " + file, e);
+        }
+    }
+
+    // ----------------------------------------------------------- Inner Types
+
+    /**
+     * <p>Resolves classes through the context class loader, which is the
+     * one that loaded any application-specific configuration classes, and
+     * rejects any class that is not part of a module configuration: a
+     * configuration class of the framework, any subclass of
+     * <code>BaseConfig</code> or implementation of <code>ModuleConfig</code>,
+     * or one of the JDK types their properties are made of.</p>
+     */
+    private static class ContextObjectInputStream extends ObjectInputStream {
+        ContextObjectInputStream(InputStream input)
+            throws IOException {
+            super(input);
+        }
+
+        protected Class resolveClass(ObjectStreamClass desc)
+            throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            String element = name;
+
+            // Arrays are checked by their element type
+            while (element.startsWith("[")) {
+                element = element.substring(1);
+            }
+
+            if (element.startsWith("L") && element.endsWith(";")) {
+                element = element.substring(1, element.length() - 1);
+            } else if (element.length() != name.length()) {
+                // An array of primitives
+                return super.resolveClass(desc);
+            }
+
+            // Do not even load JDK classes that are not expected
+            if ((element.startsWith("java.") || element.startsWith("javax."))
+                && !JDK_CLASSES.contains(element)) {
+                throw new InvalidClassException(name,
+                    "Not allowed in a configuration cache");
+            }
+
+            Class type = load(desc);
+            Class elementType = type;
+
+            while (elementType.isArray()) {
+                elementType = elementType.getComponentType();
+            }
+
+            if (!JDK_CLASSES.contains(elementType.getName())
+                && !elementType.getName().startsWith("org.apache.struts.config.")
+                && !BaseConfig.class.isAssignableFrom(elementType)
+                && !ModuleConfig.class.isAssignableFrom(elementType)) {
+                throw new InvalidClassException(name,
+                    "Not allowed in a configuration cache");
+            }
+
+            return type;
+        }
+
+        protected Class resolveProxyClass(String[] interfaces)
+            throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxy classes are not allowed "
+                + "in a configuration cache");
+        }
+
+        /**
+         * <p>Load a class, without initializing it, through the context
+         * class loader or else the default resolution.</p>
+         *
+         * @param desc The serialized class
+         * @return The class
+         */
+        private Class load(ObjectStreamClass desc)
+            throws IOException, ClassNotFoundException {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+            if (loader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException e) {
+                    // Fall back to the default resolution
+                }
+            }
+
+            return super.resolveClass(desc);
+        }
+    }
+}
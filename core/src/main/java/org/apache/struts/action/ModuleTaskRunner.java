@@ -0,0 +1,227 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.servlet.ServletException;
+
+/**
+ * <p>Runs one initialization phase for a list of modules on a bounded
+ * number of threads, used by {@link ActionServlet} when parallel module
+ * initialization is enabled.  Modules are handed out in order; if any of
+ * them fails, the failure of the first such module in that order is
+ * rethrown once every thread has finished, so the outcome does not depend
+ * on scheduling.  An interrupt received while waiting for the threads does
+ * not stop the phase; it is restored once the phase is over.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class ModuleTaskRunner {
+    /**
+     * <p>Commons Logging instance.</p>
+     */
+    private static final Log log = LogFactory.getLog(ModuleTaskRunner.class);
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The maximum number of threads to run a phase on.</p>
+     */
+    private final int threads;
+
+    /**
+     * <p>The phase currently running.</p>
+     */
+    private Task task = null;
+
+    /**
+     * <p>The number of modules in the phase currently running.</p>
+     */
+    private int count = 0;
+
+    /**
+     * <p>The index of the next module to hand out.</p>
+     */
+    private int next = 0;
+
+    /**
+     * <p>The failure of each module, if any.</p>
+     */
+    private Throwable[] failures = null;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a runner using at most the specified number of
+     * threads.</p>
+     *
+     * @param threads The maximum number of threads per phase
+     */
+    ModuleTaskRunner(int threads) {
+        this.threads = threads;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Run a phase for modules <code>0</code> to <code>count - 1</code>,
+     * and log how long it took.</p>
+     *
+     * @param phase The name of the phase, for logging
+     * @param count The number of modules
+     * @param task  The work to do for each module
+     * @throws ServletException if the phase failed for any module
+     */
+    void run(String phase, int count, Task task)
+        throws ServletException {
+        long start = System.currentTimeMillis();
+
+        synchronized (this) {
+            this.task = task;
+            this.count = count;
+            this.next = 0;
+            this.failures = new Throwable[count];
+        }
+
+        int size = Math.min(threads, count);
+        Thread[] workers = new Thread[size];
+
+        for (int i = 0; i < size; i++) {
+            workers[i] =
+                new Thread(new Worker(), "struts-module-init-" + (i + 1));
+            workers[i].start();
+        }
+
+        boolean interrupted = false;
+
+        for (int i = 0; i < size; i++) {
+            boolean joined = false;
+
+            while (!joined) {
+                try {
+                    workers[i].join();
+                    joined = true;
+                } catch (InterruptedException e) {
+                    // Initialization can't be abandoned halfway, keep waiting
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable[] results;
+
+        synchronized (this) {
+            results = failures;
+            this.task = null;
+            this.failures = null;
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] instanceof ServletException) {
+                throw (ServletException) results[i];
+            } else if (results[i] instanceof RuntimeException) {
+                throw (RuntimeException) results[i];
+            } else if (results[i] instanceof Error) {
+                throw (Error) results[i];
+            } else if (results[i] != null) {
+                throw new ServletException(results[i]);
+            }
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info("Module initialization phase '" + phase + "' completed "
+                + "for " + count + " module(s) on " + size + " thread(s) in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the index of the next module to process, or -1 if there are
+     * none left.</p>
+     *
+     * @return The index of the next module, or -1
+     */
+    private synchronized int nextIndex() {
+        return (next < count) ? next++ : -1;
+    }
+
+    /**
+     * <p>Record the failure of a module.</p>
+     *
+     * @param index   The index of the module
+     * @param failure What it threw
+     */
+    private synchronized void fail(int index, Throwable failure) {
+        failures[index] = failure;
+    }
+
+    /**
+     * <p>Return the phase currently running.</p>
+     *
+     * @return The current task
+     */
+    private synchronized Task currentTask() {
+        return task;
+    }
+
+    // ----------------------------------------------------------- Inner Types
+
+    /**
+     * <p>The work done for each module in one phase.</p>
+     */
+    interface Task {
+        /**
+         * <p>Process one module.</p>
+         *
+         * @param index The index of the module
+         * @throws Exception if the module cannot be processed
+         */
+        void run(int index)
+            throws Exception;
+    }
+
+    /**
+     * <p>Processes modules until none are left.</p>
+     */
+    private class Worker implements Runnable {
+        public void run() {
+            Task current = currentTask();
+            int index;
+
+            while ((index = nextIndex()) >= 0) {
+                try {
+                    current.run(index);
+                } catch (Throwable t) {
+                    fail(index, t);
+                }
+            }
+        }
+    }
+}
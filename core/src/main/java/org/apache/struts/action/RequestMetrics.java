@@ -0,0 +1,554 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.struts.Globals;
+import org.apache.struts.util.LatencyStatistics;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Latency statistics of the request processing pipeline, kept when the
+ * <code>metrics</code> init-param of {@link ActionServlet} is set.  The
+ * statistics are stored under keys made of a category and a name:</p>
+ *
+ * <ul>
+ *
+ * <li><code>phase:</code> followed by one of <code>select</code>,
+ * <code>populate</code>, <code>validate</code>, <code>execute</code> and
+ * <code>forward</code>, for the phases of <code>RequestProcessor</code>.</li>
+ *
+ * <li><code>action:</code> followed by the path of an action mapping, for
+ * the whole processing of requests to it.</li>
+ *
+ * <li><code>command:</code> followed by the class name of a chain command,
+ * for <code>ComposableRequestProcessor</code>.</li>
+ *
+ * </ul>
+ *
+ * <p>At most {@link #MAX_KEYS} keys are kept; any further key is counted
+ * under its category followed by <code>(other)</code>, so that wildcard
+ * mappings cannot grow the statistics without bound.  Lookups of existing
+ * keys do not lock, and {@link #recordAction} and {@link #recordCommand}
+ * remember the key of each path and command class so that recording does
+ * not build strings.  Once the statistics are full, they also remember
+ * their <code>(other)</code> statistics, so that unknown paths and commands
+ * are recorded without locking either.</p>
+ *
+ * <p>Durations are measured in microseconds, from the times returned by
+ * {@link #now}.</p>
+ *
+ * <p>When metrics are disabled no instance exists, and the request
+ * processors only test a field for <code>null</code>, or
+ * {@link #isEnabled}.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class RequestMetrics implements RequestMetricsMBean {
+    /**
+     * <p>Commons Logging instance.</p>
+     */
+    private static final Log log = LogFactory.getLog(RequestMetrics.class);
+
+    /**
+     * <p>The key of the action mapping selection phase.</p>
+     */
+    public static final String PHASE_SELECT = "phase:select";
+
+    /**
+     * <p>The key of the form creation and population phase.</p>
+     */
+    public static final String PHASE_POPULATE = "phase:populate";
+
+    /**
+     * <p>The key of the form validation phase.</p>
+     */
+    public static final String PHASE_VALIDATE = "phase:validate";
+
+    /**
+     * <p>The key of the action execution phase.</p>
+     */
+    public static final String PHASE_EXECUTE = "phase:execute";
+
+    /**
+     * <p>The key of the forward or include phase.</p>
+     */
+    public static final String PHASE_FORWARD = "phase:forward";
+
+    /**
+     * <p>The prefix of the keys of action mappings.</p>
+     */
+    public static final String ACTION_PREFIX = "action:";
+
+    /**
+     * <p>The prefix of the keys of chain commands.</p>
+     */
+    public static final String COMMAND_PREFIX = "command:";
+
+    /**
+     * <p>The maximum number of keys kept.</p>
+     */
+    public static final int MAX_KEYS = 1000;
+
+    /**
+     * <p>The name of the statistics that keys beyond {@link #MAX_KEYS} are
+     * counted under, following their category.</p>
+     */
+    private static final String OTHER = "(other)";
+
+    /**
+     * <p>Whether <code>System.nanoTime()</code> is available, as it is from
+     * Java 5.</p>
+     */
+    private static final boolean NANO_TIME;
+
+    static {
+        boolean nanoTime;
+
+        try {
+            System.class.getMethod("nanoTime", (Class[]) null);
+            nanoTime = true;
+        } catch (NoSuchMethodException e) {
+            nanoTime = false;
+        }
+
+        NANO_TIME = nanoTime;
+    }
+
+    /**
+     * <p>Whether an instance was ever created in this class loader.</p>
+     */
+    private static volatile boolean enabled = false;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The current snapshot of statistics, keyed by key.  The map
+     * referenced by this field is never modified once published.</p>
+     */
+    private volatile Map statistics = new HashMap();
+
+    /**
+     * <p>The statistics of action mappings, keyed by path.  The map
+     * referenced by this field is never modified once published.</p>
+     */
+    private volatile Map actions = new HashMap();
+
+    /**
+     * <p>The statistics of chain commands, keyed by class.  The map
+     * referenced by this field is never modified once published.</p>
+     */
+    private volatile Map commands = new HashMap();
+
+    /**
+     * <p>The statistics of the action mappings not kept under their own
+     * key, once the statistics are full.</p>
+     */
+    private volatile LatencyStatistics otherActions = null;
+
+    /**
+     * <p>The statistics of the chain commands not kept under their own key,
+     * once the statistics are full.</p>
+     */
+    private volatile LatencyStatistics otherCommands = null;
+
+    /**
+     * <p>The MBean server this instance is registered with, if it is.</p>
+     */
+    private MBeanServer server = null;
+
+    /**
+     * <p>The name this instance is registered under as an MBean, if it
+     * is.</p>
+     */
+    private ObjectName objectName = null;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct metrics without any statistics.</p>
+     */
+    public RequestMetrics() {
+        enabled = true;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the metrics of the web application, or <code>null</code> if
+     * metrics are disabled.</p>
+     *
+     * @param context The servlet context
+     * @return The metrics, or <code>null</code>
+     */
+    public static RequestMetrics getInstance(ServletContext context) {
+        return (RequestMetrics) context.getAttribute(Globals.REQUEST_METRICS_KEY);
+    }
+
+    /**
+     * <p>Return whether metrics may be kept by some web application using
+     * this class loader.  While this returns <code>false</code>, no request
+     * carries metrics and callers need not look for them.</p>
+     *
+     * @return Whether an instance was ever created
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * <p>Return the current time, in microseconds, to time events with.
+     * Only the difference between two times is meaningful.</p>
+     *
+     * @return The current time
+     */
+    public static long now() {
+        return NANO_TIME ? NanoTime.now() : (System.currentTimeMillis() * 1000);
+    }
+
+    /**
+     * <p>Record an event for the specified key that started at the specified
+     * time and ends now.</p>
+     *
+     * @param key   The key
+     * @param start The start time, as returned by {@link #now}
+     * @return The current time, to start timing the next event
+     */
+    public long record(String key, long start) {
+        long now = now();
+
+        getStatistics(key, true).record(now - start);
+
+        return now;
+    }
+
+    /**
+     * <p>Record a request to the specified action mapping that started at
+     * the specified time and ends now, under {@link #ACTION_PREFIX} followed
+     * by the path.</p>
+     *
+     * @param path  The path of the action mapping
+     * @param start The start time, as returned by {@link #now}
+     * @return The current time
+     */
+    public long recordAction(String path, long start) {
+        long now = now();
+        LatencyStatistics stats = (LatencyStatistics) actions.get(path);
+
+        if (stats == null) {
+            stats = otherActions;
+        }
+
+        if (stats == null) {
+            synchronized (this) {
+                stats = getStatistics(ACTION_PREFIX + path, true);
+                actions = alias(actions, path, stats);
+
+                if (stats == statistics.get(ACTION_PREFIX + OTHER)) {
+                    otherActions = stats;
+                }
+            }
+        }
+
+        stats.record(now - start);
+
+        return now;
+    }
+
+    /**
+     * <p>Record an execution of a chain command of the specified class that
+     * started at the specified time and ends now, under
+     * {@link #COMMAND_PREFIX} followed by the class name.</p>
+     *
+     * @param type  The class of the command
+     * @param start The start time, as returned by {@link #now}
+     * @return The current time
+     */
+    public long recordCommand(Class type, long start) {
+        long now = now();
+        LatencyStatistics stats = (LatencyStatistics) commands.get(type);
+
+        if (stats == null) {
+            stats = otherCommands;
+        }
+
+        if (stats == null) {
+            synchronized (this) {
+                stats = getStatistics(COMMAND_PREFIX + type.getName(), true);
+                commands = alias(commands, type, stats);
+
+                if (stats == statistics.get(COMMAND_PREFIX + OTHER)) {
+                    otherCommands = stats;
+                }
+            }
+        }
+
+        stats.record(now - start);
+
+        return now;
+    }
+
+    /**
+     * <p>Return the statistics of the specified key.</p>
+     *
+     * @param key The key
+     * @return The statistics, or <code>null</code> if there are none
+     */
+    public LatencyStatistics getStatistics(String key) {
+        return getStatistics(key, false);
+    }
+
+    public String[] getKeys() {
+        Map current = statistics;
+        String[] keys =
+            (String[]) current.keySet().toArray(new String[current.size()]);
+
+        Arrays.sort(keys);
+
+        return keys;
+    }
+
+    public String getSummary(String key) {
+        LatencyStatistics stats = getStatistics(key, false);
+
+        return (stats == null) ? null : stats.toString();
+    }
+
+    public String getReport() {
+        StringWriter report = new StringWriter();
+
+        writeReport(new PrintWriter(report));
+
+        return report.toString();
+    }
+
+    /**
+     * <p>Write a report of all statistics, one key per line.</p>
+     *
+     * @param writer The writer to write to
+     */
+    public void writeReport(PrintWriter writer) {
+        Map current = statistics;
+        String[] keys = getKeys();
+
+        for (int i = 0; i < keys.length; i++) {
+            LatencyStatistics stats = (LatencyStatistics) current.get(keys[i]);
+
+            if (stats != null) {
+                writer.print(keys[i]);
+                writer.print(' ');
+                writer.println(stats);
+            }
+        }
+
+        writer.flush();
+    }
+
+    public synchronized void reset() {
+        statistics = new HashMap();
+        actions = new HashMap();
+        commands = new HashMap();
+        otherActions = null;
+        otherCommands = null;
+    }
+
+    /**
+     * <p>Register this instance with the platform MBean server, or with the
+     * first MBean server found before Java 5, under the
+     * name <code>org.apache.struts:type=RequestMetrics,servlet=</code>
+     * followed by the quoted servlet name, and <code>,context=</code>
+     * followed by the quoted context name if there is one.  Failures,
+     * including running on a JVM without JMX, are logged and otherwise
+     * ignored.</p>
+     *
+     * @param servletName The name of the servlet
+     * @param contextName The display name of the web application, may be
+     *                    <code>null</code>
+     */
+    public synchronized void registerMBean(String servletName,
+        String contextName) {
+        try {
+            StringBuffer name =
+                new StringBuffer("org.apache.struts:type=RequestMetrics");
+
+            name.append(",servlet=").append(ObjectName.quote(servletName));
+
+            if (contextName != null) {
+                name.append(",context=").append(ObjectName.quote(contextName));
+            }
+
+            MBeanServer found = findMBeanServer();
+            ObjectName registered = new ObjectName(name.toString());
+
+            found.registerMBean(this, registered);
+            server = found;
+            objectName = registered;
+        } catch (Throwable t) {
+            log.warn("Unable to register request metrics MBean", t);
+        }
+    }
+
+    /**
+     * <p>Unregister this instance from the MBean server it was registered
+     * with, if it was.</p>
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+
+        try {
+            server.unregisterMBean(objectName);
+        } catch (Throwable t) {
+            log.warn("Unable to unregister request metrics MBean '"
+                + objectName + "'", t);
+        }
+
+        server = null;
+        objectName = null;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the platform MBean server when running on Java 5 or later,
+     * otherwise the first MBean server found, creating one if there is
+     * none.</p>
+     *
+     * @return The MBean server
+     * @throws Exception if the platform MBean server cannot be obtained
+     */
+    private static MBeanServer findMBeanServer()
+        throws Exception {
+        Class factory;
+
+        try {
+            factory = Class.forName("java.lang.management.ManagementFactory");
+        } catch (ClassNotFoundException e) {
+            List servers = MBeanServerFactory.findMBeanServer(null);
+
+            return servers.isEmpty() ? MBeanServerFactory.createMBeanServer()
+                                     : (MBeanServer) servers.get(0);
+        }
+
+        return (MBeanServer) factory.getMethod("getPlatformMBeanServer",
+            (Class[]) null).invoke(null, (Object[]) null);
+    }
+
+    /**
+     * <p>Return a copy of the specified map of remembered statistics with
+     * one more entry, or the map itself if it is full.  The caller must
+     * hold the lock of this instance.</p>
+     *
+     * @param map   The map
+     * @param key   The path or class
+     * @param stats The statistics recorded for it
+     * @return The map to publish
+     */
+    private Map alias(Map map, Object key, LatencyStatistics stats) {
+        if (map.size() >= MAX_KEYS) {
+            return map;
+        }
+
+        Map updated = new HashMap(map);
+
+        updated.put(key, stats);
+
+        return updated;
+    }
+
+    /**
+     * <p>Return the statistics of the specified key, creating them if
+     * requested.</p>
+     *
+     * @param key    The key
+     * @param create Whether to create missing statistics
+     * @return The statistics, or <code>null</code>
+     */
+    private LatencyStatistics getStatistics(String key, boolean create) {
+        LatencyStatistics stats = (LatencyStatistics) statistics.get(key);
+
+        if ((stats != null) || !create) {
+            return stats;
+        }
+
+        synchronized (this) {
+            stats = (LatencyStatistics) statistics.get(key);
+
+            if (stats != null) {
+                return stats;
+            }
+
+            if (statistics.size() >= MAX_KEYS) {
+                int colon = key.indexOf(':');
+                String other = key.substring(0, colon + 1) + OTHER;
+
+                stats = (LatencyStatistics) statistics.get(other);
+
+                if (stats != null) {
+                    return stats;
+                }
+
+                key = other;
+            }
+
+            Map updated = new HashMap(statistics);
+
+            stats = new LatencyStatistics();
+            updated.put(key, stats);
+            statistics = updated;
+
+            return stats;
+        }
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>Reads <code>System.nanoTime()</code>, which is only linked when
+     * this class is first used, so that metrics still work before Java
+     * 5.</p>
+     */
+    private static final class NanoTime {
+        /**
+         * <p>Return the current time, in microseconds.</p>
+         *
+         * @return The current time
+         */
+        static long now() {
+            return System.nanoTime() / 1000;
+        }
+    }
+}
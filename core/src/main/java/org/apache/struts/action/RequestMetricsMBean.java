@@ -0,0 +1,59 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+/**
+ * <p>Management interface of {@link RequestMetrics}, exposed as a standard
+ * JMX MBean when the <code>metricsMBean</code> init-param of
+ * <code>ActionServlet</code> is set.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public interface RequestMetricsMBean {
+    /**
+     * <p>Return the keys that have statistics, sorted.</p>
+     *
+     * @return The keys
+     */
+    String[] getKeys();
+
+    /**
+     * <p>Return a summary of the statistics recorded for the specified
+     * key.</p>
+     *
+     * @param key The key
+     * @return The summary, or <code>null</code> if there are none
+     */
+    String getSummary(String key);
+
+    /**
+     * <p>Return a report of all statistics, one key per line.</p>
+     *
+     * @return The report
+     */
+    String getReport();
+
+    /**
+     * <p>Discard all statistics.</p>
+     */
+    void reset();
+}
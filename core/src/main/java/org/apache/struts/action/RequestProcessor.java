@@ -27,6 +27,7 @@ import org.apache.struts.config.ActionConfig;
 import org.apache.struts.config.ExceptionConfig;
 import org.apache.struts.config.ForwardConfig;
 import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.impl.ModuleConfigImpl;
 import org.apache.struts.upload.MultipartRequestWrapper;
 import org.apache.struts.util.MessageResources;
 import org.apache.struts.util.RequestUtils;
@@ -41,8 +42,8 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * <p><strong>RequestProcessor</strong> contains the processing logic that the
@@ -83,9 +84,61 @@ public class RequestProcessor {
      * <p>The set of <code>Action</code> instances that have been created and
      * initialized, keyed by the fully qualified Java class name of the
      * <code>Action</code> class.</p>
+     *
+     * <p>Action instances are held in {@link #actionRegistry}; this map is
+     * kept in step with it, for subclasses that read it, when this
+     * processor creates or looks up an instance.  Synchronize on the map
+     * when reading it.</p>
+     *
+     * @deprecated Use {@link #actionRegistry} instead
      */
     protected HashMap actions = new HashMap();
 
+    /**
+     * <p>The <code>Action</code> instances of our module, shared with any
+     * other processor or chain command serving the same module.</p>
+     *
+     * @since Struts 1.4
+     */
+    protected ActionRegistry actionRegistry = null;
+
+    /**
+     * <p>The snapshot of {@link #actionRegistry} last copied into
+     * {@link #actions}.</p>
+     */
+    private volatile Map copiedActions = null;
+
+    /**
+     * <p>The request metrics of our application, or <code>null</code> if
+     * metrics are disabled.</p>
+     *
+     * @since Struts 1.4
+     */
+    protected RequestMetrics metrics = null;
+
+    /**
+     * <p>Creates <code>Action</code> instances the first time their class
+     * is requested from {@link #actionRegistry}.</p>
+     */
+    private final ActionRegistry.Factory actionFactory =
+        new ActionRegistry.Factory() {
+            public Action createAction(String type)
+                throws Exception {
+                if (log.isTraceEnabled()) {
+                    log.trace("  Creating new Action instance");
+                }
+
+                Action instance =
+                    (Action) RequestUtils.applicationInstance(type);
+
+                if (instance.getServlet() == null) {
+                    instance.setServlet(servlet);
+                }
+
+                return instance;
+            }
+        };
+
     /**
      * <p>The <code>ModuleConfiguration</code> with which we are
      * associated.</p>
@@ -103,18 +156,15 @@ public class RequestProcessor {
      * <p>Clean up in preparation for a shutdown of this application.</p>
      */
     public void destroy() {
-        synchronized (this.actions) {
-            Iterator actions = this.actions.values().iterator();
-
-            while (actions.hasNext()) {
-                Action action = (Action) actions.next();
-
-                action.setServlet(null);
-            }
+        if (actionRegistry != null) {
+            actionRegistry.clear();
+        }
 
-            this.actions.clear();
+        synchronized (actions) {
+            actions.clear();
         }
 
+        copiedActions = null;
         this.servlet = null;
     }
 
@@ -127,12 +177,17 @@ public class RequestProcessor {
      */
     public void init(ActionServlet servlet, ModuleConfig moduleConfig)
         throws ServletException {
-        synchronized (actions) {
-            actions.clear();
-        }
-
         this.servlet = servlet;
         this.moduleConfig = moduleConfig;
+
+        if (servlet != null) {
+            actionRegistry =
+                ActionRegistry.getActionRegistry(servlet.getServletContext(),
+                    moduleConfig);
+            metrics = RequestMetrics.getInstance(servlet.getServletContext());
+        } else {
+            actionRegistry = new ActionRegistry();
+        }
     }
 
     /**
@@ -176,13 +231,47 @@ public class RequestProcessor {
 
         this.processCachedMessages(request, response);
 
+        // Time each phase if metrics are enabled
+        RequestMetrics metrics = this.metrics;
+        long start = (metrics != null) ? RequestMetrics.now() : 0;
+
         // Identify the mapping for this request
         ActionMapping mapping = processMapping(request, response, path);
 
+        if (metrics != null) {
+            metrics.record(RequestMetrics.PHASE_SELECT, start);
+        }
+
         if (mapping == null) {
             return;
         }
 
+        try {
+            processMappedRequest(request, response, mapping, metrics);
+        } finally {
+            if (metrics != null) {
+                metrics.recordAction(mapping.getPath(), start);
+            }
+        }
+    }
+
+    /**
+     * <p>Process the request once its mapping has been selected, timing each
+     * phase if metrics are enabled.</p>
+     *
+     * @param request  The servlet request we are processing
+     * @param response The servlet response we are creating
+     * @param mapping  The mapping we are using
+     * @param metrics  The metrics to record timings in, or <code>null</code>
+     * @throws IOException      if an input/output error occurs
+     * @throws ServletException if a processing exception occurs
+     */
+    private void processMappedRequest(HttpServletRequest request,
+        HttpServletResponse response, ActionMapping mapping,
+        RequestMetrics metrics)
+        throws IOException, ServletException {
+        long start = (metrics != null) ? RequestMetrics.now() : 0;
+
         // Check for any role required to perform this action
         if (!processRoles(request, response, mapping)) {
             return;
@@ -193,6 +282,10 @@ public class RequestProcessor {
 
         processPopulate(request, response, form, mapping);
 
+        if (metrics != null) {
+            start = metrics.record(RequestMetrics.PHASE_POPULATE, start);
+        }
+
         // Validate any fields of the ActionForm bean, if applicable
         try {
             if (!processValidate(request, response, form, mapping)) {
@@ -206,6 +299,10 @@ public class RequestProcessor {
             throw e;
         } catch (ServletException e) {
             throw e;
+        } finally {
+            if (metrics != null) {
+                start = metrics.record(RequestMetrics.PHASE_VALIDATE, start);
+            }
         }
 
         // Process a forward or include specified by this mapping
@@ -228,8 +325,16 @@ public class RequestProcessor {
         ActionForward forward =
             processActionPerform(request, response, action, form, mapping);
 
+        if (metrics != null) {
+            start = metrics.record(RequestMetrics.PHASE_EXECUTE, start);
+        }
+
         // Process the returned ActionForward instance
         processForwardConfig(request, response, forward);
+
+        if (metrics != null) {
+            metrics.record(RequestMetrics.PHASE_FORWARD, start);
+        }
     }
 
     // ----------------------------------------------------- Processing Methods
@@ -255,53 +360,56 @@ public class RequestProcessor {
             log.debug(" Looking for Action instance for class " + className);
         }
 
-        // If there were a mapping property indicating whether
-        // an Action were a singleton or not ([true]),
-        // could we just instantiate and return a new instance here?
-        Action instance;
-
-        synchronized (actions) {
-            // Return any existing Action instance of this class
-            instance = (Action) actions.get(className);
+        // Return any existing Action instance of this class
+        Action instance = actionRegistry.getAction(className);
 
-            if (instance != null) {
-                if (log.isTraceEnabled()) {
-                    log.trace("  Returning existing Action instance");
-                }
-
-                return (instance);
-            }
-
-            // Create and return a new Action instance
+        if (instance != null) {
             if (log.isTraceEnabled()) {
-                log.trace("  Creating new Action instance");
+                log.trace("  Returning existing Action instance");
             }
 
-            try {
-                instance = (Action) RequestUtils.applicationInstance(className);
+            copyActions();
 
-                // Maybe we should propagate this exception
-                // instead of returning null.
-            } catch (Exception e) {
-                log.error(getInternal().getMessage("actionCreate",
-                        mapping.getPath(), mapping.toString()), e);
+            return (instance);
+        }
 
-                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                    getInternal().getMessage("actionCreate", mapping.getPath()));
+        try {
+            instance = actionRegistry.getAction(className, actionFactory);
+            copyActions();
 
-                return (null);
-            }
+            // Maybe we should propagate this exception
+            // instead of returning null.
+        } catch (Exception e) {
+            log.error(getInternal().getMessage("actionCreate",
+                    mapping.getPath(), mapping.toString()), e);
 
-            actions.put(className, instance);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                getInternal().getMessage("actionCreate", mapping.getPath()));
 
-            if (instance.getServlet() == null) {
-                instance.setServlet(this.servlet);
-            }
+            return (null);
         }
 
         return (instance);
     }
 
+    /**
+     * <p>Copy the instances of {@link #actionRegistry} into the deprecated
+     * {@link #actions} map if they have changed since they were last
+     * copied.</p>
+     */
+    private void copyActions() {
+        Map current = actionRegistry.getActionMap();
+
+        if (current != copiedActions) {
+            synchronized (actions) {
+                actions.clear();
+                actions.putAll(current);
+            }
+
+            copiedActions = current;
+        }
+    }
+
     /**
      * <p>Retrieve and return the <code>ActionForm</code> associated with this
      * mapping, creating and retaining one if necessary. If there is no
@@ -664,7 +772,8 @@ public class RequestProcessor {
         }
 
         // Locate the mapping for unknown paths (if any)
-        ActionConfig[] configs = moduleConfig.findActionConfigs();
+        ActionConfig[] configs =
+            ModuleConfigImpl.findSharedActionConfigs(moduleConfig);
 
         for (int i = 0; i < configs.length; i++) {
             if (configs[i].getUnknown()) {
@@ -0,0 +1,117 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import org.apache.struts.config.ModuleConfig;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>Read-mostly registry of the {@link RequestProcessor} instances owned by
+ * an {@link ActionServlet}, keyed by the {@link ModuleConfig} instance each
+ * one serves.</p>
+ *
+ * <p>Lookups read an immutable snapshot of the registry and never take a
+ * lock.  Changes copy the current snapshot under the registry monitor and
+ * publish the new one with a single reference assignment, so a reader sees
+ * either the old or the new set of processors, never a partial update.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class RequestProcessorRegistry {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The current snapshot, keyed by <code>ModuleConfig</code> identity.
+     * The map referenced by this field is never modified once published.</p>
+     */
+    private volatile Map processors = new IdentityHashMap();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the processor registered for the specified module, or
+     * <code>null</code> if there is none.  This method does not lock.</p>
+     *
+     * @param config The module configuration
+     * @return The registered processor, or <code>null</code>
+     */
+    public RequestProcessor get(ModuleConfig config) {
+        return (RequestProcessor) processors.get(config);
+    }
+
+    /**
+     * <p>Register the processor for the specified module, replacing any
+     * processor previously registered for the same instance.</p>
+     *
+     * @param config    The module configuration
+     * @param processor The processor serving that module
+     */
+    public synchronized void register(ModuleConfig config,
+        RequestProcessor processor) {
+        Map updated = new IdentityHashMap(processors);
+
+        updated.put(config, processor);
+        processors = updated;
+    }
+
+    /**
+     * <p>Remove the processor registered for the specified module, if
+     * any.</p>
+     *
+     * @param config The module configuration
+     * @return The processor that was removed, or <code>null</code>
+     */
+    public synchronized RequestProcessor remove(ModuleConfig config) {
+        if (!processors.containsKey(config)) {
+            return null;
+        }
+
+        Map updated = new IdentityHashMap(processors);
+        RequestProcessor removed = (RequestProcessor) updated.remove(config);
+
+        processors = updated;
+
+        return removed;
+    }
+
+    /**
+     * <p>Return the processors currently registered.</p>
+     *
+     * @return An array of the registered processors
+     */
+    public RequestProcessor[] getProcessors() {
+        Collection values = processors.values();
+
+        return (RequestProcessor[]) values.toArray(
+            new RequestProcessor[values.size()]);
+    }
+
+    /**
+     * <p>Remove every registered processor.</p>
+     */
+    public synchronized void clear() {
+        processors = new IdentityHashMap();
+    }
+}
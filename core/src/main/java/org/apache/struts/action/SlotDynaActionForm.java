@@ -0,0 +1,165 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import org.apache.commons.beanutils.DynaProperty;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>A <code>DynaActionForm</code> that stores its property values in an
+ * array laid out like the properties of its
+ * <code>DynaActionFormClass</code>, rather than in a <code>HashMap</code>.
+ * A new instance receives a copy of the initial values prepared by its
+ * <code>DynaActionFormClass</code>, and each property name is resolved to
+ * its index with a single lookup, so creating and initializing a form with
+ * many properties allocates little more than the array.</p>
+ *
+ * <p>To use it, specify this class, or a subclass, as the type of a
+ * <code>&lt;form-bean&gt;</code> that has <code>&lt;form-property&gt;</code>
+ * elements.  The <code>dynaValues</code> field of the superclass is not used;
+ * subclasses should go through <code>getValue</code> and
+ * <code>setValue</code> or the <code>DynaBean</code> methods instead.  The
+ * <code>Map</code> returned by <code>getMap()</code> reads and writes the
+ * property values, and its entry set is a snapshot.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class SlotDynaActionForm extends DynaActionForm {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * <p>The property values, indexed like the properties of our
+     * <code>DynaActionFormClass</code>.</p>
+     */
+    protected Object[] values = null;
+
+    // ------------------------------------------------------- DynaBean Methods
+
+    /**
+     * <p>Returns a <code>Map</code> view of the property values.</p>
+     *
+     * @return The <code>Map</code> containing the property values.
+     */
+    public Map getMap() {
+        return new ValuesMap();
+    }
+
+    // -------------------------------------------------------- Package Methods
+
+    /**
+     * <p>Use the specified array as the property values.</p>
+     *
+     * @param values The new values of the properties
+     */
+    void initializeValues(Object[] values) {
+        this.values = values;
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    protected Object getValue(String name) {
+        int index = indexOf(name);
+
+        return (index < 0) ? null : slots()[index];
+    }
+
+    protected void setValue(String name, Object value) {
+        int index = indexOf(name);
+
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid property name '" + name
+                + "'");
+        }
+
+        slots()[index] = value;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the index of the specified property, or -1 if there is no
+     * such property.</p>
+     *
+     * @param name Name of the property
+     * @return The index of the property, or -1
+     */
+    private int indexOf(String name) {
+        return dynaClass.getPropertyIndex(name);
+    }
+
+    /**
+     * <p>Return the property values, creating an empty array if this
+     * instance was not created by its <code>DynaActionFormClass</code>.</p>
+     *
+     * @return The property values
+     */
+    private Object[] slots() {
+        if (values == null) {
+            values = new Object[dynaClass.getDynaProperties().length];
+        }
+
+        return values;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>A <code>Map</code> view of the property values.</p>
+     */
+    private class ValuesMap extends AbstractMap {
+        public Object get(Object key) {
+            return (key instanceof String) ? getValue((String) key) : null;
+        }
+
+        public boolean containsKey(Object key) {
+            return (key instanceof String) && (indexOf((String) key) >= 0);
+        }
+
+        public Object put(Object key, Object value) {
+            Object previous = get(key);
+
+            setValue((String) key, value);
+
+            return previous;
+        }
+
+        public int size() {
+            return slots().length;
+        }
+
+        public Set entrySet() {
+            DynaProperty[] props = dynaClass.getDynaProperties();
+            Map snapshot = new LinkedHashMap();
+
+            for (int i = 0; i < props.length; i++) {
+                snapshot.put(props[i].getName(), slots()[i]);
+            }
+
+            return Collections.unmodifiableMap(snapshot).entrySet();
+        }
+    }
+}
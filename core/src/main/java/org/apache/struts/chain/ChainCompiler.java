@@ -0,0 +1,319 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.chain;
+
+import org.apache.commons.chain.Catalog;
+import org.apache.commons.chain.CatalogFactory;
+import org.apache.commons.chain.Command;
+import org.apache.commons.chain.Filter;
+import org.apache.commons.chain.generic.LookupCommand;
+import org.apache.commons.chain.impl.ChainBase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Field;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Turns a command, as configured in a catalog, into an equivalent chain
+ * that does no catalog lookups and has as little nesting as possible, so
+ * that executing it is a walk over a single array of commands.</p>
+ *
+ * <ul>
+ *
+ * <li>A <code>LookupCommand</code> with a fixed command name is replaced by
+ * the command it looks up.  An optional lookup of a missing command is
+ * dropped.</li>
+ *
+ * <li>A <code>ChainBase</code> nested in another chain is replaced by its
+ * commands, unless it contains a <code>Filter</code>, whose
+ * <code>postprocess</code> must still run when the nested chain ends.</li>
+ *
+ * </ul>
+ *
+ * <p>Only the standard implementations are rewritten; subclasses, lookups
+ * whose command name comes from the context, and lookups that ignore the
+ * result of their command are kept as they are.  Since lookups are resolved
+ * once, catalogs must not change after the chain has been compiled.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class ChainCompiler {
+    /**
+     * <p>The <code>Log</code> instance for this class.</p>
+     */
+    private static final Log LOG = LogFactory.getLog(ChainCompiler.class);
+
+    /**
+     * <p>The <code>commands</code> field of <code>ChainBase</code>, or
+     * <code>null</code> if it is not accessible.</p>
+     */
+    private static final Field COMMANDS = getCommandsField();
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The catalog factory used by lookups that do not name one.</p>
+     */
+    private CatalogFactory catalogFactory;
+
+    /**
+     * <p>The chains being compiled, to detect cycles.</p>
+     */
+    private Set compiling = new HashSet();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a compiler resolving lookups through the specified
+     * catalog factory.</p>
+     *
+     * @param catalogFactory The catalog factory used by lookups that do not
+     *                       name one
+     */
+    public ChainCompiler(CatalogFactory catalogFactory) {
+        this.catalogFactory = catalogFactory;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return a command equivalent to the specified one.</p>
+     *
+     * @param command The command to compile
+     * @return The compiled command, which may be the same instance
+     */
+    public Command compile(Command command) {
+        Command[] children = getChildren(command);
+
+        if (children != null) {
+            if (!compiling.add(command)) {
+                return command;
+            }
+
+            try {
+                List commands = flatten(children);
+
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compiled chain of " + commands.size()
+                        + " command(s)");
+                }
+
+                return new ChainBase((Command[]) commands.toArray(
+                        new Command[commands.size()]));
+            } finally {
+                compiling.remove(command);
+            }
+        }
+
+        if (isResolvable(command)) {
+            Command target = resolve((LookupCommand) command);
+
+            if (target != null) {
+                return compile(target);
+            }
+        }
+
+        return command;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the commands that replace the specified commands of a
+     * chain.</p>
+     *
+     * @param children The commands of the chain
+     * @return The replacement commands
+     */
+    private List flatten(Command[] children) {
+        List commands = new ArrayList();
+
+        for (int i = 0; i < children.length; i++) {
+            inline(children[i], commands);
+        }
+
+        return commands;
+    }
+
+    /**
+     * <p>Add the specified command of a chain being compiled to the
+     * specified list, replaced by the commands it stands for where
+     * possible.</p>
+     *
+     * @param command  The command
+     * @param commands The list to add to
+     */
+    private void inline(Command command, List commands) {
+        Command[] children = getChildren(command);
+
+        if (children != null) {
+            if (!compiling.add(command)) {
+                commands.add(command);
+
+                return;
+            }
+
+            try {
+                List nested = flatten(children);
+
+                if (containsFilter(nested)) {
+                    // Keep the nested chain, so its filters run when it ends
+                    commands.add(new ChainBase((Command[]) nested.toArray(
+                                new Command[nested.size()])));
+                } else {
+                    commands.addAll(nested);
+                }
+            } finally {
+                compiling.remove(command);
+            }
+
+            return;
+        }
+
+        if (isResolvable(command)) {
+            LookupCommand lookup = (LookupCommand) command;
+            Command target = resolve(lookup);
+
+            if (target == null) {
+                if (!lookup.isOptional()) {
+                    // Let the lookup report the missing command
+                    commands.add(command);
+                }
+
+                return;
+            }
+
+            if ((target instanceof Filter)
+                && lookup.isIgnorePostprocessResult()) {
+                // The lookup changes how the filter handles exceptions
+                commands.add(command);
+
+                return;
+            }
+
+            inline(target, commands);
+
+            return;
+        }
+
+        commands.add(command);
+    }
+
+    /**
+     * <p>Return the commands of the specified command if it is a standard
+     * chain, or else <code>null</code>.</p>
+     *
+     * @param command The command
+     * @return Its commands, or <code>null</code>
+     */
+    private Command[] getChildren(Command command) {
+        if ((COMMANDS == null) || (command.getClass() != ChainBase.class)) {
+            return null;
+        }
+
+        try {
+            return (Command[]) COMMANDS.get(command);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>Return whether the specified command is a standard lookup of a
+     * fixed command name whose result is not ignored.</p>
+     *
+     * @param command The command
+     * @return Whether the lookup may be replaced by its command
+     */
+    private boolean isResolvable(Command command) {
+        if (command.getClass() != LookupCommand.class) {
+            return false;
+        }
+
+        LookupCommand lookup = (LookupCommand) command;
+
+        return (lookup.getName() != null) && (lookup.getNameKey() == null)
+        && !lookup.isIgnoreExecuteResult();
+    }
+
+    /**
+     * <p>Return the command the specified lookup finds, or
+     * <code>null</code> if it finds none.</p>
+     *
+     * @param lookup The lookup
+     * @return The command it finds, or <code>null</code>
+     */
+    private Command resolve(LookupCommand lookup) {
+        CatalogFactory factory = lookup.getCatalogFactory();
+
+        if (factory == null) {
+            factory = catalogFactory;
+        }
+
+        String name = lookup.getCatalogName();
+        Catalog catalog =
+            (name == null) ? factory.getCatalog() : factory.getCatalog(name);
+
+        return (catalog == null) ? null : catalog.getCommand(lookup.getName());
+    }
+
+    /**
+     * <p>Return whether any of the specified commands is a filter.</p>
+     *
+     * @param commands The commands
+     * @return Whether one of them is a filter
+     */
+    private boolean containsFilter(List commands) {
+        for (int i = 0; i < commands.size(); i++) {
+            if (commands.get(i) instanceof Filter) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>Return the <code>commands</code> field of <code>ChainBase</code>,
+     * made accessible, or <code>null</code> if that is not allowed.</p>
+     *
+     * @return The field, or <code>null</code>
+     */
+    private static Field getCommandsField() {
+        try {
+            Field field = ChainBase.class.getDeclaredField("commands");
+
+            field.setAccessible(true);
+
+            return field;
+        } catch (Exception e) {
+            LOG.warn("Chains cannot be compiled: " + e);
+
+            return null;
+        }
+    }
+}
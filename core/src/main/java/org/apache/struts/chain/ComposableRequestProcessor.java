@@ -27,13 +27,16 @@ import org.apache.commons.chain.Command;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.struts.action.ActionServlet;
+import org.apache.struts.action.RequestMetrics;
 import org.apache.struts.action.RequestProcessor;
 import org.apache.struts.chain.contexts.ActionContext;
+import org.apache.struts.chain.contexts.FieldServletActionContext;
 import org.apache.struts.chain.contexts.ServletActionContext;
 import org.apache.struts.config.ControllerConfig;
 import org.apache.struts.config.ModuleConfig;
 import org.apache.struts.upload.MultipartRequestWrapper;
 import org.apache.struts.util.RequestUtils;
+import org.apache.struts.util.StripedPool;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -63,6 +66,11 @@ import java.lang.reflect.Constructor;
  *
  * </ul>
  *
+ * <p>Setting the <code>COMPILE_CHAIN</code> property of the controller
+ * configuration to <code>true</code> compiles the command once at
+ * initialization with a {@link ChainCompiler}, so that requests run through
+ * a single flattened array of commands without catalog lookups.</p>
+ *
  * @version $Rev$ $Date: 2005-11-12 13:01:44 -0500 (Sat, 12 Nov 2005)
  *          $
  * @since Struts 1.1
@@ -86,6 +94,14 @@ public class ComposableRequestProcessor extends RequestProcessor {
      */
     public static final String ACTION_CONTEXT_CLASS = "ACTION_CONTEXT_CLASS";
 
+    /**
+     * <p> Token for the ControllerConfig property that requests the command
+     * to be compiled with a {@link ChainCompiler}. </p>
+     *
+     * @since Struts 1.4
+     */
+    public static final String COMPILE_CHAIN = "COMPILE_CHAIN";
+
     /**
      * <p>The <code>Log</code> instance for this class.</p>
      */
@@ -121,6 +137,15 @@ public class ComposableRequestProcessor extends RequestProcessor {
      */
     private Constructor servletActionContextConstructor = null;
 
+    /**
+     * <p> The released contexts kept for reuse by later requests, if the
+     * ActionContext class is a {@link FieldServletActionContext}; otherwise
+     * <code>null</code>.  The pool is striped by thread, so requests rarely
+     * wait for each other, and is emptied when this processor is destroyed.
+     * </p>
+     */
+    private StripedPool recycledContexts = null;
+
     // ---------------------------------------------------------- Public Methods
 
     /**
@@ -133,6 +158,13 @@ public class ComposableRequestProcessor extends RequestProcessor {
         command = null;
         actionContextClass = null;
         servletActionContextConstructor = null;
+
+        StripedPool recycled = recycledContexts;
+
+        if (recycled != null) {
+            recycled.clear();
+            recycledContexts = null;
+        }
     }
 
     /**
@@ -171,6 +203,11 @@ public class ComposableRequestProcessor extends RequestProcessor {
                 + "'");
         }
 
+        if ("true".equalsIgnoreCase(controllerConfig.getProperty(
+                    COMPILE_CHAIN))) {
+            command = new ChainCompiler(catalogFactory).compile(command);
+        }
+
         this.setActionContextClassName(controllerConfig.getProperty(
                 ACTION_CONTEXT_CLASS));
     }
@@ -193,6 +230,14 @@ public class ComposableRequestProcessor extends RequestProcessor {
         } else {
             this.servletActionContextConstructor = null;
         }
+
+        if ((actionContextClass != null)
+            && FieldServletActionContext.class.isAssignableFrom(
+                actionContextClass)) {
+            this.recycledContexts = new StripedPool();
+        } else {
+            this.recycledContexts = null;
+        }
     }
 
     /**
@@ -274,6 +319,8 @@ public class ComposableRequestProcessor extends RequestProcessor {
         // Create and populate a Context for this request
         ActionContext context = contextInstance(request, response);
 
+        long start = (metrics != null) ? RequestMetrics.now() : 0;
+
         // Create and execute the command.
         try {
             if (LOG.isDebugEnabled()) {
@@ -285,9 +332,15 @@ public class ComposableRequestProcessor extends RequestProcessor {
             // Execute the exception processing chain??
             throw new ServletException(e);
         } finally {
+            if ((metrics != null) && (context != null)
+                && (context.getActionConfig() != null)) {
+                metrics.recordAction(context.getActionConfig().getPath(), start);
+            }
+
             // Release the context.
             if (context != null) {
                 context.release();
+                recycleActionContext(context);
             }
         }
     }
@@ -341,6 +394,19 @@ public class ComposableRequestProcessor extends RequestProcessor {
             return new ServletActionContext(servletContext, request, response);
         }
 
+        StripedPool recycled = this.recycledContexts;
+
+        if (recycled != null) {
+            FieldServletActionContext context =
+                (FieldServletActionContext) recycled.take();
+
+            if (context != null) {
+                context.initialize(servletContext, request, response);
+
+                return context;
+            }
+        }
+
         try {
             if (this.servletActionContextConstructor == null) {
                 return (ActionContext) this.actionContextClass.newInstance();
@@ -371,6 +437,25 @@ public class ComposableRequestProcessor extends RequestProcessor {
         }
 
         context.setModuleConfig(this.moduleConfig);
+
+        if (metrics != null) {
+            context.put(Constants.METRICS_KEY, metrics);
+        }
+    }
+
+    /**
+     * <p> Keep a released context for reuse by a later request, if its
+     * class is a {@link FieldServletActionContext}. </p>
+     *
+     * @param context The released context
+     */
+    private void recycleActionContext(ActionContext context) {
+        StripedPool recycled = this.recycledContexts;
+
+        if ((recycled != null)
+            && (context instanceof FieldServletActionContext)) {
+            recycled.release(context);
+        }
     }
 
     /**
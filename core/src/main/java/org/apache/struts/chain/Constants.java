@@ -89,6 +89,14 @@ public final class Constants {
      */
     public static final String MESSAGE_RESOURCES_KEY = "messageResources";
 
+    /**
+     * <p>The default context attribute under which the RequestMetrics for
+     * the current application will be stored, if metrics are enabled.</p>
+     *
+     * @since Struts 1.4
+     */
+    public static final String METRICS_KEY = "requestMetrics";
+
     /**
      * <p>The default context attribute under which the ModuleConfig for the
      * current request will be stored.</p>
@@ -109,6 +117,9 @@ public final class Constants {
      * the Action instances associated with this module are stored. This value
      * must be suffixed with the module prefix in order to create a unique key
      * per module.</p>
+     *
+     * @deprecated Action instances are now held in the module's
+     *             <code>org.apache.struts.action.ActionRegistry</code>
      */
     public static final String ACTIONS_KEY = "actions";
 
@@ -23,6 +23,7 @@ package org.apache.struts.chain.commands;
 import org.apache.struts.chain.contexts.ActionContext;
 import org.apache.struts.config.ActionConfig;
 import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.impl.ModuleConfigImpl;
 
 /**
  * <p>Cache the <code>ActionConfig</code> instance for the action to be used
@@ -56,7 +57,8 @@ public abstract class AbstractSelectAction extends ActionCommandBase {
         if (actionConfig == null) {
             // NOTE Shouldn't this be the responsibility of ModuleConfig?
             // Locate the mapping for unknown paths (if any)
-            ActionConfig[] configs = moduleConfig.findActionConfigs();
+            ActionConfig[] configs =
+                ModuleConfigImpl.findSharedActionConfigs(moduleConfig);
 
             for (int i = 0; i < configs.length; i++) {
                 if (configs[i].getUnknown()) {
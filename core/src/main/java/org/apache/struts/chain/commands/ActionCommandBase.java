@@ -23,6 +23,8 @@ package org.apache.struts.chain.commands;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.chain.Context;
+import org.apache.struts.action.RequestMetrics;
+import org.apache.struts.chain.Constants;
 import org.apache.struts.chain.contexts.ActionContext;
 
 /**
@@ -48,6 +50,21 @@ public abstract class ActionCommandBase implements ActionCommand {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Executing " + getClass().getName());
         }
-        return execute((ActionContext) context);
+
+        RequestMetrics metrics =
+            RequestMetrics.isEnabled()
+            ? (RequestMetrics) context.get(Constants.METRICS_KEY) : null;
+
+        if (metrics == null) {
+            return execute((ActionContext) context);
+        }
+
+        long start = RequestMetrics.now();
+
+        try {
+            return execute((ActionContext) context);
+        } finally {
+            metrics.recordCommand(getClass(), start);
+        }
     }
 }
@@ -23,8 +23,8 @@ package org.apache.struts.chain.commands.servlet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionRegistry;
 import org.apache.struts.action.ActionServlet;
-import org.apache.struts.chain.Constants;
 import org.apache.struts.chain.commands.util.ClassUtils;
 import org.apache.struts.chain.contexts.ActionContext;
 import org.apache.struts.chain.contexts.ServletActionContext;
@@ -44,35 +44,47 @@ public class CreateAction
     // ------------------------------------------------------ Instance Variables
     private static final Log log = LogFactory.getLog(CreateAction.class);
 
+    /**
+     * <p>The maximum number of modules whose registry is remembered.</p>
+     */
+    private static final int MAX_REGISTRIES = 64;
+
+    /**
+     * <p>The <code>ActionRegistry</code> of each module served so far, keyed
+     * by <code>ModuleConfig</code>.  Replaced, never modified, once
+     * published.</p>
+     */
+    private volatile Map registries = new HashMap();
+
     /* :TODO The Action class' dependency on having its "servlet" property set
      * requires this API-dependent subclass of AbstractCreateAction.
      */
-    protected synchronized Action getAction(ActionContext context, String type,
+    protected Action getAction(final ActionContext context, String type,
         ActionConfig actionConfig)
         throws Exception {
 
         ServletActionContext saContext = (ServletActionContext) context;
         ActionServlet actionServlet = saContext.getActionServlet();
 
-        ModuleConfig moduleConfig = actionConfig.getModuleConfig();
-        String actionsKey = Constants.ACTIONS_KEY + moduleConfig.getPrefix();
-        Map actions = (Map) context.getApplicationScope().get(actionsKey);
-
-        if (actions == null) {
-            actions = new HashMap();
-            context.getApplicationScope().put(actionsKey, actions);
-        }
-
         Action action = null;
 
         try {
             if (actionConfig.isSingleton()) {
-                synchronized (actions) {
-                    action = (Action) actions.get(type);
-                    if (action == null) {
-                        action = createAction(context, type);
-                        actions.put(type, action);
-                    }
+                ActionRegistry registry =
+                    getActionRegistry(saContext,
+                        actionConfig.getModuleConfig());
+
+                action = registry.getAction(type);
+
+                if (action == null) {
+                    action = registry.getAction(type,
+                        new ActionRegistry.Factory() {
+                            public Action createAction(String type)
+                                throws Exception {
+                                return CreateAction.this.createAction(context,
+                                    type);
+                            }
+                        });
                 }
             } else {
                 action = createAction(context, type);
@@ -91,6 +103,38 @@ public class CreateAction
         return (action);
     }
     
+    /**
+     * <p>Return the <code>ActionRegistry</code> of the specified module,
+     * looking it up in the servlet context only the first time.</p>
+     *
+     * @param context      The <code>Context</code> for this request
+     * @param moduleConfig The module configuration
+     * @return The registry of the module
+     */
+    private ActionRegistry getActionRegistry(ServletActionContext context,
+        ModuleConfig moduleConfig) {
+        ActionRegistry registry =
+            (ActionRegistry) registries.get(moduleConfig);
+
+        if (registry == null) {
+            registry =
+                ActionRegistry.getActionRegistry(context.getContext(),
+                    moduleConfig);
+
+            synchronized (this) {
+                // Forget the modules of earlier configurations
+                Map updated =
+                    (registries.size() < MAX_REGISTRIES)
+                    ? new HashMap(registries) : new HashMap();
+
+                updated.put(moduleConfig, registry);
+                registries = updated;
+            }
+        }
+
+        return registry;
+    }
+
     /**
      * <p>Invoked by <code>getAction</code> when the <code>Action</code> 
      * actually has to be created. If the instance is already created and 
@@ -0,0 +1,367 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.chain.contexts;
+
+import org.apache.commons.chain.web.servlet.ServletWebContext;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionServlet;
+import org.apache.struts.chain.Constants;
+import org.apache.struts.config.ActionConfig;
+import org.apache.struts.config.ForwardConfig;
+import org.apache.struts.util.TokenProcessor;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p> A <code>ServletActionContext</code> that keeps the core request state
+ * (action, action config, form, forward config, include, validity, module
+ * config, exception, cancellation, locale, message resources and servlet)
+ * in an array of slots rather than in the wrapped <code>Map</code>.  Typed
+ * accessors and <code>get</code>/<code>put</code> of the standard keys read
+ * and write the slots directly, so commands using either see the same
+ * values.  Other keys are stored in the wrapped context as usual. </p>
+ *
+ * <p> Operations over the whole <code>Map</code>, such as
+ * <code>entrySet()</code> or <code>size()</code>, first move the slots into
+ * the wrapped context; from then on, until the context is released, every
+ * key is stored there.  A <code>null</code> value in a slot is treated as an
+ * absent key. </p>
+ *
+ * <p> A released instance can be prepared for another request with {@link
+ * #initialize}, which lets <code>ComposableRequestProcessor</code> reuse
+ * instances of this class instead of creating a new one, and a new
+ * <code>ServletWebContext</code>, for every request. </p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class FieldServletActionContext extends ServletActionContext {
+    /**
+     * <p> The keys stored in slots, indexed by slot. </p>
+     */
+    private static final String[] KEYS =
+        {
+            ACTION_KEY, ACTION_CONFIG_KEY, ACTION_FORM_KEY, FORWARD_CONFIG_KEY,
+            INCLUDE_KEY, VALID_KEY, MODULE_CONFIG_KEY, EXCEPTION_KEY,
+            CANCEL_KEY, LOCALE_KEY, MESSAGE_RESOURCES_KEY,
+            Constants.ACTION_SERVLET_KEY
+        };
+
+    private static final int ACTION = 0;
+    private static final int ACTION_CONFIG = 1;
+    private static final int ACTION_FORM = 2;
+    private static final int FORWARD_CONFIG = 3;
+    private static final int INCLUDE = 4;
+    private static final int VALID = 5;
+    private static final int EXCEPTION = 7;
+    private static final int ACTION_SERVLET = 11;
+
+    /**
+     * <p> The slot of each key, for keys that are equal to but not the same
+     * instance as the constants. </p>
+     */
+    private static final Map SLOTS = new HashMap();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            SLOTS.put(KEYS[i], new Integer(i));
+        }
+    }
+
+    /**
+     * <p> The values of the standard keys, indexed by slot. </p>
+     */
+    private final Object[] slots = new Object[KEYS.length];
+
+    /**
+     * <p> Whether the slots have been moved into the wrapped context. </p>
+     */
+    private boolean spilled = false;
+
+    /**
+     * <p> Instantiate this Context for a given ServletContext,
+     * HttpServletRequest, and HttpServletResponse. </p>
+     *
+     * @param context  The instant ServletContext
+     * @param request  The instant HttpServletRequest
+     * @param response The instant HttpServletResponse
+     */
+    public FieldServletActionContext(ServletContext context,
+        HttpServletRequest request, HttpServletResponse response) {
+        super(new ServletWebContext(context, request, response));
+    }
+
+    /**
+     * <p> Prepare a released instance for another request. </p>
+     *
+     * @param context  The instant ServletContext
+     * @param request  The instant HttpServletRequest
+     * @param response The instant HttpServletResponse
+     */
+    public void initialize(ServletContext context, HttpServletRequest request,
+        HttpServletResponse response) {
+        servletWebContext().initialize(context, request, response);
+        this.token = TokenProcessor.getInstance();
+    }
+
+    public void release() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+
+        spilled = false;
+        getBaseContext().clear();
+        super.release();
+    }
+
+    // -------------------------------
+    // Typed accessors of the slots
+    // -------------------------------
+    public void setAction(Action action) {
+        set(ACTION, action);
+    }
+
+    public Action getAction() {
+        return (Action) slot(ACTION);
+    }
+
+    public void setActionForm(ActionForm form) {
+        set(ACTION_FORM, form);
+    }
+
+    public ActionForm getActionForm() {
+        return (ActionForm) slot(ACTION_FORM);
+    }
+
+    public ActionConfig getActionConfig() {
+        return (ActionConfig) slot(ACTION_CONFIG);
+    }
+
+    public void setForwardConfig(ForwardConfig forward) {
+        set(FORWARD_CONFIG, forward);
+    }
+
+    public ForwardConfig getForwardConfig() {
+        return (ForwardConfig) slot(FORWARD_CONFIG);
+    }
+
+    public void setInclude(String include) {
+        set(INCLUDE, include);
+    }
+
+    public String getInclude() {
+        return (String) slot(INCLUDE);
+    }
+
+    public void setFormValid(Boolean valid) {
+        set(VALID, valid);
+    }
+
+    public Boolean getFormValid() {
+        return (Boolean) slot(VALID);
+    }
+
+    public void setException(Exception e) {
+        set(EXCEPTION, e);
+    }
+
+    public Exception getException() {
+        return (Exception) slot(EXCEPTION);
+    }
+
+    public ActionServlet getActionServlet() {
+        return (ActionServlet) slot(ACTION_SERVLET);
+    }
+
+    public void setActionServlet(ActionServlet servlet) {
+        set(ACTION_SERVLET, servlet);
+    }
+
+    // -------------------------------
+    // Map interface methods
+    // -------------------------------
+    public Object get(Object key) {
+        int index = spilled ? (-1) : indexOf(key);
+
+        return (index < 0) ? super.get(key) : slots[index];
+    }
+
+    public Object put(Object key, Object value) {
+        int index = spilled ? (-1) : indexOf(key);
+
+        if (index < 0) {
+            return super.put(key, value);
+        }
+
+        Object previous = slots[index];
+
+        slots[index] = value;
+
+        return previous;
+    }
+
+    public Object remove(Object key) {
+        int index = spilled ? (-1) : indexOf(key);
+
+        if (index < 0) {
+            return super.remove(key);
+        }
+
+        Object previous = slots[index];
+
+        slots[index] = null;
+
+        return previous;
+    }
+
+    public boolean containsKey(Object key) {
+        int index = spilled ? (-1) : indexOf(key);
+
+        return (index < 0) ? super.containsKey(key) : (slots[index] != null);
+    }
+
+    public void putAll(Map map) {
+        for (Iterator i = map.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+
+        super.clear();
+    }
+
+    public Set entrySet() {
+        spill();
+
+        return super.entrySet();
+    }
+
+    public Set keySet() {
+        spill();
+
+        return super.keySet();
+    }
+
+    public Collection values() {
+        spill();
+
+        return super.values();
+    }
+
+    public boolean containsValue(Object o) {
+        spill();
+
+        return super.containsValue(o);
+    }
+
+    public boolean isEmpty() {
+        spill();
+
+        return super.isEmpty();
+    }
+
+    public int size() {
+        spill();
+
+        return super.size();
+    }
+
+    // -------------------------------
+    // Private methods
+    // -------------------------------
+
+    /**
+     * <p> Return the value of a slot, wherever it is currently stored. </p>
+     *
+     * @param index The slot
+     * @return Its value
+     */
+    private Object slot(int index) {
+        return spilled ? super.get(KEYS[index]) : slots[index];
+    }
+
+    /**
+     * <p> Set the value of a slot, wherever it is currently stored. </p>
+     *
+     * @param index The slot
+     * @param value Its new value
+     */
+    private void set(int index, Object value) {
+        if (spilled) {
+            super.put(KEYS[index], value);
+        } else {
+            slots[index] = value;
+        }
+    }
+
+    /**
+     * <p> Move the slots into the wrapped context, so that it holds every
+     * key. </p>
+     */
+    private void spill() {
+        if (spilled) {
+            return;
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                super.put(KEYS[i], slots[i]);
+                slots[i] = null;
+            }
+        }
+
+        spilled = true;
+    }
+
+    /**
+     * <p> Return the slot of the specified key, or -1 if it is not stored in
+     * a slot. </p>
+     *
+     * @param key The key
+     * @return The slot, or -1
+     */
+    private static int indexOf(Object key) {
+        for (int i = 0; i < KEYS.length; i++) {
+            if (KEYS[i] == key) {
+                return i;
+            }
+        }
+
+        Integer index = (Integer) SLOTS.get(key);
+
+        return (index == null) ? (-1) : index.intValue();
+    }
+}
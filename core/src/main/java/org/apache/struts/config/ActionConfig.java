@@ -50,6 +50,13 @@ public class ActionConfig extends BaseConfig {
      */
     protected HashMap exceptions = new HashMap();
 
+    /**
+     * <p> The local or global handler resolved for each exception class by
+     * {@link #findException(Class)} once this action and its module are
+     * frozen. </p>
+     */
+    private ExceptionConfigCache exceptionCache = new ExceptionConfigCache();
+
     /**
      * <p> The set of local forward configurations for this action, if any,
      * keyed by the <code>name</code> property. </p>
@@ -1092,6 +1099,10 @@ public class ActionConfig extends BaseConfig {
      * chain (again checking local and then global configurations). If no
      * handler configuration can be found, return <code>null</code>.</p>
      *
+     * <p>Once this action and its module are frozen, the handler found for
+     * each exception class is remembered, so repeated exceptions of the same
+     * type are not searched for again.</p>
+     *
      * <p>Introduced in <code>ActionMapping</code> in Struts 1.1, but pushed
      * up to <code>ActionConfig</code> in Struts 1.2.0.</p>
      *
@@ -1099,14 +1110,45 @@ public class ActionConfig extends BaseConfig {
      * @since Struts 1.2.0
      */
     public ExceptionConfig findException(Class type) {
+        ModuleConfig moduleConfig = getModuleConfig();
+
+        // The hierarchy can only be searched once both levels are frozen
+        if (!configured || (moduleConfig == null)
+            || !moduleConfig.getConfigured()) {
+            return resolveException(type);
+        }
+
+        ExceptionConfig config = exceptionCache.get(type);
+
+        if (config == null) {
+            config = resolveException(type);
+            exceptionCache.put(type, config);
+        }
+
+        return (config == ExceptionConfigCache.NO_HANDLER) ? null : config;
+    }
+
+    /**
+     * <p>Search the local and then global configurations for the specified
+     * exception's class, and then its superclasses, for the handler to
+     * use.</p>
+     *
+     * @param type Exception class for which to find a handler
+     * @return The handler, or <code>null</code> if none is configured
+     */
+    private ExceptionConfig resolveException(Class type) {
         // Check through the entire superclass hierarchy as needed
         ExceptionConfig config;
+        boolean debug = log.isDebugEnabled();
 
         while (true) {
             // Check for a locally defined handler
             String name = type.getName();
 
-            log.debug("findException: look locally for " + name);
+            if (debug) {
+                log.debug("findException: look locally for " + name);
+            }
+
             config = findExceptionConfig(name);
 
             if (config != null) {
@@ -1114,7 +1156,10 @@ public class ActionConfig extends BaseConfig {
             }
 
             // Check for a globally defined handler
-            log.debug("findException: look globally for " + name);
+            if (debug) {
+                log.debug("findException: look globally for " + name);
+            }
+
             config = getModuleConfig().findExceptionConfig(name);
 
             if (config != null) {
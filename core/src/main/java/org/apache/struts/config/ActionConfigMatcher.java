@@ -25,10 +25,14 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.struts.action.ActionForward;
 import org.apache.struts.util.WildcardHelper;
+import org.apache.struts.util.WildcardMatchResult;
 
 import java.io.Serializable;
 
+import java.lang.reflect.Method;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -42,9 +46,25 @@ import java.util.Properties;
  * config file. The last match wins, so more specific patterns should be
  * defined after less specific patterns.
  *
+ * <p> The literal prefixes of all patterns (the characters before their
+ * first wildcard) are compiled into a prefix tree, so only patterns whose
+ * prefix matches the requested path are tried, starting with the last one.
+ * The resolved <code>ActionConfig</code> of each concrete path, or the fact
+ * that it did not match, is kept in a bounded cache that is read without
+ * locking, so a path that has been seen before resolves with a single cache
+ * lookup. </p>
+ *
  * @since Struts 1.2
  */
 public class ActionConfigMatcher implements Serializable {
+    /**
+     * <p> The default number of resolved paths remembered by a matcher.
+     * </p>
+     *
+     * @since Struts 1.4
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
     /**
      * <p> The logging instance </p>
      */
@@ -55,11 +75,58 @@ public class ActionConfigMatcher implements Serializable {
      */
     private static final WildcardHelper wildcard = new WildcardHelper();
 
+    /**
+     * <p> Cached in place of an <code>ActionConfig</code> for paths that did
+     * not match any pattern. </p>
+     */
+    private static final Object NO_MATCH = new Object();
+
+    /**
+     * <p> The match result buffer of each thread, reused for every pattern
+     * tried. </p>
+     */
+    private static final ThreadLocal matchResult =
+        new ThreadLocal() {
+            protected Object initialValue() {
+                return new WildcardMatchResult();
+            }
+        };
+
     /**
      * <p> The compiled paths and their associated ActionConfig's </p>
      */
     private List compiledPaths;
 
+    /**
+     * <p> The compiled paths as an array, in configuration order. </p>
+     */
+    private Mapping[] mappings;
+
+    /**
+     * <p> The root of the prefix tree built from the literal prefixes of the
+     * compiled paths. </p>
+     */
+    private PrefixNode prefixes;
+
+    /**
+     * <p> The maximum number of resolved paths to remember, or zero if
+     * caching is disabled. </p>
+     */
+    private int cacheSize;
+
+    /**
+     * <p> The resolved ActionConfig's (or <code>NO_MATCH</code>) keyed by
+     * requested path, created on first use. </p>
+     */
+    private transient volatile MatchCache cache;
+
+    /**
+     * <p> Whether a subclass overrides one of the protected conversion
+     * methods taking a <code>Map</code>, so the wildcard-matched strings
+     * must be copied into one. </p>
+     */
+    private boolean mapConversion;
+
     /**
      * <p> Finds and precompiles the wildcard patterns from the ActionConfig
      * "path" attributes. ActionConfig's will be evaluated in the order they
@@ -69,7 +136,24 @@ public class ActionConfigMatcher implements Serializable {
      * @param configs An array of ActionConfig's to process
      */
     public ActionConfigMatcher(ActionConfig[] configs) {
+        this(configs, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * <p> Finds and precompiles the wildcard patterns from the ActionConfig
+     * "path" attributes, remembering up to <code>cacheSize</code> resolved
+     * paths. </p>
+     *
+     * @param configs   An array of ActionConfig's to process
+     * @param cacheSize The maximum number of resolved paths to remember, or
+     *                  zero to disable caching
+     * @since Struts 1.4
+     */
+    public ActionConfigMatcher(ActionConfig[] configs, int cacheSize) {
         compiledPaths = new ArrayList();
+        prefixes = new PrefixNode();
+        this.cacheSize = cacheSize;
+        mapConversion = overridesMapConversion(getClass());
 
         int[] pattern;
         String path;
@@ -87,9 +171,13 @@ public class ActionConfigMatcher implements Serializable {
                 }
 
                 pattern = wildcard.compilePattern(path);
+                prefixes.add(pattern, compiledPaths.size());
                 compiledPaths.add(new Mapping(pattern, configs[x]));
             }
         }
+
+        mappings =
+            (Mapping[]) compiledPaths.toArray(new Mapping[compiledPaths.size()]);
     }
 
     /**
@@ -99,47 +187,90 @@ public class ActionConfigMatcher implements Serializable {
      * @return The action config if matched, else null
      */
     public ActionConfig match(String path) {
-        ActionConfig config = null;
+        if (mappings.length == 0) {
+            return null;
+        }
 
-        if (compiledPaths.size() > 0) {
-            if (log.isDebugEnabled()) {
-                log.debug("Attempting to match '" + path
-                    + "' to a wildcard pattern");
+        MatchCache matches = cache;
+
+        if ((matches == null) && (cacheSize > 0)) {
+            // A race only creates a cache that is soon dropped
+            matches = new MatchCache(cacheSize);
+            cache = matches;
+        }
+
+        Object cached = (matches == null) ? null : matches.get(path);
+
+        if (cached == null) {
+            ActionConfig config = resolve(path);
+
+            cached = (config == null) ? NO_MATCH : config;
+
+            if (matches != null) {
+                matches.put(path, cached);
+            }
+        }
+
+        return (cached == NO_MATCH) ? null : (ActionConfig) cached;
+    }
+
+    /**
+     * <p> Matches the path against the compiled wildcard patterns whose
+     * literal prefix matches it, starting with the last one, and converts
+     * the ActionConfig of the first pattern that matches. </p>
+     *
+     * @param requestPath The portion of the request URI for selecting a
+     *                    config.
+     * @return The action config if matched, else null
+     */
+    private ActionConfig resolve(String requestPath) {
+        if (log.isDebugEnabled()) {
+            log.debug("Attempting to match '" + requestPath
+                + "' to a wildcard pattern");
+        }
+
+        String path = requestPath;
+
+        if ((path.length() > 0) && (path.charAt(0) == '/')) {
+            path = path.substring(1);
+        }
+
+        int[] candidates = prefixes.candidates(path, mappings.length);
+        WildcardMatchResult result = (WildcardMatchResult) matchResult.get();
+
+        for (int i = candidates.length - 1; i >= 0; i--) {
+            Mapping m = mappings[candidates[i]];
+
+            if (!wildcard.match(result, path, m.getPattern())) {
+                continue;
             }
 
-            if ((path.length() > 0) && (path.charAt(0) == '/')) {
-                path = path.substring(1);
+            if (log.isDebugEnabled()) {
+                log.debug("Path matches pattern '"
+                    + m.getActionConfig().getPath() + "'");
             }
 
-            Mapping m;
-            HashMap vars = new HashMap();
-
-            for (Iterator i = compiledPaths.iterator(); i.hasNext();) {
-                m = (Mapping) i.next();
-
-                if (wildcard.match(vars, path, m.getPattern())) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Path matches pattern '"
-                            + m.getActionConfig().getPath() + "'");
-                    }
-
-                    try {
-                	config =
-                	    convertActionConfig(path,
-                		    (ActionConfig) m.getActionConfig(), vars);
-                    } catch (IllegalStateException e) {
-                	log.warn("Path matches pattern '"
-                		+ m.getActionConfig().getPath() + "' but is "
-                		+ "incompatible with the matching config due "
-                		+ "to recursive substitution: "
-                		+ path);
-                	config = null;
-                    }
+            try {
+                if (mapConversion) {
+                    HashMap vars = new HashMap();
+
+                    result.putGroups(vars);
+
+                    return convertActionConfig(path, m.getActionConfig(), vars);
                 }
+
+                return convert(path, m.getActionConfig(), result);
+            } catch (IllegalStateException e) {
+                log.warn("Path matches pattern '"
+                    + m.getActionConfig().getPath() + "' but is "
+                    + "incompatible with the matching config due "
+                    + "to recursive substitution: " + path);
+
+                return null;
             }
         }
 
-        return config;
+        return null;
     }
 
     /**
@@ -156,6 +287,88 @@ public class ActionConfigMatcher implements Serializable {
      */
     protected ActionConfig convertActionConfig(String path, ActionConfig orig,
         Map vars) {
+        return convert(path, orig, vars);
+    }
+
+    /**
+     * <p> Replaces placeholders from one Properties values set to another.
+     * </p>
+     *
+     * @param orig  The original properties set with placehold values
+     * @param props The target properties to store the processed values
+     * @param vars  A Map of wildcard-matched strings
+     * @throws IllegalStateException if a placeholder substitution is 
+     * impossible due to recursion
+     */
+    protected void replaceProperties(Properties orig, Properties props, Map vars) {
+        Map.Entry entry = null;
+
+        for (Iterator i = orig.entrySet().iterator(); i.hasNext();) {
+            entry = (Map.Entry) i.next();
+            props.setProperty((String) entry.getKey(),
+                convertParam((String) entry.getValue(), vars));
+        }
+    }
+
+    /**
+     * <p> Inserts into a value wildcard-matched strings where specified.
+     * </p>
+     *
+     * @param val  The value to convert
+     * @param vars A Map of wildcard-matched strings
+     * @return The new value
+     * @throws IllegalStateException if a placeholder substitution is 
+     * impossible due to recursion
+     */
+    protected String convertParam(String val, Map vars) {
+        if (val == null) {
+            return null;
+        } else if (val.indexOf("{") == -1) {
+            return val;
+        }
+
+        Map.Entry entry;
+        StringBuffer key = new StringBuffer("{0}");
+        StringBuffer ret = new StringBuffer(val);
+        String keyStr;
+        int x;
+
+        for (Iterator i = vars.entrySet().iterator(); i.hasNext();) {
+            entry = (Map.Entry) i.next();
+            key.setCharAt(1, ((String) entry.getKey()).charAt(0));
+            keyStr = key.toString();
+            
+            // STR-3169
+            // Prevent an infinite loop by retaining the placeholders
+            // that contain itself in the substitution value
+            if (((String) entry.getValue()).contains(keyStr)) {
+        	throw new IllegalStateException();
+            }
+            
+            // Replace all instances of the placeholder
+            while ((x = ret.toString().indexOf(keyStr)) > -1) {
+                ret.replace(x, x + 3, (String) entry.getValue());
+            }
+        }
+
+        return ret.toString();
+    }
+
+    /**
+     * <p> Clones the ActionConfig and its children, replacing various
+     * properties with the values of the wildcard-matched strings, which are
+     * either a <code>Map</code> handed to the protected conversion methods
+     * or the <code>WildcardMatchResult</code> of the match. </p>
+     *
+     * @param path The requested path
+     * @param orig The original ActionConfig
+     * @param vars The wildcard-matched strings
+     * @return A cloned ActionConfig with appropriate properties replaced with
+     *         wildcard-matched values
+     * @throws IllegalStateException if a placeholder substitution is
+     * impossible due to recursion
+     */
+    private ActionConfig convert(String path, ActionConfig orig, Object vars) {
         ActionConfig config = null;
 
         try {
@@ -167,25 +380,25 @@ public class ActionConfigMatcher implements Serializable {
             return null;
         }
 
-        config.setName(convertParam(orig.getName(), vars));
+        config.setName(param(orig.getName(), vars));
 
         if ((path.length() == 0) || (path.charAt(0) != '/')) {
             path = "/" + path;
         }
 
         config.setPath(path);
-        config.setType(convertParam(orig.getType(), vars));
-        config.setRoles(convertParam(orig.getRoles(), vars));
-        config.setParameter(convertParam(orig.getParameter(), vars));
-        config.setAttribute(convertParam(orig.getAttribute(), vars));
-        config.setForward(convertParam(orig.getForward(), vars));
-        config.setInclude(convertParam(orig.getInclude(), vars));
-        config.setInput(convertParam(orig.getInput(), vars));
-        config.setCatalog(convertParam(orig.getCatalog(), vars));
-        config.setCommand(convertParam(orig.getCommand(), vars));
-        config.setMultipartClass(convertParam(orig.getMultipartClass(), vars));
-        config.setPrefix(convertParam(orig.getPrefix(), vars));
-        config.setSuffix(convertParam(orig.getSuffix(), vars));
+        config.setType(param(orig.getType(), vars));
+        config.setRoles(param(orig.getRoles(), vars));
+        config.setParameter(param(orig.getParameter(), vars));
+        config.setAttribute(param(orig.getAttribute(), vars));
+        config.setForward(param(orig.getForward(), vars));
+        config.setInclude(param(orig.getInclude(), vars));
+        config.setInput(param(orig.getInput(), vars));
+        config.setCatalog(param(orig.getCatalog(), vars));
+        config.setCommand(param(orig.getCommand(), vars));
+        config.setMultipartClass(param(orig.getMultipartClass(), vars));
+        config.setPrefix(param(orig.getPrefix(), vars));
+        config.setSuffix(param(orig.getSuffix(), vars));
 
         ForwardConfig[] fConfigs = orig.findForwardConfigs();
         ForwardConfig cfg;
@@ -199,20 +412,20 @@ public class ActionConfigMatcher implements Serializable {
                 return null;
             }
             cfg.setName(fConfigs[x].getName());
-            cfg.setPath(convertParam(fConfigs[x].getPath(), vars));
+            cfg.setPath(param(fConfigs[x].getPath(), vars));
             cfg.setRedirect(fConfigs[x].getRedirect());
-            cfg.setCommand(convertParam(fConfigs[x].getCommand(), vars));
-            cfg.setCatalog(convertParam(fConfigs[x].getCatalog(), vars));
-            cfg.setModule(convertParam(fConfigs[x].getModule(), vars));
+            cfg.setCommand(param(fConfigs[x].getCommand(), vars));
+            cfg.setCatalog(param(fConfigs[x].getCatalog(), vars));
+            cfg.setModule(param(fConfigs[x].getModule(), vars));
 
-            replaceProperties(fConfigs[x].getProperties(), cfg.getProperties(),
+            properties(fConfigs[x].getProperties(), cfg.getProperties(),
                 vars);
 
             config.removeForwardConfig(fConfigs[x]);
             config.addForwardConfig(cfg);
         }
 
-        replaceProperties(orig.getProperties(), config.getProperties(), vars);
+        properties(orig.getProperties(), config.getProperties(), vars);
 
         ExceptionConfig[] exConfigs = orig.findExceptionConfigs();
 
@@ -231,17 +444,23 @@ public class ActionConfigMatcher implements Serializable {
      *
      * @param orig  The original properties set with placehold values
      * @param props The target properties to store the processed values
-     * @param vars  A Map of wildcard-matched strings
-     * @throws IllegalStateException if a placeholder substitution is 
+     * @param vars  The wildcard-matched strings
+     * @throws IllegalStateException if a placeholder substitution is
      * impossible due to recursion
      */
-    protected void replaceProperties(Properties orig, Properties props, Map vars) {
+    private void properties(Properties orig, Properties props, Object vars) {
+        if (vars instanceof Map) {
+            replaceProperties(orig, props, (Map) vars);
+
+            return;
+        }
+
         Map.Entry entry = null;
 
         for (Iterator i = orig.entrySet().iterator(); i.hasNext();) {
             entry = (Map.Entry) i.next();
             props.setProperty((String) entry.getKey(),
-                convertParam((String) entry.getValue(), vars));
+                param((String) entry.getValue(), vars));
         }
     }
 
@@ -250,43 +469,87 @@ public class ActionConfigMatcher implements Serializable {
      * </p>
      *
      * @param val  The value to convert
-     * @param vars A Map of wildcard-matched strings
+     * @param vars The wildcard-matched strings
      * @return The new value
-     * @throws IllegalStateException if a placeholder substitution is 
+     * @throws IllegalStateException if a placeholder substitution is
      * impossible due to recursion
      */
-    protected String convertParam(String val, Map vars) {
-        if (val == null) {
-            return null;
-        } else if (val.indexOf("{") == -1) {
+    private String param(String val, Object vars) {
+        if (vars instanceof Map) {
+            return convertParam(val, (Map) vars);
+        } else if ((val == null) || (val.indexOf('{') == -1)) {
             return val;
         }
 
-        Map.Entry entry;
-        StringBuffer key = new StringBuffer("{0}");
-        StringBuffer ret = new StringBuffer(val);
-        String keyStr;
-        int x;
+        WildcardMatchResult result = (WildcardMatchResult) vars;
 
-        for (Iterator i = vars.entrySet().iterator(); i.hasNext();) {
-            entry = (Map.Entry) i.next();
-            key.setCharAt(1, ((String) entry.getKey()).charAt(0));
-            keyStr = key.toString();
-            
-            // STR-3169
-            // Prevent an infinite loop by retaining the placeholders
-            // that contain itself in the substitution value
-            if (((String) entry.getValue()).contains(keyStr)) {
-        	throw new IllegalStateException();
+        // STR-3169
+        if (isRecursive(result)) {
+            throw new IllegalStateException();
+        }
+
+        return result.substitute(val);
+    }
+
+    /**
+     * <p> Returns whether a wildcard-matched string contains its own
+     * placeholder, which <code>convertParam</code> refuses to substitute.
+     * </p>
+     *
+     * @param result The match result
+     * @return Whether a group contains its own placeholder
+     */
+    private static boolean isRecursive(WildcardMatchResult result) {
+        String data = result.getData();
+        int count = Math.min(result.getGroupCount(), 10);
+
+        for (int group = 0; group < count; group++) {
+            int end = result.getEnd(group);
+
+            for (int x = result.getStart(group); (x + 2) < end; x++) {
+                if ((data.charAt(x) == '{')
+                    && (data.charAt(x + 1) == ('0' + group))
+                    && (data.charAt(x + 2) == '}')) {
+                    return true;
+                }
             }
-            
-            // Replace all instances of the placeholder
-            while ((x = ret.toString().indexOf(keyStr)) > -1) {
-                ret.replace(x, x + 3, (String) entry.getValue());
+        }
+
+        return false;
+    }
+
+    /**
+     * <p> Returns whether a class overrides one of the protected conversion
+     * methods taking a <code>Map</code> of wildcard-matched strings. </p>
+     *
+     * @param type The class of the matcher
+     * @return Whether the methods are overridden
+     */
+    private static boolean overridesMapConversion(Class type) {
+        for (Class c = type; c != ActionConfigMatcher.class;
+            c = c.getSuperclass()) {
+            Method[] methods;
+
+            try {
+                methods = c.getDeclaredMethods();
+            } catch (SecurityException e) {
+                return true;
+            }
+
+            for (int i = 0; i < methods.length; i++) {
+                String name = methods[i].getName();
+                Class[] params = methods[i].getParameterTypes();
+
+                if (("convertActionConfig".equals(name)
+                    || "replaceProperties".equals(name)
+                    || "convertParam".equals(name))
+                    && (params[params.length - 1] == Map.class)) {
+                    return true;
+                }
             }
         }
 
-        return ret.toString();
+        return false;
     }
 
     /**
@@ -333,5 +596,228 @@ public class ActionConfigMatcher implements Serializable {
             return this.config;
         }
     }
-    
+
+    /**
+     * <p> A node of the prefix tree built from the literal prefixes of the
+     * compiled patterns. Each node lists the patterns whose literal prefix
+     * ends at that node. </p>
+     */
+    private static class PrefixNode implements Serializable {
+        /**
+         * <p> The characters leading to each child node. </p>
+         */
+        private char[] keys = new char[0];
+
+        /**
+         * <p> The child nodes, parallel to <code>keys</code>. </p>
+         */
+        private PrefixNode[] children = new PrefixNode[0];
+
+        /**
+         * <p> Indexes of the patterns whose literal prefix ends here, in
+         * ascending order. </p>
+         */
+        private int[] patterns = new int[0];
+
+        /**
+         * <p> Adds a compiled pattern to the tree below this node. </p>
+         *
+         * @param pattern The compiled pattern
+         * @param index   The index of the pattern in configuration order
+         */
+        public void add(int[] pattern, int index) {
+            PrefixNode node = this;
+
+            // Skip MATCH_BEGIN and follow the literal characters
+            for (int x = 1; pattern[x] >= 0; x++) {
+                node = node.child((char) pattern[x], true);
+            }
+
+            int[] updated = new int[node.patterns.length + 1];
+
+            System.arraycopy(node.patterns, 0, updated, 0,
+                node.patterns.length);
+            updated[node.patterns.length] = index;
+            node.patterns = updated;
+        }
+
+        /**
+         * <p> Returns the indexes, in ascending order, of the patterns whose
+         * literal prefix is a prefix of the path. </p>
+         *
+         * @param path  The path to match, without its leading slash
+         * @param count The total number of patterns
+         * @return The candidate pattern indexes
+         */
+        public int[] candidates(String path, int count) {
+            int[] found = new int[count];
+            int size = 0;
+            PrefixNode node = this;
+
+            for (int x = 0; node != null; x++) {
+                System.arraycopy(node.patterns, 0, found, size,
+                    node.patterns.length);
+                size += node.patterns.length;
+
+                node = (x < path.length())
+                    ? node.child(path.charAt(x), false) : null;
+            }
+
+            int[] result = new int[size];
+
+            System.arraycopy(found, 0, result, 0, size);
+            Arrays.sort(result);
+
+            return result;
+        }
+
+        /**
+         * <p> Returns the child reached through the specified character.
+         * </p>
+         *
+         * @param c      The character
+         * @param create Whether to create the child if it does not exist
+         * @return The child node, or <code>null</code> if it does not exist
+         *         and <code>create</code> is false
+         */
+        private PrefixNode child(char c, boolean create) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+
+            if (!create) {
+                return null;
+            }
+
+            PrefixNode node = new PrefixNode();
+            char[] updatedKeys = new char[keys.length + 1];
+            PrefixNode[] updatedChildren = new PrefixNode[keys.length + 1];
+
+            System.arraycopy(keys, 0, updatedKeys, 0, keys.length);
+            System.arraycopy(children, 0, updatedChildren, 0, keys.length);
+            updatedKeys[keys.length] = c;
+            updatedChildren[keys.length] = node;
+            keys = updatedKeys;
+            children = updatedChildren;
+
+            return node;
+        }
+    }
+
+    /**
+     * <p> A bounded map of resolved paths that is read and written without
+     * locking. Each path hashes to a set of two slots holding immutable
+     * entries; a new entry takes the first slot of its set and moves the
+     * entry found there to the second, dropping the one that was there.
+     * Concurrent writers may lose an entry to each other, which only costs
+     * resolving that path again. </p>
+     */
+    private static class MatchCache {
+        /**
+         * <p> The slots, two per set. </p>
+         */
+        private final Entry[] slots;
+
+        /**
+         * <p> Selects the first slot of a set from a hash code. </p>
+         */
+        private final int mask;
+
+        /**
+         * <p> Constructs an empty cache. </p>
+         *
+         * @param maxSize The maximum number of entries
+         */
+        public MatchCache(int maxSize) {
+            int capacity = 2;
+
+            while ((capacity < maxSize) && (capacity < (1 << 30))) {
+                capacity <<= 1;
+            }
+
+            slots = new Entry[capacity];
+            mask = (capacity - 1) & ~1;
+        }
+
+        /**
+         * <p> Returns the value cached for a path. </p>
+         *
+         * @param path The requested path
+         * @return The value, or <code>null</code> if it is not cached
+         */
+        public Object get(String path) {
+            int index = indexFor(path);
+            Entry entry = slots[index];
+
+            if ((entry != null) && entry.path.equals(path)) {
+                return entry.value;
+            }
+
+            entry = slots[index + 1];
+
+            if ((entry != null) && entry.path.equals(path)) {
+                return entry.value;
+            }
+
+            return null;
+        }
+
+        /**
+         * <p> Caches the value of a path. </p>
+         *
+         * @param path  The requested path
+         * @param value The value
+         */
+        public void put(String path, Object value) {
+            int index = indexFor(path);
+            Entry first = slots[index];
+
+            if ((first != null) && !first.path.equals(path)) {
+                slots[index + 1] = first;
+            }
+
+            slots[index] = new Entry(path, value);
+        }
+
+        /**
+         * <p> Returns the first slot of the set of a path. </p>
+         *
+         * @param path The requested path
+         * @return The slot index
+         */
+        private int indexFor(String path) {
+            int h = path.hashCode();
+
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+
+    /**
+     * <p> An immutable entry of a <code>MatchCache</code>, safe to read from
+     * any thread once its reference is seen. </p>
+     */
+    private static class Entry {
+        /**
+         * <p> The requested path. </p>
+         */
+        private final String path;
+
+        /**
+         * <p> The resolved ActionConfig or <code>NO_MATCH</code>. </p>
+         */
+        private final Object value;
+
+        /**
+         * <p> Constructs an entry. </p>
+         *
+         * @param path  The requested path
+         * @param value The resolved value
+         */
+        public Entry(String path, Object value) {
+            this.path = path;
+            this.value = value;
+        }
+    }
 }
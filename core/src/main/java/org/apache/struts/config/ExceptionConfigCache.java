@@ -0,0 +1,102 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.config;
+
+import java.io.Serializable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Remembers which <code>ExceptionConfig</code> handles each exception
+ * class, once a frozen configuration has searched the class hierarchy for
+ * it.  Types that have no handler are remembered as {@link #NO_HANDLER}, so
+ * they are not searched again either.</p>
+ *
+ * <p>Lookups read an immutable snapshot and never lock.  Each new type
+ * copies the snapshot and publishes the new one, which only happens once
+ * per exception class.  The cache is not serialized; a deserialized owner
+ * starts with an empty cache.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class ExceptionConfigCache implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * <p>Cached for exception classes that have no configured handler.</p>
+     */
+    public static final ExceptionConfig NO_HANDLER = new ExceptionConfig();
+
+    static {
+        NO_HANDLER.freeze();
+    }
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The current snapshot of resolved handlers, keyed by exception
+     * class.  The map referenced by this field is never modified once
+     * published.</p>
+     */
+    private transient volatile Map handlers = null;
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the handler cached for the specified exception class,
+     * {@link #NO_HANDLER} if the class is known to have none, or
+     * <code>null</code> if it has not been resolved yet.</p>
+     *
+     * @param type The exception class
+     * @return The cached handler, <code>NO_HANDLER</code> or
+     *         <code>null</code>
+     */
+    public ExceptionConfig get(Class type) {
+        Map current = handlers;
+
+        return (current == null) ? null : (ExceptionConfig) current.get(type);
+    }
+
+    /**
+     * <p>Remember the handler resolved for the specified exception
+     * class.</p>
+     *
+     * @param type    The exception class
+     * @param handler The resolved handler, or <code>null</code> if there is
+     *                none
+     */
+    public synchronized void put(Class type, ExceptionConfig handler) {
+        Map updated =
+            (handlers == null) ? new HashMap() : new HashMap(handlers);
+
+        updated.put(type, (handler == null) ? NO_HANDLER : handler);
+        handlers = updated;
+    }
+
+    /**
+     * <p>Forget every resolved handler.</p>
+     */
+    public synchronized void clear() {
+        handlers = null;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.config.impl;
+
+import java.io.Serializable;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * <p>Immutable lookup table from <code>String</code> keys to configuration
+ * objects, built once when a module configuration is frozen.  Entries are
+ * kept in parallel key and value arrays addressed by open addressing with
+ * linear probing, so a lookup is a hash computation and a short scan of
+ * adjacent slots, with no entry objects or locking.</p>
+ *
+ * <p>A table may be case insensitive, in which case keys are compared as
+ * <code>String.CASE_INSENSITIVE_ORDER</code> compares them.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class ConfigTable implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The keys, indexed by slot.  Empty slots hold <code>null</code>.</p>
+     */
+    private final String[] keys;
+
+    /**
+     * <p>The values, parallel to <code>keys</code>.</p>
+     */
+    private final Object[] values;
+
+    /**
+     * <p>The value stored under the <code>null</code> key, if any.</p>
+     */
+    private final Object nullValue;
+
+    /**
+     * <p>Mask applied to a hash to get a slot index.</p>
+     */
+    private final int mask;
+
+    /**
+     * <p>Whether keys are compared ignoring case.</p>
+     */
+    private final boolean ignoreCase;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Build a table holding the entries of the specified map.</p>
+     *
+     * @param map        The entries to hold, keyed by <code>String</code>
+     * @param ignoreCase Whether keys should be compared ignoring case
+     */
+    ConfigTable(Map map, boolean ignoreCase) {
+        int capacity = 2;
+
+        while (capacity < (map.size() * 2)) {
+            capacity <<= 1;
+        }
+
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.ignoreCase = ignoreCase;
+
+        Object foundNull = null;
+
+        for (Iterator i = map.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            String key = (String) entry.getKey();
+
+            if (key == null) {
+                foundNull = entry.getValue();
+
+                continue;
+            }
+
+            int slot = hash(key) & mask;
+
+            while ((keys[slot] != null) && !matches(keys[slot], key)) {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            values[slot] = entry.getValue();
+        }
+
+        this.nullValue = foundNull;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the value stored under the specified key, or
+     * <code>null</code> if there is none.</p>
+     *
+     * @param key The key to look up
+     * @return The stored value, or <code>null</code>
+     */
+    Object get(String key) {
+        if (key == null) {
+            return nullValue;
+        }
+
+        int slot = hash(key) & mask;
+        String candidate;
+
+        while ((candidate = keys[slot]) != null) {
+            if ((candidate == key) || matches(candidate, key)) {
+                return values[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Compute the hash of a key, consistent with the comparison used by
+     * this table.</p>
+     *
+     * @param key The key
+     * @return The spread hash code
+     */
+    private int hash(String key) {
+        int h;
+
+        if (ignoreCase) {
+            h = 0;
+
+            for (int i = 0; i < key.length(); i++) {
+                char c =
+                    Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+
+                h = (31 * h) + c;
+            }
+        } else {
+            h = key.hashCode();
+        }
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * <p>Compare two keys the way this table compares them.</p>
+     *
+     * @param a The first key
+     * @param b The second key
+     * @return Whether the keys are equal
+     */
+    private boolean matches(String a, String b) {
+        return ignoreCase ? a.equalsIgnoreCase(b) : a.equals(b);
+    }
+}
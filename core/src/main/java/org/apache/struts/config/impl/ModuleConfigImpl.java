@@ -28,6 +28,7 @@ import org.apache.struts.config.ActionConfigMatcher;
 import org.apache.struts.config.BaseConfig;
 import org.apache.struts.config.ControllerConfig;
 import org.apache.struts.config.ExceptionConfig;
+import org.apache.struts.config.ExceptionConfigCache;
 import org.apache.struts.config.FormBeanConfig;
 import org.apache.struts.config.ForwardConfig;
 import org.apache.struts.config.MessageResourcesConfig;
@@ -40,6 +41,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
@@ -152,6 +154,18 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      */
     protected ActionConfigMatcher matcher = null;
 
+    /**
+     * <p>Immutable lookup tables and arrays built by {@link #freeze()}, or
+     * <code>null</code> while this module is still being configured.</p>
+     */
+    private Snapshot snapshot = null;
+
+    /**
+     * <p>The handler resolved for each exception class by {@link
+     * #findException(Class)} once this module is frozen.</p>
+     */
+    private ExceptionConfigCache exceptionCache = new ExceptionConfigCache();
+
     /**
      * <p>Constructor for ModuleConfigImpl.  Assumes default
      * configuration.</p>
@@ -434,7 +448,14 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * @param path Path of the action configuration to return
      */
     public ActionConfig findActionConfig(String path) {
-        ActionConfig config = (ActionConfig) actionConfigs.get(path);
+        Snapshot frozen = snapshot;
+        ActionConfig config;
+
+        if (frozen != null) {
+            config = (ActionConfig) frozen.actionConfigs.get(path);
+        } else {
+            config = (ActionConfig) actionConfigs.get(path);
+        }
 
         // If a direct match cannot be found, try to match action configs
         // containing wildcard patterns only if a matcher exists.
@@ -456,6 +477,12 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      */
     public ActionConfig findActionConfigId(String actionId) {
         if (actionId != null) {
+            Snapshot frozen = snapshot;
+
+            if (frozen != null) {
+                return (ActionConfig) frozen.actionConfigIds.get(actionId);
+            }
+
             return (ActionConfig) this.actionConfigIds.get(actionId);
         }
         return null;
@@ -466,6 +493,17 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * none, a zero-length array is returned. </p>
      */
     public ActionConfig[] findActionConfigs() {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            ActionConfig[] configs = frozen.actionConfigArray;
+            ActionConfig[] copy = new ActionConfig[configs.length];
+
+            System.arraycopy(configs, 0, copy, 0, copy.length);
+
+            return copy;
+        }
+
         ActionConfig[] results = new ActionConfig[actionConfigList.size()];
 
         return ((ActionConfig[]) actionConfigList.toArray(results));
@@ -478,6 +516,12 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * @param type Exception class name to find a configuration for
      */
     public ExceptionConfig findExceptionConfig(String type) {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            return ((ExceptionConfig) frozen.exceptions.get(type));
+        }
+
         return ((ExceptionConfig) exceptions.get(type));
     }
 
@@ -490,6 +534,10 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * be thrown before an <code>ActionConfig</code> has been identified,
      * where global exception handlers may still be pertinent.</p>
      *
+     * <p>Once this module is frozen, the handler found for each exception
+     * class is remembered, so repeated exceptions of the same type are not
+     * searched for again.</p>
+     *
      * <p>TODO: Look for a way to share this logic with
      * <code>ActionConfig</code>, although there are subtle differences, and
      * it certainly doesn't seem like it should be done with inheritance.</p>
@@ -498,14 +546,40 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * @since Struts 1.3.0
      */
     public ExceptionConfig findException(Class type) {
+        if (!configured) {
+            return resolveException(type);
+        }
+
+        ExceptionConfig config = exceptionCache.get(type);
+
+        if (config == null) {
+            config = resolveException(type);
+            exceptionCache.put(type, config);
+        }
+
+        return (config == ExceptionConfigCache.NO_HANDLER) ? null : config;
+    }
+
+    /**
+     * <p>Search the configurations for the specified exception's class, and
+     * then its superclasses, for the handler to use.</p>
+     *
+     * @param type Exception class for which to find a handler
+     * @return The handler, or <code>null</code> if none is configured
+     */
+    private ExceptionConfig resolveException(Class type) {
         // Check through the entire superclass hierarchy as needed
         ExceptionConfig config = null;
+        boolean debug = log.isDebugEnabled();
 
         while (true) {
             // Check for a locally defined handler
             String name = type.getName();
 
-            log.debug("findException: look locally for " + name);
+            if (debug) {
+                log.debug("findException: look locally for " + name);
+            }
+
             config = findExceptionConfig(name);
 
             if (config != null) {
@@ -528,6 +602,17 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * none, a zero-length array is returned. </p>
      */
     public ExceptionConfig[] findExceptionConfigs() {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            ExceptionConfig[] configs = frozen.exceptionConfigArray;
+            ExceptionConfig[] copy = new ExceptionConfig[configs.length];
+
+            System.arraycopy(configs, 0, copy, 0, copy.length);
+
+            return copy;
+        }
+
         ExceptionConfig[] results = new ExceptionConfig[exceptions.size()];
 
         return ((ExceptionConfig[]) exceptions.values().toArray(results));
@@ -540,6 +625,12 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * @param name Name of the form bean configuration to return
      */
     public FormBeanConfig findFormBeanConfig(String name) {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            return ((FormBeanConfig) frozen.formBeans.get(name));
+        }
+
         return ((FormBeanConfig) formBeans.get(name));
     }
 
@@ -548,6 +639,17 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * none, a zero-length array is returned. </p>
      */
     public FormBeanConfig[] findFormBeanConfigs() {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            FormBeanConfig[] configs = frozen.formBeanConfigArray;
+            FormBeanConfig[] copy = new FormBeanConfig[configs.length];
+
+            System.arraycopy(configs, 0, copy, 0, copy.length);
+
+            return copy;
+        }
+
         FormBeanConfig[] results = new FormBeanConfig[formBeans.size()];
 
         return ((FormBeanConfig[]) formBeans.values().toArray(results));
@@ -560,6 +662,12 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * @param name Name of the forward configuration to return
      */
     public ForwardConfig findForwardConfig(String name) {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            return ((ForwardConfig) frozen.forwards.get(name));
+        }
+
         return ((ForwardConfig) forwards.get(name));
     }
 
@@ -568,6 +676,17 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * none, a zero-length array is returned. </p>
      */
     public ForwardConfig[] findForwardConfigs() {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            ForwardConfig[] configs = frozen.forwardConfigArray;
+            ForwardConfig[] copy = new ForwardConfig[configs.length];
+
+            System.arraycopy(configs, 0, copy, 0, copy.length);
+
+            return copy;
+        }
+
         ForwardConfig[] results = new ForwardConfig[forwards.size()];
 
         return ((ForwardConfig[]) forwards.values().toArray(results));
@@ -580,6 +699,12 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * @param key Key of the data source configuration to return
      */
     public MessageResourcesConfig findMessageResourcesConfig(String key) {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            return ((MessageResourcesConfig) frozen.messageResources.get(key));
+        }
+
         return ((MessageResourcesConfig) messageResources.get(key));
     }
 
@@ -588,6 +713,19 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * there are none, a zero-length array is returned. </p>
      */
     public MessageResourcesConfig[] findMessageResourcesConfigs() {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            MessageResourcesConfig[] configs =
+                frozen.messageResourcesConfigArray;
+            MessageResourcesConfig[] copy =
+                new MessageResourcesConfig[configs.length];
+
+            System.arraycopy(configs, 0, copy, 0, copy.length);
+
+            return copy;
+        }
+
         MessageResourcesConfig[] results =
             new MessageResourcesConfig[messageResources.size()];
 
@@ -599,15 +737,72 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
      * are none, a zero-length array is returned. </p>
      */
     public PlugInConfig[] findPlugInConfigs() {
+        Snapshot frozen = snapshot;
+
+        if (frozen != null) {
+            PlugInConfig[] configs = frozen.plugInConfigArray;
+            PlugInConfig[] copy = new PlugInConfig[configs.length];
+
+            System.arraycopy(configs, 0, copy, 0, copy.length);
+
+            return copy;
+        }
+
         PlugInConfig[] results = new PlugInConfig[plugIns.size()];
 
         return ((PlugInConfig[]) plugIns.toArray(results));
     }
 
+    /**
+     * <p> Return the action configurations of the specified module without
+     * copying them once it is frozen.  The returned array is shared and
+     * must not be modified; this is meant for the framework's own request
+     * processing. </p>
+     *
+     * @param config The module configuration
+     * @return The action configurations
+     * @since Struts 1.4
+     */
+    public static ActionConfig[] findSharedActionConfigs(ModuleConfig config) {
+        if (config instanceof ModuleConfigImpl) {
+            Snapshot frozen = ((ModuleConfigImpl) config).snapshot;
+
+            if (frozen != null) {
+                return frozen.actionConfigArray;
+            }
+        }
+
+        return config.findActionConfigs();
+    }
+
+    /**
+     * <p> Return the message resources configurations of the specified
+     * module without copying them once it is frozen.  The returned array is
+     * shared and must not be modified; this is meant for the framework's own
+     * request processing. </p>
+     *
+     * @param config The module configuration
+     * @return The message resources configurations
+     * @since Struts 1.4
+     */
+    public static MessageResourcesConfig[] findSharedMessageResourcesConfigs(
+        ModuleConfig config) {
+        if (config instanceof ModuleConfigImpl) {
+            Snapshot frozen = ((ModuleConfigImpl) config).snapshot;
+
+            if (frozen != null) {
+                return frozen.messageResourcesConfigArray;
+            }
+        }
+
+        return config.findMessageResourcesConfigs();
+    }
+
     /**
      * <p> Freeze the configuration of this module.  After this method
      * returns, any attempt to modify the configuration will return an
-     * IllegalStateException. </p>
+     * IllegalStateException, and lookups are served from immutable tables
+     * built from the final configuration. </p>
      */
     public void freeze() {
         super.freeze();
@@ -651,6 +846,8 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
         for (int i = 0; i < piconfigs.length; i++) {
             piconfigs[i].freeze();
         }
+
+        snapshot = new Snapshot(this);
     }
 
     /**
@@ -731,4 +928,99 @@ public class ModuleConfigImpl extends BaseConfig implements Serializable,
         }
     }
 
+    /**
+     * <p>The immutable lookup tables and pre-built arrays of a frozen
+     * module.</p>
+     */
+    private static class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * <p>Action configurations keyed by path.</p>
+         */
+        final ConfigTable actionConfigs;
+
+        /**
+         * <p>Action configurations keyed by action identifier.</p>
+         */
+        final ConfigTable actionConfigIds;
+
+        /**
+         * <p>Exception configurations keyed by type.</p>
+         */
+        final ConfigTable exceptions;
+
+        /**
+         * <p>Form bean configurations keyed by name.</p>
+         */
+        final ConfigTable formBeans;
+
+        /**
+         * <p>Global forward configurations keyed by name.</p>
+         */
+        final ConfigTable forwards;
+
+        /**
+         * <p>Message resources configurations keyed by key.</p>
+         */
+        final ConfigTable messageResources;
+
+        /**
+         * <p>Action configurations in the order they were added.</p>
+         */
+        final ActionConfig[] actionConfigArray;
+
+        /**
+         * <p>All exception configurations.</p>
+         */
+        final ExceptionConfig[] exceptionConfigArray;
+
+        /**
+         * <p>All form bean configurations.</p>
+         */
+        final FormBeanConfig[] formBeanConfigArray;
+
+        /**
+         * <p>All global forward configurations.</p>
+         */
+        final ForwardConfig[] forwardConfigArray;
+
+        /**
+         * <p>All message resources configurations.</p>
+         */
+        final MessageResourcesConfig[] messageResourcesConfigArray;
+
+        /**
+         * <p>Plug-in configurations in the order they were declared.</p>
+         */
+        final PlugInConfig[] plugInConfigArray;
+
+        /**
+         * <p>Build the snapshot of a module configuration that is being
+         * frozen.</p>
+         *
+         * @param config The module configuration
+         */
+        Snapshot(ModuleConfigImpl config) {
+            boolean ignoreCase =
+                (config.actionConfigs instanceof SortedMap)
+                && (((SortedMap) config.actionConfigs).comparator()
+                == String.CASE_INSENSITIVE_ORDER);
+
+            actionConfigs = new ConfigTable(config.actionConfigs, ignoreCase);
+            actionConfigIds = new ConfigTable(config.actionConfigIds, false);
+            exceptions = new ConfigTable(config.exceptions, false);
+            formBeans = new ConfigTable(config.formBeans, false);
+            forwards = new ConfigTable(config.forwards, false);
+            messageResources =
+                new ConfigTable(config.messageResources, false);
+            actionConfigArray = config.findActionConfigs();
+            exceptionConfigArray = config.findExceptionConfigs();
+            formBeanConfigArray = config.findFormBeanConfigs();
+            forwardConfigArray = config.findForwardConfigs();
+            messageResourcesConfigArray =
+                config.findMessageResourcesConfigs();
+            plugInConfigArray = config.findPlugInConfigs();
+        }
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+/**
+ * <p>A hash table for caches that are read far more often than they are
+ * written.  Reads take no lock; writes are synchronized.  Entries are
+ * immutable and are only ever added at the head of a bucket, and every write
+ * ends by writing the volatile <code>table</code> field, so a read that
+ * starts after a write has completed sees it.  A read that races with a
+ * write may miss the new entry, which callers handle like any other miss by
+ * calling {@link #putIfAbsent}.</p>
+ *
+ * <p>Unlike a copy-on-write map, adding an entry does not copy the whole
+ * table, so filling a cache with thousands of entries stays linear.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class ConcurrentTable {
+    /**
+     * <p>The initial number of buckets, a power of two.</p>
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The buckets, whose length is always a power of two.</p>
+     */
+    private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+
+    /**
+     * <p>The number of entries, guarded by this object's lock.</p>
+     */
+    private int size = 0;
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the value of the specified key, without locking.</p>
+     *
+     * @param key The key, not <code>null</code>
+     * @return The value, or <code>null</code> if there is none
+     */
+    Object get(Object key) {
+        int hash = hash(key);
+        Entry[] buckets = table;
+
+        for (Entry e = buckets[hash & (buckets.length - 1)]; e != null;
+            e = e.next) {
+            if ((e.hash == hash) && key.equals(e.key)) {
+                return e.value;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * <p>Store the specified value under the specified key, unless the key
+     * already has a value.</p>
+     *
+     * @param key   The key, not <code>null</code>
+     * @param value The value, not <code>null</code>
+     * @return The value now stored under the key
+     */
+    synchronized Object putIfAbsent(Object key, Object value) {
+        int hash = hash(key);
+        Entry[] buckets = table;
+        int index = hash & (buckets.length - 1);
+
+        for (Entry e = buckets[index]; e != null; e = e.next) {
+            if ((e.hash == hash) && key.equals(e.key)) {
+                return e.value;
+            }
+        }
+
+        if (size >= ((buckets.length * 3) / 4)) {
+            buckets = resize(buckets);
+            index = hash & (buckets.length - 1);
+        }
+
+        buckets[index] = new Entry(key, hash, value, buckets[index]);
+        size++;
+
+        // Publish the new entry to readers
+        table = buckets;
+
+        return value;
+    }
+
+    /**
+     * <p>Remove all entries.</p>
+     */
+    synchronized void clear() {
+        table = new Entry[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * <p>Return the number of entries.</p>
+     *
+     * @return The number of entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return a table with twice as many buckets holding the same
+     * entries.  The old table is left untouched for concurrent readers.</p>
+     *
+     * @param buckets The current buckets
+     * @return The new buckets
+     */
+    private Entry[] resize(Entry[] buckets) {
+        Entry[] resized = new Entry[buckets.length * 2];
+
+        for (int i = 0; i < buckets.length; i++) {
+            for (Entry e = buckets[i]; e != null; e = e.next) {
+                int index = e.hash & (resized.length - 1);
+
+                resized[index] = new Entry(e.key, e.hash, e.value,
+                        resized[index]);
+            }
+        }
+
+        return resized;
+    }
+
+    /**
+     * <p>Return the spread hash code of the specified key.</p>
+     *
+     * @param key The key
+     * @return Its hash
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+
+        h ^= ((h >>> 20) ^ (h >>> 12));
+
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>An immutable entry of a bucket.</p>
+     */
+    private static final class Entry {
+        final Object key;
+        final int hash;
+        final Object value;
+        final Entry next;
+
+        Entry(Object key, int hash, Object value, Entry next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+/**
+ * <p>Counts timed events and keeps a histogram of their durations in
+ * microseconds.  Durations are counted in fixed buckets whose upper bounds
+ * are listed in {@link #BUCKET_BOUNDS}, plus a last bucket for anything
+ * longer, so recording an event never allocates.</p>
+ *
+ * <p>Events are recorded in one of a few stripes chosen by the recording
+ * thread, each with its own lock, so that threads recording at the same
+ * time rarely wait for each other.  Readers add the stripes up.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class LatencyStatistics {
+    /**
+     * <p>The inclusive upper bound, in microseconds, of every bucket but the
+     * last one, which counts longer durations.</p>
+     */
+    public static final long[] BUCKET_BOUNDS =
+        {
+            10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000,
+            100000, 200000, 500000, 1000000, 2000000, 5000000, 10000000
+        };
+
+    /**
+     * <p>The number of stripes: the number of processors rounded up to a
+     * power of two, at most 16.</p>
+     */
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+
+        while ((stripes < 16)
+            && (stripes < Runtime.getRuntime().availableProcessors())) {
+            stripes <<= 1;
+        }
+
+        STRIPES = stripes;
+    }
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The stripes events are recorded in.</p>
+     */
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct statistics without any event.</p>
+     */
+    public LatencyStatistics() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Record an event that took the specified time.</p>
+     *
+     * @param micros The duration, in microseconds
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+
+        int bucket = 0;
+
+        while ((bucket < BUCKET_BOUNDS.length)
+            && (micros > BUCKET_BOUNDS[bucket])) {
+            bucket++;
+        }
+
+        int h = System.identityHashCode(Thread.currentThread());
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+
+        synchronized (stripe) {
+            stripe.buckets[bucket]++;
+            stripe.count++;
+            stripe.total += micros;
+
+            if (micros > stripe.max) {
+                stripe.max = micros;
+            }
+        }
+    }
+
+    /**
+     * <p>Return the number of events.</p>
+     *
+     * @return The number of events
+     */
+    public long getCount() {
+        return sum().count;
+    }
+
+    /**
+     * <p>Return the sum of all durations, in microseconds.</p>
+     *
+     * @return The total time
+     */
+    public long getTotal() {
+        return sum().total;
+    }
+
+    /**
+     * <p>Return the longest duration, in microseconds.</p>
+     *
+     * @return The longest duration
+     */
+    public long getMax() {
+        return sum().max;
+    }
+
+    /**
+     * <p>Return the average duration, in microseconds.</p>
+     *
+     * @return The average duration, or 0 if there were no events
+     */
+    public double getAverage() {
+        return sum().getAverage();
+    }
+
+    /**
+     * <p>Return a copy of the number of events in each bucket.</p>
+     *
+     * @return The histogram, one entry longer than {@link #BUCKET_BOUNDS}
+     */
+    public long[] getBuckets() {
+        return sum().buckets;
+    }
+
+    /**
+     * <p>Return an upper bound of the specified percentile of durations: the
+     * upper bound of the bucket holding it, or the longest duration if it
+     * falls in the last bucket.</p>
+     *
+     * @param percent The percentile, between 0 and 100
+     * @return The upper bound, in microseconds, or 0 if there were no events
+     */
+    public long getPercentile(double percent) {
+        return sum().getPercentile(percent);
+    }
+
+    /**
+     * <p>Discard all events.</p>
+     */
+    public void reset() {
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (stripes[i]) {
+                stripes[i].clear();
+            }
+        }
+    }
+
+    /**
+     * <p>Return a one-line summary of these statistics, with durations in
+     * milliseconds.</p>
+     *
+     * @return The summary
+     */
+    public String toString() {
+        Stripe sum = sum();
+        StringBuffer sb = new StringBuffer("count=");
+
+        sb.append(sum.count);
+        sb.append(", avg=");
+        sb.append(Math.round(sum.getAverage()) / 1000.0);
+        sb.append("ms, p50<=");
+        sb.append(sum.getPercentile(50) / 1000.0);
+        sb.append("ms, p99<=");
+        sb.append(sum.getPercentile(99) / 1000.0);
+        sb.append("ms, max=");
+        sb.append(sum.max / 1000.0);
+        sb.append("ms");
+
+        return sb.toString();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Add up the stripes.</p>
+     *
+     * @return The events of every stripe
+     */
+    private Stripe sum() {
+        Stripe sum = new Stripe();
+
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+
+            synchronized (stripe) {
+                for (int b = 0; b < sum.buckets.length; b++) {
+                    sum.buckets[b] += stripe.buckets[b];
+                }
+
+                sum.count += stripe.count;
+                sum.total += stripe.total;
+                sum.max = Math.max(sum.max, stripe.max);
+            }
+        }
+
+        return sum;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>The events recorded in one stripe, guarded by the stripe's
+     * lock.</p>
+     */
+    private static final class Stripe {
+        /**
+         * <p>The number of events in each bucket.</p>
+         */
+        final long[] buckets = new long[BUCKET_BOUNDS.length + 1];
+
+        /**
+         * <p>The number of events.</p>
+         */
+        long count = 0;
+
+        /**
+         * <p>The sum of all durations.</p>
+         */
+        long total = 0;
+
+        /**
+         * <p>The longest duration.</p>
+         */
+        long max = 0;
+
+        /**
+         * <p>Discard all events.</p>
+         */
+        void clear() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = 0;
+            }
+
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+
+        /**
+         * <p>Return the average duration.</p>
+         *
+         * @return The average duration, or 0 if there were no events
+         */
+        double getAverage() {
+            return (count == 0) ? 0 : ((double) total / count);
+        }
+
+        /**
+         * <p>Return an upper bound of the specified percentile.</p>
+         *
+         * @param percent The percentile, between 0 and 100
+         * @return The upper bound, or 0 if there were no events
+         */
+        long getPercentile(double percent) {
+            long rank = (long) Math.ceil((count * percent) / 100);
+            long seen = 0;
+
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                seen += buckets[i];
+
+                if ((seen >= rank) && (seen > 0)) {
+                    return Math.min(BUCKET_BOUNDS[i], max);
+                }
+            }
+
+            return max;
+        }
+    }
+}
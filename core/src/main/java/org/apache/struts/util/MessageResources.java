@@ -82,9 +82,18 @@ public abstract class MessageResources implements Serializable {
     /**
      * The set of previously created MessageFormat objects, keyed by the key
      * computed in <code>messageKey()</code>.
+     *
+     * @deprecated No longer used; parsed messages are cached per Locale
+     *             without locking.
      */
     protected HashMap formats = new HashMap();
 
+    /**
+     * The parsed messages, as a table of <code>MessageTemplate</code>s keyed
+     * by message key for each Locale.
+     */
+    private transient volatile ConcurrentTable templates = null;
+
     /**
      * Indicate is a <code>null</code> is returned instead of an error message
      * string when an unknown Locale or key is requested.
@@ -284,31 +293,34 @@ public abstract class MessageResources implements Serializable {
      * @param args   An array of replacement parameters for placeholders
      */
     public String getMessage(Locale locale, String key, Object[] args) {
-        // Cache MessageFormat instances as they are accessed
+        // Cache parsed messages as they are accessed
         if (locale == null) {
             locale = defaultLocale;
         }
 
-        MessageFormat format = null;
-        String formatKey = messageKey(locale, key);
-
-        synchronized (formats) {
-            format = (MessageFormat) formats.get(formatKey);
+        // The template tables do not accept a null key
+        if (key == null) {
+            return returnNull ? null : ("???" + messageKey(locale, key) + "???");
+        }
 
-            if (format == null) {
-                String formatString = getMessage(locale, key);
+        ConcurrentTable localeTemplates = getTemplates(locale);
+        MessageTemplate template =
+            (MessageTemplate) localeTemplates.get(key);
 
-                if (formatString == null) {
-                    return returnNull ? null : ("???" + formatKey + "???");
-                }
+        if (template == null) {
+            String formatString = getMessage(locale, key);
 
-                format = new MessageFormat(escape(formatString));
-                format.setLocale(locale);
-                formats.put(formatKey, format);
+            if (formatString == null) {
+                return returnNull ? null
+                                  : ("???" + messageKey(locale, key) + "???");
             }
+
+            template =
+                (MessageTemplate) localeTemplates.putIfAbsent(key,
+                    new MessageTemplate(escape(formatString), locale));
         }
 
-        return format.format(args);
+        return template.format(args);
     }
 
     /**
@@ -408,6 +420,20 @@ public abstract class MessageResources implements Serializable {
 
     // ------------------------------------------------------ Protected Methods
 
+    /**
+     * Discard the parsed messages cached by <code>getMessage()</code>, so
+     * that they are read again from the underlying resources.
+     *
+     * @since Struts 1.4
+     */
+    protected void clearTemplates() {
+        ConcurrentTable current = templates;
+
+        if (current != null) {
+            current.clear();
+        }
+    }
+
     /**
      * Escape any single quote characters that are included in the specified
      * message string.
@@ -473,6 +499,37 @@ public abstract class MessageResources implements Serializable {
         return (localeKey + "." + key);
     }
 
+    /**
+     * Return the table of parsed messages of the specified Locale, creating
+     * it if needed.
+     *
+     * @param locale The Locale
+     * @return The table
+     */
+    private ConcurrentTable getTemplates(Locale locale) {
+        ConcurrentTable all = templates;
+
+        if (all == null) {
+            synchronized (this) {
+                all = templates;
+
+                if (all == null) {
+                    all = new ConcurrentTable();
+                    templates = all;
+                }
+            }
+        }
+
+        ConcurrentTable localeTemplates = (ConcurrentTable) all.get(locale);
+
+        if (localeTemplates == null) {
+            localeTemplates =
+                (ConcurrentTable) all.putIfAbsent(locale, new ConcurrentTable());
+        }
+
+        return localeTemplates;
+    }
+
     /**
      * Create and return an instance of <code>MessageResources</code> for the
      * created by the default <code>MessageResourcesFactory</code>.
@@ -0,0 +1,195 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import java.io.Serializable;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * <p>An immutable table of messages keyed by message key, stored in two
+ * parallel arrays probed by open addressing.  Each message costs two array
+ * slots, rather than the entry object, bucket slot and key string of a
+ * <code>HashMap</code> keyed by locale and message key.  Tables built by
+ * {@link #MessageTable(Map, MessageTable[])} share the key and value strings
+ * of other tables, so a key is held once however many locales define it.
+ * </p>
+ *
+ * <p>Instances are safe to read from any number of threads once they have
+ * been published.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class MessageTable implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The message keys, or <code>null</code> for an empty slot.  The
+     * length is a power of two, and at least one slot is always empty.</p>
+     */
+    private final String[] keys;
+
+    /**
+     * <p>The message of each key.</p>
+     */
+    private final String[] values;
+
+    /**
+     * <p>The number of messages.</p>
+     */
+    private final int size;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a table holding the specified messages.  Where one of the
+     * specified tables holds the same key, its key string is used instead,
+     * and so is its message when it is equal.</p>
+     *
+     * @param messages The messages, <code>String</code> values keyed by
+     *                 <code>String</code> keys
+     * @param shared   The tables whose strings should be shared
+     */
+    MessageTable(Map messages, MessageTable[] shared) {
+        int capacity = 2;
+
+        while ((capacity * 3) <= (messages.size() * 4)) {
+            capacity *= 2;
+        }
+
+        this.keys = new String[capacity];
+        this.values = new String[capacity];
+        this.size = messages.size();
+
+        Iterator entries = messages.entrySet().iterator();
+
+        while (entries.hasNext()) {
+            Map.Entry entry = (Map.Entry) entries.next();
+            String key = (String) entry.getKey();
+            String value = (String) entry.getValue();
+
+            for (int i = 0; i < shared.length; i++) {
+                int slot = shared[i].slotOf(key);
+
+                if (slot >= 0) {
+                    key = shared[i].keys[slot];
+
+                    if (value.equals(shared[i].values[slot])) {
+                        value = shared[i].values[slot];
+                    }
+
+                    break;
+                }
+            }
+
+            int slot = indexFor(key);
+
+            while (keys[slot] != null) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the message of the specified key.</p>
+     *
+     * @param key The message key, may be <code>null</code>
+     * @return The message, or <code>null</code> if there is none
+     */
+    String get(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        int slot = slotOf(key);
+
+        return (slot < 0) ? null : values[slot];
+    }
+
+    /**
+     * <p>Return the number of messages.</p>
+     *
+     * @return The number of messages
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * <p>Add every message of this table to the specified map, replacing
+     * any message it already has for the same key.</p>
+     *
+     * @param map The map to add to
+     */
+    void putAllTo(Map map) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                map.put(keys[i], values[i]);
+            }
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the slot holding the specified key.</p>
+     *
+     * @param key The message key
+     * @return The slot, or -1 if the key is not in this table
+     */
+    private int slotOf(String key) {
+        int slot = indexFor(key);
+
+        for (String k = keys[slot]; k != null; k = keys[slot]) {
+            if ((k == key) || k.equals(key)) {
+                return slot;
+            }
+
+            slot = (slot + 1) & (keys.length - 1);
+        }
+
+        return -1;
+    }
+
+    /**
+     * <p>Return the first slot to probe for the specified key.</p>
+     *
+     * @param key The message key
+     * @return The slot
+     */
+    private int indexFor(String key) {
+        int h = key.hashCode();
+
+        h ^= ((h >>> 20) ^ (h >>> 12));
+        h ^= ((h >>> 7) ^ (h >>> 4));
+
+        return h & (keys.length - 1);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>A parsed <code>MessageFormat</code> pattern that may be used by any
+ * number of threads at once.  Patterns whose placeholders are all plain
+ * <code>{n}</code> references, which is nearly all message resources, are
+ * compiled into literal text and argument numbers and formatted the same way
+ * <code>MessageFormat</code> formats them.  Other patterns, with format types
+ * such as <code>{0,number}</code>, keep a <code>MessageFormat</code> that is
+ * never used itself; each call formats with a clone of it.  Number and date
+ * arguments are likewise formatted with clones of formats created once per
+ * template.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class MessageTemplate {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The literal text before each argument, and after the last one.</p>
+     */
+    private final String[] literals;
+
+    /**
+     * <p>The argument number of each placeholder.</p>
+     */
+    private final int[] arguments;
+
+    /**
+     * <p>The locale used to format numbers and dates.</p>
+     */
+    private final Locale locale;
+
+    /**
+     * <p>The format to clone for patterns that are not compiled, or
+     * <code>null</code>.</p>
+     */
+    private final MessageFormat format;
+
+    /**
+     * <p>The length of the literal text.</p>
+     */
+    private final int length;
+
+    /**
+     * <p>The format to clone for number arguments, created when first
+     * needed.  Threads racing to create it each use their own.</p>
+     */
+    private volatile NumberFormat numberFormat = null;
+
+    /**
+     * <p>The format to clone for date arguments, created when first
+     * needed.  Threads racing to create it each use their own.</p>
+     */
+    private volatile DateFormat dateFormat = null;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Parse the specified pattern.</p>
+     *
+     * @param pattern The <code>MessageFormat</code> pattern
+     * @param locale  The locale used to format numbers and dates
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    MessageTemplate(String pattern, Locale locale) {
+        List literalList = new ArrayList();
+        List argumentList = new ArrayList();
+
+        this.locale = locale;
+
+        if (parse(pattern, literalList, argumentList)) {
+            this.literals =
+                (String[]) literalList.toArray(new String[literalList.size()]);
+            this.arguments = new int[argumentList.size()];
+
+            int total = 0;
+
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = ((Integer) argumentList.get(i)).intValue();
+            }
+
+            for (int i = 0; i < literals.length; i++) {
+                total += literals[i].length();
+            }
+
+            this.length = total;
+            this.format = null;
+        } else {
+            MessageFormat messageFormat = new MessageFormat(pattern);
+
+            messageFormat.setLocale(locale);
+            this.literals = null;
+            this.arguments = null;
+            this.length = 0;
+            this.format = messageFormat;
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Format the specified arguments as
+     * <code>MessageFormat.format(Object[])</code> would.</p>
+     *
+     * @param args The arguments, may be <code>null</code>
+     * @return The formatted message
+     */
+    String format(Object[] args) {
+        if (format != null) {
+            return ((MessageFormat) format.clone()).format(args);
+        }
+
+        StringBuffer sb = new StringBuffer(length + (16 * arguments.length));
+
+        for (int i = 0; i < arguments.length; i++) {
+            sb.append(literals[i]);
+
+            int argument = arguments[i];
+
+            if ((args == null) || (argument >= args.length)) {
+                sb.append('{').append(argument).append('}');
+            } else {
+                sb.append(formatArgument(args[argument]));
+            }
+        }
+
+        sb.append(literals[arguments.length]);
+
+        return sb.toString();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Format an argument of a plain placeholder as
+     * <code>MessageFormat</code> does.</p>
+     *
+     * @param arg The argument
+     * @return Its text
+     */
+    private String formatArgument(Object arg) {
+        if (arg == null) {
+            return "null";
+        } else if (arg instanceof Number) {
+            NumberFormat number = numberFormat;
+
+            if (number == null) {
+                number = NumberFormat.getInstance(locale);
+                numberFormat = number;
+            }
+
+            return ((NumberFormat) number.clone()).format(arg);
+        } else if (arg instanceof Date) {
+            DateFormat date = dateFormat;
+
+            if (date == null) {
+                date =
+                    DateFormat.getDateTimeInstance(DateFormat.SHORT,
+                        DateFormat.SHORT, locale);
+                dateFormat = date;
+            }
+
+            return ((DateFormat) date.clone()).format(arg);
+        } else if (arg instanceof String) {
+            return (String) arg;
+        }
+
+        String text = arg.toString();
+
+        return (text == null) ? "null" : text;
+    }
+
+    /**
+     * <p>Split a pattern into literal text and argument numbers, following
+     * the quoting rules of <code>MessageFormat</code>.</p>
+     *
+     * @param pattern   The pattern
+     * @param literals  The list to add literal text to
+     * @param arguments The list to add argument numbers to
+     * @return <code>false</code> if the pattern has a placeholder that is not
+     *         a plain argument number, or is invalid
+     */
+    private static boolean parse(String pattern, List literals,
+        List arguments) {
+        StringBuffer literal = new StringBuffer();
+        boolean quoted = false;
+        int n = pattern.length();
+
+        for (int i = 0; i < n; i++) {
+            char ch = pattern.charAt(i);
+
+            if (ch == '\'') {
+                if (((i + 1) < n) && (pattern.charAt(i + 1) == '\'')) {
+                    literal.append(ch);
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if ((ch == '{') && !quoted) {
+                int close = pattern.indexOf('}', i + 1);
+
+                if ((close < 0) || !isArgumentNumber(pattern, i + 1, close)) {
+                    return false;
+                }
+
+                literals.add(literal.toString());
+                literal.setLength(0);
+                arguments.add(Integer.valueOf(pattern.substring(i + 1, close)));
+                i = close;
+            } else {
+                literal.append(ch);
+            }
+        }
+
+        literals.add(literal.toString());
+
+        return true;
+    }
+
+    /**
+     * <p>Return whether the specified part of a pattern is a plain argument
+     * number.</p>
+     *
+     * @param pattern The pattern
+     * @param start   The start of the part
+     * @param end     The end of the part, exclusive
+     * @return Whether the part consists of one to nine digits
+     */
+    private static boolean isArgumentNumber(String pattern, int start, int end) {
+        if ((end <= start) || ((end - start) > 9)) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            char ch = pattern.charAt(i);
+
+            if ((ch < '0') || (ch > '9')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.struts.Globals;
 import org.apache.struts.action.RequestProcessor;
 import org.apache.struts.config.MessageResourcesConfig;
 import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.impl.ModuleConfigImpl;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -244,7 +245,7 @@ public class ModuleUtils {
             request.setAttribute(Globals.MODULE_KEY, config);
 
             MessageResourcesConfig[] mrConfig =
-                config.findMessageResourcesConfigs();
+                ModuleConfigImpl.findSharedMessageResourcesConfigs(config);
 
             for (int i = 0; i < mrConfig.length; i++) {
                 String key = mrConfig[i].getKey();
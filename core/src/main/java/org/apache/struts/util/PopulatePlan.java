@@ -0,0 +1,528 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.DynaProperty;
+import org.apache.commons.beanutils.MappedPropertyDescriptor;
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.beanutils.expression.Resolver;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.PropertyDescriptor;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>The compiled form of <code>BeanUtils.setProperty</code> for one bean
+ * class, or for one <code>DynaClass</code> such as the class of the
+ * <code>DynaActionForm</code>s of a form bean.  The first time a property
+ * expression is set, it is parsed, its property descriptor and type are
+ * looked up and the converter for that type is chosen; later calls with the
+ * same expression only convert the value and call the setter.</p>
+ *
+ * <p>Simple, indexed and mapped properties are handled by the plan; for a
+ * nested expression, the plan gets the nested bean and hands the rest of the
+ * expression to the plan of that bean's class.  Anything else, such as
+ * properties of <code>Map</code>s, is passed on to
+ * <code>BeanUtils.setProperty</code>.  Properties that
+ * <code>BeanUtils</code> would skip, because they do not exist or are read
+ * only, are skipped as well.</p>
+ *
+ * <p>Plans hold the converters that were registered when they were built,
+ * so {@link #clear()} must be called when the registered converters
+ * change.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class PopulatePlan {
+    /**
+     * <p>The maximum number of property expressions remembered per plan, so
+     * that requests with arbitrary parameter names cannot grow a plan
+     * without bound.  Further expressions are parsed on every call.</p>
+     */
+    public static final int MAX_SETTERS = 1000;
+
+    /**
+     * <p>The current snapshot of plans, keyed by bean class or
+     * <code>DynaClass</code>.  The map referenced by this field is never
+     * modified once published.</p>
+     */
+    private static volatile Map plans = new HashMap();
+
+    /**
+     * <p>Sets a property that does not exist or cannot be written.</p>
+     */
+    private static final Setter SKIP = new Setter();
+
+    /**
+     * <p>Sets a property through <code>BeanUtils</code>.</p>
+     */
+    private static final Setter DELEGATE = new Setter();
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The current snapshot of setters, keyed by property expression.  The
+     * map referenced by this field is never modified once published.</p>
+     */
+    private volatile Map setters = new HashMap();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the plan for beans like the specified one.</p>
+     *
+     * @param bean The bean
+     * @return The plan for its class
+     */
+    public static PopulatePlan getInstance(Object bean) {
+        Object key =
+            (bean instanceof DynaBean) ? ((DynaBean) bean).getDynaClass()
+                                       : (Object) bean.getClass();
+        PopulatePlan plan = (PopulatePlan) plans.get(key);
+
+        if (plan != null) {
+            return plan;
+        }
+
+        synchronized (PopulatePlan.class) {
+            plan = (PopulatePlan) plans.get(key);
+
+            if (plan == null) {
+                Map updated = new HashMap(plans);
+
+                plan = new PopulatePlan();
+                updated.put(key, plan);
+                plans = updated;
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * <p>Discard all plans, so that they are built again with the currently
+     * registered converters.</p>
+     */
+    public static synchronized void clear() {
+        plans = new HashMap();
+    }
+
+    /**
+     * <p>Set the specified property of the specified bean the way
+     * <code>BeanUtils.setProperty</code> would, converting the value to the
+     * type of the property.</p>
+     *
+     * @param bean  The bean, of the class of this plan
+     * @param name  The property expression
+     * @param value The value, usually a <code>String</code> or
+     *              <code>String[]</code>
+     * @throws Exception if the property cannot be set
+     */
+    public void setProperty(Object bean, String name, Object value)
+        throws Exception {
+        Setter setter = (Setter) setters.get(name);
+
+        if (setter == null) {
+            setter = getSetter(bean, name);
+        }
+
+        if (setter == SKIP) {
+            return;
+        }
+
+        if (setter == DELEGATE) {
+            BeanUtils.setProperty(bean, name, value);
+
+            return;
+        }
+
+        setter.set(bean, name, value);
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the setter of the specified property expression, building
+     * and remembering it if needed.</p>
+     *
+     * @param bean The bean, of the class of this plan
+     * @param name The property expression
+     * @return The setter
+     */
+    private Setter getSetter(Object bean, String name) {
+        Setter setter = createSetter(bean, name);
+
+        synchronized (this) {
+            Setter existing = (Setter) setters.get(name);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            if (setters.size() < MAX_SETTERS) {
+                Map updated = new HashMap(setters);
+
+                updated.put(name, setter);
+                setters = updated;
+            }
+        }
+
+        return setter;
+    }
+
+    /**
+     * <p>Build the setter of the specified property expression, following
+     * the rules of <code>BeanUtilsBean.setProperty</code>.</p>
+     *
+     * @param bean The bean, of the class of this plan
+     * @param name The property expression
+     * @return The setter
+     */
+    private static Setter createSetter(Object bean, String name) {
+        if ((bean instanceof Map) || bean.getClass().isArray()) {
+            return DELEGATE;
+        }
+
+        try {
+            Resolver resolver =
+                BeanUtilsBean.getInstance().getPropertyUtils().getResolver();
+
+            if (resolver.hasNested(name)) {
+                return new Setter(resolver.next(name), resolver.remove(name));
+            }
+
+            String property = resolver.getProperty(name);
+            int index = resolver.getIndex(name);
+            String key = resolver.getKey(name);
+
+            if (bean instanceof DynaBean) {
+                DynaProperty dynaProperty =
+                    ((DynaBean) bean).getDynaClass().getDynaProperty(property);
+
+                if (dynaProperty == null) {
+                    return SKIP;
+                }
+
+                return new Setter(property, index, key,
+                    dynaProperty.getType(), null);
+            }
+
+            PropertyDescriptor descriptor =
+                PropertyUtils.getPropertyDescriptor(bean, name);
+
+            if (descriptor == null) {
+                return SKIP;
+            }
+
+            if (descriptor instanceof MappedPropertyDescriptor) {
+                MappedPropertyDescriptor mapped =
+                    (MappedPropertyDescriptor) descriptor;
+
+                if (mapped.getMappedWriteMethod() == null) {
+                    return SKIP;
+                }
+
+                if (key == null) {
+                    return DELEGATE;
+                }
+
+                return new Setter(property, index, key,
+                    mapped.getMappedPropertyType(), null);
+            }
+
+            if ((index >= 0)
+                && (descriptor instanceof IndexedPropertyDescriptor)) {
+                IndexedPropertyDescriptor indexed =
+                    (IndexedPropertyDescriptor) descriptor;
+
+                if (indexed.getIndexedWriteMethod() == null) {
+                    return SKIP;
+                }
+
+                return new Setter(property, index, key,
+                    indexed.getIndexedPropertyType(), null);
+            }
+
+            if (key != null) {
+                // The type depends on the value
+                return DELEGATE;
+            }
+
+            if (descriptor.getWriteMethod() == null) {
+                return SKIP;
+            }
+
+            Method method = null;
+
+            if (index < 0) {
+                method =
+                    MethodUtils.getAccessibleMethod(bean.getClass(),
+                        descriptor.getWriteMethod());
+
+                if (method == null) {
+                    return DELEGATE;
+                }
+            }
+
+            return new Setter(property, index, key,
+                descriptor.getPropertyType(), method);
+        } catch (NoSuchMethodException e) {
+            return SKIP;
+        } catch (Exception e) {
+            // Let BeanUtils report the problem when the property is set
+            return DELEGATE;
+        }
+    }
+
+    /**
+     * <p>Convert the specified value with the specified converter, the way
+     * <code>ConvertUtils.convert(String, Class)</code> would.</p>
+     *
+     * @param converter The converter
+     * @param type      The type to convert to
+     * @param value     The value
+     * @return The converted value
+     */
+    private static Object convertString(Converter converter, Class type,
+        Object value) {
+        if (value instanceof String[]) {
+            value = ((String[]) value)[0];
+        }
+
+        return converter.convert(type, value);
+    }
+
+    /**
+     * <p>Return the converter <code>ConvertUtils</code> uses to convert
+     * strings to the specified type.</p>
+     *
+     * @param type The type
+     * @return The converter
+     */
+    private static Converter lookupStringConverter(Class type) {
+        Converter converter = ConvertUtils.lookup(type);
+
+        return (converter == null) ? ConvertUtils.lookup(String.class)
+                                   : converter;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>Converts and sets the value of one property expression.</p>
+     */
+    private static class Setter {
+        /**
+         * <p>The property expression of the nested bean, if the expression
+         * is nested.</p>
+         */
+        private final String nested;
+
+        /**
+         * <p>The property name, or for a nested expression the remainder of
+         * the expression.</p>
+         */
+        private final String property;
+
+        /**
+         * <p>The index, or -1.</p>
+         */
+        private final int index;
+
+        /**
+         * <p>The key, or <code>null</code>.</p>
+         */
+        private final String key;
+
+        /**
+         * <p>The type the value is converted to.</p>
+         */
+        private final Class type;
+
+        /**
+         * <p>Whether an array is set from the value as a whole.</p>
+         */
+        private final boolean array;
+
+        /**
+         * <p>The converter for strings and string arrays, which for arrays
+         * converts each element.</p>
+         */
+        private final Converter stringConverter;
+
+        /**
+         * <p>The converter for other values, or <code>null</code> to use
+         * them as they are.</p>
+         */
+        private final Converter valueConverter;
+
+        /**
+         * <p>The write method of a simple property of a standard bean, or
+         * <code>null</code>.</p>
+         */
+        private final Method method;
+
+        /**
+         * <p>Construct one of the shared markers.</p>
+         */
+        Setter() {
+            this(null, null, -1, null, null, false, null);
+        }
+
+        /**
+         * <p>Construct a setter of a nested expression.</p>
+         *
+         * @param nested    The expression of the nested bean
+         * @param remainder The rest of the expression
+         */
+        Setter(String nested, String remainder) {
+            this(nested, remainder, -1, null, null, false, null);
+        }
+
+        /**
+         * <p>Construct a setter of a property whose type is known.</p>
+         *
+         * @param property The property name
+         * @param index    The index, or -1
+         * @param key      The key, or <code>null</code>
+         * @param type     The type of the property, or of its elements for
+         *                 an indexed or mapped property
+         * @param method   The write method of a simple property of a
+         *                 standard bean, or <code>null</code>
+         */
+        Setter(String property, int index, String key, Class type,
+            Method method) {
+            this(null, property, index, key,
+                (type.isArray() && (index >= 0)) ? type.getComponentType()
+                                                 : type,
+                type.isArray() && (index < 0), method);
+        }
+
+        private Setter(String nested, String property, int index, String key,
+            Class type, boolean array, Method method) {
+            this.nested = nested;
+            this.property = property;
+            this.index = index;
+            this.key = key;
+            this.type = type;
+            this.array = array;
+            this.method = method;
+
+            if (type == null) {
+                this.stringConverter = null;
+                this.valueConverter = null;
+            } else {
+                this.stringConverter =
+                    lookupStringConverter(array ? type.getComponentType()
+                                                : type);
+                this.valueConverter = ConvertUtils.lookup(type);
+            }
+        }
+
+        /**
+         * <p>Set the property of the specified bean.</p>
+         *
+         * @param bean  The bean
+         * @param name  The whole property expression
+         * @param value The value
+         * @throws Exception if the property cannot be set
+         */
+        void set(Object bean, String name, Object value)
+            throws Exception {
+            if (nested != null) {
+                Object target;
+
+                try {
+                    target = PropertyUtils.getProperty(bean, nested);
+                } catch (NoSuchMethodException e) {
+                    return;
+                }
+
+                if (target == null) {
+                    // Let BeanUtils report the null nested bean
+                    BeanUtils.setProperty(bean, name, value);
+                } else {
+                    getInstance(target).setProperty(target, property, value);
+                }
+
+                return;
+            }
+
+            Object converted = convert(value);
+
+            if (method != null) {
+                method.invoke(bean, new Object[] { converted });
+            } else if (key != null) {
+                PropertyUtils.setMappedProperty(bean, property, key, converted);
+            } else if (index >= 0) {
+                PropertyUtils.setIndexedProperty(bean, property, index,
+                    converted);
+            } else {
+                ((DynaBean) bean).set(property, converted);
+            }
+        }
+
+        /**
+         * <p>Convert the specified value to the type of the property.</p>
+         *
+         * @param value The value
+         * @return The converted value
+         */
+        private Object convert(Object value) {
+            if (!array) {
+                if ((value == null) || (value instanceof String)
+                    || (value instanceof String[])) {
+                    return convertString(stringConverter, type, value);
+                }
+            } else if ((value == null) || (value instanceof String[])) {
+                String[] values =
+                    (value == null) ? new String[1] : (String[]) value;
+                Class componentType = type.getComponentType();
+                Object result = Array.newInstance(componentType, values.length);
+
+                for (int i = 0; i < values.length; i++) {
+                    Array.set(result, i,
+                        stringConverter.convert(componentType, values[i]));
+                }
+
+                return result;
+            } else if (value instanceof String) {
+                return ConvertUtils.convert(value, type);
+            }
+
+            return (valueConverter == null) ? value
+                                            : valueConverter.convert(type,
+                value);
+        }
+    }
+}
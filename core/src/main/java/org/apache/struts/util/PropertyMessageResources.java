@@ -26,9 +26,13 @@ import org.apache.commons.logging.LogFactory;
 import java.io.IOException;
 import java.io.InputStream;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -111,7 +115,27 @@ import java.util.Properties;
  *          &lt;set-property key="mode" value="resource"/&gt;
  *      &lt;/message-resources&gt;
  * </pre>
- * 
+ *
+ * <h2>Merged Locales</h2>
+ * In any of the modes above, the messages of each requested Locale can be
+ * merged, the first time that Locale is requested, into a single table in
+ * which the search sequence has already been applied.  Each later lookup is
+ * then a single probe of that table, without locking.  Messages found
+ * through fallback are not cached under other Locales, so in the default
+ * mode a message no longer depends on which Locales were requested
+ * before.  Merging also stores messages compactly: each locale key's
+ * messages are held in arrays rather than under a combined locale and
+ * message key, a message key is held once however many locales define it,
+ * messages that are equal to those of a less specific locale are shared,
+ * and Locales that find their messages in the same resources share one
+ * merged table.  Enable this by specifying a value of
+ * <code>true</code> for the <code>merged</code> key:
+ * <pre>
+ *      &lt;message-resources parameter="mypackage.MyMessageResources"&gt;
+ *          &lt;set-property key="merged" value="true"/&gt;
+ *      &lt;/message-resources&gt;
+ * </pre>
+ *
  * @version $Rev$ $Date$
  */
 public class PropertyMessageResources extends MessageResources {
@@ -151,6 +175,38 @@ public class PropertyMessageResources extends MessageResources {
      */
     private int mode = MODE_DEFAULT;
 
+    /**
+     * Whether the messages of each Locale are merged into a single table.
+     */
+    private boolean merged = false;
+
+    /**
+     * The messages of each loaded locale key when merging, keyed by locale
+     * key.  Each is a <code>MessageTable</code> that shares its key and
+     * message strings with the tables loaded before it.  Guarded by this
+     * object's lock.
+     */
+    private HashMap localeTables = new HashMap();
+
+    /**
+     * The merged tables built so far, keyed by the <code>List</code> of
+     * locale keys with messages that they were merged from, so that Locales
+     * which find their messages in the same resources share a table.
+     * Guarded by this object's lock.
+     */
+    private HashMap mergedTables = new HashMap();
+
+    /**
+     * The merged messages of each Locale, keyed by Locale (or
+     * <code>NULL_LOCALE</code>), each a <code>MessageTable</code>.
+     */
+    private transient volatile ConcurrentTable mergedMessages = null;
+
+    /**
+     * The key of the merged messages of the <code>null</code> Locale.
+     */
+    private static final Object NULL_LOCALE = new Object();
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -211,6 +267,30 @@ public class PropertyMessageResources extends MessageResources {
         }
     }
 
+    /**
+     * Set whether the messages of each Locale are merged into a single
+     * table the first time the Locale is requested.  When merging, messages
+     * are stored in compact tables rather than in <code>messages</code>, so
+     * this must be set before any message is looked up.
+     *
+     * @param merged <code>true</code> to merge the messages of each Locale
+     * @since Struts 1.4
+     */
+    public void setMerged(boolean merged) {
+        this.merged = merged;
+    }
+
+    /**
+     * Return whether the messages of each Locale are merged into a single
+     * table.
+     *
+     * @return <code>true</code> if the messages of each Locale are merged
+     * @since Struts 1.4
+     */
+    public boolean isMerged() {
+        return merged;
+    }
+
     /**
      * Returns a text message for the specified key, for the specified or default
      * Locale. A null string result will be returned by this method if no relevant
@@ -229,6 +309,18 @@ public class PropertyMessageResources extends MessageResources {
             log.debug("getMessage(" + locale + "," + key + ")");
         }
 
+        if (merged) {
+            // Like a missing key, a null key has no message
+            String message =
+                (key == null) ? null : getMergedMessages(locale).get(key);
+
+            if ((message != null) || returnNull) {
+                return message;
+            }
+
+            return ("???" + messageKey(locale, key) + "???");
+        }
+
         // Initialize variables we will require
         String localeKey = localeKey(locale);
         String originalKey = messageKey(localeKey, key);
@@ -306,23 +398,70 @@ public class PropertyMessageResources extends MessageResources {
 
         locales.put(localeKey, localeKey);
 
-        // Set up to load the property resource for this locale key, if we can
-        String name = config.replace('.', '/');
+        Properties props;
 
-        if (localeKey.length() > 0) {
-            name += ("_" + localeKey);
+        try {
+            props = loadProperties(localeKey);
+        } catch (IOException e) {
+            log.error("loadLocale()", e);
+
+            return;
         }
 
-        name += ".properties";
+        // Copy the corresponding values into our cache
+        if (props.size() < 1) {
+            return;
+        }
 
-        InputStream is = null;
-        Properties props = new Properties();
+        if (merged) {
+            localeTables.put(localeKey, compact(props, localeTables));
 
-        // Load the specified property resource
-        if (log.isTraceEnabled()) {
-            log.trace("  Loading resource '" + name + "'");
+            return;
+        }
+
+        synchronized (messages) {
+            Iterator names = props.keySet().iterator();
+
+            while (names.hasNext()) {
+                String key = (String) names.next();
+
+                if (log.isTraceEnabled()) {
+                    log.trace("  Saving message key '"
+                        + messageKey(localeKey, key));
+                }
+
+                messages.put(messageKey(localeKey, key), props.getProperty(key));
+            }
+        }
+    }
+
+    /**
+     * Return the name of the property resource holding the messages of the
+     * specified Locale key.
+     *
+     * @param localeKey Locale key for the messages
+     * @return The resource name, relative to the class loader
+     * @since Struts 1.4
+     */
+    protected String getResourceName(String localeKey) {
+        String name = config.replace('.', '/');
+
+        if (localeKey.length() > 0) {
+            name += ("_" + localeKey);
         }
 
+        return name + ".properties";
+    }
+
+    /**
+     * Return the class loader that property resources are loaded from: the
+     * context class loader of the current thread, or the class loader that
+     * loaded this class if there is none.
+     *
+     * @return The class loader
+     * @since Struts 1.4
+     */
+    protected ClassLoader getResourceClassLoader() {
         ClassLoader classLoader =
             Thread.currentThread().getContextClassLoader();
 
@@ -330,18 +469,38 @@ public class PropertyMessageResources extends MessageResources {
             classLoader = this.getClass().getClassLoader();
         }
 
-        is = classLoader.getResourceAsStream(name);
+        return classLoader;
+    }
+
+    /**
+     * Read the property resource of the specified Locale key, without adding
+     * its messages to our cache.
+     *
+     * @param localeKey Locale key for the messages to be read
+     * @return The messages, empty if there is no such resource
+     * @throws IOException if the resource cannot be read
+     * @since Struts 1.4
+     */
+    protected Properties loadProperties(String localeKey)
+        throws IOException {
+        String name = getResourceName(localeKey);
+        Properties props = new Properties();
+
+        // Load the specified property resource
+        if (log.isTraceEnabled()) {
+            log.trace("  Loading resource '" + name + "'");
+        }
+
+        InputStream is = getResourceClassLoader().getResourceAsStream(name);
 
         if (is != null) {
             try {
                 props.load(is);
-            } catch (IOException e) {
-                log.error("loadLocale()", e);
             } finally {
                 try {
                     is.close();
                 } catch (IOException e) {
-                    log.error("loadLocale()", e);
+                    log.error("loadProperties()", e);
                 }
             }
             if (log.isTraceEnabled()) {
@@ -353,30 +512,233 @@ public class PropertyMessageResources extends MessageResources {
             }
         }
 
+        return props;
+    }
 
-        // Copy the corresponding values into our cache
-        if (props.size() < 1) {
-            return;
-        }
+    /**
+     * Replace all of our loaded messages at once.  Readers see either the
+     * previous messages or the new ones, never a mixture, and messages
+     * cached under other Locale keys, merged or parsed from the previous
+     * messages are discarded.  The new messages are prepared before any lock
+     * is taken.
+     *
+     * @param loaded The <code>Properties</code> read from the resource of
+     *               each locale key, keyed by locale key
+     * @since Struts 1.4
+     */
+    protected void replaceMessages(Map loaded) {
+        HashMap newLocales = new HashMap();
+        HashMap newMessages = new HashMap();
+        HashMap newTables = new HashMap();
 
-        synchronized (messages) {
-            Iterator names = props.keySet().iterator();
+        // Compact the least specific locale keys first, as they hold the
+        // most keys for the others to share
+        String[] localeKeys =
+            (String[]) loaded.keySet().toArray(new String[loaded.size()]);
 
-            while (names.hasNext()) {
-                String key = (String) names.next();
+        Arrays.sort(localeKeys);
 
-                if (log.isTraceEnabled()) {
-                    log.trace("  Saving message key '"
-                        + messageKey(localeKey, key));
+        for (int i = 0; i < localeKeys.length; i++) {
+            String localeKey = localeKeys[i];
+            Properties props = (Properties) loaded.get(localeKey);
+
+            newLocales.put(localeKey, localeKey);
+
+            if (props.isEmpty()) {
+                continue;
+            }
+
+            if (merged) {
+                newTables.put(localeKey, compact(props, newTables));
+            } else {
+                Iterator names = props.keySet().iterator();
+
+                while (names.hasNext()) {
+                    String key = (String) names.next();
+
+                    newMessages.put(messageKey(localeKey, key),
+                        props.getProperty(key));
                 }
+            }
+        }
 
-                messages.put(messageKey(localeKey, key), props.getProperty(key));
+        synchronized (this) {
+            synchronized (messages) {
+                messages.clear();
+                messages.putAll(newMessages);
             }
+
+            locales.clear();
+            locales.putAll(newLocales);
+            localeTables = newTables;
+            mergedTables = new HashMap();
+
+            // Only discard derived messages once the new ones are in place
+            mergedMessages = null;
         }
+
+        clearTemplates();
     }
 
     // -------------------------------------------------------- Private Methods
 
+    /**
+     * Return the merged messages of the specified Locale, merging them the
+     * first time the Locale is requested.
+     *
+     * @param locale The requested message Locale, or <code>null</code>
+     * @return The messages, keyed by message key
+     */
+    private MessageTable getMergedMessages(Locale locale) {
+        ConcurrentTable tables = mergedMessages;
+
+        if (tables == null) {
+            synchronized (this) {
+                tables = mergedMessages;
+
+                if (tables == null) {
+                    tables = new ConcurrentTable();
+                    mergedMessages = tables;
+                }
+            }
+        }
+
+        Object tableKey = (locale == null) ? NULL_LOCALE : locale;
+        MessageTable table = (MessageTable) tables.get(tableKey);
+
+        if (table == null) {
+            table =
+                (MessageTable) tables.putIfAbsent(tableKey,
+                    mergeMessages(locale));
+        }
+
+        return table;
+    }
+
+    /**
+     * Merge the messages found for the specified Locale, in the sequence of
+     * the current mode, into a single table.
+     *
+     * @param locale The requested message Locale, or <code>null</code>
+     * @return The messages, keyed by message key
+     */
+    private MessageTable mergeMessages(Locale locale) {
+        // The locale keys to search, most specific first
+        List localeKeys = new ArrayList();
+
+        addLocaleKeys(localeKeys, localeKey(locale));
+
+        if (mode == MODE_RESOURCE_BUNDLE) {
+            if (!defaultLocale.equals(locale)) {
+                addLocaleKeys(localeKeys, localeKey(defaultLocale));
+            }
+        } else if (mode != MODE_JSTL) {
+            if (!defaultLocale.equals(locale)) {
+                localeKeys.add(localeKey(defaultLocale));
+            }
+        }
+
+        localeKeys.add("");
+
+        while (true) {
+            // Load the least specific locale keys first, as they hold the
+            // most keys for the others to share
+            for (int i = localeKeys.size() - 1; i >= 0; i--) {
+                loadLocale((String) localeKeys.get(i));
+            }
+
+            synchronized (this) {
+                // Load again if the messages were replaced in the meantime
+                if (locales.keySet().containsAll(localeKeys)) {
+                    return mergeTables(localeKeys);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge the loaded messages of the specified locale keys, or return the
+     * table already merged from the same messages.  The caller must hold
+     * this object's lock.
+     *
+     * @param localeKeys The locale keys, most specific first
+     * @return The messages, keyed by message key
+     */
+    private MessageTable mergeTables(List localeKeys) {
+        // The locale keys that have messages, most specific first
+        List sources = new ArrayList();
+
+        for (int i = 0; i < localeKeys.size(); i++) {
+            Object localeKey = localeKeys.get(i);
+
+            if (localeTables.containsKey(localeKey)
+                && !sources.contains(localeKey)) {
+                sources.add(localeKey);
+            }
+        }
+
+        MessageTable table = (MessageTable) mergedTables.get(sources);
+
+        if (table == null) {
+            Map messages = new HashMap();
+
+            // Apply the least specific messages first
+            for (int i = sources.size() - 1; i >= 0; i--) {
+                MessageTable source =
+                    (MessageTable) localeTables.get(sources.get(i));
+
+                source.putAllTo(messages);
+            }
+
+            table = new MessageTable(messages, new MessageTable[0]);
+            mergedTables.put(sources, table);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Merged " + table.size() + " messages from "
+                    + sources);
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Store the specified messages in a compact table that shares its
+     * strings with the specified tables.
+     *
+     * @param props  The messages
+     * @param tables The tables to share strings with, keyed by locale key
+     * @return The table
+     */
+    private MessageTable compact(Properties props, Map tables) {
+        MessageTable[] shared =
+            (MessageTable[]) tables.values().toArray(new MessageTable[tables
+                .size()]);
+
+        return new MessageTable(props, shared);
+    }
+
+    /**
+     * Add the specified locale key and its more general locale keys, as
+     * searched by <code>findMessage(Locale, String, String)</code>.
+     *
+     * @param localeKeys The list to add to
+     * @param localeKey  The most specific locale key
+     */
+    private void addLocaleKeys(List localeKeys, String localeKey) {
+        while (true) {
+            localeKeys.add(localeKey);
+
+            int underscore = localeKey.lastIndexOf("_");
+
+            if (underscore < 0) {
+                break;
+            }
+
+            localeKey = localeKey.substring(0, underscore);
+        }
+    }
+
     /**
      * Returns a text message for the specified key, for the specified Locale.
      * <p>
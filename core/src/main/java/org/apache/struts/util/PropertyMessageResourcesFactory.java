@@ -40,11 +40,28 @@ public class PropertyMessageResourcesFactory extends MessageResourcesFactory {
     public MessageResources createResources(String config) {
         PropertyMessageResources messageResources =
                new PropertyMessageResources(this, config, this.returnNull);
+        configure(messageResources);
+        return messageResources;
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Apply the <code>mode</code> and <code>merged</code> properties of our
+     * configuration to a newly instantiated
+     * <code>PropertyMessageResources</code>.
+     *
+     * @param messageResources The resources to configure
+     * @since Struts 1.4
+     */
+    protected void configure(PropertyMessageResources messageResources) {
         String mode = null;
+        String merged = null;
         if (getConfig() != null) {
             mode = getConfig().getProperty("mode");
+            merged = getConfig().getProperty("merged");
         }
         messageResources.setMode(mode);
-        return messageResources;
+        messageResources.setMerged("true".equalsIgnoreCase(merged));
     }
 }
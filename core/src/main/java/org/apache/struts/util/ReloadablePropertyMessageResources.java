@@ -0,0 +1,420 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * <p>A <code>PropertyMessageResources</code> that reloads its property
+ * resources when they change, so that messages can be edited without
+ * redeploying the application.</p>
+ *
+ * <p>The resources of every Locale key loaded so far are checked for a new
+ * modification time, either by calling {@link #reloadIfModified()} or
+ * periodically on a background thread started by {@link #start(long)}.
+ * When any of them has changed, all of them are read again into new tables
+ * without holding any lock that requests take, and the new tables then
+ * replace the old ones at once.  Requests therefore never wait for a reload
+ * to read its resources, and never see some messages of a reload and not
+ * others.  If a resource cannot be read, or changes again while it is being
+ * read, the previous messages are kept and the reload is tried again at the
+ * next check.  {@link #reload()} forces a reload.</p>
+ *
+ * <p>Resources are checked through the class loader that was the context
+ * class loader when this instance was created, since the background thread
+ * has no useful context class loader of its own.  Modification times are
+ * available for resources in directories and in archives, but an archive
+ * that is replaced while the application runs is usually not seen by its
+ * class loader, so this is mainly useful for resources under
+ * <code>WEB-INF/classes</code>.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class ReloadablePropertyMessageResources
+    extends PropertyMessageResources {
+    private static final long serialVersionUID = 1L;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The class loader that resources are loaded from.</p>
+     */
+    private transient ClassLoader classLoader;
+
+    /**
+     * <p>The modification time of the resource of each loaded Locale key,
+     * taken before it was read, or 0 if there was no such resource.  Guarded
+     * by this object's lock.</p>
+     */
+    private HashMap modified = new HashMap();
+
+    /**
+     * <p>The lock that allows one check or reload at a time.</p>
+     */
+    private final Object reloadLock = new Object();
+
+    /**
+     * <p>The time taken by each reload.</p>
+     */
+    private final LatencyStatistics reloadStatistics = new LatencyStatistics();
+
+    /**
+     * <p>The background thread checking for changes, or <code>null</code>.
+     * </p>
+     */
+    private transient Timer timer = null;
+
+    /**
+     * <p>The number of checks for changes.</p>
+     */
+    private volatile long checkCount = 0;
+
+    /**
+     * <p>The number of reloads that failed.</p>
+     */
+    private volatile long failureCount = 0;
+
+    /**
+     * <p>The time of the last successful reload, or 0.</p>
+     */
+    private volatile long lastReload = 0;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a new ReloadablePropertyMessageResources according to the
+     * specified parameters.</p>
+     *
+     * @param factory The MessageResourcesFactory that created us
+     * @param config  The configuration parameter for this MessageResources
+     */
+    public ReloadablePropertyMessageResources(
+        MessageResourcesFactory factory, String config) {
+        super(factory, config);
+        this.classLoader = super.getResourceClassLoader();
+    }
+
+    /**
+     * <p>Construct a new ReloadablePropertyMessageResources according to the
+     * specified parameters.</p>
+     *
+     * @param factory    The MessageResourcesFactory that created us
+     * @param config     The configuration parameter for this
+     *                   MessageResources
+     * @param returnNull The returnNull property we should initialize with
+     */
+    public ReloadablePropertyMessageResources(
+        MessageResourcesFactory factory, String config, boolean returnNull) {
+        super(factory, config, returnNull);
+        this.classLoader = super.getResourceClassLoader();
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Check the resources for changes every <code>interval</code>
+     * milliseconds on a background thread, until {@link #stop()} is called.
+     * </p>
+     *
+     * @param interval The time between checks, in milliseconds
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public synchronized void start(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid reload interval "
+                + interval);
+        }
+
+        stop();
+
+        timer = new Timer(true);
+        timer.schedule(new TimerTask() {
+                public void run() {
+                    try {
+                        reloadIfModified();
+                    } catch (RuntimeException e) {
+                        log.error("reloadIfModified()", e);
+                    }
+                }
+            }, interval, interval);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Checking '" + config + "' for changes every "
+                + interval + " ms");
+        }
+    }
+
+    /**
+     * <p>Stop checking the resources for changes on a background thread.
+     * </p>
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * <p>Return whether the resources are being checked for changes on a
+     * background thread.</p>
+     *
+     * @return <code>true</code> between {@link #start(long)} and
+     *         {@link #stop()}
+     */
+    public synchronized boolean isStarted() {
+        return timer != null;
+    }
+
+    /**
+     * <p>Reload the resources if any of them has changed since it was
+     * loaded.</p>
+     *
+     * @return <code>true</code> if the resources were reloaded
+     */
+    public boolean reloadIfModified() {
+        synchronized (reloadLock) {
+            checkCount++;
+
+            Map current;
+
+            synchronized (this) {
+                current = new HashMap(modified);
+            }
+
+            Iterator entries = current.entrySet().iterator();
+
+            while (entries.hasNext()) {
+                Map.Entry entry = (Map.Entry) entries.next();
+                long time = getLastModified((String) entry.getKey());
+
+                if (time != ((Long) entry.getValue()).longValue()) {
+                    if (log.isInfoEnabled()) {
+                        log.info("Resource '"
+                            + getResourceName((String) entry.getKey())
+                            + "' has changed");
+                    }
+
+                    return reload();
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * <p>Read the resources of every Locale key loaded so far again, and
+     * replace the current messages with them.  The current messages are
+     * kept if any resource cannot be read.</p>
+     *
+     * @return <code>true</code> if the messages were replaced
+     */
+    public boolean reload() {
+        synchronized (reloadLock) {
+            long start = System.currentTimeMillis();
+            String[] localeKeys;
+
+            synchronized (this) {
+                localeKeys =
+                    (String[]) locales.keySet().toArray(new String[locales
+                        .size()]);
+            }
+
+            HashMap loaded = new HashMap();
+            HashMap newModified = new HashMap();
+            int count = 0;
+
+            try {
+                for (int i = 0; i < localeKeys.length; i++) {
+                    String localeKey = localeKeys[i];
+                    long time = getLastModified(localeKey);
+                    Properties props = loadProperties(localeKey);
+
+                    if (getLastModified(localeKey) != time) {
+                        throw new IOException("Resource '"
+                            + getResourceName(localeKey)
+                            + "' changed while it was read");
+                    }
+
+                    loaded.put(localeKey, props);
+                    count += props.size();
+                    newModified.put(localeKey, new Long(time));
+                }
+            } catch (IOException e) {
+                failureCount++;
+                log.error("Keeping the current messages of '" + config + "'",
+                    e);
+
+                return false;
+            }
+
+            replaceMessages(loaded);
+
+            synchronized (this) {
+                // Keep the times of locale keys loaded since the replacement
+                modified.keySet().retainAll(locales.keySet());
+                modified.putAll(newModified);
+            }
+
+            long now = System.currentTimeMillis();
+
+            lastReload = now;
+            reloadStatistics.record(now - start);
+
+            if (log.isInfoEnabled()) {
+                log.info("Reloaded " + count + " messages of '" + config
+                    + "' for " + loaded.size() + " locale keys in "
+                    + (now - start) + " ms");
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * <p>Return the number of checks for changes.</p>
+     *
+     * @return The number of checks
+     */
+    public long getCheckCount() {
+        return checkCount;
+    }
+
+    /**
+     * <p>Return the number of successful reloads.</p>
+     *
+     * @return The number of reloads
+     */
+    public long getReloadCount() {
+        return reloadStatistics.getCount();
+    }
+
+    /**
+     * <p>Return the number of reloads that kept the current messages because
+     * a resource could not be read.</p>
+     *
+     * @return The number of failed reloads
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * <p>Return the time of the last successful reload.</p>
+     *
+     * @return The time, in milliseconds since the epoch, or 0 if the
+     *         resources were never reloaded
+     */
+    public long getLastReload() {
+        return lastReload;
+    }
+
+    /**
+     * <p>Return the time taken by successful reloads.</p>
+     *
+     * @return The statistics, updated by later reloads
+     */
+    public LatencyStatistics getReloadStatistics() {
+        return reloadStatistics;
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * <p>Load the messages associated with the specified Locale key, and
+     * remember the modification time of their resource.</p>
+     *
+     * @param localeKey Locale key for the messages to be retrieved
+     */
+    protected synchronized void loadLocale(String localeKey) {
+        if (locales.get(localeKey) == null) {
+            modified.put(localeKey, new Long(getLastModified(localeKey)));
+        }
+
+        super.loadLocale(localeKey);
+    }
+
+    /**
+     * <p>Return the class loader that was the context class loader when this
+     * instance was created.</p>
+     *
+     * @return The class loader
+     */
+    protected ClassLoader getResourceClassLoader() {
+        if (classLoader == null) {
+            classLoader = super.getResourceClassLoader();
+        }
+
+        return classLoader;
+    }
+
+    /**
+     * <p>Return the modification time of the resource of the specified
+     * Locale key.</p>
+     *
+     * @param localeKey Locale key of the resource
+     * @return The time, or 0 if there is no such resource or its time is
+     *         unknown
+     */
+    protected long getLastModified(String localeKey) {
+        URL url = getResourceClassLoader().getResource(getResourceName(
+                    localeKey));
+
+        if (url == null) {
+            return 0;
+        }
+
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return new File(URLDecoder.decode(url.getFile(), "UTF-8"))
+                .lastModified();
+            }
+
+            URLConnection connection = url.openConnection();
+
+            connection.setUseCaches(false);
+
+            long time = connection.getLastModified();
+
+            connection.getInputStream().close();
+
+            return time;
+        } catch (IOException e) {
+            log.warn("Cannot check resource '" + url + "'", e);
+
+            return 0;
+        }
+    }
+}
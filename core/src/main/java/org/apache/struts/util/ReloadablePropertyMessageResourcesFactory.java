@@ -0,0 +1,89 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <p>Factory for <code>ReloadablePropertyMessageResources</code> instances.
+ * Besides the properties understood by
+ * <code>PropertyMessageResourcesFactory</code>, the
+ * <code>reloadInterval</code> property sets the number of seconds between
+ * checks of the resources for changes; with no interval, or one that is not
+ * positive, the resources are only reloaded when asked to:</p>
+ * <pre>
+ *      &lt;message-resources parameter="mypackage.MyMessageResources"
+ *          factory="org.apache.struts.util.ReloadablePropertyMessageResourcesFactory"&gt;
+ *          &lt;set-property key="reloadInterval" value="5"/&gt;
+ *      &lt;/message-resources&gt;
+ * </pre>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class ReloadablePropertyMessageResourcesFactory
+    extends PropertyMessageResourcesFactory {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * <p>The <code>Log</code> instance for this class.</p>
+     */
+    private static final Log LOG =
+        LogFactory.getLog(ReloadablePropertyMessageResourcesFactory.class);
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Create and return a newly instantiated
+     * <code>ReloadablePropertyMessageResources</code>, checking its
+     * resources for changes if a <code>reloadInterval</code> is
+     * configured.</p>
+     *
+     * @param config Configuration parameter(s) for the requested bundle
+     */
+    public MessageResources createResources(String config) {
+        ReloadablePropertyMessageResources messageResources =
+            new ReloadablePropertyMessageResources(this, config,
+                this.returnNull);
+
+        configure(messageResources);
+
+        String interval =
+            (getConfig() == null) ? null
+                                  : getConfig().getProperty("reloadInterval");
+
+        if (interval != null) {
+            try {
+                long seconds = Long.parseLong(interval.trim());
+
+                if (seconds > 0) {
+                    messageResources.start(seconds * 1000);
+                }
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid reloadInterval '" + interval + "' for '"
+                    + config + "'; reloading only on request");
+            }
+        }
+
+        return messageResources;
+    }
+}
@@ -20,7 +20,6 @@
  */
 package org.apache.struts.util;
 
-import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -350,6 +349,10 @@ public class RequestUtils {
      * <code>HttpServletRequest</code> object will be wrapped in a
      * <code>MultipartRequestWrapper</code object.</p>
      *
+     * <p>Properties are set through the {@link PopulatePlan} of the bean's
+     * class, which remembers how to convert and set each property after the
+     * first request.</p>
+     *
      * @param bean    The JavaBean whose properties are to be set
      * @param prefix  The prefix (if any) to be prepend to bean property names
      *                when looking for matching parameters
@@ -363,9 +366,6 @@ public class RequestUtils {
     public static void populate(Object bean, String prefix, String suffix,
         HttpServletRequest request)
         throws ServletException {
-        // Build a list of relevant request parameters from this request
-        HashMap properties = new HashMap();
-
         // Iterator of parameter names
         Enumeration names = null;
 
@@ -432,46 +432,22 @@ public class RequestUtils {
             names = request.getParameterNames();
         }
 
-        while (names.hasMoreElements()) {
-            String name = (String) names.nextElement();
-            String stripped = name;
-
-            if (prefix != null) {
-                if (!stripped.startsWith(prefix)) {
-                    continue;
-                }
+        // Set the relevant request parameters as properties of our bean
+        PopulatePlan plan = PopulatePlan.getInstance(bean);
 
-                stripped = stripped.substring(prefix.length());
-            }
+        try {
+            while (names.hasMoreElements()) {
+                String name = (String) names.nextElement();
 
-            if (suffix != null) {
-                if (!stripped.endsWith(suffix)) {
+                if (name == null) {
                     continue;
                 }
 
-                stripped =
-                    stripped.substring(0, stripped.length() - suffix.length());
-            }
-
-            Object parameterValue = null;
-
-            if (isMultipart) {
-                parameterValue = multipartParameters.get(name);
-                parameterValue = rationalizeMultipleFileProperty(bean, name, parameterValue);
-            } else {
-                parameterValue = request.getParameterValues(name);
+                populateProperty(bean, plan, name, prefix, suffix,
+                    multipartParameters, request);
             }
-
-            // Populate parameters, except "standard" struts attributes
-            // such as 'org.apache.struts.action.CANCEL'
-            if (!(stripped.startsWith("org.apache.struts."))) {
-                properties.put(stripped, parameterValue);
-            }
-        }
-
-        // Set the corresponding properties of our bean
-        try {
-            BeanUtils.populate(bean, properties);
+        } catch (ServletException e) {
+            throw e;
         } catch (Exception e) {
             throw new ServletException("BeanUtils.populate", e);
         } finally {
@@ -485,6 +461,63 @@ public class RequestUtils {
         }
     }
 
+    /**
+     * <p>Set the property of a bean that the specified request parameter
+     * stands for, if any.</p>
+     *
+     * @param bean                The bean
+     * @param plan                The populate plan of the bean
+     * @param name                The request parameter name
+     * @param prefix              The prefix (if any) to be prepend to bean
+     *                            property names when looking for matching
+     *                            parameters
+     * @param suffix              The suffix (if any) to be appended to bean
+     *                            property names when looking for matching
+     *                            parameters
+     * @param multipartParameters The parameters of a multipart request, or
+     *                            <code>null</code>
+     * @param request             The HTTP request being processed
+     * @throws Exception if the property cannot be set
+     */
+    private static void populateProperty(Object bean, PopulatePlan plan,
+        String name, String prefix, String suffix, Map multipartParameters,
+        HttpServletRequest request)
+        throws Exception {
+        String stripped = name;
+
+        if (prefix != null) {
+            if (!stripped.startsWith(prefix)) {
+                return;
+            }
+
+            stripped = stripped.substring(prefix.length());
+        }
+
+        if (suffix != null) {
+            if (!stripped.endsWith(suffix)) {
+                return;
+            }
+
+            stripped =
+                stripped.substring(0, stripped.length() - suffix.length());
+        }
+
+        Object parameterValue = null;
+
+        if (multipartParameters != null) {
+            parameterValue = multipartParameters.get(name);
+            parameterValue = rationalizeMultipleFileProperty(bean, name, parameterValue);
+        } else {
+            parameterValue = request.getParameterValues(name);
+        }
+
+        // Populate parameters, except "standard" struts attributes
+        // such as 'org.apache.struts.action.CANCEL'
+        if (!(stripped.startsWith("org.apache.struts."))) {
+            plan.setProperty(bean, stripped, parameterValue);
+        }
+    }
+
     /**
      * <p>Populates the parameters of the specified ActionRedirect from 
      * the specified HTTP request.</p>
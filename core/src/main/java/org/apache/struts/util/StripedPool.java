@@ -0,0 +1,135 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+/**
+ * <p>A small pool of reusable objects, owned by the component that uses
+ * them.  The pool holds at most one idle object in each of a few stripes,
+ * chosen by the calling thread, each with its own lock, so that threads
+ * taking and releasing objects at the same time rarely wait for each
+ * other.</p>
+ *
+ * <p>Unlike a <code>ThreadLocal</code>, the pool does not leave objects on
+ * the threads that used them: {@link #clear} discards every idle object,
+ * so that nothing is kept once the owner is destroyed.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class StripedPool {
+    /**
+     * <p>The number of stripes: twice the number of processors rounded up
+     * to a power of two, at most 32.</p>
+     */
+    private static final int STRIPES;
+
+    static {
+        int stripes = 2;
+
+        while ((stripes < 32)
+            && (stripes < (2 * Runtime.getRuntime().availableProcessors()))) {
+            stripes <<= 1;
+        }
+
+        STRIPES = stripes;
+    }
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The idle object of each stripe, or <code>null</code>.  Each element
+     * is guarded by the lock of the same index.</p>
+     */
+    private final Object[] idle = new Object[STRIPES];
+
+    /**
+     * <p>The lock of each stripe.</p>
+     */
+    private final Object[] locks = new Object[STRIPES];
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct an empty pool.</p>
+     */
+    public StripedPool() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Take the idle object of the stripe of the current thread.</p>
+     *
+     * @return The object, or <code>null</code> if there is none
+     */
+    public Object take() {
+        int stripe = stripe();
+
+        synchronized (locks[stripe]) {
+            Object item = idle[stripe];
+
+            idle[stripe] = null;
+
+            return item;
+        }
+    }
+
+    /**
+     * <p>Keep an object that is no longer used in the stripe of the current
+     * thread, replacing any idle object already kept there.</p>
+     *
+     * @param item The object
+     */
+    public void release(Object item) {
+        int stripe = stripe();
+
+        synchronized (locks[stripe]) {
+            idle[stripe] = item;
+        }
+    }
+
+    /**
+     * <p>Discard every idle object.</p>
+     */
+    public void clear() {
+        for (int i = 0; i < locks.length; i++) {
+            synchronized (locks[i]) {
+                idle[i] = null;
+            }
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the stripe of the current thread.</p>
+     *
+     * @return The index of the stripe
+     */
+    private int stripe() {
+        int h = System.identityHashCode(Thread.currentThread());
+
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -22,18 +22,41 @@ package org.apache.struts.util;
 
 import org.apache.struts.Globals;
 
+import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
-import java.security.MessageDigest;
+import java.io.Serializable;
+
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 
 /**
  * TokenProcessor is responsible for handling all token related functionality.
- * The methods in this class are synchronized to protect token processing from
- * multiple threads.  Servlet containers are allowed to return a different
- * HttpSession object for two threads accessing the same session so it is not
- * possible to synchronize on the session.
+ * Tokens are random values drawn from a <code>SecureRandom</code> generator
+ * of the calling thread, so generating them takes no lock shared between
+ * threads.  Servlet containers are allowed to return a different HttpSession
+ * object for two threads accessing the same session, so reading, checking
+ * and updating the tokens of a session is synchronized on one of a fixed set
+ * of locks chosen by the session id.  Checking and resetting a token is
+ * therefore atomic: of two requests submitting the same token at once, only
+ * one finds it valid.
+ *
+ * <p>By default a session has one outstanding token, stored under
+ * <code>Globals.TRANSACTION_TOKEN_KEY</code>, and saving a new token
+ * replaces it.  With <code>setMaxTokens</code> greater than one, the most
+ * recently saved tokens of a session all remain valid, so that forms opened
+ * in several windows can each be submitted once; a token is then reset
+ * separately from the others when it is checked.  The most recent token is
+ * always stored under <code>Globals.TRANSACTION_TOKEN_KEY</code> as well, to
+ * be rendered by the tags.</p>
+ *
+ * <p>The number of tokens is set for each web application by the
+ * <code>maxTokens</code> init-param of the controller servlet, which stores
+ * it in the servlet context under <code>Globals.MAX_TOKENS_KEY</code>.  It
+ * overrides the number set on the processor itself, so that the shared
+ * instance is never changed by one application for the others that load
+ * this class.</p>
  *
  * @since Struts 1.1
  */
@@ -44,9 +67,72 @@ public class TokenProcessor {
     private static TokenProcessor instance = new TokenProcessor();
 
     /**
-     * The timestamp used most recently to generate a token value.
+     * The number of random bytes in a token.
+     */
+    private static final int TOKEN_BYTES = 16;
+
+    /**
+     * The hexadecimal digits of each byte value, two per byte.
+     */
+    private static final char[] HEX = new char[512];
+
+    static {
+        String digits = "0123456789abcdef";
+
+        for (int i = 0; i < 256; i++) {
+            HEX[i * 2] = digits.charAt(i >> 4);
+            HEX[(i * 2) + 1] = digits.charAt(i & 0x0f);
+        }
+    }
+
+    /**
+     * The number of session locks, a power of two.
      */
-    private long previous;
+    private static final int LOCKS = 64;
+
+    /**
+     * The session locks, chosen by the hash code of the session id.
+     */
+    private static final Object[] SESSION_LOCKS = new Object[LOCKS];
+
+    static {
+        for (int i = 0; i < LOCKS; i++) {
+            SESSION_LOCKS[i] = new Object();
+        }
+    }
+
+    /**
+     * The generator that seeds the generator of each thread.
+     */
+    private static final SecureRandom SEEDER = new SecureRandom();
+
+    /**
+     * The token generator of each thread.
+     */
+    private static final ThreadLocal GENERATOR =
+        new ThreadLocal() {
+            protected Object initialValue() {
+                byte[] seed = new byte[20];
+                SecureRandom generator;
+
+                SEEDER.nextBytes(seed);
+
+                try {
+                    generator = SecureRandom.getInstance("SHA1PRNG");
+                } catch (NoSuchAlgorithmException e) {
+                    generator = new SecureRandom();
+                }
+
+                generator.setSeed(seed);
+
+                return generator;
+            }
+        };
+
+    /**
+     * The number of tokens that may be outstanding in a session at once.
+     */
+    private volatile int maxTokens = 1;
 
     /**
      * Protected constructor for TokenProcessor.  Use TokenProcessor.getInstance()
@@ -63,6 +149,36 @@ public class TokenProcessor {
         return instance;
     }
 
+    /**
+     * Return the number of tokens that may be outstanding in a session at
+     * once, when the web application of the session does not set it.
+     *
+     * @return The number of tokens
+     * @since Struts 1.4
+     */
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Set the number of tokens that may be outstanding in a session at once,
+     * when the web application of the session does not set it.  When a
+     * session already holds this many tokens, saving another one discards
+     * the oldest.
+     *
+     * @param maxTokens The number of tokens, at least one
+     * @throws IllegalArgumentException if the number is less than one
+     * @since Struts 1.4
+     */
+    public void setMaxTokens(int maxTokens) {
+        if (maxTokens < 1) {
+            throw new IllegalArgumentException("Invalid maxTokens "
+                + maxTokens);
+        }
+
+        this.maxTokens = maxTokens;
+    }
+
     /**
      * <p>Return <code>true</code> if there is a transaction token stored in
      * the user's current session, and the value submitted as a request
@@ -84,7 +200,7 @@ public class TokenProcessor {
      *
      * @param request The servlet request we are processing
      */
-    public synchronized boolean isTokenValid(HttpServletRequest request) {
+    public boolean isTokenValid(HttpServletRequest request) {
         return this.isTokenValid(request, false);
     }
 
@@ -105,11 +221,13 @@ public class TokenProcessor {
      *
      * </ul>
      *
+     * <p>When the session holds several outstanding tokens, only the
+     * submitted token is reset.</p>
+     *
      * @param request The servlet request we are processing
      * @param reset   Should we reset the token after checking it?
      */
-    public synchronized boolean isTokenValid(HttpServletRequest request,
-        boolean reset) {
+    public boolean isTokenValid(HttpServletRequest request, boolean reset) {
         // Retrieve the current session for this request
         HttpSession session = request.getSession(false);
 
@@ -117,27 +235,50 @@ public class TokenProcessor {
             return false;
         }
 
-        // Retrieve the transaction token from this session, and
-        // reset it if requested
-        String saved =
-            (String) session.getAttribute(Globals.TRANSACTION_TOKEN_KEY);
+        // Retrieve the transaction token included in this request
+        String token = request.getParameter(Globals.TOKEN_KEY);
 
-        if (saved == null) {
-            return false;
-        }
+        synchronized (getLock(session)) {
+            TokenRing ring =
+                (TokenRing) session.getAttribute(Globals.TRANSACTION_TOKENS_KEY);
 
-        if (reset) {
-            this.resetToken(request);
-        }
+            if (ring != null) {
+                if (!ring.check(token, reset)) {
+                    return false;
+                }
 
-        // Retrieve the transaction token included in this request
-        String token = request.getParameter(Globals.TOKEN_KEY);
+                if (reset) {
+                    // Store it again so that replicated sessions see the change
+                    session.setAttribute(Globals.TRANSACTION_TOKENS_KEY, ring);
 
-        if (token == null) {
-            return false;
-        }
+                    if (token.equals(session.getAttribute(
+                                    Globals.TRANSACTION_TOKEN_KEY))) {
+                        session.removeAttribute(Globals.TRANSACTION_TOKEN_KEY);
+                    }
+                }
+
+                return true;
+            }
+
+            // Retrieve the transaction token from this session, and
+            // reset it if requested
+            String saved =
+                (String) session.getAttribute(Globals.TRANSACTION_TOKEN_KEY);
+
+            if (saved == null) {
+                return false;
+            }
+
+            if (reset) {
+                this.resetToken(request);
+            }
 
-        return saved.equals(token);
+            if (token == null) {
+                return false;
+            }
+
+            return saved.equals(token);
+        }
     }
 
     /**
@@ -147,14 +288,17 @@ public class TokenProcessor {
      *
      * @param request The servlet request we are processing
      */
-    public synchronized void resetToken(HttpServletRequest request) {
+    public void resetToken(HttpServletRequest request) {
         HttpSession session = request.getSession(false);
 
         if (session == null) {
             return;
         }
 
-        session.removeAttribute(Globals.TRANSACTION_TOKEN_KEY);
+        synchronized (getLock(session)) {
+            session.removeAttribute(Globals.TRANSACTION_TOKEN_KEY);
+            session.removeAttribute(Globals.TRANSACTION_TOKENS_KEY);
+        }
     }
 
     /**
@@ -163,11 +307,34 @@ public class TokenProcessor {
      *
      * @param request The servlet request we are processing
      */
-    public synchronized void saveToken(HttpServletRequest request) {
+    public void saveToken(HttpServletRequest request) {
         HttpSession session = request.getSession();
         String token = generateToken(request);
 
-        if (token != null) {
+        if (token == null) {
+            return;
+        }
+
+        int max = getMaxTokens(session);
+
+        synchronized (getLock(session)) {
+            if (max > 1) {
+                TokenRing ring =
+                    (TokenRing) session.getAttribute(
+                        Globals.TRANSACTION_TOKENS_KEY);
+
+                if (ring == null) {
+                    ring = new TokenRing();
+                }
+
+                ring.add(token, max);
+
+                // Store it again so that replicated sessions see the change
+                session.setAttribute(Globals.TRANSACTION_TOKENS_KEY, ring);
+            } else {
+                session.removeAttribute(Globals.TRANSACTION_TOKENS_KEY);
+            }
+
             session.setAttribute(Globals.TRANSACTION_TOKEN_KEY, token);
         }
     }
@@ -178,7 +345,7 @@ public class TokenProcessor {
      *
      * @param request The request we are processing
      */
-    public synchronized String generateToken(HttpServletRequest request) {
+    public String generateToken(HttpServletRequest request) {
         HttpSession session = request.getSession();
 
         return generateToken(session.getId());
@@ -186,31 +353,50 @@ public class TokenProcessor {
 
     /**
      * Generate a new transaction token, to be used for enforcing a single
-     * request for a particular transaction.
+     * request for a particular transaction.  Tokens are random, so the
+     * identifier is not needed to make them unique.
      *
      * @param id a unique Identifier for the session or other context in which
      *           this token is to be used.
      */
-    public synchronized String generateToken(String id) {
-        try {
-            long current = System.currentTimeMillis();
+    public String generateToken(String id) {
+        byte[] bytes = new byte[TOKEN_BYTES];
 
-            if (current == previous) {
-                current++;
-            }
+        ((SecureRandom) GENERATOR.get()).nextBytes(bytes);
 
-            previous = current;
+        return toHex(bytes);
+    }
 
-            byte[] now = new Long(current).toString().getBytes();
-            MessageDigest md = MessageDigest.getInstance("MD5");
+    /**
+     * Return the number of tokens that may be outstanding at once in the
+     * specified session: the number stored in its servlet context under
+     * <code>Globals.MAX_TOKENS_KEY</code>, or else our own.
+     *
+     * @param session The session
+     */
+    private int getMaxTokens(HttpSession session) {
+        ServletContext context = session.getServletContext();
 
-            md.update(id.getBytes());
-            md.update(now);
+        if (context != null) {
+            Object max = context.getAttribute(Globals.MAX_TOKENS_KEY);
 
-            return toHex(md.digest());
-        } catch (NoSuchAlgorithmException e) {
-            return null;
+            if (max instanceof Integer) {
+                return ((Integer) max).intValue();
+            }
         }
+
+        return maxTokens;
+    }
+
+    /**
+     * Return the lock guarding the tokens of the specified session.
+     *
+     * @param session The session
+     */
+    private Object getLock(HttpSession session) {
+        int h = session.getId().hashCode();
+
+        return SESSION_LOCKS[(h ^ (h >>> 16)) & (LOCKS - 1)];
     }
 
     /**
@@ -219,13 +405,76 @@ public class TokenProcessor {
      * @param buffer The byte array to be converted
      */
     private String toHex(byte[] buffer) {
-        StringBuffer sb = new StringBuffer(buffer.length * 2);
+        char[] chars = new char[buffer.length * 2];
 
         for (int i = 0; i < buffer.length; i++) {
-            sb.append(Character.forDigit((buffer[i] & 0xf0) >> 4, 16));
-            sb.append(Character.forDigit(buffer[i] & 0x0f, 16));
+            int index = (buffer[i] & 0xff) * 2;
+
+            chars[i * 2] = HEX[index];
+            chars[(i * 2) + 1] = HEX[index + 1];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * The outstanding tokens of a session, oldest first.  Callers hold the
+     * lock of the session; the methods are synchronized as well so that the
+     * tokens are safely published to other threads.
+     */
+    private static final class TokenRing implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The tokens, oldest first.  The array is replaced, never modified.
+         */
+        private String[] tokens = new String[0];
+
+        /**
+         * Add a token, discarding the oldest tokens beyond the specified
+         * number.
+         *
+         * @param token The token
+         * @param max   The number of tokens to keep
+         */
+        synchronized void add(String token, int max) {
+            int kept = Math.min(tokens.length, max - 1);
+            String[] added = new String[kept + 1];
+
+            System.arraycopy(tokens, tokens.length - kept, added, 0, kept);
+            added[kept] = token;
+            tokens = added;
         }
 
-        return sb.toString();
+        /**
+         * Return whether the specified token is outstanding, and optionally
+         * remove it.
+         *
+         * @param token  The token, or <code>null</code>
+         * @param remove Should the token be removed?
+         * @return Whether the token was outstanding
+         */
+        synchronized boolean check(String token, boolean remove) {
+            if (token == null) {
+                return false;
+            }
+
+            for (int i = 0; i < tokens.length; i++) {
+                if (token.equals(tokens[i])) {
+                    if (remove) {
+                        String[] removed = new String[tokens.length - 1];
+
+                        System.arraycopy(tokens, 0, removed, 0, i);
+                        System.arraycopy(tokens, i + 1, removed, i,
+                            removed.length - i);
+                        tokens = removed;
+                    }
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
     }
 }
@@ -298,6 +298,222 @@ public class WildcardHelper {
         }
     }
 
+    /**
+     * Match a pattern against a string and record the wildcard matches as
+     * offsets into that string.  <br> Unlike {@link #match(Map, String,
+     * int[])}, this method allocates nothing: the result buffer is reset and
+     * reused, and strings are only created when the caller asks the result
+     * for the text of a group.  The groups are numbered as the keys of the
+     * map filled by the other method.  The contents of the result are
+     * undefined when this method returns false.
+     *
+     * @param result The reusable buffer that receives the wildcard matches.
+     * @param data   The string to match.
+     * @param expr   The compiled wildcard expression.
+     * @return True if a match
+     * @throws NullPointerException If any parameters are null
+     * @since Struts 1.4
+     */
+    public boolean match(WildcardMatchResult result, String data, int[] expr) {
+        if (result == null) {
+            throw new NullPointerException("No result buffer provided");
+        }
+
+        if (data == null) {
+            throw new NullPointerException("No data provided");
+        }
+
+        if (expr == null) {
+            throw new NullPointerException("No pattern expression provided");
+        }
+
+        int length = data.length();
+
+        // The previous and current position of the expression character
+        // (MATCH_*)
+        int charpos = 0;
+
+        // The position in the expression and input
+        int exprpos = 0;
+        int buffpos = 0;
+        int offset = -1;
+
+        // We want the complete data be in group 0
+        result.reset(data);
+        result.addGroup(0, length);
+
+        // First check for MATCH_BEGIN
+        boolean matchBegin = false;
+
+        if (expr[charpos] == MATCH_BEGIN) {
+            matchBegin = true;
+            exprpos = ++charpos;
+        }
+
+        // Search the fist expression character (except MATCH_BEGIN - already
+        // skipped)
+        while (expr[charpos] >= 0) {
+            charpos++;
+        }
+
+        // The expression charater (MATCH_*)
+        int exprchr = expr[charpos];
+
+        while (true) {
+            // Check if the data in the expression array before the current
+            // expression character matches the data in the input string
+            if (matchBegin) {
+                if (!matchString(expr, exprpos, charpos, data, buffpos)) {
+                    return (false);
+                }
+
+                matchBegin = false;
+            } else {
+                offset = indexOfString(expr, exprpos, charpos, data, buffpos);
+
+                if (offset < 0) {
+                    return (false);
+                }
+            }
+
+            // Advance buffpos
+            buffpos += (charpos - exprpos);
+
+            // Check for END's
+            if (exprchr == MATCH_END) {
+                // Don't care about rest of input string
+                return (true);
+            } else if (exprchr == MATCH_THEEND) {
+                // Check that we reach the string's end
+                return (buffpos == length);
+            }
+
+            // Search the next expression character
+            exprpos = ++charpos;
+
+            while (expr[charpos] >= 0) {
+                charpos++;
+            }
+
+            int prevchr = exprchr;
+
+            exprchr = expr[charpos];
+
+            // We have here prevchr == * or **.
+            offset =
+                (prevchr == MATCH_FILE)
+                ? indexOfString(expr, exprpos, charpos, data, buffpos)
+                : lastIndexOfString(expr, exprpos, charpos, data, buffpos);
+
+            if (offset < 0) {
+                return (false);
+            }
+
+            // Matching file, the wildcard can't span a '/'
+            if (prevchr != MATCH_PATH) {
+                for (int x = buffpos; x < offset; x++) {
+                    if (data.charAt(x) == '/') {
+                        return (false);
+                    }
+                }
+            }
+
+            result.addGroup(buffpos, offset);
+            buffpos = offset;
+        }
+    }
+
+    /**
+     * Get the offset of a part of an int array within a string, as {@link
+     * #indexOfArray(int[], int, int, char[], int)} does for a char array.
+     *
+     * @param r    The array containing the data that need to be matched in
+     *             d.
+     * @param rpos The index of the first character in r to look for.
+     * @param rend The index of the last character in r to look for plus 1.
+     * @param d    The string that should contain a part of r.
+     * @param dpos The starting offset in d for the matching.
+     * @return The offset in d of the part of r matched in d or -1 if that was
+     *         not found.
+     */
+    private int indexOfString(int[] r, int rpos, int rend, String d,
+        int dpos) {
+        int length = d.length();
+
+        // If we need to match a zero length string return the end of d
+        if (rend == rpos) {
+            return (length);
+        }
+
+        while (((dpos + rend) - rpos) <= length) {
+            if (matchString(r, rpos, rend, d, dpos)) {
+                return (dpos);
+            }
+
+            dpos++;
+        }
+
+        return (-1);
+    }
+
+    /**
+     * Get the offset of a last occurance of an int array within a string,
+     * as {@link #lastIndexOfArray(int[], int, int, char[], int)} does for a
+     * char array.
+     *
+     * @param r    The array containing the data that need to be matched in
+     *             d.
+     * @param rpos The index of the first character in r to look for.
+     * @param rend The index of the last character in r to look for plus 1.
+     * @param d    The string that should contain a part of r.
+     * @param dpos The starting offset in d for the matching.
+     * @return The offset in d of the last part of r matched in d or -1 if
+     *         that was not found.
+     */
+    private int lastIndexOfString(int[] r, int rpos, int rend, String d,
+        int dpos) {
+        // If we need to match a zero length string return the end of d
+        if (rend == rpos) {
+            return (d.length());
+        }
+
+        for (int l = d.length() - (rend - rpos); l >= dpos; l--) {
+            if (matchString(r, rpos, rend, d, l)) {
+                return (l);
+            }
+        }
+
+        return (-1);
+    }
+
+    /**
+     * Matches elements of array r from rpos to rend with string d, starting
+     * from dpos, as {@link #matchArray(int[], int, int, char[], int)} does
+     * for a char array.
+     *
+     * @param r    The array containing the data that need to be matched in
+     *             d.
+     * @param rpos The index of the first character in r to look for.
+     * @param rend The index of the last character in r to look for.
+     * @param d    The string that should start from a part of r.
+     * @param dpos The starting offset in d for the matching.
+     * @return true if string d starts from portion of array r.
+     */
+    private boolean matchString(int[] r, int rpos, int rend, String d,
+        int dpos) {
+        if ((d.length() - dpos) < (rend - rpos)) {
+            return (false);
+        }
+
+        for (int i = rpos; i < rend; i++) {
+            if (r[i] != d.charAt(dpos++)) {
+                return (false);
+            }
+        }
+
+        return (true);
+    }
+
     /**
      * Get the offset of a part of an int array within a char array. <br> This
      * method return the index in d of the first occurrence after dpos of that
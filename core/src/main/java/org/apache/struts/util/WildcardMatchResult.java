@@ -0,0 +1,214 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import java.util.Map;
+
+/**
+ * <p>Reusable buffer holding the result of a {@link WildcardHelper} match as
+ * start and end offsets into the matched string.  Group 0 is the whole
+ * string; groups 1 to n are the parts matched by each wildcard.  No strings
+ * are created until a caller asks for the text of a group or for a
+ * substitution.</p>
+ *
+ * <p>Instances are not thread-safe.  A caller matching on several threads
+ * should keep one instance per thread, for example in a
+ * <code>ThreadLocal</code>, and reuse it for every match.</p>
+ *
+ * @version $Rev$
+ * @see WildcardHelper#match(WildcardMatchResult, String, int[])
+ * @since Struts 1.4
+ */
+public class WildcardMatchResult {
+    /**
+     * <p>The string of the last match.</p>
+     */
+    private String data = null;
+
+    /**
+     * <p>Start and end offsets of each group, in pairs.</p>
+     */
+    private int[] offsets = new int[16];
+
+    /**
+     * <p>The number of groups, including group 0.</p>
+     */
+    private int count = 0;
+
+    /**
+     * <p>Return the string of the last match.</p>
+     *
+     * @return The matched string
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * <p>Return the number of groups, including group 0.</p>
+     *
+     * @return The number of groups
+     */
+    public int getGroupCount() {
+        return count;
+    }
+
+    /**
+     * <p>Return the offset in the matched string where a group starts.</p>
+     *
+     * @param group The group number
+     * @return The start offset, inclusive
+     */
+    public int getStart(int group) {
+        checkGroup(group);
+
+        return offsets[group * 2];
+    }
+
+    /**
+     * <p>Return the offset in the matched string where a group ends.</p>
+     *
+     * @param group The group number
+     * @return The end offset, exclusive
+     */
+    public int getEnd(int group) {
+        checkGroup(group);
+
+        return offsets[(group * 2) + 1];
+    }
+
+    /**
+     * <p>Return the text of a group.  This creates a new string.</p>
+     *
+     * @param group The group number
+     * @return The text matched by that group
+     */
+    public String getGroup(int group) {
+        return data.substring(getStart(group), getEnd(group));
+    }
+
+    /**
+     * <p>Replace the <code>{0}</code> to <code>{9}</code> placeholders of
+     * the specified value with the text of the corresponding groups.  The
+     * value itself is returned, without copying, if it has no placeholder
+     * for an existing group.</p>
+     *
+     * @param value The value to convert, may be <code>null</code>
+     * @return The converted value
+     */
+    public String substitute(String value) {
+        if ((value == null) || (value.indexOf('{') < 0)) {
+            return value;
+        }
+
+        StringBuffer buffer = null;
+        int copied = 0;
+        int length = value.length();
+
+        for (int i = 0; (i + 2) < length; i++) {
+            if ((value.charAt(i) != '{') || (value.charAt(i + 2) != '}')) {
+                continue;
+            }
+
+            int group = value.charAt(i + 1) - '0';
+
+            if ((group < 0) || (group > 9) || (group >= count)) {
+                continue;
+            }
+
+            if (buffer == null) {
+                buffer = new StringBuffer(length + data.length());
+            }
+
+            buffer.append(value.substring(copied, i));
+
+            for (int x = getStart(group); x < getEnd(group); x++) {
+                buffer.append(data.charAt(x));
+            }
+
+            copied = i + 3;
+            i += 2;
+        }
+
+        if (buffer == null) {
+            return value;
+        }
+
+        buffer.append(value.substring(copied));
+
+        return buffer.toString();
+    }
+
+    /**
+     * <p>Store the text of every group in the specified map, keyed by group
+     * number, in the form produced by
+     * {@link WildcardHelper#match(Map, String, int[])}.</p>
+     *
+     * @param map The map to fill
+     */
+    public void putGroups(Map map) {
+        for (int i = 0; i < count; i++) {
+            map.put(Integer.toString(i), getGroup(i));
+        }
+    }
+
+    /**
+     * <p>Start a new match of the specified string, discarding all
+     * groups.</p>
+     *
+     * @param data The string being matched
+     */
+    void reset(String data) {
+        this.data = data;
+        this.count = 0;
+    }
+
+    /**
+     * <p>Record the next group.</p>
+     *
+     * @param start The start offset, inclusive
+     * @param end   The end offset, exclusive
+     */
+    void addGroup(int start, int end) {
+        if (((count * 2) + 2) > offsets.length) {
+            int[] updated = new int[offsets.length * 2];
+
+            System.arraycopy(offsets, 0, updated, 0, offsets.length);
+            offsets = updated;
+        }
+
+        offsets[count * 2] = start;
+        offsets[(count * 2) + 1] = end;
+        count++;
+    }
+
+    /**
+     * <p>Verify that the specified group exists.</p>
+     *
+     * @param group The group number
+     * @throws IndexOutOfBoundsException if the group does not exist
+     */
+    private void checkGroup(int group) {
+        if ((group < 0) || (group >= count)) {
+            throw new IndexOutOfBoundsException("No group " + group);
+        }
+    }
+}
@@ -23,7 +23,6 @@ package org.apache.struts.validator;
 import org.apache.commons.beanutils.DynaBean;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.commons.validator.Validator;
 import org.apache.commons.validator.ValidatorException;
 import org.apache.commons.validator.ValidatorResults;
 import org.apache.struts.action.ActionErrors;
@@ -112,12 +111,10 @@ public class DynaValidatorForm extends DynaActionForm implements DynaBean,
 
         String validationKey = getValidationKey(mapping, request);
 
-        Validator validator =
-            Resources.initValidator(validationKey, this, application, request,
-                errors, page);
-
         try {
-            validatorResults = validator.validate();
+            validatorResults =
+                Resources.validate(validationKey, this, application, request,
+                    errors, page);
         } catch (ValidatorException e) {
             log.error(e.getMessage(), e);
         }
@@ -30,6 +30,7 @@ import org.apache.commons.validator.UrlValidator;
 import org.apache.commons.validator.Validator;
 import org.apache.commons.validator.ValidatorAction;
 import org.apache.commons.validator.util.ValidatorUtils;
+import org.apache.oro.text.regex.Pattern;
 import org.apache.struts.action.ActionMessage;
 import org.apache.struts.action.ActionMessages;
 import org.apache.struts.util.MessageResources;
@@ -275,11 +276,10 @@ public class FieldChecks implements Serializable {
         try {
             value = evaluateBean(bean, field);
 
-            String mask =
-                Resources.getVarValue("mask", field, validator, request, true);
+            Pattern mask = FieldVars.getMask(field, validator, request);
 
             if (value != null && value.length()>0
-                && !GenericValidator.matchRegexp(value, mask)) {
+                && !FieldVars.matchMask(value, mask)) {
                 errors.add(field.getKey(),
                     Resources.getActionMessage(validator, request, va, field));
 
@@ -890,7 +890,8 @@ public class FieldChecks implements Serializable {
                 result = GenericTypeValidator.formatDate(value, locale);
             } else {
                 result =
-                    GenericTypeValidator.formatDate(value, datePattern, isStrict);
+                    FieldVars.parseDate(value, datePattern, isStrict,
+                        validator);
             }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -928,17 +929,17 @@ public class FieldChecks implements Serializable {
         try {
             value = evaluateBean(bean, field);
             if (!GenericValidator.isBlankOrNull(value)) {
-                String minVar =
-                    Resources.getVarValue("min", field, validator, request, true);
-                String maxVar =
-                    Resources.getVarValue("max", field, validator, request, true);
                 long longValue = Long.parseLong(value);
-                long min = Long.parseLong(minVar);
-                long max = Long.parseLong(maxVar);
+                long min = FieldVars.getLong("min", field, validator, request);
+                long max = FieldVars.getLong("max", field, validator, request);
     
                 if (min > max) {
                     throw new IllegalArgumentException(sysmsgs.getMessage(
-                            "invalid.range", minVar, maxVar));
+                            "invalid.range",
+                            Resources.getVarValue("min", field, validator,
+                                request, true),
+                            Resources.getVarValue("max", field, validator,
+                                request, true)));
                 }
     
                 if (!GenericValidator.isInRange(longValue, min, max)) {
@@ -981,17 +982,17 @@ public class FieldChecks implements Serializable {
         try {
             value = evaluateBean(bean, field);
             if (!GenericValidator.isBlankOrNull(value)) {
-                String minVar =
-                    Resources.getVarValue("min", field, validator, request, true);
-                String maxVar =
-                    Resources.getVarValue("max", field, validator, request, true);
-                int min = Integer.parseInt(minVar);
-                int max = Integer.parseInt(maxVar);
+                int min = FieldVars.getInt("min", field, validator, request);
+                int max = FieldVars.getInt("max", field, validator, request);
                 int intValue = Integer.parseInt(value);
 
                 if (min > max) {
                     throw new IllegalArgumentException(sysmsgs.getMessage(
-                            "invalid.range", minVar, maxVar));
+                            "invalid.range",
+                            Resources.getVarValue("min", field, validator,
+                                request, true),
+                            Resources.getVarValue("max", field, validator,
+                                request, true)));
                 }
 
                 if (!GenericValidator.isInRange(intValue, min, max)) {
@@ -1034,17 +1035,19 @@ public class FieldChecks implements Serializable {
         try {
             value = evaluateBean(bean, field);
             if (!GenericValidator.isBlankOrNull(value)) {
-                String minVar =
-                    Resources.getVarValue("min", field, validator, request, true);
-                String maxVar =
-                    Resources.getVarValue("max", field, validator, request, true);
                 double doubleValue = Double.parseDouble(value);
-                double min = Double.parseDouble(minVar);
-                double max = Double.parseDouble(maxVar);
+                double min =
+                    FieldVars.getDouble("min", field, validator, request);
+                double max =
+                    FieldVars.getDouble("max", field, validator, request);
 
                 if (min > max) {
                     throw new IllegalArgumentException(sysmsgs.getMessage(
-                            "invalid.range", minVar, maxVar));
+                            "invalid.range",
+                            Resources.getVarValue("min", field, validator,
+                                request, true),
+                            Resources.getVarValue("max", field, validator,
+                                request, true)));
                 }
 
                 if (!GenericValidator.isInRange(doubleValue, min, max)) {
@@ -1087,17 +1090,19 @@ public class FieldChecks implements Serializable {
         try {
             value = evaluateBean(bean, field);
             if (!GenericValidator.isBlankOrNull(value)) {
-                String minVar =
-                    Resources.getVarValue("min", field, validator, request, true);
-                String maxVar =
-                    Resources.getVarValue("max", field, validator, request, true);
                 float floatValue = Float.parseFloat(value);
-                float min = Float.parseFloat(minVar);
-                float max = Float.parseFloat(maxVar);
+                float min =
+                    FieldVars.getFloat("min", field, validator, request);
+                float max =
+                    FieldVars.getFloat("max", field, validator, request);
     
                 if (min > max) {
                     throw new IllegalArgumentException(sysmsgs.getMessage(
-                            "invalid.range", minVar, maxVar));
+                            "invalid.range",
+                            Resources.getVarValue("min", field, validator,
+                                request, true),
+                            Resources.getVarValue("max", field, validator,
+                                request, true)));
                 }
     
                 if (!GenericValidator.isInRange(floatValue, min, max)) {
@@ -1220,19 +1225,18 @@ public class FieldChecks implements Serializable {
         try {
             value = evaluateBean(bean, field);
             if (value != null) {
-                String maxVar =
-                    Resources.getVarValue("maxlength", field, validator,
-                        request, true);
-                int max = Integer.parseInt(maxVar);
+                int max =
+                    FieldVars.getInt("maxlength", field, validator, request);
 
                 boolean isValid = false;
-                String endLth = Resources.getVarValue("lineEndLength", field,
-                    validator, request, false);
-                if (GenericValidator.isBlankOrNull(endLth)) {
+                Integer endLth =
+                    FieldVars.getOptionalInt("lineEndLength", field,
+                        validator, request);
+                if (endLth == null) {
                     isValid = GenericValidator.maxLength(value, max);
                 } else {
                     isValid = GenericValidator.maxLength(value, max,
-                        Integer.parseInt(endLth));
+                        endLth.intValue());
                 }
 
                 if (!isValid) {
@@ -1275,19 +1279,18 @@ public class FieldChecks implements Serializable {
         try {
             value = evaluateBean(bean, field);
             if (!GenericValidator.isBlankOrNull(value)) {
-                String minVar =
-                    Resources.getVarValue("minlength", field, validator,
-                        request, true);
-                int min = Integer.parseInt(minVar);
+                int min =
+                    FieldVars.getInt("minlength", field, validator, request);
 
                 boolean isValid = false;
-                String endLth = Resources.getVarValue("lineEndLength", field,
-                    validator, request, false);
-                if (GenericValidator.isBlankOrNull(endLth)) {
+                Integer endLth =
+                    FieldVars.getOptionalInt("lineEndLength", field,
+                        validator, request);
+                if (endLth == null) {
                     isValid = GenericValidator.minLength(value, min);
                 } else {
                     isValid = GenericValidator.minLength(value, min,
-                        Integer.parseInt(endLth));
+                        endLth.intValue());
                 }
 
                 if (!isValid) {
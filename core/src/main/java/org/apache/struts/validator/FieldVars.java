@@ -0,0 +1,651 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.validator.Field;
+import org.apache.commons.validator.GenericValidator;
+import org.apache.commons.validator.Validator;
+import org.apache.commons.validator.Var;
+import org.apache.oro.text.regex.MalformedPatternException;
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.Perl5Compiler;
+import org.apache.oro.text.regex.Perl5Matcher;
+import org.apache.struts.validator.validwhen.ValidWhenExpression;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>The parsed field variables of the forms of a module, so that the
+ * checks in <code>FieldChecks</code> do not parse the same
+ * <code>mask</code>, length or range variable on every request.  The
+ * <code>ValidatorPlugIn</code> of each module parses, when it starts, the
+ * variables of its forms that are not read from message resources, and
+ * keeps their typed values by <code>Var</code> instance, so that a check
+ * reads them without resolving or parsing any text.</p>
+ *
+ * <p>Variables read from message resources, the variables of forms found
+ * some other way, and the copies of variables that indexed fields are
+ * validated with, are resolved on each use.  Numbers are then parsed
+ * again; masks, date patterns and <code>validwhen</code> tests, which are
+ * costly to compile, are kept by their text, once for each distinct value
+ * the user Locales resolve them to.</p>
+ *
+ * <p>Masks are compiled by the same Perl5 regular expression engine that
+ * <code>GenericValidator.matchRegexp()</code> uses, into read-only patterns
+ * that any number of threads can match against at once, so they match
+ * exactly the same values.  Without the values of a module, as when a
+ * <code>Validator</code> is created without the plug-in, every variable is
+ * parsed on each use.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class FieldVars {
+    /**
+     * <p>Commons Logging instance.</p>
+     */
+    private static final Log log = LogFactory.getLog(FieldVars.class);
+
+    /**
+     * <p>The maximum number of values that each cache by text holds.
+     * Values beyond this are parsed on each use.</p>
+     */
+    private static final int MAX_CACHED = 1000;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The parsed values of the variables of the forms of the module,
+     * keyed by <code>Var</code> instance.  Replaced, never modified, once
+     * published.</p>
+     */
+    private volatile Map values = new IdentityHashMap();
+
+    /**
+     * <p>Compiled masks, keyed by mask.</p>
+     */
+    private final Cache masks = new Cache();
+
+    /**
+     * <p>Date formats, keyed by pattern.</p>
+     */
+    private final Cache dateFormats = new Cache();
+
+    /**
+     * <p>Compiled <code>validwhen</code> tests, keyed by test.</p>
+     */
+    private final Cache validWhenTests = new Cache();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the values of the module of the specified validator.</p>
+     *
+     * @param validator The validator
+     * @return The values, or <code>null</code> if the module has none
+     */
+    static FieldVars getInstance(Validator validator) {
+        return (FieldVars) validator.getParameterValue(
+            Resources.FIELD_VARS_PARAM);
+    }
+
+    /**
+     * <p>Parse the variables of the specified field that its dependencies
+     * read, and that are not read from message resources, and keep their
+     * values, so that they are not parsed on requests and invalid values
+     * are reported now.  The values of the field are kept only if all of
+     * them can be parsed.</p>
+     *
+     * @param field The field
+     * @return The number of variables parsed
+     * @throws IllegalArgumentException if a variable cannot be parsed, which
+     *                                  includes <code>NumberFormatException
+     *                                  </code>
+     */
+    int compile(Field field) {
+        Map parsed = new IdentityHashMap();
+
+        if (field.isDependency("mask")) {
+            Var mask = getStatic(field, "mask");
+
+            if ((mask != null) && !GenericValidator.isBlankOrNull(
+                        mask.getValue())) {
+                parsed.put(mask, compileMask(mask.getValue()));
+            }
+        }
+
+        if (field.isDependency("minlength")
+            || field.isDependency("maxlength")) {
+            String[] names =
+                new String[] { "minlength", "maxlength", "lineEndLength" };
+
+            for (int i = 0; i < names.length; i++) {
+                Var var = getStatic(field, names[i]);
+
+                if ((var != null) && !GenericValidator.isBlankOrNull(
+                            var.getValue())) {
+                    parsed.put(var,
+                        new Integer(Integer.parseInt(var.getValue())));
+                }
+            }
+        }
+
+        String[] bounds = new String[] { "min", "max" };
+
+        for (int i = 0; i < bounds.length; i++) {
+            Var var = getStatic(field, bounds[i]);
+
+            if (var == null) {
+                continue;
+            }
+
+            String value = var.getValue();
+
+            if (field.isDependency("intRange")) {
+                parsed.put(var, new Integer(Integer.parseInt(value)));
+            }
+
+            if (field.isDependency("longRange")) {
+                parsed.put(var, new Long(Long.parseLong(value)));
+            }
+
+            if (field.isDependency("floatRange")) {
+                parsed.put(var, new Float(Float.parseFloat(value)));
+            }
+
+            if (field.isDependency("doubleRange")) {
+                parsed.put(var, new Double(Double.parseDouble(value)));
+            }
+        }
+
+        int count = parsed.size();
+
+        if (field.isDependency("date")) {
+            String[] patterns =
+                new String[] { "datePattern", "datePatternStrict" };
+
+            for (int i = 0; i < patterns.length; i++) {
+                Var pattern = getStatic(field, patterns[i]);
+
+                if ((pattern != null) && !GenericValidator.isBlankOrNull(
+                            pattern.getValue())) {
+                    getDateFormat(pattern.getValue());
+                    count++;
+                }
+            }
+        }
+
+        if (!parsed.isEmpty()) {
+            synchronized (this) {
+                Map updated = new IdentityHashMap(values);
+
+                updated.putAll(parsed);
+                values = updated;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * <p>Return the specified variable of a field as an <code>int</code>.
+     * </p>
+     *
+     * @param name      The name of the variable
+     * @param field     The field
+     * @param validator The validator
+     * @param request   The current request
+     * @return The value
+     * @throws IllegalArgumentException if the variable does not exist, which
+     *                                  includes <code>NumberFormatException
+     *                                  </code> if it is not an
+     *                                  <code>int</code>
+     */
+    static int getInt(String name, Field field, Validator validator,
+        HttpServletRequest request) {
+        Object value = getParsed(name, field, validator);
+
+        if (value instanceof Integer) {
+            return ((Integer) value).intValue();
+        }
+
+        return Integer.parseInt(Resources.getVarValue(name, field, validator,
+                request, true));
+    }
+
+    /**
+     * <p>Return the specified variable of a field as an <code>int</code>,
+     * if it is set.</p>
+     *
+     * @param name      The name of the variable
+     * @param field     The field
+     * @param validator The validator
+     * @param request   The current request
+     * @return The value, or <code>null</code> if the variable does not
+     *         exist or is blank
+     * @throws NumberFormatException if the variable is not an
+     *                               <code>int</code>
+     */
+    static Integer getOptionalInt(String name, Field field,
+        Validator validator, HttpServletRequest request) {
+        Object value = getParsed(name, field, validator);
+
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+
+        String text =
+            Resources.getVarValue(name, field, validator, request, false);
+
+        if (GenericValidator.isBlankOrNull(text)) {
+            return null;
+        }
+
+        return new Integer(Integer.parseInt(text));
+    }
+
+    /**
+     * <p>Return the specified variable of a field as a <code>long</code>.
+     * </p>
+     *
+     * @param name      The name of the variable
+     * @param field     The field
+     * @param validator The validator
+     * @param request   The current request
+     * @return The value
+     * @throws IllegalArgumentException if the variable does not exist, which
+     *                                  includes <code>NumberFormatException
+     *                                  </code> if it is not a
+     *                                  <code>long</code>
+     */
+    static long getLong(String name, Field field, Validator validator,
+        HttpServletRequest request) {
+        Object value = getParsed(name, field, validator);
+
+        if (value instanceof Long) {
+            return ((Long) value).longValue();
+        }
+
+        return Long.parseLong(Resources.getVarValue(name, field, validator,
+                request, true));
+    }
+
+    /**
+     * <p>Return the specified variable of a field as a <code>float</code>.
+     * </p>
+     *
+     * @param name      The name of the variable
+     * @param field     The field
+     * @param validator The validator
+     * @param request   The current request
+     * @return The value
+     * @throws IllegalArgumentException if the variable does not exist, which
+     *                                  includes <code>NumberFormatException
+     *                                  </code> if it is not a
+     *                                  <code>float</code>
+     */
+    static float getFloat(String name, Field field, Validator validator,
+        HttpServletRequest request) {
+        Object value = getParsed(name, field, validator);
+
+        if (value instanceof Float) {
+            return ((Float) value).floatValue();
+        }
+
+        return Float.parseFloat(Resources.getVarValue(name, field, validator,
+                request, true));
+    }
+
+    /**
+     * <p>Return the specified variable of a field as a <code>double</code>.
+     * </p>
+     *
+     * @param name      The name of the variable
+     * @param field     The field
+     * @param validator The validator
+     * @param request   The current request
+     * @return The value
+     * @throws IllegalArgumentException if the variable does not exist, which
+     *                                  includes <code>NumberFormatException
+     *                                  </code> if it is not a
+     *                                  <code>double</code>
+     */
+    static double getDouble(String name, Field field, Validator validator,
+        HttpServletRequest request) {
+        Object value = getParsed(name, field, validator);
+
+        if (value instanceof Double) {
+            return ((Double) value).doubleValue();
+        }
+
+        return Double.parseDouble(Resources.getVarValue(name, field,
+                validator, request, true));
+    }
+
+    /**
+     * <p>Return the compiled <code>mask</code> variable of a field.</p>
+     *
+     * @param field     The field
+     * @param validator The validator
+     * @param request   The current request
+     * @return The read-only pattern, or <code>null</code> if the mask is
+     *         empty
+     * @throws IllegalArgumentException if the variable does not exist or is
+     *                                  not a valid regular expression
+     */
+    static Pattern getMask(Field field, Validator validator,
+        HttpServletRequest request) {
+        Object value = getParsed("mask", field, validator);
+
+        if (value instanceof Pattern) {
+            return (Pattern) value;
+        }
+
+        String mask =
+            Resources.getVarValue("mask", field, validator, request, true);
+
+        if (GenericValidator.isBlankOrNull(mask)) {
+            return null;
+        }
+
+        FieldVars vars = getInstance(validator);
+
+        return (vars == null) ? compileMask(mask) : vars.getMask(mask);
+    }
+
+    /**
+     * <p>Return whether the specified value contains a match of the
+     * specified mask, as <code>GenericValidator.matchRegexp()</code>
+     * does.</p>
+     *
+     * @param value The value to check
+     * @param mask  The compiled mask, or <code>null</code> if it is empty
+     * @return <code>false</code> if the mask is <code>null</code>,
+     *         otherwise whether the value matches it
+     */
+    static boolean matchMask(String value, Pattern mask) {
+        if (mask == null) {
+            return false;
+        }
+
+        return new Perl5Matcher().contains(value, mask);
+    }
+
+    /**
+     * <p>Parse the specified value with the specified date pattern, as
+     * <code>GenericTypeValidator.formatDate(String, String, boolean)</code>
+     * does.</p>
+     *
+     * @param value     The value to parse
+     * @param pattern   The <code>SimpleDateFormat</code> pattern
+     * @param strict    Whether the value must be as long as the pattern
+     * @param validator The validator
+     * @return The date, or <code>null</code> if the value is not a date of
+     *         the pattern
+     */
+    static Date parseDate(String value, String pattern, boolean strict,
+        Validator validator) {
+        if ((value == null) || (pattern == null) || (pattern.length() == 0)) {
+            return null;
+        }
+
+        FieldVars vars = getInstance(validator);
+        SimpleDateFormat format;
+
+        if (vars == null) {
+            format = new SimpleDateFormat(pattern, Locale.getDefault());
+            format.setLenient(false);
+        } else {
+            format = vars.getDateFormat(pattern);
+        }
+
+        Date date = null;
+
+        try {
+            date = format.parse(value);
+
+            if (strict && (pattern.length() != value.length())) {
+                date = null;
+            }
+        } catch (ParseException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Date parse failed value=[" + value + "], "
+                    + "pattern=[" + pattern + "], " + "strict=[" + strict
+                    + "] " + e);
+            }
+        }
+
+        return date;
+    }
+
+    /**
+     * <p>Return the compiled form of the specified <code>validwhen</code>
+     * test.</p>
+     *
+     * @param test The test
+     * @return The compiled test
+     * @throws RecognitionException if the test is not a valid expression
+     * @throws TokenStreamException if the test cannot be read
+     */
+    ValidWhenExpression getValidWhenTest(String test)
+        throws RecognitionException, TokenStreamException {
+        ValidWhenExpression expression =
+            (ValidWhenExpression) validWhenTests.get(test);
+
+        if (expression == null) {
+            expression = ValidWhenExpression.compile(test);
+            validWhenTests.put(test, expression);
+        }
+
+        return expression;
+    }
+
+    /**
+     * <p>Return the compiled form of the specified mask.</p>
+     *
+     * @param mask The Perl5 regular expression
+     * @return The read-only pattern
+     * @throws IllegalArgumentException if the mask is not a valid regular
+     *                                  expression
+     */
+    Pattern getMask(String mask) {
+        Pattern pattern = (Pattern) masks.get(mask);
+
+        if (pattern == null) {
+            pattern = compileMask(mask);
+            masks.put(mask, pattern);
+        }
+
+        return pattern;
+    }
+
+    /**
+     * <p>Discard all values.</p>
+     */
+    void clear() {
+        synchronized (this) {
+            values = new IdentityHashMap();
+        }
+
+        masks.clear();
+        dateFormats.clear();
+        validWhenTests.clear();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the parsed value of the specified variable of a field, if
+     * the module of the validator keeps it.</p>
+     *
+     * @param name      The name of the variable
+     * @param field     The field
+     * @param validator The validator
+     * @return The value, or <code>null</code> if it is not kept
+     */
+    private static Object getParsed(String name, Field field,
+        Validator validator) {
+        FieldVars vars = getInstance(validator);
+
+        if (vars == null) {
+            return null;
+        }
+
+        Var var = field.getVar(name);
+
+        return (var == null) ? null : vars.values.get(var);
+    }
+
+    /**
+     * <p>Return the specified variable of a field, unless it is read from
+     * message resources.</p>
+     *
+     * @param field The field
+     * @param name  The name of the variable
+     * @return The variable, or <code>null</code> if there is no such
+     *         variable or it is read from message resources
+     */
+    private static Var getStatic(Field field, String name) {
+        Var var = field.getVar(name);
+
+        return ((var == null) || var.isResource()) ? null : var;
+    }
+
+    /**
+     * <p>Compile the specified mask.</p>
+     *
+     * @param mask The Perl5 regular expression
+     * @return The read-only pattern
+     * @throws IllegalArgumentException if the mask is not a valid regular
+     *                                  expression
+     */
+    private static Pattern compileMask(String mask) {
+        try {
+            return new Perl5Compiler().compile(mask,
+                Perl5Compiler.READ_ONLY_MASK);
+        } catch (MalformedPatternException e) {
+            throw new IllegalArgumentException("Invalid mask '" + mask
+                + "' - " + e.getMessage());
+        }
+    }
+
+    /**
+     * <p>Return a new non-lenient format of the specified pattern for the
+     * default Locale, copied from a cached one.</p>
+     *
+     * @param pattern The <code>SimpleDateFormat</code> pattern
+     * @return The format, owned by the caller
+     */
+    private SimpleDateFormat getDateFormat(String pattern) {
+        Locale locale = Locale.getDefault();
+        DatePattern cached = (DatePattern) dateFormats.get(pattern);
+
+        if ((cached == null) || !cached.locale.equals(locale)) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+
+            format.setLenient(false);
+            cached = new DatePattern(locale, format);
+            dateFormats.put(pattern, cached);
+        }
+
+        return (SimpleDateFormat) cached.format.clone();
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>A map that is replaced, never modified, once published, so that it
+     * can be read without locking.</p>
+     */
+    private static final class Cache {
+        /**
+         * <p>The current map.</p>
+         */
+        private volatile Map map = new HashMap();
+
+        /**
+         * <p>Return the value of the specified key.</p>
+         *
+         * @param key The key
+         * @return The value, or <code>null</code> if there is none
+         */
+        Object get(Object key) {
+            return map.get(key);
+        }
+
+        /**
+         * <p>Add or replace the value of the specified key, unless the map
+         * is full.</p>
+         *
+         * @param key   The key
+         * @param value The value
+         */
+        synchronized void put(Object key, Object value) {
+            if (map.containsKey(key) || (map.size() < MAX_CACHED)) {
+                Map updated = new HashMap(map);
+
+                updated.put(key, value);
+                map = updated;
+            }
+        }
+
+        /**
+         * <p>Discard all values.</p>
+         */
+        synchronized void clear() {
+            map = new HashMap();
+        }
+    }
+
+    /**
+     * <p>A date format and the default Locale it was created for.</p>
+     */
+    private static final class DatePattern {
+        /**
+         * <p>The Locale.</p>
+         */
+        final Locale locale;
+
+        /**
+         * <p>The format, which is only ever copied.</p>
+         */
+        final SimpleDateFormat format;
+
+        DatePattern(Locale locale, SimpleDateFormat format) {
+            this.locale = locale;
+            this.format = format;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import org.apache.commons.validator.Field;
+import org.apache.commons.validator.Form;
+import org.apache.commons.validator.Validator;
+import org.apache.commons.validator.ValidatorException;
+import org.apache.commons.validator.ValidatorResources;
+import org.apache.commons.validator.ValidatorResults;
+import org.apache.struts.action.ActionMessages;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>A <code>Validator</code> that validates the fields of a form on a
+ * {@link ValidationPool} as well as on the calling thread.  Fields that
+ * depend on <code>validwhen</code> or <code>requiredif</code>, which read
+ * other fields, are validated on the calling thread; the other fields are
+ * handed out one at a time to whichever thread is free.  Each field records
+ * its messages and results separately, and they are merged in the order of
+ * the fields in the form, so the outcome does not depend on scheduling: the
+ * messages are those a <code>Validator</code> would have recorded, in the
+ * same order.</p>
+ *
+ * <p>Only when <code>validationStopOnFirstError</code> is set for the
+ * module, fields after the first field in error are not reported, as in the
+ * JavaScript validation, and those that have not started yet are not
+ * validated at all.  The <code>stopOnFirstError</code> setting of the
+ * JavaScript validation does not apply.</p>
+ *
+ * <p>The validation methods of fields validated in parallel must be safe to
+ * call from several threads at once, and must only read the bean being
+ * validated.  On the threads of the pool they receive a
+ * {@link ValidationRequest} instead of the request, since the request is
+ * not safe to use from several threads.  A validation method that asks for
+ * the <code>ValidatorResults</code> sees only the results of its own
+ * field.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+class ParallelValidator extends Validator {
+    /**
+     * <p>The key of the <code>ActionMessages</code> parameter.</p>
+     */
+    private static final String ACTION_MESSAGES_PARAM =
+        "org.apache.struts.action.ActionMessages";
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The pool that helps validate fields.</p>
+     */
+    private final transient ValidationPool pool;
+
+    /**
+     * <p>Whether fields after the first field in error are not reported.</p>
+     */
+    private final boolean stopOnFirstError;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a validator of the specified form.</p>
+     *
+     * @param resources        The validator resources of the module
+     * @param formName         The name of the form
+     * @param pool             The pool that helps validate fields
+     * @param stopOnFirstError Whether fields after the first field in error
+     *                         are not reported
+     */
+    ParallelValidator(ValidatorResources resources, String formName,
+        ValidationPool pool, boolean stopOnFirstError) {
+        super(resources, formName);
+        this.pool = pool;
+        this.stopOnFirstError = stopOnFirstError;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Validate the fields of the form up to the current page, in
+     * parallel.  A single field, chosen by <code>setFieldName</code>, is
+     * validated as usual.</p>
+     *
+     * @return The results of the validation
+     * @throws ValidatorException if a validation method cannot be called;
+     *                            the exception of the first such field is
+     *                            thrown
+     */
+    public ValidatorResults validate()
+        throws ValidatorException {
+        Locale locale = (Locale) getParameterValue(LOCALE_PARAM);
+
+        if (locale == null) {
+            locale = Locale.getDefault();
+        }
+
+        Form form = resources.getForm(locale, formName);
+
+        if ((form == null) || (fieldName != null) || (pool == null)) {
+            return super.validate();
+        }
+
+        setParameter(VALIDATOR_PARAM, this);
+        setParameter(FORM_PARAM, form);
+
+        List fields = new ArrayList();
+        Iterator iterator = form.getFields().iterator();
+
+        while (iterator.hasNext()) {
+            Field field = (Field) iterator.next();
+
+            if (field.getPage() <= page) {
+                fields.add(field);
+            }
+        }
+
+        Job job = new Job((Field[]) fields.toArray(new Field[fields.size()]));
+        int helpers = Math.min(pool.getThreads(), job.getParallelCount() - 1);
+
+        if (helpers > 0) {
+            job.helperParameters = getHelperParameters();
+        }
+
+        for (int i = 0; i < helpers; i++) {
+            if (!pool.offer(job)) {
+                break;
+            }
+        }
+
+        job.runSerial();
+        job.validateFields(parameters);
+
+        return job.merge();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the parameters for the threads of the pool: those of this
+     * validator, with a read-only view of the request instead of the
+     * request.  Must be called on the request thread.</p>
+     *
+     * @return The parameters
+     */
+    private Map getHelperParameters() {
+        Map params = new HashMap(parameters);
+        Object request = params.get(Resources.HTTP_SERVLET_REQUEST_PARAM);
+
+        if (request instanceof HttpServletRequest) {
+            params.put(Resources.HTTP_SERVLET_REQUEST_PARAM,
+                new ValidationRequest((HttpServletRequest) request));
+        }
+
+        return params;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>The validation of one form, shared by the threads that take part
+     * in it.</p>
+     */
+    private class Job implements Runnable {
+        /**
+         * <p>The fields to validate, in order.</p>
+         */
+        private final Field[] fields;
+
+        /**
+         * <p>The messages recorded by each field.</p>
+         */
+        private final ActionMessages[] messages;
+
+        /**
+         * <p>The results of each field.</p>
+         */
+        private final ValidatorResults[] results;
+
+        /**
+         * <p>The exception thrown by each field, if any.</p>
+         */
+        private final Throwable[] failures;
+
+        /**
+         * <p>Whether each field is validated on the calling thread.</p>
+         */
+        private final boolean[] serial;
+
+        /**
+         * <p>The parameters of the threads of the pool, set before the job
+         * is offered to the pool.</p>
+         */
+        Map helperParameters = null;
+
+        /**
+         * <p>The index of the next field to hand out.  Guarded by this
+         * object's lock.</p>
+         */
+        private int next = 0;
+
+        /**
+         * <p>The number of fields handed out that have not finished.
+         * Guarded by this object's lock.</p>
+         */
+        private int running = 0;
+
+        /**
+         * <p>The index of the first field in error so far, or the number of
+         * fields.  Guarded by this object's lock.</p>
+         */
+        private int firstError;
+
+        /**
+         * <p>Construct the validation of the specified fields.</p>
+         *
+         * @param fields The fields to validate, in order
+         */
+        Job(Field[] fields) {
+            this.fields = fields;
+            this.messages = new ActionMessages[fields.length];
+            this.results = new ValidatorResults[fields.length];
+            this.failures = new Throwable[fields.length];
+            this.serial = new boolean[fields.length];
+            this.firstError = fields.length;
+
+            for (int i = 0; i < fields.length; i++) {
+                serial[i] =
+                    fields[i].isDependency("validwhen")
+                    || fields[i].isDependency("requiredif");
+            }
+        }
+
+        /**
+         * <p>Return the number of fields that may be validated in parallel.
+         * </p>
+         *
+         * @return The number of fields
+         */
+        int getParallelCount() {
+            int count = 0;
+
+            for (int i = 0; i < serial.length; i++) {
+                if (!serial[i]) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * <p>Validate the fields that read other fields, in order, on the
+         * calling thread.</p>
+         */
+        void runSerial() {
+            Map params = null;
+
+            for (int i = 0; i < fields.length; i++) {
+                if (serial[i]) {
+                    if (params == null) {
+                        params = new HashMap(parameters);
+                    }
+
+                    validate(i, params);
+                }
+            }
+        }
+
+        /**
+         * <p>Validate fields that are not validated on the calling thread,
+         * on a thread of the pool, until none are left.</p>
+         */
+        public void run() {
+            validateFields(helperParameters);
+        }
+
+        /**
+         * <p>Validate fields that are not validated on the calling thread
+         * until none are left.</p>
+         *
+         * @param shared The parameters to copy for the current thread
+         */
+        void validateFields(Map shared) {
+            Map params = null;
+            int index;
+
+            while ((index = nextIndex()) >= 0) {
+                try {
+                    if (params == null) {
+                        params = new HashMap(shared);
+                    }
+
+                    validate(index, params);
+                } finally {
+                    finished();
+                }
+            }
+        }
+
+        /**
+         * <p>Validate the specified field, unless a previous field is in
+         * error and only the first field in error is reported.</p>
+         *
+         * @param index  The index of the field
+         * @param params The parameters of the current thread, a copy of
+         *               those of the validator
+         */
+        private void validate(int index, Map params) {
+            synchronized (this) {
+                if (index > firstError) {
+                    return;
+                }
+            }
+
+            ActionMessages errors = new ActionMessages();
+            ValidatorResults fieldResults = new ValidatorResults();
+
+            params.put(ACTION_MESSAGES_PARAM, errors);
+            params.put(VALIDATOR_RESULTS_PARAM, fieldResults);
+            params.put(FIELD_PARAM, fields[index]);
+
+            Throwable failure = null;
+
+            try {
+                fieldResults.merge(fields[index].validate(params,
+                        resources.getValidatorActions()));
+            } catch (Throwable t) {
+                failure = t;
+            }
+
+            synchronized (this) {
+                failures[index] = failure;
+                messages[index] = errors;
+                results[index] = fieldResults;
+
+                if (stopOnFirstError && !errors.isEmpty()
+                    && (index < firstError)) {
+                    firstError = index;
+                }
+            }
+        }
+
+        /**
+         * <p>Wait for every field to finish, then add the messages of the
+         * fields to the messages of the request, and return their results,
+         * in field order.</p>
+         *
+         * @return The results
+         * @throws ValidatorException if a field threw one; the exception of
+         *                            the first field that threw anything is
+         *                            rethrown
+         */
+        synchronized ValidatorResults merge()
+            throws ValidatorException {
+            boolean interrupted = false;
+
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            ActionMessages errors =
+                (ActionMessages) getParameterValue(ACTION_MESSAGES_PARAM);
+            ValidatorResults merged = new ValidatorResults();
+            int last = Math.min(firstError, fields.length - 1);
+
+            for (int i = 0; i <= last; i++) {
+                if (failures[i] instanceof ValidatorException) {
+                    throw (ValidatorException) failures[i];
+                } else if (failures[i] instanceof RuntimeException) {
+                    throw (RuntimeException) failures[i];
+                } else if (failures[i] instanceof Error) {
+                    throw (Error) failures[i];
+                } else if (failures[i] != null) {
+                    throw new ValidatorException(failures[i].toString());
+                }
+
+                if ((errors != null) && (messages[i] != null)) {
+                    errors.add(messages[i]);
+                }
+
+                if (results[i] != null) {
+                    merged.merge(results[i]);
+                }
+            }
+
+            return merged;
+        }
+
+        /**
+         * <p>Return the index of the next field to validate in parallel, or
+         * -1 if there are none left.</p>
+         *
+         * @return The index of the next field, or -1
+         */
+        private synchronized int nextIndex() {
+            while ((next < fields.length) && serial[next]) {
+                next++;
+            }
+
+            if ((next >= fields.length) || (next > firstError)) {
+                return -1;
+            }
+
+            running++;
+
+            return next++;
+        }
+
+        /**
+         * <p>Record that a field handed out has finished.</p>
+         */
+        private synchronized void finished() {
+            running--;
+
+            if (running == 0) {
+                notifyAll();
+            }
+        }
+    }
+}
@@ -20,6 +20,9 @@
  */
 package org.apache.struts.validator;
 
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.validator.Arg;
@@ -27,7 +30,9 @@ import org.apache.commons.validator.Field;
 import org.apache.commons.validator.Msg;
 import org.apache.commons.validator.Validator;
 import org.apache.commons.validator.ValidatorAction;
+import org.apache.commons.validator.ValidatorException;
 import org.apache.commons.validator.ValidatorResources;
+import org.apache.commons.validator.ValidatorResults;
 import org.apache.commons.validator.Var;
 import org.apache.struts.Globals;
 import org.apache.struts.action.ActionMessage;
@@ -36,6 +41,7 @@ import org.apache.struts.config.ModuleConfig;
 import org.apache.struts.util.MessageResources;
 import org.apache.struts.util.ModuleUtils;
 import org.apache.struts.util.RequestUtils;
+import org.apache.struts.validator.validwhen.ValidWhenExpression;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -66,19 +72,26 @@ public class Resources {
     /**
      * Resources key the <code>ServletContext</code> is stored under.
      */
-    private static String SERVLET_CONTEXT_PARAM =
+    static final String SERVLET_CONTEXT_PARAM =
         "javax.servlet.ServletContext";
 
     /**
      * Resources key the <code>HttpServletRequest</code> is stored under.
      */
-    private static String HTTP_SERVLET_REQUEST_PARAM =
+    static final String HTTP_SERVLET_REQUEST_PARAM =
         "javax.servlet.http.HttpServletRequest";
 
+    /**
+     * Resources key the <code>FieldVars</code> of the module is stored
+     * under.
+     */
+    static final String FIELD_VARS_PARAM =
+        "org.apache.struts.validator.FieldVars";
+
     /**
      * Resources key the <code>ActionMessages</code> is stored under.
      */
-    private static String ACTION_MESSAGES_PARAM =
+    static final String ACTION_MESSAGES_PARAM =
         "org.apache.struts.action.ActionMessages";
 
     /**
@@ -220,6 +233,27 @@ public class Resources {
         return value;
     }
 
+    /**
+     * Return the compiled form of a <code>validwhen</code> test, kept by the
+     * <code>ValidatorPlugIn</code> of the module of the validator so that
+     * it is compiled once, or compiled now if the module keeps none.
+     *
+     * @param test      The <code>validwhen</code> test
+     * @param validator The validator
+     * @return The compiled test
+     * @throws RecognitionException if the test is not a valid expression
+     * @throws TokenStreamException if the test cannot be read
+     * @since Struts 1.4
+     */
+    public static ValidWhenExpression getValidWhenExpression(String test,
+        Validator validator)
+        throws RecognitionException, TokenStreamException {
+        FieldVars vars = FieldVars.getInstance(validator);
+
+        return (vars == null) ? ValidWhenExpression.compile(test)
+                              : vars.getValidWhenTest(test);
+    }
+
     /**
      * Gets the <code>Locale</code> sensitive value based on the key passed
      * in.
@@ -495,6 +529,9 @@ public class Resources {
      *                    <code>Field<code> can control the processing of
      *                    fields.  If the field's page is less than or equal
      *                    to this page value, it will be processed.
+     * @return A validator of the form, which validates its fields in
+     *         parallel if the <code>ValidatorPlugIn</code> of the module
+     *         has a pool of validation threads
      */
     public static Validator initValidator(String key, Object bean,
         ServletContext application, HttpServletRequest request,
@@ -504,7 +541,23 @@ public class Resources {
 
         Locale locale = RequestUtils.getUserLocale(request, null);
 
-        Validator validator = new Validator(resources, key);
+        String prefix =
+            ModuleUtils.getInstance().getModuleConfig(request, application)
+                       .getPrefix();
+        ValidationPool pool =
+            (ValidationPool) application.getAttribute(
+                ValidatorPlugIn.VALIDATION_POOL_KEY + '.' + prefix);
+        Validator validator;
+
+        if (pool == null) {
+            validator = new Validator(resources, key);
+        } else {
+            validator =
+                new ParallelValidator(resources, key, pool,
+                    Boolean.TRUE.equals(application.getAttribute(
+                            ValidatorPlugIn.VALIDATION_STOP_ON_ERROR_KEY + '.'
+                            + prefix)));
+        }
 
         validator.setUseContextClassLoader(true);
 
@@ -516,6 +569,59 @@ public class Resources {
         validator.setParameter(ACTION_MESSAGES_PARAM, errors);
         validator.setParameter(Validator.BEAN_PARAM, bean);
 
+        FieldVars vars =
+            (FieldVars) application.getAttribute(
+                ValidatorPlugIn.FIELD_VARS_KEY + '.' + prefix);
+
+        if (vars != null) {
+            validator.setParameter(FIELD_VARS_PARAM, vars);
+        }
+
         return validator;
     }
+
+    /**
+     * Validate a bean against the rules of a form, with the prepared plan of
+     * the form if the <code>ValidatorPlugIn</code> of the module prepares
+     * them, and otherwise with a <code>Validator</code> from {@link
+     * #initValidator}.
+     *
+     * @param key         The key that the validation rules are under (the
+     *                    form elements name attribute).
+     * @param bean        The bean validation is being performed on.
+     * @param application servlet context
+     * @param request     The current request object.
+     * @param errors      The object any errors will be stored in.
+     * @param page        This in conjunction with  the page property of a
+     *                    <code>Field<code> can control the processing of
+     *                    fields.  If the field's page is less than or equal
+     *                    to this page value, it will be processed.
+     * @return The results of the validation
+     * @throws ValidatorException if a validation method cannot be called
+     * @since Struts 1.4
+     */
+    public static ValidatorResults validate(String key, Object bean,
+        ServletContext application, HttpServletRequest request,
+        ActionMessages errors, int page)
+        throws ValidatorException {
+        String prefix =
+            ModuleUtils.getInstance().getModuleConfig(request, application)
+                       .getPrefix();
+        ValidationPlans plans =
+            (ValidationPlans) application.getAttribute(
+                ValidatorPlugIn.VALIDATION_PLANS_KEY + '.' + prefix);
+
+        if (plans != null) {
+            ValidatorResults results =
+                plans.validate(key, bean, application, request,
+                    RequestUtils.getUserLocale(request, null), errors, page);
+
+            if (results != null) {
+                return results;
+            }
+        }
+
+        return initValidator(key, bean, application, request, errors, page)
+                   .validate();
+    }
 }
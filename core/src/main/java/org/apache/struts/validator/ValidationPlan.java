@@ -0,0 +1,576 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.validator.Field;
+import org.apache.commons.validator.Form;
+import org.apache.commons.validator.Validator;
+import org.apache.commons.validator.ValidatorAction;
+import org.apache.commons.validator.ValidatorException;
+import org.apache.commons.validator.ValidatorResults;
+import org.apache.commons.validator.util.ValidatorUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * <p>An immutable plan for validating one <code>Form</code>, prepared once
+ * and then run for any number of requests, by any number of threads.  The
+ * plan holds the fields of the form in order, and for each field the
+ * validator actions to run, with the actions they depend on placed before
+ * them, each with its validation method already loaded and its arguments
+ * already matched to the validation parameters.</p>
+ *
+ * <p>Running a plan has the same outcome as
+ * <code>Validator.validate()</code>: the same validation methods are called
+ * with the same arguments, in the same order, and the same results are
+ * recorded.  An action that another action of the field depends on runs
+ * once, and the first action that fails ends the validation of the field,
+ * as it does for <code>Field.validate()</code>.  The results of a field are
+ * recorded apart and added to those of the form once the field is done, so
+ * a validation method asking for the <code>ValidatorResults</code> sees
+ * those of the fields before its own, as it would with a
+ * <code>Validator</code>.</p>
+ *
+ * <p>The steps of the validator actions hold no state of a form, so they are
+ * shared by the plans of every form of a module, and so is the instance of
+ * a validation class whose method is not static, as it is by
+ * <code>ValidatorAction</code>.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class ValidationPlan {
+    /**
+     * <p>Commons Logging instance.</p>
+     */
+    private static final Log log = LogFactory.getLog(ValidationPlan.class);
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The form this plan validates.</p>
+     */
+    private final Form form;
+
+    /**
+     * <p>The steps validating each field of the form, in order.</p>
+     */
+    private final FieldStep[] fields;
+
+    /**
+     * <p>The largest number of arguments of a validation method.</p>
+     */
+    private final int maxArgs;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct a plan with the specified steps.</p>
+     *
+     * @param form    The form
+     * @param fields  The steps validating each field
+     * @param maxArgs The largest number of arguments of a validation method
+     */
+    private ValidationPlan(Form form, FieldStep[] fields, int maxArgs) {
+        this.form = form;
+        this.fields = fields;
+        this.maxArgs = maxArgs;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Prepare a plan for the specified form.</p>
+     *
+     * @param form        The form
+     * @param actions     The validator actions, keyed by name
+     * @param actionSteps The steps of the validator actions prepared for
+     *                    earlier plans, keyed by name, which the steps
+     *                    prepared for this plan are added to; the caller
+     *                    must guard it from concurrent use
+     * @param loader      The class loader to load validation classes with
+     * @return The plan
+     * @throws ValidatorException if a field depends on an action that does
+     *                            not exist, or an action's validation method
+     *                            cannot be loaded
+     */
+    static ValidationPlan compile(Form form, Map actions, Map actionSteps,
+        ClassLoader loader)
+        throws ValidatorException {
+        List fieldSteps = new ArrayList();
+        int maxArgs = 0;
+        Iterator fields = form.getFields().iterator();
+
+        while (fields.hasNext()) {
+            Field field = (Field) fields.next();
+            List steps = new ArrayList();
+
+            if (field.getDepends() != null) {
+                Iterator depends = field.getDependencyList().iterator();
+
+                while (depends.hasNext()) {
+                    addAction(field, (String) depends.next(), actions,
+                        actionSteps, loader, steps, new ArrayList());
+                }
+            }
+
+            for (int i = 0; i < steps.size(); i++) {
+                maxArgs =
+                    Math.max(maxArgs, ((ActionStep) steps.get(i)).paramNames.length);
+            }
+
+            fieldSteps.add(new FieldStep(field,
+                    (ActionStep[]) steps.toArray(new ActionStep[steps.size()])));
+        }
+
+        return new ValidationPlan(form,
+            (FieldStep[]) fieldSteps.toArray(new FieldStep[fieldSteps.size()]),
+            maxArgs);
+    }
+
+    /**
+     * <p>Return the form this plan validates.</p>
+     *
+     * @return The form
+     */
+    Form getForm() {
+        return form;
+    }
+
+    /**
+     * <p>Return the largest number of arguments of a validation method.</p>
+     *
+     * @return The number of arguments
+     */
+    int getMaxArgs() {
+        return maxArgs;
+    }
+
+    /**
+     * <p>Validate the fields of the form up to the specified page.</p>
+     *
+     * @param params  The validation parameters, which must hold every
+     *                parameter <code>Validator.validate()</code> would
+     *                provide; the field and validator action parameters are
+     *                replaced as validation proceeds
+     * @param page    The page
+     * @param args    Arrays to pass arguments in, one of each length up to
+     *                {@link #getMaxArgs()}, indexed by length
+     * @param results The results to record into
+     * @throws ValidatorException if a validation method cannot be called
+     */
+    void validate(Map params, int page, Object[][] args, ValidatorResults results)
+        throws ValidatorException {
+        Object bean = params.get(Validator.BEAN_PARAM);
+
+        for (int i = 0; i < fields.length; i++) {
+            FieldStep step = fields[i];
+
+            if (step.field.getPage() <= page) {
+                params.put(Validator.FIELD_PARAM, step.field);
+                step.validate(bean, params, args, results);
+            }
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Add the step of the specified action, after those of the actions it
+     * depends on, unless it was already added.</p>
+     *
+     * @param field       The field, for error messages
+     * @param name        The name of the action
+     * @param actions     The validator actions, keyed by name
+     * @param actionSteps The steps prepared so far, keyed by name
+     * @param loader      The class loader to load validation classes with
+     * @param steps       The steps of the field
+     * @param path        The names of the actions being added, to detect
+     *                    circular dependencies
+     * @throws ValidatorException if an action cannot be prepared
+     */
+    private static void addAction(Field field, String name, Map actions,
+        Map actionSteps, ClassLoader loader, List steps, List path)
+        throws ValidatorException {
+        ValidatorAction action = (ValidatorAction) actions.get(name);
+
+        if (action == null) {
+            throw new ValidatorException("No ValidatorAction named " + name
+                + " found for field " + field.getProperty());
+        }
+
+        if (path.contains(name)) {
+            throw new ValidatorException("Circular dependency of "
+                + "ValidatorAction " + name);
+        }
+
+        ActionStep step = (ActionStep) actionSteps.get(name);
+
+        if (step == null) {
+            step = new ActionStep(action, loader);
+            actionSteps.put(name, step);
+        }
+
+        if (steps.contains(step)) {
+            return;
+        }
+
+        path.add(name);
+
+        Iterator depends = action.getDependencyList().iterator();
+
+        while (depends.hasNext()) {
+            addAction(field, (String) depends.next(), actions, actionSteps,
+                loader, steps, path);
+        }
+
+        path.remove(path.size() - 1);
+        steps.add(step);
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>The validation of one field.</p>
+     */
+    private static final class FieldStep {
+        /**
+         * <p>The field.</p>
+         */
+        final Field field;
+
+        /**
+         * <p>The actions to run, in order.</p>
+         */
+        final ActionStep[] actions;
+
+        /**
+         * <p>Construct the validation of a field.</p>
+         *
+         * @param field   The field
+         * @param actions The actions to run, in order
+         */
+        FieldStep(Field field, ActionStep[] actions) {
+            this.field = field;
+            this.actions = actions;
+        }
+
+        /**
+         * <p>Run the actions for the field, or for each element of an
+         * indexed field, until one fails.</p>
+         *
+         * @param bean    The bean being validated
+         * @param params  The validation parameters
+         * @param args    Arrays to pass arguments in, indexed by length
+         * @param results The results to record into
+         * @throws ValidatorException if a validation method cannot be
+         *                            called
+         */
+        void validate(Object bean, Map params, Object[][] args,
+            ValidatorResults results)
+            throws ValidatorException {
+            if (actions.length == 0) {
+                return;
+            }
+
+            // Like Field.validate(), record the results of the field apart,
+            // and merge them, replacing any of an earlier field with the
+            // same key, once the field is done
+            ValidatorResults fieldResults = new ValidatorResults();
+
+            if (!field.isIndexed()) {
+                runActions(bean, field, params, args, fieldResults);
+            } else {
+                Object[] items = getIndexedItems(bean);
+
+                for (int i = 0; i < items.length; i++) {
+                    Field item = (Field) field.clone();
+
+                    item.setKey(ValidatorUtils.replace(item.getKey(),
+                            Field.TOKEN_INDEXED, "[" + i + "]"));
+
+                    // Each element's results replace those of the previous
+                    // one
+                    ValidatorResults itemResults = new ValidatorResults();
+                    boolean valid =
+                        runActions(items[i], item, params, args, itemResults);
+
+                    fieldResults.merge(itemResults);
+
+                    if (!valid) {
+                        break;
+                    }
+                }
+            }
+
+            results.merge(fieldResults);
+        }
+
+        /**
+         * <p>Run the actions until one fails.</p>
+         *
+         * @param bean    The bean, or indexed element, being validated
+         * @param item    The field, or the copy of an indexed field for the
+         *                element
+         * @param params  The validation parameters
+         * @param args    Arrays to pass arguments in, indexed by length
+         * @param results The results to record into
+         * @return <code>true</code> if every action succeeded
+         * @throws ValidatorException if a validation method cannot be
+         *                            called
+         */
+        private boolean runActions(Object bean, Field item, Map params,
+            Object[][] args, ValidatorResults results)
+            throws ValidatorException {
+            for (int i = 0; i < actions.length; i++) {
+                if (!actions[i].run(field, bean, item, params, args, results)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * <p>Return the elements of the indexed list property of the field,
+         * as <code>Field</code> does.</p>
+         *
+         * @param bean The bean being validated
+         * @return The elements
+         * @throws ValidatorException if the property cannot be read or is
+         *                            not a list
+         */
+        private Object[] getIndexedItems(Object bean)
+            throws ValidatorException {
+            Object value;
+
+            try {
+                value =
+                    PropertyUtils.getProperty(bean,
+                        field.getIndexedListProperty());
+            } catch (IllegalAccessException e) {
+                throw new ValidatorException(e.getMessage());
+            } catch (InvocationTargetException e) {
+                throw new ValidatorException(e.getMessage());
+            } catch (NoSuchMethodException e) {
+                throw new ValidatorException(e.getMessage());
+            }
+
+            if (value == null) {
+                return new Object[0];
+            } else if (value instanceof Collection) {
+                return ((Collection) value).toArray();
+            } else if (value.getClass().isArray()) {
+                return (Object[]) value;
+            } else {
+                throw new ValidatorException(field.getKey()
+                    + " is not indexed");
+            }
+        }
+    }
+
+    /**
+     * <p>The call of one validator action's validation method.</p>
+     */
+    private static final class ActionStep {
+        /**
+         * <p>The action.</p>
+         */
+        final ValidatorAction action;
+
+        /**
+         * <p>The name of the action.</p>
+         */
+        final String name;
+
+        /**
+         * <p>The validation method.</p>
+         */
+        final Method method;
+
+        /**
+         * <p>The instance to call the method on, or <code>null</code> for a
+         * static method.</p>
+         */
+        final Object instance;
+
+        /**
+         * <p>The validation parameter passed as each argument.</p>
+         */
+        final String[] paramNames;
+
+        /**
+         * <p>The argument that receives the bean, or -1.</p>
+         */
+        final int beanArg;
+
+        /**
+         * <p>The argument that receives the field, or -1.</p>
+         */
+        final int fieldArg;
+
+        /**
+         * <p>Prepare the call of an action's validation method.</p>
+         *
+         * @param action The action
+         * @param loader The class loader to load classes with
+         * @throws ValidatorException if the method cannot be loaded
+         */
+        ActionStep(ValidatorAction action, ClassLoader loader)
+            throws ValidatorException {
+            this.action = action;
+            this.name = action.getName();
+
+            List names = new ArrayList();
+
+            if (action.getMethodParams() != null) {
+                StringTokenizer tokens =
+                    new StringTokenizer(action.getMethodParams(), ",");
+
+                while (tokens.hasMoreTokens()) {
+                    String token = tokens.nextToken().trim();
+
+                    if (token.length() > 0) {
+                        names.add(token);
+                    }
+                }
+            }
+
+            this.paramNames =
+                (String[]) names.toArray(new String[names.size()]);
+            this.beanArg = names.indexOf(Validator.BEAN_PARAM);
+            this.fieldArg = names.indexOf(Validator.FIELD_PARAM);
+
+            try {
+                Class type = loader.loadClass(action.getClassname());
+                Class[] types = new Class[paramNames.length];
+
+                for (int i = 0; i < paramNames.length; i++) {
+                    types[i] = loader.loadClass(paramNames[i]);
+                }
+
+                this.method = type.getMethod(action.getMethod(), types);
+                this.instance =
+                    Modifier.isStatic(method.getModifiers()) ? null
+                                                             : type
+                    .newInstance();
+            } catch (ClassNotFoundException e) {
+                throw new ValidatorException(e.toString());
+            } catch (NoSuchMethodException e) {
+                throw new ValidatorException("No such validation method: "
+                    + e.getMessage());
+            } catch (InstantiationException e) {
+                throw new ValidatorException("Couldn't create instance of "
+                    + action.getClassname() + ".  " + e.getMessage());
+            } catch (IllegalAccessException e) {
+                throw new ValidatorException("Couldn't create instance of "
+                    + action.getClassname() + ".  " + e.getMessage());
+            }
+        }
+
+        /**
+         * <p>Call the validation method and record its result, as
+         * <code>ValidatorAction</code> does.</p>
+         *
+         * @param field   The field, which results are recorded for
+         * @param bean    The bean, or indexed element, being validated
+         * @param item    The field, or the copy of an indexed field for the
+         *                element
+         * @param params  The validation parameters
+         * @param args    Arrays to pass arguments in, indexed by length
+         * @param results The results to record into
+         * @return Whether the value is valid
+         * @throws ValidatorException if the method cannot be called
+         */
+        boolean run(Field field, Object bean, Field item, Map params,
+            Object[][] args, ValidatorResults results)
+            throws ValidatorException {
+            params.put(Validator.VALIDATOR_ACTION_PARAM, action);
+
+            Object[] values = args[paramNames.length];
+
+            for (int i = 0; i < paramNames.length; i++) {
+                values[i] = params.get(paramNames[i]);
+            }
+
+            if (field.isIndexed()) {
+                if (beanArg >= 0) {
+                    values[beanArg] = bean;
+                }
+
+                if (fieldArg >= 0) {
+                    values[fieldArg] = item;
+                }
+            }
+
+            Object result = null;
+
+            try {
+                try {
+                    result = method.invoke(instance, values);
+                } catch (IllegalArgumentException e) {
+                    throw new ValidatorException(e.getMessage());
+                } catch (IllegalAccessException e) {
+                    throw new ValidatorException(e.getMessage());
+                } catch (InvocationTargetException e) {
+                    Throwable target = e.getTargetException();
+
+                    if (target instanceof Exception) {
+                        throw (Exception) target;
+                    } else if (target instanceof Error) {
+                        throw (Error) target;
+                    }
+                } finally {
+                    Arrays.fill(values, null);
+                }
+            } catch (ValidatorException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Unhandled exception thrown during validation: "
+                    + e.getMessage(), e);
+                results.add(field, name, false);
+
+                return false;
+            }
+
+            boolean valid =
+                (result instanceof Boolean) ? ((Boolean) result).booleanValue()
+                                            : (result != null);
+
+            results.add(field, name, valid, result);
+
+            return valid;
+        }
+    }
+}
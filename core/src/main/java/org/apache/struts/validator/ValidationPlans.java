@@ -0,0 +1,283 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.validator.Form;
+import org.apache.commons.validator.Validator;
+import org.apache.commons.validator.ValidatorException;
+import org.apache.commons.validator.ValidatorResources;
+import org.apache.commons.validator.ValidatorResults;
+import org.apache.struts.action.ActionMessages;
+import org.apache.struts.util.StripedPool;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>The {@link ValidationPlan}s of the forms of a module, prepared on first
+ * use, and the state that requests running them reuse.  A
+ * <code>State</code> holds the <code>Validator</code> handed to validation
+ * methods, its parameters and the arrays arguments are passed in.  Idle
+ * states are kept in a {@link StripedPool} owned by the plans, so that
+ * validating a form rarely waits for another thread and allocates little
+ * more than the results and the messages it records, and so that clearing
+ * the plans leaves no state, nor the resources it refers to, on the
+ * threads that used it.</p>
+ *
+ * <p>A form whose plan cannot be prepared, because it depends on an action
+ * that does not exist or whose method cannot be loaded, is reported once
+ * and then validated by a <code>Validator</code> as usual, which reports
+ * the problem on each request as it always has.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class ValidationPlans {
+    /**
+     * <p>Commons Logging instance.</p>
+     */
+    private static final Log log = LogFactory.getLog(ValidationPlans.class);
+
+    /**
+     * <p>Recorded for a form whose plan cannot be prepared.</p>
+     */
+    private static final Object NO_PLAN = new Object();
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The validator resources of the module.</p>
+     */
+    private final ValidatorResources resources;
+
+    /**
+     * <p>The parsed field variables of the module.</p>
+     */
+    private final FieldVars fieldVars;
+
+    /**
+     * <p>The plans prepared so far, or <code>NO_PLAN</code>, keyed by
+     * <code>Form</code>.  Replaced, never modified, once published.</p>
+     */
+    private volatile Map plans = new HashMap();
+
+    /**
+     * <p>The steps of the validator actions, shared by the plans, keyed by
+     * name.  Guarded by the lock of this object.</p>
+     */
+    private Map actionSteps = new HashMap();
+
+    /**
+     * <p>The idle states, taken while a thread validates a form.</p>
+     */
+    private final StripedPool states = new StripedPool();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct the plans of a module.</p>
+     *
+     * @param resources The validator resources of the module
+     * @param fieldVars The parsed field variables of the module
+     */
+    ValidationPlans(ValidatorResources resources, FieldVars fieldVars) {
+        this.resources = resources;
+        this.fieldVars = fieldVars;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the plan of the specified form, preparing it if this is the
+     * first time it is asked for.</p>
+     *
+     * @param form   The form
+     * @param loader The class loader to load validation classes with
+     * @return The plan, or <code>null</code> if it cannot be prepared
+     */
+    ValidationPlan getPlan(Form form, ClassLoader loader) {
+        Object plan = plans.get(form);
+
+        if (plan == null) {
+            synchronized (this) {
+                plan = plans.get(form);
+
+                if (plan == null) {
+                    try {
+                        plan =
+                            ValidationPlan.compile(form,
+                                resources.getValidatorActions(), actionSteps,
+                                loader);
+                    } catch (ValidatorException e) {
+                        log.error("Cannot prepare the validation of form '"
+                            + form.getName() + "' - " + e.getMessage());
+                        plan = NO_PLAN;
+                    }
+
+                    Map copy = new HashMap(plans);
+
+                    copy.put(form, plan);
+                    plans = copy;
+                }
+            }
+        }
+
+        return (plan == NO_PLAN) ? null : (ValidationPlan) plan;
+    }
+
+    /**
+     * <p>Validate a form with its plan.</p>
+     *
+     * @param formName    The name of the form
+     * @param bean        The bean being validated
+     * @param application The servlet context
+     * @param request     The current request
+     * @param locale      The locale of the user
+     * @param errors      The messages of the request
+     * @param page        The page; fields on later pages are not validated
+     * @return The results, or <code>null</code> if the form has no plan and
+     *         must be validated by a <code>Validator</code>
+     * @throws ValidatorException if a validation method cannot be called
+     */
+    ValidatorResults validate(String formName, Object bean,
+        ServletContext application, HttpServletRequest request,
+        Locale locale, ActionMessages errors, int page)
+        throws ValidatorException {
+        State state = (State) states.take();
+
+        if (state == null) {
+            state = new State();
+        }
+
+        try {
+            state.setParameter(Resources.SERVLET_CONTEXT_PARAM, application);
+            state.setParameter(Resources.HTTP_SERVLET_REQUEST_PARAM, request);
+            state.setParameter(Validator.LOCALE_PARAM, locale);
+            state.setParameter(Resources.ACTION_MESSAGES_PARAM, errors);
+            state.setParameter(Validator.BEAN_PARAM, bean);
+            state.setParameter(Resources.FIELD_VARS_PARAM, fieldVars);
+
+            return state.validate(formName, page);
+        } finally {
+            state.reset();
+            states.release(state);
+        }
+    }
+
+    /**
+     * <p>Forget every plan and idle state.</p>
+     */
+    void clear() {
+        synchronized (this) {
+            plans = new HashMap();
+            actionSteps = new HashMap();
+        }
+
+        states.clear();
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>The state of one validation, reused by later ones.</p>
+     */
+    private class State extends Validator {
+        /**
+         * <p>Arrays to pass arguments in, indexed by length.</p>
+         */
+        private Object[][] args = new Object[0][];
+
+        /**
+         * <p>Construct a state.</p>
+         */
+        State() {
+            super(ValidationPlans.this.resources);
+            setUseContextClassLoader(true);
+        }
+
+        /**
+         * <p>Validate a form with its plan, as <code>validate()</code>
+         * would, once the parameters of the request are set.</p>
+         *
+         * @param formName The name of the form
+         * @param page     The page
+         * @return The results, or <code>null</code> if the form has no plan
+         * @throws ValidatorException if a validation method cannot be
+         *                            called
+         */
+        ValidatorResults validate(String formName, int page)
+            throws ValidatorException {
+            this.formName = formName;
+            this.page = page;
+
+            Locale locale = (Locale) parameters.get(LOCALE_PARAM);
+
+            if (locale == null) {
+                locale = Locale.getDefault();
+                parameters.put(LOCALE_PARAM, locale);
+            }
+
+            Form form = resources.getForm(locale, formName);
+
+            if (form == null) {
+                return new ValidatorResults();
+            }
+
+            ValidationPlan plan = getPlan(form, getClassLoader());
+
+            if (plan == null) {
+                return null;
+            }
+
+            if (args.length <= plan.getMaxArgs()) {
+                args = new Object[plan.getMaxArgs() + 1][];
+
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = new Object[i];
+                }
+            }
+
+            ValidatorResults results = new ValidatorResults();
+
+            parameters.put(VALIDATOR_PARAM, this);
+            parameters.put(FORM_PARAM, form);
+            parameters.put(VALIDATOR_RESULTS_PARAM, results);
+            plan.validate(parameters, page, args, results);
+
+            return results;
+        }
+
+        /**
+         * <p>Forget the request, so that it can be collected.</p>
+         */
+        void reset() {
+            formName = null;
+            page = 0;
+            parameters.clear();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.LinkedList;
+
+/**
+ * <p>A fixed number of daemon threads, shared by the requests of a module,
+ * that help validate the fields of a form in parallel.  The pool only ever
+ * helps: the thread that submits work must be able to finish it alone, so
+ * work is simply dropped when the queue is full or the pool has been shut
+ * down, and a request never waits for a pool thread to become free.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class ValidationPool {
+    /**
+     * <p>Commons Logging instance.</p>
+     */
+    private static final Log log = LogFactory.getLog(ValidationPool.class);
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The work waiting for a thread.  Guarded by this object's lock.</p>
+     */
+    private final LinkedList queue = new LinkedList();
+
+    /**
+     * <p>The maximum number of entries in the queue.</p>
+     */
+    private final int capacity;
+
+    /**
+     * <p>The threads of this pool.</p>
+     */
+    private final Thread[] workers;
+
+    /**
+     * <p>Whether {@link #shutdown()} has been called.  Guarded by this
+     * object's lock.</p>
+     */
+    private boolean shutdown = false;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Start a pool of the specified number of threads.</p>
+     *
+     * @param threads The number of threads
+     * @param name    The prefix of the thread names
+     * @throws IllegalArgumentException if the number of threads is not
+     *                                  positive
+     */
+    ValidationPool(int threads, String name) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads "
+                + threads);
+        }
+
+        this.capacity = threads * 4;
+        this.workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Worker(), name + "-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the number of threads of this pool.</p>
+     *
+     * @return The number of threads
+     */
+    int getThreads() {
+        return workers.length;
+    }
+
+    /**
+     * <p>Run the specified work on a pool thread, unless the queue is full
+     * or the pool has been shut down.</p>
+     *
+     * @param work The work
+     * @return <code>true</code> if the work was queued
+     */
+    synchronized boolean offer(Runnable work) {
+        if (shutdown || (queue.size() >= capacity)) {
+            return false;
+        }
+
+        queue.addLast(work);
+        notify();
+
+        return true;
+    }
+
+    /**
+     * <p>Stop the threads of this pool once they have finished their
+     * current work.  Queued work is discarded.</p>
+     */
+    synchronized void shutdown() {
+        shutdown = true;
+        queue.clear();
+        notifyAll();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Return the next work to run, waiting for some if there is none.
+     * </p>
+     *
+     * @return The work, or <code>null</code> once the pool is shut down
+     */
+    private synchronized Runnable take() {
+        while (!shutdown && queue.isEmpty()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Only shutdown() stops a worker
+            }
+        }
+
+        return shutdown ? null : (Runnable) queue.removeFirst();
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>Runs queued work until the pool is shut down.</p>
+     */
+    private class Worker implements Runnable {
+        public void run() {
+            Runnable work;
+
+            while ((work = take()) != null) {
+                try {
+                    work.run();
+                } catch (Throwable t) {
+                    log.error("Validation failed on a pool thread", t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import org.apache.struts.util.RequestUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>A read-only view of a request, given to the validation methods that
+ * run on the threads of a {@link ValidationPool} instead of the request
+ * itself, which is not safe to use from several threads.  It is taken on
+ * the request thread: the attributes and parameters of the request are
+ * copied, and the locale of the user is resolved, so that message resources
+ * and messages are found as they would be on the request thread.</p>
+ *
+ * <p>Attributes cannot be changed, and the session is not available: the
+ * locale it may hold is already the locale of this request.  Other methods,
+ * such as those reading headers, read the request itself.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+class ValidationRequest extends HttpServletRequestWrapper {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The attributes of the request.</p>
+     */
+    private final Map attributes = new HashMap();
+
+    /**
+     * <p>The parameters of the request.</p>
+     */
+    private final Map parameters;
+
+    /**
+     * <p>The locale of the user.</p>
+     */
+    private final Locale locale;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Take a view of the specified request.  Must be called on the
+     * request thread.</p>
+     *
+     * @param request The request
+     */
+    ValidationRequest(HttpServletRequest request) {
+        super(request);
+
+        Enumeration names = request.getAttributeNames();
+
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+
+            attributes.put(name, request.getAttribute(name));
+        }
+
+        this.parameters =
+            Collections.unmodifiableMap(new HashMap(request.getParameterMap()));
+        this.locale = RequestUtils.getUserLocale(request, null);
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Enumeration getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    public void setAttribute(String name, Object value) {
+        throw new UnsupportedOperationException(
+            "Request attributes cannot be set while validating in parallel");
+    }
+
+    public void removeAttribute(String name) {
+        throw new UnsupportedOperationException(
+            "Request attributes cannot be removed while validating in parallel");
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public Enumeration getLocales() {
+        return Collections.enumeration(Collections.singletonList(locale));
+    }
+
+    public String getParameter(String name) {
+        String[] values = (String[]) parameters.get(name);
+
+        return ((values == null) || (values.length == 0)) ? null : values[0];
+    }
+
+    public Map getParameterMap() {
+        return parameters;
+    }
+
+    public Enumeration getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    public String[] getParameterValues(String name) {
+        String[] values = (String[]) parameters.get(name);
+
+        return (values == null) ? null : (String[]) values.clone();
+    }
+
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    public HttpSession getSession(boolean create) {
+        if (create) {
+            throw new UnsupportedOperationException(
+                "The session is not available while validating in parallel");
+        }
+
+        return null;
+    }
+}
@@ -22,7 +22,6 @@ package org.apache.struts.validator;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.commons.validator.Validator;
 import org.apache.commons.validator.ValidatorException;
 import org.apache.commons.validator.ValidatorResults;
 import org.apache.struts.action.ActionErrors;
@@ -119,12 +118,10 @@ public class ValidatorForm extends ActionForm implements Serializable {
         	throw e2;
         }
         
-        Validator validator =
-            Resources.initValidator(validationKey, this, application, request,
-                errors, getPage());
-
         try {
-            validatorResults = validator.validate();
+            validatorResults =
+                Resources.validate(validationKey, this, application, request,
+                    errors, getPage());
         } catch (ValidatorException e) {
             log.error(e.getMessage(), e);
         }
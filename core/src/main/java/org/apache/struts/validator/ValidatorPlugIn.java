@@ -22,9 +22,14 @@ package org.apache.struts.validator;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.commons.validator.Field;
+import org.apache.commons.validator.Form;
+import org.apache.commons.validator.Validator;
 import org.apache.commons.validator.ValidatorResources;
+import org.apache.commons.validator.Var;
 import org.apache.struts.action.ActionServlet;
 import org.apache.struts.action.PlugIn;
+import org.apache.struts.config.FormBeanConfig;
 import org.apache.struts.config.ModuleConfig;
 import org.xml.sax.SAXException;
 
@@ -37,7 +42,9 @@ import java.io.IOException;
 import java.net.URL;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.StringTokenizer;
 
 /**
@@ -74,6 +81,40 @@ public class ValidatorPlugIn implements PlugIn {
     public final static String STOP_ON_ERROR_KEY =
         "org.apache.struts.validator.STOP_ON_ERROR";
 
+    /**
+     * Application scope key that the pool of threads validating fields in
+     * parallel is stored under, followed by '.' and the module prefix.
+     *
+     * @since Struts 1.4
+     */
+    public final static String VALIDATION_POOL_KEY =
+        "org.apache.struts.validator.VALIDATION_POOL";
+
+    /**
+     * Application scope key that <code>validationStopOnFirstError</code> is
+     * stored under, followed by '.' and the module prefix.
+     *
+     * @since Struts 1.4
+     */
+    public final static String VALIDATION_STOP_ON_ERROR_KEY =
+        "org.apache.struts.validator.VALIDATION_STOP_ON_ERROR";
+
+    /**
+     * Application scope key that the prepared validation plans of the forms
+     * are stored under, followed by '.' and the module prefix.
+     *
+     * @since Struts 1.4
+     */
+    public final static String VALIDATION_PLANS_KEY =
+        "org.apache.struts.validator.VALIDATION_PLANS";
+
+    /**
+     * Application scope key that the parsed field variables of the forms
+     * are stored under, followed by '.' and the module prefix.
+     */
+    final static String FIELD_VARS_KEY =
+        "org.apache.struts.validator.FIELD_VARS";
+
     /**
      * The module configuration for our owning module.
      */
@@ -104,6 +145,40 @@ public class ValidatorPlugIn implements PlugIn {
      */
     private boolean stopOnFirstError = true;
 
+    /**
+     * The number of threads that validate the fields of a form in parallel
+     * with the request thread, or 0 to validate them on the request thread
+     * only.
+     */
+    private int validationThreads = 0;
+
+    /**
+     * Whether fields after the first field in error are skipped when fields
+     * are validated in parallel.
+     */
+    private boolean validationStopOnFirstError = false;
+
+    /**
+     * The pool of threads validating fields in parallel, if any.
+     */
+    private ValidationPool validationPool = null;
+
+    /**
+     * Whether forms are validated with plans prepared once for each form.
+     */
+    private boolean compiledValidation = false;
+
+    /**
+     * The prepared validation plans of the forms, if any.
+     */
+    private ValidationPlans validationPlans = null;
+
+    /**
+     * The parsed field variables and compiled tests of the forms of this
+     * module.
+     */
+    private final FieldVars fieldVars = new FieldVars();
+
     /**
      * Gets a comma delimitted list of Validator resources.
      *
@@ -147,6 +222,93 @@ public class ValidatorPlugIn implements PlugIn {
         this.stopOnFirstError = stopOnFirstError;
     }
 
+    /**
+     * Gets the number of threads that validate fields in parallel.
+     *
+     * @return The number of threads, or 0 if fields are only validated on
+     *         the request thread
+     * @since Struts 1.4
+     */
+    public int getValidationThreads() {
+        return this.validationThreads;
+    }
+
+    /**
+     * Sets the number of threads, shared by the requests of this module,
+     * that validate the fields of a form in parallel with the request
+     * thread.  Fields that depend on <code>validwhen</code> or
+     * <code>requiredif</code> are still validated on the request thread,
+     * and the same messages are reported, in field order.  The validation
+     * methods of the other fields must be safe to call from several threads
+     * at once; those called on the pool threads receive a read-only copy of
+     * the request, without its session.  The default, 0, validates every
+     * field on the request thread.
+     *
+     * @param validationThreads The number of threads
+     * @since Struts 1.4
+     */
+    public void setValidationThreads(int validationThreads) {
+        this.validationThreads = validationThreads;
+    }
+
+    /**
+     * Gets whether fields after the first field in error are skipped when
+     * fields are validated in parallel.
+     *
+     * @return <code>true</code> if only the first field in error is
+     *         reported
+     * @since Struts 1.4
+     */
+    public boolean isValidationStopOnFirstError() {
+        return this.validationStopOnFirstError;
+    }
+
+    /**
+     * Sets whether fields after the first field in error are skipped when
+     * fields are validated in parallel, so that only the messages of the
+     * first field in error are reported, as in the JavaScript validation.
+     * Unlike <code>stopOnFirstError</code>, which only applies to the
+     * JavaScript validation, this changes the messages reported by the
+     * server, so it is <code>false</code> by default.  Only used with
+     * <code>validationThreads</code>.
+     *
+     * @param validationStopOnFirstError Whether only the first field in
+     *                                   error is reported
+     * @since Struts 1.4
+     */
+    public void setValidationStopOnFirstError(
+        boolean validationStopOnFirstError) {
+        this.validationStopOnFirstError = validationStopOnFirstError;
+    }
+
+    /**
+     * Gets whether forms are validated with prepared plans.
+     *
+     * @return <code>true</code> if forms are validated with plans prepared
+     *         once for each form
+     * @since Struts 1.4
+     */
+    public boolean isCompiledValidation() {
+        return this.compiledValidation;
+    }
+
+    /**
+     * Sets whether forms are validated with plans prepared once for each
+     * form, which hold the fields to validate and the validation methods to
+     * call, already loaded, so that a request does not look them up again
+     * and reuses the <code>Validator</code> and parameters of an earlier
+     * request.  The plans of the form beans of this module are prepared at
+     * startup.  The outcome of validation is unchanged.  Ignored when
+     * <code>validationThreads</code> is set.
+     *
+     * @param compiledValidation Whether forms are validated with prepared
+     *                           plans
+     * @since Struts 1.4
+     */
+    public void setCompiledValidation(boolean compiledValidation) {
+        this.compiledValidation = compiledValidation;
+    }
+
     /**
      * Initialize and load our resources.
      *
@@ -176,6 +338,25 @@ public class ValidatorPlugIn implements PlugIn {
             servletContext.setAttribute(STOP_ON_ERROR_KEY + '.'
                 + config.getPrefix(),
                 (this.stopOnFirstError ? Boolean.TRUE : Boolean.FALSE));
+            servletContext.setAttribute(FIELD_VARS_KEY + '.'
+                + config.getPrefix(), fieldVars);
+
+            if (validationThreads > 0) {
+                validationPool =
+                    new ValidationPool(validationThreads,
+                        "struts-validator" + config.getPrefix());
+                servletContext.setAttribute(VALIDATION_POOL_KEY + '.'
+                    + config.getPrefix(), validationPool);
+                servletContext.setAttribute(VALIDATION_STOP_ON_ERROR_KEY
+                    + '.' + config.getPrefix(),
+                    (this.validationStopOnFirstError ? Boolean.TRUE
+                                                     : Boolean.FALSE));
+            } else if (compiledValidation) {
+                validationPlans = new ValidationPlans(resources, fieldVars);
+                compileValidationPlans();
+                servletContext.setAttribute(VALIDATION_PLANS_KEY + '.'
+                    + config.getPrefix(), validationPlans);
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new UnavailableException(
@@ -192,6 +373,25 @@ public class ValidatorPlugIn implements PlugIn {
             log.debug("Destroying ValidatorPlugin");
         }
 
+        if (validationPool != null) {
+            servlet.getServletContext().removeAttribute(VALIDATION_POOL_KEY
+                + '.' + config.getPrefix());
+            servlet.getServletContext().removeAttribute(
+                VALIDATION_STOP_ON_ERROR_KEY + '.' + config.getPrefix());
+            validationPool.shutdown();
+            validationPool = null;
+        }
+
+        if (validationPlans != null) {
+            servlet.getServletContext().removeAttribute(VALIDATION_PLANS_KEY
+                + '.' + config.getPrefix());
+            validationPlans.clear();
+            validationPlans = null;
+        }
+
+        servlet.getServletContext().removeAttribute(FIELD_VARS_KEY + '.'
+            + config.getPrefix());
+
         servlet = null;
         config = null;
 
@@ -253,6 +453,113 @@ public class ValidatorPlugIn implements PlugIn {
             log.error("Skipping all validation", sex);
             throw new ServletException(sex);
         }
+
+        compileValidWhenTests();
+        compileFieldVars();
+    }
+
+    /**
+     * Compile the <code>validwhen</code> tests of the forms named after the
+     * form beans of this module, for the default Locale, so that they are
+     * not parsed on the first request and invalid tests are reported now.
+     * Tests read from message resources, and forms found some other way,
+     * are compiled on first use.
+     *
+     * @since Struts 1.4
+     */
+    protected void compileValidWhenTests() {
+        Iterator forms = findForms().iterator();
+        int count = 0;
+
+        while (forms.hasNext()) {
+            Form form = (Form) forms.next();
+            Iterator fields = form.getFields().iterator();
+
+            while (fields.hasNext()) {
+                Field field = (Field) fields.next();
+                Var test = field.getVar("test");
+
+                if (!field.isDependency("validwhen") || (test == null)
+                    || test.isResource() || (test.getValue() == null)) {
+                    continue;
+                }
+
+                try {
+                    fieldVars.getValidWhenTest(test.getValue());
+                    count++;
+                } catch (Exception e) {
+                    log.error("Invalid validwhen test '" + test.getValue()
+                        + "' for field '" + field.getKey() + "' of form '"
+                        + form.getName() + "' - " + e);
+                }
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Compiled " + count + " validwhen tests");
+        }
+    }
+
+    /**
+     * Parse the masks, lengths, ranges and date patterns of the forms named
+     * after the form beans of this module, for the default Locale, so that
+     * <code>FieldChecks</code> reads their values without parsing them and
+     * invalid values are reported now.  Variables read from message
+     * resources are resolved on each use.
+     *
+     * @since Struts 1.4
+     */
+    protected void compileFieldVars() {
+        Iterator forms = findForms().iterator();
+        int count = 0;
+
+        while (forms.hasNext()) {
+            Form form = (Form) forms.next();
+            Iterator fields = form.getFields().iterator();
+
+            while (fields.hasNext()) {
+                Field field = (Field) fields.next();
+
+                try {
+                    count += fieldVars.compile(field);
+                } catch (Exception e) {
+                    log.error("Invalid variable for field '" + field.getKey()
+                        + "' of form '" + form.getName() + "' - " + e);
+                }
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Parsed " + count + " field variables");
+        }
+    }
+
+    /**
+     * Prepare the validation plans of the forms named after the form beans
+     * of this module, for the default Locale, so that the first request
+     * does not.  Forms whose plan cannot be prepared are reported, and are
+     * validated as usual.
+     *
+     * @since Struts 1.4
+     */
+    protected void compileValidationPlans() {
+        Iterator forms = findForms().iterator();
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        int count = 0;
+
+        if (loader == null) {
+            loader = Validator.class.getClassLoader();
+        }
+
+        while (forms.hasNext()) {
+            if (validationPlans.getPlan((Form) forms.next(), loader) != null) {
+                count++;
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Prepared " + count + " validation plans");
+        }
     }
 
     /**
@@ -260,5 +567,28 @@ public class ValidatorPlugIn implements PlugIn {
      */
     protected void destroyResources() {
         resources = null;
+        fieldVars.clear();
+    }
+
+    /**
+     * Return the forms named after the form beans of this module, for the
+     * default Locale.
+     *
+     * @return The <code>Form</code> instances that exist
+     */
+    private List findForms() {
+        FormBeanConfig[] formBeans = config.findFormBeanConfigs();
+        Locale locale = Locale.getDefault();
+        List forms = new ArrayList();
+
+        for (int i = 0; i < formBeans.length; i++) {
+            Form form = resources.getForm(locale, formBeans[i].getName());
+
+            if (form != null) {
+                forms.add(form);
+            }
+        }
+
+        return forms;
     }
 }
@@ -33,8 +33,6 @@ import org.apache.struts.validator.Resources;
 
 import javax.servlet.http.HttpServletRequest;
 
-import java.io.StringReader;
-
 /**
  * This class contains the validwhen validation that is used in the
  * validator-rules.xml file.
@@ -122,30 +120,11 @@ public class ValidWhen {
             return false;
         }
 
-        // Create the Lexer
-        ValidWhenLexer lexer = null;
+        // Compile the test, or find it already compiled
+        ValidWhenExpression expression = null;
 
         try {
-            lexer = new ValidWhenLexer(new StringReader(test));
-        } catch (Exception ex) {
-            String logErrorMsg =
-                "ValidWhenLexer Error for field ' " + field.getKey() + "' - "
-                + ex;
-
-            log.error(logErrorMsg);
-
-            String userErrorMsg = sysmsgs.getMessage("system.error");
-
-            errors.add(field.getKey(), new ActionMessage(userErrorMsg, false));
-
-            return false;
-        }
-
-        // Create the Parser
-        ValidWhenParser parser = null;
-
-        try {
-            parser = new ValidWhenParser(lexer);
+            expression = Resources.getValidWhenExpression(test, validator);
         } catch (Exception ex) {
             String logErrorMsg =
                 "ValidWhenParser Error for field ' " + field.getKey() + "' - "
@@ -160,13 +139,8 @@ public class ValidWhen {
             return false;
         }
 
-        parser.setForm(form);
-        parser.setIndex(index);
-        parser.setValue(value);
-
         try {
-            parser.expression();
-            valid = parser.getResult();
+            valid = expression.evaluate(form, value, index);
         } catch (Exception ex) {
             String logErrorMsg =
                 "ValidWhen Error for field ' " + field.getKey() + "' - " + ex;
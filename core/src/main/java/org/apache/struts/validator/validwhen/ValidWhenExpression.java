@@ -0,0 +1,557 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator.validwhen;
+
+import antlr.RecognitionException;
+import antlr.Token;
+import antlr.TokenStreamException;
+
+import org.apache.commons.validator.util.ValidatorUtils;
+
+import java.io.StringReader;
+
+import java.math.BigDecimal;
+
+/**
+ * <p>A <code>validwhen</code> test compiled into an immutable tree, which
+ * can be evaluated any number of times, by any number of threads, without
+ * parsing the test again.  The test is read with the same
+ * <code>ValidWhenLexer</code> and the same grammar as
+ * <code>ValidWhenParser</code>, and evaluates to the same result; property
+ * names are assembled once, when the test is compiled.</p>
+ *
+ * <p>The <code>ValidatorPlugIn</code> of each module keeps the tests it
+ * compiles, so each test is parsed once; see
+ * <code>Resources.getValidWhenExpression()</code>.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public final class ValidWhenExpression implements ValidWhenParserTokenTypes {
+    private static final int LESS_EQUAL = 0;
+    private static final int LESS_THAN = 1;
+    private static final int EQUAL = 2;
+    private static final int GREATER_THAN = 3;
+    private static final int GREATER_EQUAL = 4;
+    private static final int NOT_EQUAL = 5;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The test as written.</p>
+     */
+    private final String test;
+
+    /**
+     * <p>The root of the tree.</p>
+     */
+    private final Condition root;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct an expression with the specified tree.</p>
+     *
+     * @param test The test as written
+     * @param root The root of the tree
+     */
+    private ValidWhenExpression(String test, Condition root) {
+        this.test = test;
+        this.root = root;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Compile the specified test.</p>
+     *
+     * @param test The <code>validwhen</code> test
+     * @return The compiled test
+     * @throws RecognitionException if the test is not a valid expression
+     * @throws TokenStreamException if the test cannot be read
+     */
+    public static ValidWhenExpression compile(String test)
+        throws RecognitionException, TokenStreamException {
+        Compiler compiler = new Compiler(test);
+
+        return new ValidWhenExpression(test, compiler.expression());
+    }
+
+    /**
+     * <p>Evaluate this test.</p>
+     *
+     * @param form  The bean whose properties the test refers to
+     * @param value The value of the field being validated, used for
+     *              <code>*this*</code>
+     * @param index The index of the field being validated, used for
+     *              <code>[]</code>
+     * @return The result of the test
+     */
+    public boolean evaluate(Object form, String value, int index) {
+        return root.evaluate(form, value, index);
+    }
+
+    /**
+     * <p>Return the test as written.</p>
+     *
+     * @return The test
+     */
+    public String toString() {
+        return test;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * <p>Compare two values as <code>ValidWhenParser</code> does:
+     * numerically if both are numbers, otherwise as strings, with
+     * <code>null</code> and blank strings only equal to each other.</p>
+     *
+     * @param v1         The left value
+     * @param comparison The comparison
+     * @param v2         The right value
+     * @return The result of the comparison
+     */
+    private static boolean evaluateComparison(Object v1, int comparison,
+        Object v2) {
+        if ((v1 == null) || (v2 == null)) {
+            if (isBlank(v1)) {
+                v1 = null;
+            }
+
+            if (isBlank(v2)) {
+                v2 = null;
+            }
+
+            switch (comparison) {
+            case LESS_EQUAL:
+            case GREATER_THAN:
+            case LESS_THAN:
+            case GREATER_EQUAL:
+                return false;
+
+            case EQUAL:
+                return (v1 == v2);
+
+            case NOT_EQUAL:
+                return (v1 != v2);
+            }
+        }
+
+        if (isNumeric(v1) && isNumeric(v2)) {
+            try {
+                return compare(toBigDecimal(v1).compareTo(toBigDecimal(v2)),
+                    comparison);
+            } catch (NumberFormatException ex) {
+                // Compare them as strings
+            }
+        }
+
+        return compare(v1.toString().compareTo(v2.toString()), comparison);
+    }
+
+    /**
+     * <p>Return whether the specified value is a blank string.</p>
+     */
+    private static boolean isBlank(Object value) {
+        return (value instanceof String)
+        && (((String) value).trim().length() == 0);
+    }
+
+    /**
+     * <p>Return whether the specified value may be compared as a number.</p>
+     */
+    private static boolean isNumeric(Object value) {
+        return (value instanceof Integer) || (value instanceof BigDecimal)
+        || (value instanceof String);
+    }
+
+    /**
+     * <p>Convert the specified value to a <code>BigDecimal</code>.</p>
+     *
+     * @throws NumberFormatException if the value is not a number
+     */
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+
+        return new BigDecimal(value.toString());
+    }
+
+    /**
+     * <p>Apply a comparison to the result of a <code>compareTo</code>.</p>
+     */
+    private static boolean compare(int res, int comparison) {
+        switch (comparison) {
+        case LESS_EQUAL:
+            return (res <= 0);
+
+        case LESS_THAN:
+            return (res < 0);
+
+        case EQUAL:
+            return (res == 0);
+
+        case GREATER_THAN:
+            return (res > 0);
+
+        case GREATER_EQUAL:
+            return (res >= 0);
+
+        case NOT_EQUAL:
+            return (res != 0);
+        }
+
+        return true;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>A node that evaluates to <code>true</code> or <code>false</code>.
+     * </p>
+     */
+    private abstract static class Condition {
+        abstract boolean evaluate(Object form, String value, int index);
+    }
+
+    /**
+     * <p>A node that evaluates to a value to compare.</p>
+     */
+    private abstract static class Operand {
+        abstract Object evaluate(Object form, String value, int index);
+    }
+
+    /**
+     * <p>A comparison of two operands.</p>
+     */
+    private static final class Comparison extends Condition {
+        private final Operand left;
+        private final int comparison;
+        private final Operand right;
+
+        Comparison(Operand left, int comparison, Operand right) {
+            this.left = left;
+            this.comparison = comparison;
+            this.right = right;
+        }
+
+        boolean evaluate(Object form, String value, int index) {
+            Object v1 = left.evaluate(form, value, index);
+            Object v2 = right.evaluate(form, value, index);
+
+            return evaluateComparison(v1, comparison, v2);
+        }
+    }
+
+    /**
+     * <p>Two conditions joined by <code>and</code> or <code>or</code>.  Both
+     * are always evaluated, as they are by <code>ValidWhenParser</code>.</p>
+     */
+    private static final class Join extends Condition {
+        private final Condition left;
+        private final boolean and;
+        private final Condition right;
+
+        Join(Condition left, boolean and, Condition right) {
+            this.left = left;
+            this.and = and;
+            this.right = right;
+        }
+
+        boolean evaluate(Object form, String value, int index) {
+            boolean v1 = left.evaluate(form, value, index);
+            boolean v2 = right.evaluate(form, value, index);
+
+            return and ? (v1 && v2) : (v1 || v2);
+        }
+    }
+
+    /**
+     * <p>A literal value, or <code>null</code>.</p>
+     */
+    private static final class Literal extends Operand {
+        private final Object literal;
+
+        Literal(Object literal) {
+            this.literal = literal;
+        }
+
+        Object evaluate(Object form, String value, int index) {
+            return literal;
+        }
+    }
+
+    /**
+     * <p>The value of the field being validated.</p>
+     */
+    private static final class This extends Operand {
+        Object evaluate(Object form, String value, int index) {
+            return value;
+        }
+    }
+
+    /**
+     * <p>A property of the form, read as a string.  When the index of the
+     * field being validated is used, the property name is the prefix, the
+     * index and the suffix; otherwise it is just the prefix.</p>
+     */
+    private static final class Property extends Operand {
+        private final String prefix;
+        private final String suffix;
+
+        Property(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        Object evaluate(Object form, String value, int index) {
+            String property =
+                (suffix == null) ? prefix : (prefix + index + suffix);
+
+            return ValidatorUtils.getValueAsString(form, property);
+        }
+    }
+
+    /**
+     * <p>Reads a test with <code>ValidWhenLexer</code> and builds its tree,
+     * following the grammar in <code>ValidWhenParser.g</code>.</p>
+     */
+    private static final class Compiler {
+        private final ValidWhenLexer lexer;
+        private Token token;
+
+        Compiler(String test) throws TokenStreamException {
+            this.lexer = new ValidWhenLexer(new StringReader(test));
+            this.token = lexer.nextToken();
+        }
+
+        // expression : expr EOF ;
+        Condition expression()
+            throws RecognitionException, TokenStreamException {
+            Condition condition = expr();
+
+            match(Token.EOF_TYPE);
+
+            return condition;
+        }
+
+        // expr : LPAREN comparisonExpression RPAREN
+        //      | LPAREN joinedExpression RPAREN ;
+        private Condition expr()
+            throws RecognitionException, TokenStreamException {
+            Condition condition;
+
+            match(LPAREN);
+
+            if (token.getType() == LPAREN) {
+                Condition left = expr();
+                boolean and;
+
+                if (token.getType() == ANDSIGN) {
+                    and = true;
+                } else if (token.getType() == ORSIGN) {
+                    and = false;
+                } else {
+                    throw unexpected();
+                }
+
+                consume();
+                condition = new Join(left, and, expr());
+            } else {
+                Operand left = value();
+                int comparison = comparison();
+
+                condition = new Comparison(left, comparison, value());
+            }
+
+            match(RPAREN);
+
+            return condition;
+        }
+
+        // comparison : EQUALSIGN | GREATERTHANSIGN | ... ;
+        private int comparison()
+            throws RecognitionException, TokenStreamException {
+            int comparison;
+
+            switch (token.getType()) {
+            case EQUALSIGN:
+                comparison = EQUAL;
+
+                break;
+
+            case GREATERTHANSIGN:
+                comparison = GREATER_THAN;
+
+                break;
+
+            case GREATEREQUALSIGN:
+                comparison = GREATER_EQUAL;
+
+                break;
+
+            case LESSTHANSIGN:
+                comparison = LESS_THAN;
+
+                break;
+
+            case LESSEQUALSIGN:
+                comparison = LESS_EQUAL;
+
+                break;
+
+            case NOTEQUALSIGN:
+                comparison = NOT_EQUAL;
+
+                break;
+
+            default:
+                throw unexpected();
+            }
+
+            consume();
+
+            return comparison;
+        }
+
+        // value : field | literal ;
+        private Operand value()
+            throws RecognitionException, TokenStreamException {
+            String text = token.getText();
+
+            switch (token.getType()) {
+            case IDENTIFIER:
+                return field();
+
+            case DECIMAL_LITERAL:
+                consume();
+
+                return new Literal(new BigDecimal(text));
+
+            case DEC_INT_LITERAL:
+            case HEX_INT_LITERAL:
+            case OCTAL_INT_LITERAL:
+                return new Literal(integer());
+
+            case STRING_LITERAL:
+                consume();
+
+                return new Literal(text.substring(1, text.length() - 1));
+
+            case LITERAL_null:
+                consume();
+
+                return new Literal(null);
+
+            case THIS:
+                consume();
+
+                return new This();
+
+            default:
+                throw unexpected();
+            }
+        }
+
+        // field : identifier LBRACKET RBRACKET identifier
+        //       | identifier LBRACKET integer RBRACKET identifier
+        //       | identifier LBRACKET integer RBRACKET
+        //       | identifier LBRACKET RBRACKET
+        //       | identifier ;
+        private Operand field()
+            throws RecognitionException, TokenStreamException {
+            String name = token.getText();
+
+            consume();
+
+            if (token.getType() != LBRACKET) {
+                return new Property(name, null);
+            }
+
+            consume();
+
+            Integer fixed = null;
+
+            if (token.getType() != RBRACKET) {
+                fixed = integer();
+            }
+
+            match(RBRACKET);
+
+            String suffix = "]";
+
+            if (token.getType() == IDENTIFIER) {
+                suffix += token.getText();
+                consume();
+            }
+
+            if (fixed != null) {
+                return new Property(name + "[" + fixed + suffix, null);
+            }
+
+            return new Property(name + "[", suffix);
+        }
+
+        // integer : DEC_INT_LITERAL | HEX_INT_LITERAL | OCTAL_INT_LITERAL ;
+        private Integer integer()
+            throws RecognitionException, TokenStreamException {
+            switch (token.getType()) {
+            case DEC_INT_LITERAL:
+            case HEX_INT_LITERAL:
+            case OCTAL_INT_LITERAL:
+
+                Integer integer = Integer.decode(token.getText());
+
+                consume();
+
+                return integer;
+
+            default:
+                throw unexpected();
+            }
+        }
+
+        private void match(int type)
+            throws RecognitionException, TokenStreamException {
+            if (token.getType() != type) {
+                throw unexpected();
+            }
+
+            consume();
+        }
+
+        private void consume() throws TokenStreamException {
+            token = lexer.nextToken();
+        }
+
+        private RecognitionException unexpected() {
+            String text =
+                (token.getType() == Token.EOF_TYPE) ? "end of test"
+                                                    : ("'" + token.getText()
+                + "'");
+
+            return new RecognitionException("Unexpected " + text,
+                null, token.getLine(), token.getColumn());
+        }
+    }
+}
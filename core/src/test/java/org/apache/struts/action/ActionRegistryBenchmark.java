@@ -0,0 +1,147 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import java.util.HashMap;
+
+/**
+ * <p>Compares looking up existing <code>Action</code> instances in an
+ * {@link ActionRegistry} with the synchronized <code>HashMap</code> lookup
+ * <code>RequestProcessor</code> used before, from 1, 2, 4 and up to 64
+ * threads at once.  This is not a unit test; run it with <code>main</code>,
+ * optionally giving the largest number of threads and the number of lookups
+ * per thread, and compare the times printed for each number of threads.</p>
+ *
+ * @version $Rev$
+ */
+public class ActionRegistryBenchmark {
+    /**
+     * The number of Action types looked up.
+     */
+    private static final int TYPES = 50;
+
+    /**
+     * The number of times the sweep is run; the first one warms up.
+     */
+    private static final int ROUNDS = 2;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The largest number of threads, default 64, and the
+     *             number of lookups per thread, default 500000
+     * @throws Exception if a thread cannot be run
+     */
+    public static void main(String[] args)
+        throws Exception {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        int lookups = (args.length > 1) ? Integer.parseInt(args[1]) : 500000;
+        final String[] types = new String[TYPES];
+        final HashMap map = new HashMap();
+        final ActionRegistry registry = new ActionRegistry();
+        ActionRegistry.Factory factory =
+            new ActionRegistry.Factory() {
+                public Action createAction(String type) {
+                    return new Action();
+                }
+            };
+
+        for (int i = 0; i < TYPES; i++) {
+            types[i] = "com.example.Action" + i;
+            map.put(types[i], registry.getAction(types[i], factory));
+        }
+
+        Lookup locked =
+            new Lookup() {
+                Object lookup(String type) {
+                    synchronized (map) {
+                        return map.get(type);
+                    }
+                }
+            };
+        Lookup lockFree =
+            new Lookup() {
+                Object lookup(String type) {
+                    return registry.getAction(type);
+                }
+            };
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println((round == 0) ? "Warm-up:" : "Measured:");
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                System.out.println(threads + " threads: synchronized HashMap "
+                    + run(locked, types, threads, lookups)
+                    + " ms, ActionRegistry "
+                    + run(lockFree, types, threads, lookups) + " ms");
+            }
+        }
+    }
+
+    /**
+     * Run the specified lookup from several threads and return the time
+     * taken.
+     *
+     * @param lookup  The lookup
+     * @param types   The types looked up, in turn
+     * @param threads The number of threads
+     * @param lookups The number of lookups per thread
+     * @return The time taken, in milliseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static long run(final Lookup lookup, final String[] types,
+        int threads, final int lookups)
+        throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            workers[i] =
+                new Thread() {
+                        public void run() {
+                            for (int j = 0; j < lookups; j++) {
+                                if (lookup.lookup(types[j % types.length]) == null) {
+                                    throw new IllegalStateException();
+                                }
+                            }
+                        }
+                    };
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < threads; i++) {
+            workers[i].start();
+        }
+
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * A way of looking up an Action instance.
+     */
+    private abstract static class Lookup {
+        abstract Object lookup(String type);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.impl.ModuleConfigImpl;
+import org.apache.struts.mock.MockHttpServletRequest;
+import org.apache.struts.mock.MockHttpServletResponse;
+import org.apache.struts.mock.MockServletContext;
+
+/**
+ * Suite of unit tests for the
+ * <code>org.apache.struts.action.ActionRegistry</code> class.
+ */
+public class TestActionRegistry extends TestCase {
+    /**
+     * The number of threads asking for the same Action at once.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The registry we'll test.
+     */
+    protected ActionRegistry registry = null;
+
+    /**
+     * Defines the testcase name for JUnit.
+     *
+     * @param theName the testcase's name.
+     */
+    public TestActionRegistry(String theName) {
+        super(theName);
+    }
+
+    /**
+     * Start the tests.
+     *
+     * @param theArgs the arguments. Not used
+     */
+    public static void main(String[] theArgs) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestActionRegistry.class.getName()
+            });
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        // All methods starting with "test" will be executed in the test suite.
+        return new TestSuite(TestActionRegistry.class);
+    }
+
+    public void setUp() {
+        registry = new ActionRegistry();
+    }
+
+    public void tearDown() {
+        registry = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Verify that instances are created once and then returned.
+     */
+    public void testGetAction()
+        throws Exception {
+        CountingFactory factory = new CountingFactory();
+
+        assertNull(registry.getAction("a"));
+
+        Action action = registry.getAction("a", factory);
+
+        assertSame(action, registry.getAction("a"));
+        assertSame(action, registry.getAction("a", factory));
+        assertEquals(1, factory.count);
+        assertEquals(1, registry.size());
+        assertSame(action, registry.getActionMap().get("a"));
+
+        registry.clear();
+        assertNull(registry.getAction("a"));
+        assertEquals(0, registry.getActionMap().size());
+    }
+
+    /**
+     * Verify that threads asking for the same type at once share a single
+     * instance.
+     */
+    public void testConcurrentCreation()
+        throws Exception {
+        final CountingFactory factory = new CountingFactory();
+        final Action[] actions = new Action[THREADS];
+        final Throwable[] failures = new Throwable[THREADS];
+        final boolean[] start = new boolean[1];
+        Thread[] threads = new Thread[THREADS];
+
+        factory.delay = 50;
+
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+
+            threads[i] =
+                new Thread() {
+                        public void run() {
+                            try {
+                                synchronized (start) {
+                                    while (!start[0]) {
+                                        start.wait();
+                                    }
+                                }
+
+                                actions[index] =
+                                    registry.getAction("a", factory);
+                            } catch (Throwable t) {
+                                failures[index] = t;
+                            }
+                        }
+                    };
+            threads[i].start();
+        }
+
+        // Give every thread time to wait, then release them together
+        Thread.sleep(100);
+
+        synchronized (start) {
+            start[0] = true;
+            start.notifyAll();
+        }
+
+        for (int i = 0; i < THREADS; i++) {
+            threads[i].join();
+            assertNull("failure " + i, failures[i]);
+            assertSame("instance " + i, actions[0], actions[i]);
+        }
+
+        assertNotNull(actions[0]);
+        assertEquals(1, factory.count);
+    }
+
+    /**
+     * Verify that each module has its own registry.
+     */
+    public void testModuleRegistries() {
+        MockServletContext context = new MockServletContext();
+        ModuleConfig module = new ModuleConfigImpl("");
+        ModuleConfig other = new ModuleConfigImpl("/other");
+        ActionRegistry registry =
+            ActionRegistry.getActionRegistry(context, module);
+
+        assertSame(registry, ActionRegistry.getActionRegistry(context, module));
+        assertNotSame(registry,
+            ActionRegistry.getActionRegistry(context, other));
+    }
+
+    /**
+     * Verify that a processor still fills the deprecated actions map.
+     */
+    public void testProcessorActions()
+        throws Exception {
+        RequestProcessor processor = new RequestProcessor();
+        ActionMapping mapping = new ActionMapping();
+
+        processor.init(null, new ModuleConfigImpl(""));
+        mapping.setPath("/test");
+        mapping.setType(TestAction.class.getName());
+
+        Action action =
+            processor.processActionCreate(new MockHttpServletRequest(),
+                new MockHttpServletResponse(), mapping);
+
+        assertNotNull(action);
+        assertSame(action,
+            processor.processActionCreate(new MockHttpServletRequest(),
+                new MockHttpServletResponse(), mapping));
+
+        synchronized (processor.actions) {
+            assertSame(action, processor.actions.get(TestAction.class.getName()));
+        }
+
+        processor.destroy();
+
+        synchronized (processor.actions) {
+            assertTrue(processor.actions.isEmpty());
+        }
+    }
+
+    // ------------------------------------------------------------ Test Types
+
+    /**
+     * An Action for the processor test.
+     */
+    public static class TestAction extends Action {
+    }
+
+    /**
+     * Counts the instances it creates.
+     */
+    private static class CountingFactory implements ActionRegistry.Factory {
+        /**
+         * The number of instances created.
+         */
+        int count = 0;
+
+        /**
+         * How long creating an instance takes, in milliseconds.
+         */
+        long delay = 0;
+
+        public Action createAction(String type)
+            throws Exception {
+            synchronized (this) {
+                count++;
+            }
+
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            return new TestAction();
+        }
+    }
+}
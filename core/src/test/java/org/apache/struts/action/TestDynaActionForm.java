@@ -567,6 +567,34 @@ public class TestDynaActionForm extends TestDynaActionFormClass {
             (Integer) dynaForm.get("intProperty"));
     }
 
+    /**
+     * Test the reset method when the request method is in lower case or is
+     * not listed by any property.
+     */
+    public void testResetOtherMethods() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        dynaForm.set("booleanProperty", Boolean.FALSE);
+        dynaForm.set("floatProperty", new Float((float) 456.0));
+        request.setMethod("head");
+        dynaForm.reset(mapping, request);
+
+        assertEquals("booleanProperty should be reset", Boolean.TRUE,
+            (Boolean) dynaForm.get("booleanProperty"));
+        assertEquals("floatProperty should be reset", new Float((float) 123.0),
+            (Float) dynaForm.get("floatProperty"));
+
+        dynaForm.set("booleanProperty", Boolean.FALSE);
+        dynaForm.set("floatProperty", new Float((float) 456.0));
+        request.setMethod("PUT");
+        dynaForm.reset(mapping, request);
+
+        assertEquals("booleanProperty should be reset", Boolean.TRUE,
+            (Boolean) dynaForm.get("booleanProperty"));
+        assertEquals("floatProperty should NOT be reset",
+            new Float((float) 456.0), (Float) dynaForm.get("floatProperty"));
+    }
+
     /**
      * Corner cases on setIndexedProperty invalid arguments.
      */
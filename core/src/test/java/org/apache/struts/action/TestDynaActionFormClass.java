@@ -108,11 +108,19 @@ public class TestDynaActionFormClass extends TestCase {
     }
 
     // ----------------------------------------------------- Setup and Teardown
+
+    /**
+     * Return the type of the form bean to test.
+     */
+    protected String getFormType() {
+        return "org.apache.struts.action.DynaActionForm";
+    }
+
     public void setUp() {
         // Construct a FormBeanConfig to be used
         beanConfig = new FormBeanConfig();
         beanConfig.setName("dynaForm");
-        beanConfig.setType("org.apache.struts.action.DynaActionForm");
+        beanConfig.setType(getFormType());
 
         // Add relevant property definitions
         for (int i = 0; i < dynaProperties.length; i++) {
@@ -159,8 +167,7 @@ public class TestDynaActionFormClass extends TestCase {
     public void testConfigCreate() {
         assertTrue("dynamic is correct", beanConfig.getDynamic());
         assertEquals("name is correct", "dynaForm", beanConfig.getName());
-        assertEquals("type is correct",
-            "org.apache.struts.action.DynaActionForm", beanConfig.getType());
+        assertEquals("type is correct", getFormType(), beanConfig.getType());
     }
 
     // Check attempts to add a duplicate property name
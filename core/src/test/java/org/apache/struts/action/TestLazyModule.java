@@ -0,0 +1,301 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.servlet.ServletException;
+
+/**
+ * Suite of unit tests for the
+ * <code>org.apache.struts.action.LazyModule</code> class.
+ */
+public class TestLazyModule extends TestCase {
+    /**
+     * The number of threads entering the module at once.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The servlet initializing and destroying the module.
+     */
+    protected CountingServlet servlet = null;
+
+    /**
+     * The module we'll test.
+     */
+    protected LazyModule module = null;
+
+    /**
+     * Defines the testcase name for JUnit.
+     *
+     * @param theName the testcase's name.
+     */
+    public TestLazyModule(String theName) {
+        super(theName);
+    }
+
+    /**
+     * Start the tests.
+     *
+     * @param theArgs the arguments. Not used
+     */
+    public static void main(String[] theArgs) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestLazyModule.class.getName()
+            });
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        // All methods starting with "test" will be executed in the test suite.
+        return new TestSuite(TestLazyModule.class);
+    }
+
+    public void setUp() {
+        servlet = new CountingServlet();
+        module = new LazyModule("/lazy", "/WEB-INF/struts-config-lazy.xml");
+    }
+
+    public void tearDown() {
+        servlet = null;
+        module = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Verify that the module is initialized by its first request only.
+     */
+    public void testInit()
+        throws Exception {
+        assertFalse(module.isInitialized());
+
+        module.enter(servlet);
+        assertTrue(module.isInitialized());
+        assertEquals(1, module.getActiveCount());
+        module.enter(servlet);
+        assertEquals(2, module.getActiveCount());
+        module.exit();
+        module.exit();
+
+        assertEquals(0, module.getActiveCount());
+        assertEquals(1, servlet.inits);
+        assertEquals("/lazy", servlet.prefix);
+    }
+
+    /**
+     * Verify that concurrent first requests share one initialization.
+     */
+    public void testConcurrentFirstAccess()
+        throws Exception {
+        final Throwable[] failures = new Throwable[THREADS];
+        final boolean[] start = new boolean[1];
+        Thread[] threads = new Thread[THREADS];
+
+        servlet.delay = 50;
+
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+
+            threads[i] =
+                new Thread() {
+                        public void run() {
+                            try {
+                                synchronized (start) {
+                                    while (!start[0]) {
+                                        start.wait();
+                                    }
+                                }
+
+                                module.enter(servlet);
+
+                                try {
+                                    if (!servlet.ready) {
+                                        throw new IllegalStateException(
+                                            "Entered before initialization");
+                                    }
+                                } finally {
+                                    module.exit();
+                                }
+                            } catch (Throwable t) {
+                                failures[index] = t;
+                            }
+                        }
+                    };
+            threads[i].start();
+        }
+
+        // Give every thread time to wait, then release them together
+        Thread.sleep(100);
+
+        synchronized (start) {
+            start[0] = true;
+            start.notifyAll();
+        }
+
+        for (int i = 0; i < THREADS; i++) {
+            threads[i].join();
+            assertNull("failure " + i, failures[i]);
+        }
+
+        assertEquals(1, servlet.inits);
+        assertEquals(0, module.getActiveCount());
+    }
+
+    /**
+     * Verify that only an idle module is destroyed, and that the next
+     * request initializes it again.
+     */
+    public void testEvictionAndReinit()
+        throws Exception {
+        assertFalse("not initialized",
+            module.evictIfIdle(servlet, Long.MAX_VALUE, 0));
+
+        module.enter(servlet);
+        assertFalse("active", module.evictIfIdle(servlet, Long.MAX_VALUE, 0));
+        assertTrue(module.isInitialized());
+        module.exit();
+
+        long now = System.currentTimeMillis();
+
+        assertFalse("recently used", module.evictIfIdle(servlet, now, 60000));
+        assertTrue("idle", module.evictIfIdle(servlet, now + 60000, 60000));
+        assertFalse(module.isInitialized());
+        assertEquals(1, servlet.destroys);
+
+        module.enter(servlet);
+        assertTrue(module.isInitialized());
+        assertEquals(2, servlet.inits);
+        module.exit();
+    }
+
+    /**
+     * Verify that a failed initialization is not retried by every request.
+     */
+    public void testFailedInit()
+        throws Exception {
+        servlet.failures = 1;
+
+        try {
+            module.enter(servlet);
+            fail("Expected the initialization to fail");
+        } catch (ServletException e) {
+            assertEquals("init", e.getMessage());
+        }
+
+        try {
+            module.enter(servlet);
+            fail("Expected the failure to be reported again");
+        } catch (ServletException e) {
+            assertEquals("init", e.getRootCause().getMessage());
+        }
+
+        assertEquals(1, servlet.inits);
+        assertFalse(module.isInitialized());
+        assertEquals(0, module.getActiveCount());
+
+        // Once the retry delay has passed, initialization is tried again
+        module = new LazyModule("/lazy", "/WEB-INF/struts-config-lazy.xml", 0);
+        servlet.failures = 1;
+
+        try {
+            module.enter(servlet);
+            fail("Expected the initialization to fail");
+        } catch (ServletException e) {
+            // Expected result
+        }
+
+        module.enter(servlet);
+        assertTrue(module.isInitialized());
+        module.exit();
+    }
+
+    // ------------------------------------------------------------ Test Types
+
+    /**
+     * Counts the initializations and destructions of the module.
+     */
+    private static class CountingServlet extends ActionServlet {
+        /**
+         * The number of initializations attempted.
+         */
+        int inits = 0;
+
+        /**
+         * The number of destructions.
+         */
+        int destroys = 0;
+
+        /**
+         * The number of initializations that should still fail.
+         */
+        int failures = 0;
+
+        /**
+         * How long an initialization takes, in milliseconds.
+         */
+        long delay = 0;
+
+        /**
+         * The prefix last initialized.
+         */
+        String prefix = null;
+
+        /**
+         * Whether the module is initialized.
+         */
+        volatile boolean ready = false;
+
+        void initLazyModule(String prefix, String paths)
+            throws ServletException {
+            synchronized (this) {
+                inits++;
+                this.prefix = prefix;
+            }
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new ServletException(e);
+                }
+            }
+
+            if (failures > 0) {
+                failures--;
+                throw new ServletException("init");
+            }
+
+            ready = true;
+        }
+
+        void destroyLazyModule(String prefix) {
+            destroys++;
+            ready = false;
+        }
+    }
+}
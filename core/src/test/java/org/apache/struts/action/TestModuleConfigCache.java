@@ -0,0 +1,260 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.struts.Constants;
+import org.apache.struts.config.ActionConfig;
+import org.apache.struts.config.FormBeanConfig;
+import org.apache.struts.config.FormPropertyConfig;
+import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.PlugInConfig;
+import org.apache.struts.config.impl.ModuleConfigImpl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serializable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Suite of unit tests for the
+ * <code>org.apache.struts.action.ModuleConfigCache</code> class.
+ */
+public class TestModuleConfigCache extends TestCase {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The directory holding the cache files.
+     */
+    protected File directory = null;
+
+    /**
+     * The configuration resource the keys are computed from.
+     */
+    protected File resource = null;
+
+    /**
+     * The cache we'll test.
+     */
+    protected ModuleConfigCache cache = null;
+
+    // ------------------------------------------ Constructors, suite, and main
+
+    /**
+     * Defines the testcase name for JUnit.
+     *
+     * @param theName the testcase's name.
+     */
+    public TestModuleConfigCache(String theName) {
+        super(theName);
+    }
+
+    /**
+     * Start the tests.
+     *
+     * @param theArgs the arguments. Not used
+     */
+    public static void main(String[] theArgs) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestModuleConfigCache.class.getName()
+            });
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        // All methods starting with "test" will be executed in the test suite.
+        return new TestSuite(TestModuleConfigCache.class);
+    }
+
+    // ----------------------------------------------------- Setup and Teardown
+    public void setUp() throws IOException {
+        resource = File.createTempFile("struts-config", ".xml");
+        directory = new File(resource.getPath() + ".d");
+        cache = new ModuleConfigCache(directory, "test");
+        write("<struts-config/>");
+    }
+
+    public void tearDown() {
+        File[] files = directory.listFiles();
+
+        for (int i = 0; (files != null) && (i < files.length); i++) {
+            files[i].delete();
+        }
+
+        directory.delete();
+        resource.delete();
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Verify that a stored configuration is read back with its contents.
+     */
+    public void testStoreAndLoad() throws IOException {
+        String key = cache.computeKey("/admin", resources());
+        ModuleConfig config = new ModuleConfigImpl("/admin");
+        ActionConfig action = new ActionConfig();
+
+        action.setPath("/list");
+        action.setType("org.example.ListAction");
+        config.addActionConfig(action);
+        config.addFormBeanConfig(new FormBeanConfig());
+
+        assertNull("Empty cache", cache.load("/admin", key));
+        cache.store("/admin", key, config);
+
+        ModuleConfig loaded = cache.load("/admin", key);
+
+        assertNotNull("Cached config", loaded);
+        assertNotSame(config, loaded);
+        assertEquals("/admin", loaded.getPrefix());
+        assertEquals("org.example.ListAction",
+            loaded.findActionConfig("/list").getType());
+        assertSame(loaded, loaded.findActionConfig("/list").getModuleConfig());
+    }
+
+    /**
+     * Verify that the usual contents of a configuration are read back.
+     */
+    public void testAllowedClasses() throws IOException {
+        String key = cache.computeKey("", resources());
+        ModuleConfigImpl config = new ModuleConfigImpl("");
+        ActionMapping mapping = new ActionMapping();
+        FormBeanConfig form = new FormBeanConfig();
+        FormPropertyConfig property = new FormPropertyConfig();
+        PlugInConfig plugIn = new PlugInConfig();
+
+        config.setProperty(Constants.STRUTS_URL_CASESENSITIVE, "false");
+        mapping.setPath("/List");
+        mapping.addForwardConfig(new ActionForward("next", "/next.jsp", false));
+        config.addActionConfig(mapping);
+        property.setName("ids");
+        property.setType("int[]");
+        form.setName("form");
+        form.addFormPropertyConfig(property);
+        config.addFormBeanConfig(form);
+        plugIn.setClassName("org.example.PlugIn");
+        plugIn.addProperty("name", "value");
+        config.addPlugInConfig(plugIn);
+        cache.store("", key, config);
+
+        ModuleConfig loaded = cache.load("", key);
+
+        assertNotNull("Cached config", loaded);
+        assertNotNull(loaded.findActionConfig("/list"));
+        assertNotNull(loaded.findActionConfig("/list").findForwardConfig("next"));
+        assertEquals("int[]",
+            loaded.findFormBeanConfig("form").findFormPropertyConfig("ids")
+                  .getType());
+        assertEquals("value",
+            loaded.findPlugInConfigs()[0].getProperties().get("name"));
+    }
+
+    /**
+     * Verify that a file naming a class that is not part of a configuration
+     * is rejected.
+     */
+    public void testRejectedClasses() throws IOException {
+        String key = cache.computeKey("", resources());
+        PayloadConfig config = new PayloadConfig();
+
+        config.payload = new Payload();
+        cache.store("", key, config);
+        assertTrue(cache.getFile("").isFile());
+        assertNull("Application class", cache.load("", key));
+
+        config.payload = new File("payload");
+        cache.store("", key, config);
+        assertNull("JDK class", cache.load("", key));
+
+        config.payload = new String[] { "allowed" };
+        cache.store("", key, config);
+        assertNotNull("Array of allowed class", cache.load("", key));
+
+        config.payload = new Payload[] { new Payload() };
+        cache.store("", key, config);
+        assertNull("Array of application class", cache.load("", key));
+    }
+
+    /**
+     * Verify that a configuration is not read back once its resources have
+     * changed.
+     */
+    public void testChangedResource() throws IOException {
+        String key = cache.computeKey("", resources());
+
+        assertEquals(key, cache.computeKey("", resources()));
+        assertFalse(key.equals(cache.computeKey("/other", resources())));
+
+        cache.store("", key, new ModuleConfigImpl(""));
+        write("<struts-config><action-mappings/></struts-config>");
+
+        String changed = cache.computeKey("", resources());
+
+        assertFalse(key.equals(changed));
+        assertNull("Stale entry", cache.load("", changed));
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    private List resources() throws IOException {
+        List urls = new ArrayList();
+
+        urls.add(resource.toURL());
+
+        return urls;
+    }
+
+    private void write(String content) throws IOException {
+        FileWriter writer = new FileWriter(resource);
+
+        writer.write(content);
+        writer.close();
+    }
+
+    // ------------------------------------------------------------ Test Types
+
+    /**
+     * A configuration holding an arbitrary object.
+     */
+    public static class PayloadConfig extends ModuleConfigImpl {
+        Object payload = null;
+
+        public PayloadConfig() {
+            super("");
+        }
+    }
+
+    /**
+     * A serializable class that is not part of a configuration.
+     */
+    public static class Payload implements Serializable {
+    }
+}
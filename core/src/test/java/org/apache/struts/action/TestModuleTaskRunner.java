@@ -0,0 +1,346 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.struts.Globals;
+import org.apache.struts.config.BaseConfig;
+import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.ModuleConfigPostProcessor;
+import org.apache.struts.mock.MockServletConfig;
+import org.apache.struts.mock.MockServletContext;
+
+import javax.servlet.ServletException;
+
+/**
+ * Suite of unit tests for parallel module initialization and the
+ * <code>org.apache.struts.action.ModuleTaskRunner</code> class.
+ */
+public class TestModuleTaskRunner extends TestCase {
+    /**
+     * The configuration of the modules without plug-ins.
+     */
+    private static final String CONFIG =
+        "/org/apache/struts/action/struts-config-parallel.xml";
+
+    /**
+     * The configuration of the modules with a plug-in post-processor.
+     */
+    private static final String PLUGIN_CONFIG =
+        "/org/apache/struts/action/struts-config-parallel-plugin.xml";
+
+    /**
+     * The module prefixes.
+     */
+    private static final String[] PREFIXES =
+        new String[] { "", "/one", "/two", "/three" };
+
+    /**
+     * Defines the testcase name for JUnit.
+     *
+     * @param theName the testcase's name.
+     */
+    public TestModuleTaskRunner(String theName) {
+        super(theName);
+    }
+
+    /**
+     * Start the tests.
+     *
+     * @param theArgs the arguments. Not used
+     */
+    public static void main(String[] theArgs) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestModuleTaskRunner.class.getName()
+            });
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        // All methods starting with "test" will be executed in the test suite.
+        return new TestSuite(TestModuleTaskRunner.class);
+    }
+
+    public void tearDown() {
+        RecordingPlugIn.reset();
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Verify that every module is processed once, on several threads.
+     */
+    public void testRunsEveryModule()
+        throws Exception {
+        final int[] runs = new int[20];
+        final Thread[] threads = new Thread[runs.length];
+
+        new ModuleTaskRunner(4).run("test", runs.length,
+            new ModuleTaskRunner.Task() {
+                public void run(int index)
+                    throws Exception {
+                    Thread.sleep(5);
+
+                    synchronized (runs) {
+                        runs[index]++;
+                        threads[index] = Thread.currentThread();
+                    }
+                }
+            });
+
+        boolean shared = false;
+
+        for (int i = 0; i < runs.length; i++) {
+            assertEquals("module " + i, 1, runs[i]);
+            assertNotSame(Thread.currentThread(), threads[i]);
+            shared |= (threads[i] != threads[0]);
+        }
+
+        assertTrue("ran on one thread", shared);
+    }
+
+    /**
+     * Verify that the failure of the first failing module is rethrown,
+     * whichever failed first.
+     */
+    public void testFirstFailureWins()
+        throws Exception {
+        try {
+            new ModuleTaskRunner(4).run("test", 8,
+                new ModuleTaskRunner.Task() {
+                    public void run(int index)
+                        throws Exception {
+                        if (index == 1) {
+                            Thread.sleep(100);
+
+                            throw new ServletException("1");
+                        } else if (index == 5) {
+                            throw new IllegalStateException("5");
+                        }
+                    }
+                });
+            fail("Expected the failure of module 1");
+        } catch (ServletException e) {
+            assertEquals("1", e.getMessage());
+        }
+    }
+
+    /**
+     * Verify that an interrupt received while waiting does not stop the
+     * phase and is restored afterwards.
+     */
+    public void testInterruptRestored()
+        throws Exception {
+        final int[] runs = new int[1];
+
+        Thread.currentThread().interrupt();
+
+        try {
+            new ModuleTaskRunner(2).run("test", 2,
+                new ModuleTaskRunner.Task() {
+                    public void run(int index)
+                        throws Exception {
+                        Thread.sleep(50);
+
+                        synchronized (runs) {
+                            runs[0]++;
+                        }
+                    }
+                });
+        } finally {
+            assertTrue("interrupt lost", Thread.interrupted());
+        }
+
+        assertEquals(2, runs[0]);
+    }
+
+    /**
+     * Verify that modules initialized in parallel are configured and
+     * frozen.
+     */
+    public void testParallelInit()
+        throws Exception {
+        ActionServlet servlet = createServlet();
+
+        servlet.initModulesInParallel(PREFIXES, paths(CONFIG));
+
+        for (int i = 0; i < PREFIXES.length; i++) {
+            ModuleConfig config = moduleConfig(servlet, PREFIXES[i]);
+
+            assertNotNull(PREFIXES[i], config);
+            assertEquals(PREFIXES[i], config.getPrefix());
+            assertNotNull(PREFIXES[i], config.findActionConfig("/test"));
+            assertNotNull(PREFIXES[i], config.findForwardConfig("home"));
+
+            try {
+                config.addActionConfig(new ActionMapping());
+                fail(PREFIXES[i] + " is not frozen");
+            } catch (IllegalStateException e) {
+                // Expected result
+            }
+        }
+    }
+
+    /**
+     * Verify that plug-in post-processors are applied one module at a time,
+     * in order.
+     */
+    public void testPostProcessorsSerial()
+        throws Exception {
+        ActionServlet servlet = createServlet();
+
+        servlet.initModulesInParallel(PREFIXES, paths(PLUGIN_CONFIG));
+
+        assertEquals(1, RecordingPlugIn.maxActive);
+        assertEquals("[][/one][/two][/three]",
+            RecordingPlugIn.modules.toString());
+
+        for (int i = 0; i < PREFIXES.length; i++) {
+            assertNotNull(PREFIXES[i],
+                moduleConfig(servlet, PREFIXES[i]).findActionConfig("/test"));
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Create a servlet that initializes modules on several threads.
+     */
+    private ActionServlet createServlet()
+        throws Exception {
+        ActionServlet servlet =
+            new ActionServlet() {
+                public void init() {
+                    // Only the module initialization is tested
+                }
+            };
+
+        servlet.init(new MockServletConfig(new MockServletContext()));
+        servlet.initInternal();
+        servlet.moduleInitThreads = 3;
+
+        return servlet;
+    }
+
+    /**
+     * Return the module configuration of the specified prefix.
+     */
+    private ModuleConfig moduleConfig(ActionServlet servlet, String prefix) {
+        return (ModuleConfig) servlet.getServletContext().getAttribute(Globals.MODULE_KEY
+            + prefix);
+    }
+
+    /**
+     * Return the same configuration path for every module.
+     */
+    private String[] paths(String path) {
+        String[] paths = new String[PREFIXES.length];
+
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = path;
+        }
+
+        return paths;
+    }
+
+    // ------------------------------------------------------------ Test Types
+
+    /**
+     * A plug-in post-processor that records the modules it is applied to,
+     * and how many of its instances run at once.
+     */
+    public static class RecordingPlugIn implements PlugIn,
+        ModuleConfigPostProcessor {
+        /**
+         * The modules post-processed, in order, as "[prefix]" strings.
+         */
+        static StringBuffer modules = new StringBuffer();
+
+        /**
+         * The number of post-processors running.
+         */
+        static int active = 0;
+
+        /**
+         * The largest number of post-processors that ran at once.
+         */
+        static int maxActive = 0;
+
+        /**
+         * Forget what was recorded.
+         */
+        static synchronized void reset() {
+            modules.setLength(0);
+            active = 0;
+            maxActive = 0;
+        }
+
+        public void init(ActionServlet servlet, ModuleConfig config) {
+        }
+
+        public void destroy() {
+        }
+
+        public void postProcessBeforeInitialization(BaseConfig config,
+            ModuleConfig moduleConfig) {
+            record(null);
+        }
+
+        public void postProcessAfterInitialization(BaseConfig config,
+            ModuleConfig moduleConfig) {
+            record(null);
+        }
+
+        public void postProcessAfterInitialization(ModuleConfig moduleConfig) {
+            record(moduleConfig.getPrefix());
+        }
+
+        /**
+         * Record one call, keeping it running for a while.
+         */
+        private void record(String prefix) {
+            synchronized (RecordingPlugIn.class) {
+                active++;
+                maxActive = Math.max(active, maxActive);
+
+                if (prefix != null) {
+                    modules.append('[').append(prefix).append(']');
+                }
+            }
+
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            synchronized (RecordingPlugIn.class) {
+                active--;
+            }
+        }
+    }
+}
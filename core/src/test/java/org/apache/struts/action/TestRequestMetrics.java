@@ -0,0 +1,264 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.struts.util.LatencyStatistics;
+
+/**
+ * Suite of unit tests for the
+ * <code>org.apache.struts.action.RequestMetrics</code> class.
+ */
+public class TestRequestMetrics extends TestCase {
+    /**
+     * The metrics we'll test.
+     */
+    protected RequestMetrics metrics = null;
+
+    /**
+     * Defines the testcase name for JUnit.
+     *
+     * @param theName the testcase's name.
+     */
+    public TestRequestMetrics(String theName) {
+        super(theName);
+    }
+
+    /**
+     * Start the tests.
+     *
+     * @param theArgs the arguments. Not used
+     */
+    public static void main(String[] theArgs) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestRequestMetrics.class.getName()
+            });
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        // All methods starting with "test" will be executed in the test suite.
+        return new TestSuite(TestRequestMetrics.class);
+    }
+
+    public void setUp() {
+        metrics = new RequestMetrics();
+    }
+
+    public void tearDown() {
+        metrics = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Verify that events are counted in the right histogram buckets.
+     */
+    public void testStatistics() {
+        LatencyStatistics stats = new LatencyStatistics();
+
+        stats.record(0);
+        stats.record(15);
+        stats.record(15);
+        stats.record(20000000);
+
+        long[] buckets = stats.getBuckets();
+
+        assertEquals(4, stats.getCount());
+        assertEquals(20000030, stats.getTotal());
+        assertEquals(20000000, stats.getMax());
+        assertEquals(1, buckets[0]);
+        assertEquals(2, buckets[1]);
+        assertEquals(1, buckets[buckets.length - 1]);
+        assertEquals(20, stats.getPercentile(50));
+        assertEquals(20000000, stats.getPercentile(100));
+        assertTrue(stats.toString(),
+            stats.toString().indexOf("p50<=0.02ms, p99<=20000.0ms") >= 0);
+
+        stats.reset();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getPercentile(99));
+    }
+
+    /**
+     * Verify that events are recorded per key and reported.
+     */
+    public void testRecord() {
+        long start = RequestMetrics.now();
+
+        assertTrue(metrics.record(RequestMetrics.PHASE_SELECT, start) >= start);
+        metrics.record(RequestMetrics.ACTION_PREFIX + "/list", start);
+        metrics.record(RequestMetrics.ACTION_PREFIX + "/list", start);
+
+        assertEquals(2,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "/list")
+                   .getCount());
+        assertNull(metrics.getStatistics("action:/missing"));
+        assertEquals(2, metrics.getKeys().length);
+        assertTrue(metrics.getReport().indexOf("action:/list count=2") >= 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getKeys().length);
+    }
+
+    /**
+     * Verify that actions and commands are recorded under their keys, also
+     * after a reset.
+     */
+    public void testRecordActionAndCommand() {
+        assertTrue(RequestMetrics.isEnabled());
+
+        metrics.recordAction("/list", 0);
+        metrics.recordAction("/list", 0);
+        metrics.recordCommand(String.class, 0);
+
+        assertEquals(2,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "/list")
+                   .getCount());
+        assertEquals(1,
+            metrics.getStatistics(RequestMetrics.COMMAND_PREFIX
+                + "java.lang.String").getCount());
+
+        metrics.reset();
+        metrics.recordAction("/list", 0);
+        assertEquals(1,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "/list")
+                   .getCount());
+        assertEquals(1, metrics.getKeys().length);
+    }
+
+    /**
+     * Verify that no event is lost when several threads record at once.
+     */
+    public void testConcurrentRecord()
+        throws Exception {
+        final LatencyStatistics stats = new LatencyStatistics();
+        final boolean[] start = new boolean[1];
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] =
+                new Thread() {
+                        public void run() {
+                            synchronized (start) {
+                                while (!start[0]) {
+                                    try {
+                                        start.wait();
+                                    } catch (InterruptedException e) {
+                                        return;
+                                    }
+                                }
+                            }
+
+                            for (int j = 0; j < 10000; j++) {
+                                stats.record(j % 3);
+                                metrics.recordAction("/list", 0);
+                            }
+                        }
+                    };
+            threads[i].start();
+        }
+
+        synchronized (start) {
+            start[0] = true;
+            start.notifyAll();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        assertEquals(40000, stats.getCount());
+        assertEquals(4 * 9999, stats.getTotal());
+        assertEquals(2, stats.getMax());
+        assertEquals(40000,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "/list")
+                   .getCount());
+    }
+
+    /**
+     * Verify that keys beyond the limit are counted together.
+     */
+    public void testKeyLimit() {
+        for (int i = 0; i < (RequestMetrics.MAX_KEYS + 10); i++) {
+            metrics.record(RequestMetrics.ACTION_PREFIX + "/path" + i, 0);
+        }
+
+        assertEquals(RequestMetrics.MAX_KEYS + 1, metrics.getKeys().length);
+        assertEquals(10,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "(other)")
+                   .getCount());
+    }
+
+    /**
+     * Verify that action paths and command classes beyond the limit are
+     * counted together, while those recorded before keep their own keys.
+     */
+    public void testKeyLimitByAlias() {
+        metrics.recordAction("/first", 0);
+        metrics.recordCommand(String.class, 0);
+
+        for (int i = 0; i < (RequestMetrics.MAX_KEYS + 10); i++) {
+            metrics.recordAction("/path" + i, 0);
+        }
+
+        metrics.recordAction("/first", 0);
+        metrics.recordCommand(String.class, 0);
+        metrics.recordCommand(Integer.class, 0);
+        metrics.recordCommand(Long.class, 0);
+
+        assertEquals(2,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "/first")
+                   .getCount());
+        assertEquals(2,
+            metrics.getStatistics(RequestMetrics.COMMAND_PREFIX
+                + "java.lang.String").getCount());
+        assertEquals(12,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "(other)")
+                   .getCount());
+        assertEquals(2,
+            metrics.getStatistics(RequestMetrics.COMMAND_PREFIX + "(other)")
+                   .getCount());
+
+        metrics.reset();
+        metrics.recordAction("/path0", 0);
+        assertEquals(1,
+            metrics.getStatistics(RequestMetrics.ACTION_PREFIX + "/path0")
+                   .getCount());
+        assertNull(metrics.getStatistics(RequestMetrics.ACTION_PREFIX
+                + "(other)"));
+    }
+
+    /**
+     * Verify that the time events are measured with does not go back.
+     */
+    public void testNow() {
+        long before = RequestMetrics.now();
+
+        assertTrue(RequestMetrics.now() >= before);
+    }
+}
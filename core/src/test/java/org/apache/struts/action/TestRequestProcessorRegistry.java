@@ -0,0 +1,231 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.impl.ModuleConfigImpl;
+
+/**
+ * Suite of unit tests for the
+ * <code>org.apache.struts.action.RequestProcessorRegistry</code> class.
+ */
+public class TestRequestProcessorRegistry extends TestCase {
+    /**
+     * The registry we'll test.
+     */
+    protected RequestProcessorRegistry registry = null;
+
+    /**
+     * The default module.
+     */
+    protected ModuleConfig config = null;
+
+    /**
+     * Another module.
+     */
+    protected ModuleConfig other = null;
+
+    /**
+     * Whether the registry is still being changed.
+     */
+    private volatile boolean writing = false;
+
+    /**
+     * Defines the testcase name for JUnit.
+     *
+     * @param theName the testcase's name.
+     */
+    public TestRequestProcessorRegistry(String theName) {
+        super(theName);
+    }
+
+    /**
+     * Start the tests.
+     *
+     * @param theArgs the arguments. Not used
+     */
+    public static void main(String[] theArgs) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestRequestProcessorRegistry.class.getName()
+            });
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        // All methods starting with "test" will be executed in the test suite.
+        return new TestSuite(TestRequestProcessorRegistry.class);
+    }
+
+    public void setUp() {
+        registry = new RequestProcessorRegistry();
+        config = new ModuleConfigImpl("");
+        other = new ModuleConfigImpl("/other");
+    }
+
+    public void tearDown() {
+        registry = null;
+        config = null;
+        other = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Verify that registered processors are found, and removed ones are
+     * not.
+     */
+    public void testRegisterAndRemove() {
+        RequestProcessor processor = new RequestProcessor();
+        RequestProcessor otherProcessor = new RequestProcessor();
+
+        assertNull(registry.get(config));
+        assertEquals(0, registry.getProcessors().length);
+
+        registry.register(config, processor);
+        registry.register(other, otherProcessor);
+
+        assertSame(processor, registry.get(config));
+        assertSame(otherProcessor, registry.get(other));
+        assertEquals(2, registry.getProcessors().length);
+
+        assertSame(processor, registry.remove(config));
+        assertNull(registry.get(config));
+        assertNull("removed twice", registry.remove(config));
+        assertSame(otherProcessor, registry.get(other));
+
+        registry.clear();
+        assertNull(registry.get(other));
+        assertEquals(0, registry.getProcessors().length);
+    }
+
+    /**
+     * Verify that registering a module again replaces its processor.
+     */
+    public void testReplace() {
+        RequestProcessor first = new RequestProcessor();
+        RequestProcessor second = new RequestProcessor();
+
+        registry.register(config, first);
+        registry.register(config, second);
+
+        assertSame(second, registry.get(config));
+        assertEquals(1, registry.getProcessors().length);
+    }
+
+    /**
+     * Verify that processors are keyed by module instance, not by prefix.
+     */
+    public void testKeyedByInstance() {
+        ModuleConfig reloaded = new ModuleConfigImpl("");
+
+        registry.register(config, new RequestProcessor());
+
+        assertNull(registry.get(reloaded));
+    }
+
+    /**
+     * Verify that the processors read before a change are not affected by
+     * it.
+     */
+    public void testSnapshot() {
+        RequestProcessor processor = new RequestProcessor();
+
+        registry.register(config, processor);
+
+        RequestProcessor[] before = registry.getProcessors();
+
+        registry.register(other, new RequestProcessor());
+        registry.register(config, new RequestProcessor());
+
+        assertEquals(1, before.length);
+        assertSame(processor, before[0]);
+        assertEquals(2, registry.getProcessors().length);
+
+        registry.remove(other);
+        assertEquals(1, before.length);
+        assertSame(processor, before[0]);
+    }
+
+    /**
+     * Verify that readers see a consistent registry while it changes.
+     */
+    public void testConcurrentReadWrite()
+        throws Exception {
+        final RequestProcessor processor = new RequestProcessor();
+        final Throwable[] failures = new Throwable[1];
+
+        registry.register(config, processor);
+
+        Thread reader =
+            new Thread() {
+                    public void run() {
+                        try {
+                            while (writing) {
+                                if (registry.get(config) != processor) {
+                                    throw new IllegalStateException(
+                                        "Lost the default module");
+                                }
+
+                                RequestProcessor[] processors =
+                                    registry.getProcessors();
+
+                                for (int i = 0; i < processors.length; i++) {
+                                    if (processors[i] == null) {
+                                        throw new IllegalStateException(
+                                            "Partial snapshot");
+                                    }
+                                }
+                            }
+                        } catch (Throwable t) {
+                            failures[0] = t;
+                        }
+                    }
+                };
+
+        writing = true;
+        reader.start();
+
+        try {
+            for (int i = 0; i < 2000; i++) {
+                ModuleConfig module = new ModuleConfigImpl("/m" + i);
+
+                registry.register(module, new RequestProcessor());
+
+                if ((i % 2) == 0) {
+                    registry.remove(module);
+                }
+            }
+        } finally {
+            writing = false;
+            reader.join();
+        }
+
+        assertNull(String.valueOf(failures[0]), failures[0]);
+        assertEquals(1001, registry.getProcessors().length);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.action;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.Map;
+
+/**
+ * Runs the <code>DynaActionForm</code> tests against
+ * <code>org.apache.struts.action.SlotDynaActionForm</code>, plus tests of
+ * its own.
+ */
+public class TestSlotDynaActionForm extends TestDynaActionForm {
+    /**
+     * Defines the testcase name for JUnit.
+     *
+     * @param theName the testcase's name.
+     */
+    public TestSlotDynaActionForm(String theName) {
+        super(theName);
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        // All methods starting with "test" will be executed in the test suite.
+        return new TestSuite(TestSlotDynaActionForm.class);
+    }
+
+    protected String getFormType() {
+        return "org.apache.struts.action.SlotDynaActionForm";
+    }
+
+    // ------------------------------------------------ Individual Test Methods
+
+    /**
+     * Instances get their own copies of mutable and array initial values.
+     */
+    public void testInitialValuesNotShared() throws Exception {
+        SlotDynaActionForm other =
+            (SlotDynaActionForm) dynaClass.newInstance();
+
+        assertTrue("Slot form created", dynaForm instanceof SlotDynaActionForm);
+        assertNotSame("intArray copied", dynaForm.get("intArray"),
+            other.get("intArray"));
+
+        dynaForm.set("intArray", 0, new Integer(42));
+        assertEquals("intArray unchanged", new Integer(0),
+            other.get("intArray", 0));
+    }
+
+    /**
+     * The map view reads and writes the property values.
+     */
+    public void testMap() {
+        Map map = dynaForm.getMap();
+
+        assertEquals("size", properties.length, map.size());
+        assertEquals("get", dynaForm.get("stringProperty"),
+            map.get("stringProperty"));
+
+        map.put("stringProperty", "Changed");
+        assertEquals("put", "Changed", dynaForm.get("stringProperty"));
+        assertTrue("containsKey", map.containsKey("intProperty"));
+        assertTrue("!containsKey", !map.containsKey("unknownProperty"));
+    }
+
+    /**
+     * Initializing again restores the initial values.
+     */
+    public void testInitialize() {
+        dynaForm.set("stringProperty", "Changed");
+        dynaForm.initialize(beanConfig);
+        assertEquals("stringProperty", "This is a string",
+            dynaForm.get("stringProperty"));
+    }
+}
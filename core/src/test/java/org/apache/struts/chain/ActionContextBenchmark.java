@@ -0,0 +1,221 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.chain;
+
+import org.apache.commons.chain.CatalogFactory;
+import org.apache.commons.chain.config.ConfigParser;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.ActionServlet;
+import org.apache.struts.chain.contexts.FieldServletActionContext;
+import org.apache.struts.config.ModuleConfig;
+import org.apache.struts.config.impl.ModuleConfigImpl;
+import org.apache.struts.mock.MockHttpServletRequest;
+import org.apache.struts.mock.MockHttpServletResponse;
+import org.apache.struts.mock.MockHttpSession;
+import org.apache.struts.mock.MockServletConfig;
+import org.apache.struts.mock.MockServletContext;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.Locale;
+
+/**
+ * <p>Compares running the standard <code>process-action</code> chain of a
+ * {@link ComposableRequestProcessor} with the default, map-backed
+ * <code>ServletActionContext</code> and with the field-backed, recycled
+ * {@link FieldServletActionContext}, from 1, 2, 4 and up to 8 threads at
+ * once.  This is not a unit test; run it with <code>main</code>, optionally
+ * giving the largest number of threads and the number of requests per
+ * thread, and compare the times printed for each number of threads.</p>
+ *
+ * @version $Rev$
+ */
+public class ActionContextBenchmark {
+    /**
+     * The number of times the sweep is run; the first one warms up.
+     */
+    private static final int ROUNDS = 2;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The largest number of threads, default 8, and the number
+     *             of requests per thread, default 100000
+     * @throws Exception if a processor cannot be initialized or a request
+     *                   fails
+     */
+    public static void main(String[] args)
+        throws Exception {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        int requests = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+
+        new ConfigParser().parse(ActionContextBenchmark.class.getResource(
+                "/org/apache/struts/chain/chain-config.xml"));
+
+        ComposableRequestProcessor mapBacked = createProcessor(null);
+        ComposableRequestProcessor fieldBacked =
+            createProcessor(FieldServletActionContext.class.getName());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println((round == 0) ? "Warm-up:" : "Measured:");
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                System.out.println(threads + " threads: ServletActionContext "
+                    + run(mapBacked, threads, requests)
+                    + " ms, FieldServletActionContext "
+                    + run(fieldBacked, threads, requests) + " ms");
+            }
+        }
+
+        CatalogFactory.clear();
+    }
+
+    /**
+     * Create a processor running the <code>process-action</code> chain for
+     * a module with a single action.
+     *
+     * @param contextClass The ActionContext class, or <code>null</code> for
+     *                     the default one
+     * @return The processor
+     * @throws Exception if the processor cannot be initialized
+     */
+    private static ComposableRequestProcessor createProcessor(
+        String contextClass)
+        throws Exception {
+        ActionServlet servlet =
+            new ActionServlet() {
+                public void init() {
+                    // Only the request processor is used
+                }
+            };
+
+        servlet.init(new MockServletConfig(new MockServletContext()));
+
+        ModuleConfig config = new ModuleConfigImpl("");
+        ActionMapping mapping = new ActionMapping();
+
+        mapping.setPath("/bench");
+        mapping.setType(BenchmarkAction.class.getName());
+        config.addActionConfig(mapping);
+        config.getControllerConfig().setCommand("process-action");
+
+        if (contextClass != null) {
+            config.getControllerConfig().setProperty(
+                ComposableRequestProcessor.ACTION_CONTEXT_CLASS, contextClass);
+        }
+
+        config.freeze();
+
+        ComposableRequestProcessor processor =
+            new ComposableRequestProcessor();
+
+        processor.init(servlet, config);
+
+        return processor;
+    }
+
+    /**
+     * Process requests with the specified processor from several threads
+     * and return the time taken.
+     *
+     * @param processor The processor
+     * @param threads   The number of threads
+     * @param requests  The number of requests per thread
+     * @return The time taken, in milliseconds
+     * @throws Exception if a request fails
+     */
+    private static long run(final ComposableRequestProcessor processor,
+        int threads, final int requests)
+        throws Exception {
+        final Throwable[] failures = new Throwable[threads];
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+
+            workers[i] =
+                new Thread() {
+                        public void run() {
+                            MockHttpServletRequest request =
+                                new MockHttpServletRequest("", "/bench.do",
+                                    null, null, new MockHttpSession());
+                            HttpServletResponse response =
+                                new BenchmarkResponse();
+
+                            request.setLocale(Locale.US);
+
+                            try {
+                                for (int j = 0; j < requests; j++) {
+                                    processor.process(request, response);
+                                }
+                            } catch (Throwable t) {
+                                failures[index] = t;
+                            }
+                        }
+                    };
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < threads; i++) {
+            workers[i].start();
+        }
+
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+
+            if (failures[i] != null) {
+                throw new IllegalStateException("Request failed: "
+                    + failures[i]);
+            }
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * An action that does nothing and forwards nowhere.
+     */
+    public static class BenchmarkAction extends Action {
+        public ActionForward execute(ActionMapping mapping, ActionForm form,
+            HttpServletRequest request, HttpServletResponse response) {
+            return null;
+        }
+    }
+
+    /**
+     * A response that ignores what the chain sets on it.
+     */
+    private static class BenchmarkResponse extends MockHttpServletResponse {
+        public void setContentType(String type) {
+        }
+
+        public void setHeader(String name, String value) {
+        }
+
+        public void setDateHeader(String name, long value) {
+        }
+    }
+}
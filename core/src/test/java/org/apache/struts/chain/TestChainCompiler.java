@@ -0,0 +1,180 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.chain;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.chain.Catalog;
+import org.apache.commons.chain.CatalogFactory;
+import org.apache.commons.chain.Command;
+import org.apache.commons.chain.Context;
+import org.apache.commons.chain.Filter;
+import org.apache.commons.chain.config.ConfigParser;
+import org.apache.commons.chain.generic.LookupCommand;
+import org.apache.commons.chain.impl.CatalogBase;
+import org.apache.commons.chain.impl.ChainBase;
+import org.apache.commons.chain.impl.ContextBase;
+
+/* JUnitTest case for class: org.apache.struts.chain.ChainCompiler */
+public class TestChainCompiler extends TestCase {
+    private static final String CATALOG = "compiler-test";
+
+    private Catalog catalog = null;
+
+    public TestChainCompiler(String _name) {
+        super(_name);
+    }
+
+    /* setUp method for test case */
+    protected void setUp() {
+        catalog = new CatalogBase();
+        CatalogFactory.getInstance().addCatalog(CATALOG, catalog);
+    }
+
+    /* tearDown method for test case */
+    protected void tearDown() {
+        CatalogFactory.clear();
+        catalog = null;
+    }
+
+    public void testLookupsInlined()
+        throws Exception {
+        catalog.addCommand("inner",
+            new ChainBase(new Command[] { step("a", false), step("b", false) }));
+
+        Command outer =
+            new ChainBase(new Command[] {
+                    step("c", false), lookup("inner", false),
+                    lookup("missing", true), step("d", false)
+                });
+
+        assertEquals("cabd", run(compile(outer)));
+        assertEquals("cabd", run(outer));
+    }
+
+    public void testStopsWhereOriginalStops()
+        throws Exception {
+        catalog.addCommand("inner",
+            new ChainBase(new Command[] { step("a", true), step("b", false) }));
+
+        Command outer =
+            new ChainBase(new Command[] {
+                    lookup("inner", false), step("d", false)
+                });
+
+        assertEquals("a", run(compile(outer)));
+        assertEquals("a", run(outer));
+    }
+
+    public void testNestedFilterKept()
+        throws Exception {
+        catalog.addCommand("filtered",
+            new ChainBase(new Command[] { new Recorder("f"), step("e", false) }));
+
+        Command outer =
+            new ChainBase(new Command[] {
+                    lookup("filtered", false), step("g", false)
+                });
+
+        assertEquals("fe/fg", run(compile(outer)));
+        assertEquals("fe/fg", run(outer));
+    }
+
+    public void testMissingRequiredLookupKept() {
+        Command outer =
+            new ChainBase(new Command[] { lookup("missing", false) });
+
+        try {
+            run(compile(outer));
+            fail("Missing command not reported");
+        } catch (Exception e) {
+            // Expected, as with the original chain
+        }
+    }
+
+    public void testStandardCatalog()
+        throws Exception {
+        new ConfigParser().parse(getClass().getResource(
+                "/org/apache/struts/chain/chain-config.xml"));
+
+        Command standard =
+            CatalogFactory.getInstance().getCatalog("struts").getCommand(
+                "servlet-standard");
+        Command compiled = compile(standard);
+
+        assertNotSame(standard, compiled);
+        assertTrue(compiled instanceof ChainBase);
+    }
+
+    private Command compile(Command command) {
+        return new ChainCompiler(CatalogFactory.getInstance()).compile(command);
+    }
+
+    private String run(Command command)
+        throws Exception {
+        Context context = new ContextBase();
+
+        context.put("trace", new StringBuffer());
+        command.execute(context);
+
+        return context.get("trace").toString();
+    }
+
+    private Command lookup(String name, boolean optional) {
+        LookupCommand lookup = new LookupCommand();
+
+        lookup.setCatalogName(CATALOG);
+        lookup.setName(name);
+        lookup.setOptional(optional);
+
+        return lookup;
+    }
+
+    private Command step(final String name, final boolean result) {
+        return new Command() {
+                public boolean execute(Context context) {
+                    ((StringBuffer) context.get("trace")).append(name);
+
+                    return result;
+                }
+            };
+    }
+
+    private static class Recorder implements Filter {
+        private String name;
+
+        Recorder(String name) {
+            this.name = name;
+        }
+
+        public boolean execute(Context context) {
+            ((StringBuffer) context.get("trace")).append(name);
+
+            return false;
+        }
+
+        public boolean postprocess(Context context, Exception exception) {
+            ((StringBuffer) context.get("trace")).append("/" + name);
+
+            return false;
+        }
+    }
+}
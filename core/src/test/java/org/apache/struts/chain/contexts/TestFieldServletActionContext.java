@@ -0,0 +1,116 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.chain.contexts;
+
+import junit.framework.TestCase;
+
+import org.apache.struts.Globals;
+import org.apache.struts.chain.Constants;
+import org.apache.struts.config.ActionConfig;
+import org.apache.struts.config.ForwardConfig;
+import org.apache.struts.mock.MockHttpServletRequest;
+import org.apache.struts.mock.MockHttpServletResponse;
+import org.apache.struts.mock.MockServletContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/* JUnitTest case for class: org.apache.struts.chain.contexts.FieldServletActionContext */
+public class TestFieldServletActionContext extends TestCase {
+    MockServletContext servletContext = null;
+    MockHttpServletRequest request = null;
+    FieldServletActionContext context = null;
+
+    public TestFieldServletActionContext(String _name) {
+        super(_name);
+    }
+
+    /* setUp method for test case */
+    protected void setUp() {
+        this.servletContext = new MockServletContext();
+        this.request = new MockHttpServletRequest();
+        this.context =
+            new FieldServletActionContext(servletContext, request,
+                new MockHttpServletResponse());
+    }
+
+    /* tearDown method for test case */
+    protected void tearDown() {
+        this.context = null;
+    }
+
+    public void testTypedAndMapAccessAgree() {
+        ActionConfig config = new ActionConfig();
+        ForwardConfig forward = new ForwardConfig();
+
+        context.setActionConfig(config);
+        assertSame(config, context.get(Constants.ACTION_CONFIG_KEY));
+        assertSame(config, request.getAttribute(Globals.MAPPING_KEY));
+
+        context.put(new String("forwardConfig"), forward);
+        assertSame(forward, context.getForwardConfig());
+        assertTrue(context.containsKey(Constants.FORWARD_CONFIG_KEY));
+
+        context.remove(Constants.FORWARD_CONFIG_KEY);
+        assertNull(context.getForwardConfig());
+        assertFalse(context.containsKey(Constants.FORWARD_CONFIG_KEY));
+
+        context.put("custom", "value");
+        assertEquals("value", context.get("custom"));
+    }
+
+    public void testMapViewIncludesSlots() {
+        ActionConfig config = new ActionConfig();
+
+        context.setActionConfig(config);
+        context.setFormValid(Boolean.TRUE);
+        context.put("custom", "value");
+
+        Map copy = new HashMap(context);
+
+        assertSame(config, copy.get(Constants.ACTION_CONFIG_KEY));
+        assertEquals(Boolean.TRUE, copy.get(Constants.VALID_KEY));
+        assertEquals("value", copy.get("custom"));
+
+        // Still consistent once the slots have moved to the wrapped context
+        context.setFormValid(Boolean.FALSE);
+        assertEquals(Boolean.FALSE, context.get(Constants.VALID_KEY));
+        assertSame(config, context.getActionConfig());
+    }
+
+    public void testReleaseAndReuse() {
+        context.setActionConfig(new ActionConfig());
+        context.put("custom", "value");
+        context.size();
+        context.release();
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+
+        context.initialize(servletContext, next, new MockHttpServletResponse());
+
+        assertNull(context.getActionConfig());
+        assertNull(context.get("custom"));
+        assertSame(next, context.getRequest());
+
+        context.setFormValid(Boolean.TRUE);
+        assertEquals(Boolean.TRUE, context.get(Constants.VALID_KEY));
+    }
+}
@@ -358,6 +358,33 @@ public class TestActionConfig extends TestCase {
 
     }
 
+    /**
+     * Test that a frozen ActionConfig resolves local and global handlers
+     * through the superclass chain, and keeps returning them once cached.
+     */
+    public void testFindExceptionFrozen() {
+        ExceptionConfig global = new ExceptionConfig();
+
+        global.setType("java.lang.RuntimeException");
+        global.setKey("msg.exception.runtime");
+        config.addExceptionConfig(global);
+        config.freeze();
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("local handler for subclass",
+                "msg.exception.sql",
+                baseConfig.findException(java.sql.SQLWarning.class).getKey());
+            assertSame("global handler for subclass", global,
+                baseConfig.findException(IllegalStateException.class));
+            assertSame("module handler for subclass", global,
+                config.findException(IllegalStateException.class));
+            assertNull("no handler",
+                baseConfig.findException(java.io.IOException.class));
+            assertNull("no module handler",
+                config.findException(java.sql.SQLException.class));
+        }
+    }
+
     /**
      * Used to detect that ActionConfig is making the right calls.
      */
@@ -28,6 +28,7 @@ import org.apache.struts.action.ActionMapping;
 import org.apache.struts.mock.TestMockBase;
 
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * <p>
@@ -239,6 +240,115 @@ public class TestActionConfigMatcher extends TestMockBase {
 	assertTrue("Name hasn't been replaced correctly: " + m.getName(), "name,Bar-Bar".equals(m.getName()));
     }
 
+    public void testLastMatchWins() {
+	ActionMapping[] mapping = new ActionMapping[3];
+
+	mapping[0] = new ActionMapping();
+	mapping[0].setPath("/*/*");
+	mapping[0].setName("generic");
+	mapping[1] = new ActionMapping();
+	mapping[1].setPath("/foo/*");
+	mapping[1].setName("foo");
+	mapping[2] = new ActionMapping();
+	mapping[2].setPath("/bar/*");
+	mapping[2].setName("bar");
+
+	ActionConfigMatcher matcher = new ActionConfigMatcher(mapping);
+
+	assertEquals("Specific pattern should win", "foo", matcher.match("/foo/x").getName());
+	assertEquals("Specific pattern should win", "bar", matcher.match("/bar/x").getName());
+	assertEquals("Generic pattern should match", "generic", matcher.match("/baz/x").getName());
+	assertNull("ActionConfig shouldn't be matched", matcher.match("/baz"));
+    }
+
+    public void testResolvedPathIsCached() {
+	ActionConfig[] configs = new ActionConfig[1];
+
+	configs[0] = buildActionConfig("/foo*");
+
+	ActionConfigMatcher matcher = new ActionConfigMatcher(configs);
+
+	assertSame("Resolved config should be cached", matcher.match("/fooBar"), matcher.match("/fooBar"));
+
+	matcher = new ActionConfigMatcher(configs, 0);
+
+	assertNotSame("Resolved config shouldn't be cached", matcher.match("/fooBar"), matcher.match("/fooBar"));
+    }
+
+    public void testCacheIsBounded() {
+	ActionConfig[] configs = new ActionConfig[1];
+
+	configs[0] = buildActionConfig("/foo*");
+
+	ActionConfigMatcher matcher = new ActionConfigMatcher(configs, 4);
+	ActionConfig first = matcher.match("/foo0");
+
+	for (int i = 1; i < 100; i++) {
+	    assertEquals("foo.bar." + i + "Action", matcher.match("/foo" + i).getType());
+	}
+
+	ActionConfig again = matcher.match("/foo0");
+
+	assertNotSame("Old entry should have been evicted", first, again);
+	assertEquals("Evicted path should resolve again", first.getType(), again.getType());
+	assertNull("ActionConfig shouldn't be matched", matcher.match("/bar"));
+	assertNull("Unmatched path should be cached", matcher.match("/bar"));
+    }
+
+    public void testConcurrentMatch() throws Exception {
+	ActionConfig[] configs = new ActionConfig[1];
+
+	configs[0] = buildActionConfig("/foo*");
+
+	final ActionConfigMatcher matcher = new ActionConfigMatcher(configs, 8);
+	final Throwable[] failures = new Throwable[4];
+	Thread[] threads = new Thread[failures.length];
+
+	for (int t = 0; t < threads.length; t++) {
+	    final int index = t;
+
+	    threads[t] = new Thread() {
+		public void run() {
+		    try {
+			for (int i = 0; i < 2000; i++) {
+			    String name = Integer.toString((i * 7 + index) % 32);
+			    ActionConfig config = matcher.match("/foo" + name);
+
+			    if (!("foo.bar." + name + "Action").equals(config.getType())) {
+				throw new IllegalStateException(config.getType());
+			    }
+			}
+		    } catch (Throwable e) {
+			failures[index] = e;
+		    }
+		}
+	    };
+	    threads[t].start();
+	}
+
+	for (int t = 0; t < threads.length; t++) {
+	    threads[t].join();
+	    assertNull("failure " + t, failures[t]);
+	}
+    }
+
+    public void testSubclassConversionIsUsed() {
+	ActionConfig[] configs = new ActionConfig[1];
+
+	configs[0] = buildActionConfig("/foo*");
+
+	ActionConfigMatcher matcher = new ActionConfigMatcher(configs) {
+	    protected String convertParam(String val, Map vars) {
+		String converted = super.convertParam(val, vars);
+
+		return (converted == null) ? null : converted.toUpperCase();
+	    }
+	};
+
+	assertEquals("FOO.BAR.BARACTION", matcher.match("/fooBar").getType());
+	assertEquals("foo.bar.BarAction", new ActionConfigMatcher(configs).match("/fooBar").getType());
+    }
+
     private ActionConfig buildActionConfig(String path) {
 	ActionMapping mapping = new ActionMapping();
 
@@ -0,0 +1,200 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.config.impl;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.struts.Constants;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.config.ActionConfig;
+import org.apache.struts.config.MessageResourcesConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Unit tests for <code>ConfigTable</code> and the frozen lookups of
+ * <code>ModuleConfigImpl</code>.</p>
+ *
+ * @version $Rev$
+ */
+public class TestConfigTable extends TestCase {
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Construct a new instance of this test case.
+     *
+     * @param name Name of the test case
+     */
+    public TestConfigTable(String name) {
+        super(name);
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the tests included in this test suite.
+     */
+    public static Test suite() {
+        return (new TestSuite(TestConfigTable.class));
+    }
+
+    // ------------------------------------------------ Individual Test Methods
+
+    /**
+     * Test that every entry of a table can be found, including entries
+     * that collide and the <code>null</code> key.
+     */
+    public void testGet() {
+        Map map = new HashMap();
+
+        for (int i = 0; i < 100; i++) {
+            map.put("/path" + i, new Integer(i));
+        }
+
+        // "Aa" and "BB" have the same hash code
+        map.put("Aa", "Aa");
+        map.put("BB", "BB");
+        map.put(null, "null");
+
+        ConfigTable table = new ConfigTable(map, false);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new Integer(i), table.get("/path" + i));
+        }
+
+        assertEquals("Aa", table.get("Aa"));
+        assertEquals("BB", table.get("BB"));
+        assertEquals("null", table.get(null));
+        assertNull(table.get("/path100"));
+        assertNull(table.get("/PATH1"));
+    }
+
+    /**
+     * Test an empty table.
+     */
+    public void testEmpty() {
+        ConfigTable table = new ConfigTable(new HashMap(), false);
+
+        assertNull(table.get("/path"));
+        assertNull(table.get(null));
+    }
+
+    /**
+     * Test that a case insensitive table finds keys whatever their case.
+     */
+    public void testIgnoreCase() {
+        Map map = new HashMap();
+
+        map.put("/Path", "path");
+        map.put("/other", "other");
+
+        ConfigTable table = new ConfigTable(map, true);
+
+        assertEquals("path", table.get("/Path"));
+        assertEquals("path", table.get("/path"));
+        assertEquals("path", table.get("/PATH"));
+        assertEquals("other", table.get("/OTHER"));
+        assertNull(table.get("/paths"));
+
+        // Characters whose lower and upper case do not round trip
+        map.clear();
+        map.put("/stra\u00dfe", "street");
+        map.put("/\u0130", "dotted");
+        table = new ConfigTable(map, true);
+        assertEquals("street", table.get("/STRA\u00dfE"));
+        assertEquals("dotted", table.get("/\u0130"));
+        assertEquals(String.CASE_INSENSITIVE_ORDER.compare("/\u0130", "/i") == 0,
+            "dotted".equals(table.get("/i")));
+    }
+
+    /**
+     * Test that a frozen module honours case insensitive action paths.
+     */
+    public void testFrozenIgnoreCase() {
+        ModuleConfigImpl config = new ModuleConfigImpl("");
+
+        config.setProperty(Constants.STRUTS_URL_CASESENSITIVE, "false");
+        config.addActionConfig(mapping("/Logon"));
+        config.freeze();
+
+        assertNotNull(config.findActionConfig("/logon"));
+        assertNotNull(config.findActionConfig("/LOGON"));
+        assertNull(config.findActionConfig("/logoff"));
+    }
+
+    /**
+     * Test that the arrays returned by a frozen module are copies, while the
+     * shared ones are not.
+     */
+    public void testFrozenArrays() {
+        ModuleConfigImpl config = new ModuleConfigImpl("");
+        MessageResourcesConfig resources = new MessageResourcesConfig();
+
+        resources.setKey("key");
+        config.addActionConfig(mapping("/one"));
+        config.addActionConfig(mapping("/two"));
+        config.addMessageResourcesConfig(resources);
+        config.freeze();
+
+        ActionConfig[] configs = config.findActionConfigs();
+
+        assertEquals(2, configs.length);
+        assertEquals("/one", configs[0].getPath());
+        configs[0] = null;
+        assertNotNull("copied", config.findActionConfigs()[0]);
+        assertNotSame(config.findActionConfigs(), config.findActionConfigs());
+        assertNotSame(config.findPlugInConfigs(), config.findPlugInConfigs());
+
+        assertSame(ModuleConfigImpl.findSharedActionConfigs(config),
+            ModuleConfigImpl.findSharedActionConfigs(config));
+        assertEquals(2, ModuleConfigImpl.findSharedActionConfigs(config).length);
+        assertSame(resources,
+            ModuleConfigImpl.findSharedMessageResourcesConfigs(config)[0]);
+    }
+
+    /**
+     * Test that the shared arrays of a module that is not frozen are
+     * current.
+     */
+    public void testSharedBeforeFreeze() {
+        ModuleConfigImpl config = new ModuleConfigImpl("");
+
+        assertEquals(0, ModuleConfigImpl.findSharedActionConfigs(config).length);
+        config.addActionConfig(mapping("/one"));
+        assertEquals(1, ModuleConfigImpl.findSharedActionConfigs(config).length);
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Create an action mapping for the specified path.
+     */
+    private ActionMapping mapping(String path) {
+        ActionMapping mapping = new ActionMapping();
+
+        mapping.setPath(path);
+
+        return mapping;
+    }
+}
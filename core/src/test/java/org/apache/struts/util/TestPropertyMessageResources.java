@@ -24,7 +24,21 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import java.text.DateFormat;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import org.apache.struts.config.MessageResourcesConfig;
 
 /**
@@ -38,6 +52,11 @@ public class TestPropertyMessageResources extends TestCase {
     private static final String FOO_RESOURCES = "org.apache.struts.util.Foo";
 
     private Locale defaultLocale;
+
+    /**
+     * Whether the message resources created by the tests merge locales.
+     */
+    private boolean merged = false;
     
     // ----------------------------------------------------------------- Basics
     public TestPropertyMessageResources(String name) {
@@ -203,18 +222,313 @@ public class TestPropertyMessageResources extends TestCase {
         assertEquals("Missing de_DE only",  null,           resources.getMessage(Locale.US,      "key.de_DE"));
     }
 
+    /**
+     * Test the default mode with merged locales.
+     */
+    public void testDefaultModeMerged() {
+        merged = true;
+
+        Locale.setDefault(Locale.US);
+
+        MessageResources resources = createMessageResources(FOO_RESOURCES, true, null);
+
+        // Test language (& default) only keys - unlike the default mode,
+        // the result does not depend on which Locales were requested before
+        assertEquals("key.lang FRANCE",  "LANG default", resources.getMessage(Locale.FRANCE,  "key.lang"));
+        assertEquals("key.lang English", "LANG en",      resources.getMessage(Locale.ENGLISH, "key.lang"));
+        assertEquals("key.lang US",      "LANG en",      resources.getMessage(Locale.US,      "key.lang"));
+        assertEquals("key.lang ITALY",   "LANG default", resources.getMessage(Locale.ITALY,   "key.lang"));
+        assertEquals("key.lang German",  "LANG de",      resources.getMessage(Locale.GERMAN,  "key.lang"));
+        assertEquals("key.lang GERMANY", "LANG de",      resources.getMessage(Locale.GERMANY, "key.lang"));
+
+        // Test country (& default) only keys
+        assertEquals("key.country FRANCE",  "COUNTRY en_US", resources.getMessage(Locale.FRANCE,  "key.country"));
+        assertEquals("key.country ITALY",   "COUNTRY en_US", resources.getMessage(Locale.ITALY,   "key.country"));
+        assertEquals("key.country German",  "COUNTRY en_US", resources.getMessage(Locale.GERMAN,  "key.country"));
+        assertEquals("key.country GERMANY", "COUNTRY de_DE", resources.getMessage(Locale.GERMANY, "key.country"));
+
+        // Test Unique Keys with wrong Locale
+        assertEquals("Wrong Locale en only",    null,         resources.getMessage(Locale.GERMAN,  "key.en"));
+        assertEquals("Wrong Locale en_US only", "en_US only", resources.getMessage(Locale.GERMANY, "key.en_US"));
+
+        // Run tests with common expected results
+        commonTests(resources);
+    }
+
+    /**
+     * Test that merged locales have no message for a null key.
+     */
+    public void testNullKeyMerged() {
+        merged = true;
+
+        MessageResources resources = createMessageResources(FOO_RESOURCES, false, null);
+
+        assertEquals("Check null key", "???en_US.null???", resources.getMessage(Locale.US, null));
+        assertFalse("Check null key present", resources.isPresent(Locale.US, null));
+        assertEquals("Check null key args", "???en_US.null???", resources.getMessage(Locale.US, null, "A"));
+
+        resources = createMessageResources(FOO_RESOURCES, true, null);
+        assertNull("Check null key", resources.getMessage(Locale.US, null));
+        assertFalse("Check null key present", resources.isPresent(Locale.US, null));
+    }
+
+    /**
+     * Test the JSTL mode with merged locales.
+     */
+    public void testJstlModeMerged() {
+        merged = true;
+        testJstlMode();
+    }
+
+    /**
+     * Test the resource bundle mode with merged locales.
+     */
+    public void testResourceBundleModeMerged() {
+        merged = true;
+        testResourceBundleMode();
+    }
+
+    /**
+     * Test messages with replacement parameters.
+     */
+    public void testReplacementParameters() {
+        Locale.setDefault(Locale.US);
+
+        MessageResources resources = createMessageResources(FOO_RESOURCES, true, null);
+
+        Date date = date(1970, 0, 2, 3, 4);
+
+        // Run twice, so the second run uses the cached messages
+        for (int i = 0; i < 2; i++) {
+            assertEquals("Check args",          "A isn't B",    resources.getMessage(Locale.US, "key.args", "A", "B"));
+            assertEquals("Check missing arg",   "A isn't {1}",  resources.getMessage(Locale.US, "key.args", new Object[] {"A"}));
+            assertEquals("Check number arg",    "1,234 isn't null", resources.getMessage(Locale.US, "key.args", new Integer(1234), null));
+            assertEquals("Check number format", "Total: 2.5",   resources.getMessage(Locale.US, "key.number", new Double(2.5)));
+            assertEquals("Check missing key",   null,           resources.getMessage(Locale.US, "missing", "A"));
+            assertEquals("Check null key",      null,           resources.getMessage(Locale.US, null, "A"));
+            assertEquals("Check date arg",      shortDateTime(date) + " isn't B",
+                resources.getMessage(Locale.US, "key.args", date, "B"));
+        }
+
+        resources = createMessageResources(FOO_RESOURCES, false, null);
+        assertEquals("Check null key", "???en_US.null???", resources.getMessage(Locale.US, null, "A"));
+    }
+
+    /**
+     * Test that a MessageTable finds its messages and shares strings with
+     * the tables it is built from.
+     */
+    public void testMessageTable() {
+        Map base = new HashMap();
+
+        for (int i = 0; i < 100; i++) {
+            base.put("key." + i, "value " + i);
+        }
+
+        MessageTable baseTable = new MessageTable(base, new MessageTable[0]);
+
+        assertEquals("size", 100, baseTable.size());
+        assertEquals("value", "value 42", baseTable.get("key.42"));
+        assertNull("missing", baseTable.get("key.100"));
+        assertNull("null key", baseTable.get(null));
+
+        Map german = new HashMap();
+
+        german.put(new String("key.1"), new String("value 1"));
+        german.put(new String("key.2"), "Wert 2");
+        german.put("key.de", "nur de");
+
+        MessageTable germanTable =
+            new MessageTable(german, new MessageTable[] { baseTable });
+
+        assertEquals("german size", 3, germanTable.size());
+        assertSame("shared value", baseTable.get("key.1"),
+            germanTable.get("key.1"));
+        assertEquals("own value", "Wert 2", germanTable.get("key.2"));
+        assertEquals("own key", "nur de", germanTable.get("key.de"));
+        assertNull("not inherited", germanTable.get("key.3"));
+
+        Map merged = new HashMap();
+
+        baseTable.putAllTo(merged);
+        germanTable.putAllTo(merged);
+        assertEquals("merged size", 101, merged.size());
+        assertEquals("merged value", "Wert 2", merged.get("key.2"));
+    }
+
+    /**
+     * Test that ReloadablePropertyMessageResources replaces the messages of
+     * every loaded locale when a resource changes.
+     */
+    public void testReload() throws Exception {
+        Locale.setDefault(Locale.US);
+
+        File dir = createTempDir();
+        File base = new File(dir, "Reload.properties");
+        File german = new File(dir, "Reload_de.properties");
+
+        writeProperties(base, "key.one=one\nkey.two=two {0}\n");
+        writeProperties(german, "key.one=eins\n");
+
+        ReloadablePropertyMessageResources resources =
+            createReloadableResources(dir);
+
+        try {
+            assertEquals("initial", "one",
+                resources.getMessage(Locale.US, "key.one"));
+            assertEquals("initial de", "eins",
+                resources.getMessage(Locale.GERMAN, "key.one"));
+            assertEquals("initial args", "two 2",
+                resources.getMessage(Locale.US, "key.two", "2"));
+            assertFalse("unchanged", resources.reloadIfModified());
+            assertEquals("no reload", 0, resources.getReloadCount());
+
+            writeProperties(base, "key.one=uno\nkey.two=dos {0}\n");
+            base.setLastModified(base.lastModified() + 2000);
+
+            assertTrue("changed", resources.reloadIfModified());
+            assertEquals("reloaded", "uno",
+                resources.getMessage(Locale.US, "key.one"));
+            assertEquals("reloaded de", "eins",
+                resources.getMessage(Locale.GERMAN, "key.one"));
+            assertEquals("reloaded args", "dos 2",
+                resources.getMessage(Locale.US, "key.two", "2"));
+            assertEquals("fallback", "dos {0}",
+                resources.getMessage(Locale.GERMAN, "key.two"));
+            assertFalse("unchanged again", resources.reloadIfModified());
+
+            // Forced reload
+            assertTrue("forced", resources.reload());
+            assertEquals("reload count", 2, resources.getReloadCount());
+            assertEquals("check count", 3, resources.getCheckCount());
+            assertEquals("failure count", 0, resources.getFailureCount());
+            assertTrue("last reload", resources.getLastReload() > 0);
+        } finally {
+            resources.stop();
+            base.delete();
+            german.delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Test that ReloadablePropertyMessageResources checks its resources on a
+     * background thread.
+     */
+    public void testReloadInBackground() throws Exception {
+        File dir = createTempDir();
+        File base = new File(dir, "Reload.properties");
+
+        writeProperties(base, "key.one=one\n");
+
+        ReloadablePropertyMessageResources resources =
+            createReloadableResources(dir);
+
+        try {
+            resources.setMerged(true);
+            assertEquals("initial", "one",
+                resources.getMessage(Locale.US, "key.one"));
+
+            resources.start(10);
+            assertTrue("started", resources.isStarted());
+
+            writeProperties(base, "key.one=uno\n");
+            base.setLastModified(base.lastModified() + 2000);
+
+            for (int i = 0; (i < 500) && (resources.getReloadCount() == 0);
+                i++) {
+                Thread.sleep(10);
+            }
+
+            assertEquals("reloaded", "uno",
+                resources.getMessage(Locale.US, "key.one"));
+
+            resources.stop();
+            assertFalse("stopped", resources.isStarted());
+        } finally {
+            resources.stop();
+            base.delete();
+            dir.delete();
+        }
+    }
+
     /**
      * Create the PropertyMessageResources.
      */
+    private Date date(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+
+        return calendar.getTime();
+    }
+
+    private String shortDateTime(Date date) {
+        // As MessageFormat formats a date argument; the pattern depends on
+        // the locale data of the JDK
+        return DateFormat.getDateTimeInstance(DateFormat.SHORT,
+            DateFormat.SHORT, Locale.US).format(date);
+    }
+
     private MessageResources createMessageResources(String file, boolean returnNull, String mode) {
         MessageResourcesConfig config = new MessageResourcesConfig();
         config.setNull(returnNull);
         if (mode != null) {
             config.setProperty("mode", mode);
         }
+        if (merged) {
+            config.setProperty("merged", "true");
+        }
         PropertyMessageResourcesFactory factory = new PropertyMessageResourcesFactory();
         factory.setConfig(config);
         factory.setReturnNull(returnNull);
         return factory.createResources(file);
     }
+
+    /**
+     * Create a ReloadablePropertyMessageResources reading "Reload" resources
+     * from the specified directory.
+     */
+    private ReloadablePropertyMessageResources createReloadableResources(
+        File dir) throws IOException {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+
+        thread.setContextClassLoader(new URLClassLoader(
+                new URL[] { dir.toURL() }, null));
+
+        try {
+            return new ReloadablePropertyMessageResources(
+                new ReloadablePropertyMessageResourcesFactory(), "Reload");
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * Create an empty temporary directory.
+     */
+    private File createTempDir() throws IOException {
+        File dir = File.createTempFile("reload", "");
+
+        dir.delete();
+        dir.mkdir();
+
+        return dir;
+    }
+
+    /**
+     * Replace the contents of a properties file.
+     */
+    private void writeProperties(File file, String contents)
+        throws IOException {
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
 }
@@ -27,12 +27,16 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.DynaActionForm;
 import org.apache.struts.util.RequestUtils;
 import org.apache.struts.Globals;
 import org.apache.struts.mock.TestMockBase;
 import org.apache.struts.mock.MockFormBean;
 import org.apache.struts.mock.MockMultipartRequestHandler;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Unit tests for the RequestUtil's <code>populate</code> method.
  *
@@ -120,4 +124,115 @@ public class TestRequestUtilsPopulate extends TestMockBase {
 
     }
 
+    /**
+     * Ensure that simple, indexed, mapped and nested properties are
+     * converted and set, and that unknown and read-only properties are
+     * skipped, both when the populate plan is built and when it is reused.
+     */
+    public void testPopulateProperties() throws Exception {
+        request.addParameter("intProperty", "42");
+        request.addParameter("intArray", "1");
+        request.addParameter("intArray", "2");
+        request.addParameter("stringArray[1]", "b");
+        request.addParameter("value(key)", "mapped");
+        request.addParameter("nested.intProperty", "7");
+        request.addParameter("unknown", "ignored");
+        request.addParameter("readOnly", "ignored");
+
+        for (int i = 0; i < 2; i++) {
+            PopulateBean bean = new PopulateBean();
+
+            RequestUtils.populate(bean, request);
+
+            assertEquals("intProperty", 42, bean.getIntProperty());
+            assertEquals("intArray length", 2, bean.getIntArray().length);
+            assertEquals("intArray[1]", 2, bean.getIntArray()[1]);
+            assertEquals("stringArray[0]", "a", bean.getStringArray()[0]);
+            assertEquals("stringArray[1]", "b", bean.getStringArray()[1]);
+            assertEquals("value(key)", "mapped", bean.getValue("key"));
+            assertEquals("nested.intProperty", 7,
+                bean.getNested().getIntProperty());
+            assertEquals("readOnly", "readOnly", bean.getReadOnly());
+        }
+    }
+
+    /**
+     * Ensure that the properties of a DynaActionForm are converted and set.
+     */
+    public void testPopulateDynaActionForm() throws Exception {
+        DynaActionForm form =
+            (DynaActionForm) moduleConfig.findFormBeanConfig("dynamic0")
+                                         .getDynaActionFormClass()
+                                         .newInstance();
+
+        request.addParameter("booleanProperty", "true");
+        request.addParameter("intArray2", "3");
+        request.addParameter("intArray2", "4");
+        request.addParameter("unknown", "ignored");
+
+        RequestUtils.populate(form, request);
+
+        assertEquals("booleanProperty", Boolean.TRUE,
+            form.get("booleanProperty"));
+
+        int[] intArray2 = (int[]) form.get("intArray2");
+
+        assertEquals("intArray2 length", 2, intArray2.length);
+        assertEquals("intArray2[0]", 3, intArray2[0]);
+    }
+
+    /**
+     * A bean with properties of each kind.
+     */
+    public static class PopulateBean {
+        private int intProperty;
+        private int[] intArray;
+        private String[] stringArray = { "a", "z" };
+        private Map values = new HashMap();
+        private PopulateBean nested;
+
+        public int getIntProperty() {
+            return intProperty;
+        }
+
+        public void setIntProperty(int intProperty) {
+            this.intProperty = intProperty;
+        }
+
+        public int[] getIntArray() {
+            return intArray;
+        }
+
+        public void setIntArray(int[] intArray) {
+            this.intArray = intArray;
+        }
+
+        public String[] getStringArray() {
+            return stringArray;
+        }
+
+        public void setStringArray(String[] stringArray) {
+            this.stringArray = stringArray;
+        }
+
+        public Object getValue(String key) {
+            return values.get(key);
+        }
+
+        public void setValue(String key, Object value) {
+            values.put(key, value);
+        }
+
+        public PopulateBean getNested() {
+            if (nested == null) {
+                nested = new PopulateBean();
+            }
+
+            return nested;
+        }
+
+        public String getReadOnly() {
+            return "readOnly";
+        }
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * <p>Unit tests for <code>org.apache.struts.util.StripedPool</code>.</p>
+ *
+ * @version $Rev$
+ */
+public class TestStripedPool extends TestCase {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The pool we'll test.
+     */
+    private StripedPool pool = null;
+
+    // ----------------------------------------------------------------- Basics
+    public TestStripedPool(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestStripedPool.class.getName()
+            });
+    }
+
+    public static Test suite() {
+        return (new TestSuite(TestStripedPool.class));
+    }
+
+    public void setUp() {
+        pool = new StripedPool();
+    }
+
+    public void tearDown() {
+        pool = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Test that a released object is taken once.
+     */
+    public void testTakeAndRelease() {
+        Object item = new Object();
+
+        assertNull(pool.take());
+
+        pool.release(item);
+        assertSame(item, pool.take());
+        assertNull("taken twice", pool.take());
+    }
+
+    /**
+     * Test that a cleared pool keeps nothing.
+     */
+    public void testClear() {
+        pool.release(new Object());
+        pool.clear();
+
+        assertNull(pool.take());
+    }
+
+    /**
+     * Test that an object is never handed to two threads at once.
+     */
+    public void testConcurrentTake()
+        throws Exception {
+        final Throwable[] failures = new Throwable[4];
+        Thread[] threads = new Thread[failures.length];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+
+            threads[i] =
+                new Thread() {
+                        public void run() {
+                            try {
+                                for (int j = 0; j < 10000; j++) {
+                                    int[] item = (int[]) pool.take();
+
+                                    if (item == null) {
+                                        item = new int[1];
+                                    }
+
+                                    if (item[0]++ != 0) {
+                                        throw new IllegalStateException(
+                                            "Shared object");
+                                    }
+
+                                    item[0]--;
+                                    pool.release(item);
+                                }
+                            } catch (Throwable t) {
+                                failures[index] = t;
+                            }
+                        }
+                    };
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull("failure " + i, failures[i]);
+        }
+    }
+}
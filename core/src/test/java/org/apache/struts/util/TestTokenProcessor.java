@@ -0,0 +1,408 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.struts.Globals;
+import org.apache.struts.mock.MockHttpServletRequest;
+import org.apache.struts.mock.MockHttpSession;
+import org.apache.struts.mock.MockServletContext;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Unit tests for <code>org.apache.struts.util.TokenProcessor</code>.</p>
+ *
+ * @version $Rev$
+ */
+public class TestTokenProcessor extends TestCase {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The processor we'll test.
+     */
+    private TokenProcessor processor = null;
+
+    /**
+     * The session shared by the requests of a test.
+     */
+    private MockHttpSession session = null;
+
+    // ----------------------------------------------------------------- Basics
+    public TestTokenProcessor(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestTokenProcessor.class.getName()
+            });
+    }
+
+    public static Test suite() {
+        return (new TestSuite(TestTokenProcessor.class));
+    }
+
+    // ----------------------------------------------------- Setup and Teardown
+    public void setUp() {
+        processor = new TokenProcessor();
+        session =
+            new MockHttpSession() {
+                    public String getId() {
+                        return "session";
+                    }
+                };
+    }
+
+    public void tearDown() {
+        processor = null;
+        session = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Test that tokens are distinct hexadecimal strings.
+     */
+    public void testGenerateToken() {
+        Set tokens = new HashSet();
+
+        for (int i = 0; i < 1000; i++) {
+            String token = processor.generateToken("id");
+
+            assertEquals("length", 32, token.length());
+
+            for (int j = 0; j < token.length(); j++) {
+                assertTrue("hex digit",
+                    Character.digit(token.charAt(j), 16) >= 0);
+            }
+
+            assertTrue("distinct", tokens.add(token));
+        }
+    }
+
+    /**
+     * Test a single outstanding token per session.
+     */
+    public void testSingleToken() {
+        processor.saveToken(createRequest(null));
+
+        String first = getSavedToken();
+
+        processor.saveToken(createRequest(null));
+
+        String second = getSavedToken();
+
+        assertFalse("new token", first.equals(second));
+        assertNull("no ring",
+            session.getAttribute(Globals.TRANSACTION_TOKENS_KEY));
+        assertFalse("replaced", processor.isTokenValid(createRequest(first)));
+        assertFalse("missing", processor.isTokenValid(createRequest(null)));
+        assertTrue("valid", processor.isTokenValid(createRequest(second)));
+        assertTrue("valid and reset",
+            processor.isTokenValid(createRequest(second), true));
+        assertFalse("reset", processor.isTokenValid(createRequest(second)));
+        assertNull("removed", getSavedToken());
+    }
+
+    /**
+     * Test several outstanding tokens per session.
+     */
+    public void testSeveralTokens() {
+        processor.setMaxTokens(3);
+
+        String[] tokens = new String[4];
+
+        for (int i = 0; i < tokens.length; i++) {
+            processor.saveToken(createRequest(null));
+            tokens[i] = getSavedToken();
+        }
+
+        assertFalse("oldest discarded",
+            processor.isTokenValid(createRequest(tokens[0])));
+        assertTrue("outstanding",
+            processor.isTokenValid(createRequest(tokens[1])));
+        assertFalse("unknown", processor.isTokenValid(createRequest("x")));
+
+        // Submitting one window leaves the others valid
+        assertTrue("reset one",
+            processor.isTokenValid(createRequest(tokens[2]), true));
+        assertFalse("submitted",
+            processor.isTokenValid(createRequest(tokens[2])));
+        assertTrue("others valid",
+            processor.isTokenValid(createRequest(tokens[1])));
+        assertEquals("latest kept", tokens[3], getSavedToken());
+
+        assertTrue("reset latest",
+            processor.isTokenValid(createRequest(tokens[3]), true));
+        assertNull("latest removed", getSavedToken());
+        assertTrue("older valid",
+            processor.isTokenValid(createRequest(tokens[1])));
+
+        processor.resetToken(createRequest(null));
+        assertFalse("all reset",
+            processor.isTokenValid(createRequest(tokens[1])));
+    }
+
+    /**
+     * Test that of two requests submitting the same token at once, only one
+     * finds it valid, with one or several tokens per session.
+     */
+    public void testConcurrentSubmit()
+        throws Exception {
+        useSlowSession();
+
+        for (int max = 1; max <= 2; max++) {
+            processor.setMaxTokens(max);
+
+            for (int i = 0; i < 50; i++) {
+                processor.saveToken(createRequest(null));
+                assertEquals("max " + max + ", round " + i, 1,
+                    submitTwice(getSavedToken()));
+            }
+        }
+    }
+
+    /**
+     * Test that tokens saved at once by two requests of a new session are
+     * all kept.
+     */
+    public void testConcurrentSave()
+        throws Exception {
+        final List generated = new ArrayList();
+
+        processor =
+            new TokenProcessor() {
+                    public String generateToken(HttpServletRequest request) {
+                        String token = super.generateToken(request);
+
+                        synchronized (generated) {
+                            generated.add(token);
+                        }
+
+                        return token;
+                    }
+                };
+        useSlowSession();
+        processor.setMaxTokens(3);
+
+        for (int i = 0; i < 50; i++) {
+            processor.resetToken(createRequest(null));
+            generated.clear();
+
+            Thread[] threads = new Thread[2];
+            final int[] gate = new int[2];
+
+            for (int j = 0; j < threads.length; j++) {
+                threads[j] =
+                    new Thread() {
+                            public void run() {
+                                await(gate);
+                                processor.saveToken(createRequest(null));
+                            }
+                        };
+                threads[j].start();
+            }
+
+            release(gate, threads.length);
+
+            for (int j = 0; j < threads.length; j++) {
+                threads[j].join();
+            }
+
+            assertEquals(2, generated.size());
+
+            for (int j = 0; j < generated.size(); j++) {
+                assertTrue("round " + i + ", token " + j,
+                    processor.isTokenValid(createRequest(
+                            (String) generated.get(j))));
+            }
+        }
+    }
+
+    /**
+     * Test that an invalid number of tokens is rejected.
+     */
+    public void testInvalidMaxTokens() {
+        try {
+            processor.setMaxTokens(0);
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertEquals("unchanged", 1, processor.getMaxTokens());
+    }
+
+    /**
+     * Test that the number of tokens stored in the servlet context of the
+     * session overrides the number set on the processor, without changing
+     * it.
+     */
+    public void testMaxTokensOfContext() {
+        MockServletContext context = new MockServletContext();
+        String[] tokens = new String[3];
+
+        session =
+            new MockHttpSession(context) {
+                    public String getId() {
+                        return "session";
+                    }
+                };
+        context.setAttribute(Globals.MAX_TOKENS_KEY, new Integer(2));
+
+        for (int i = 0; i < tokens.length; i++) {
+            processor.saveToken(createRequest(null));
+            tokens[i] = getSavedToken();
+        }
+
+        assertEquals("processor", 1, processor.getMaxTokens());
+        assertFalse("oldest", processor.isTokenValid(createRequest(tokens[0])));
+        assertTrue("second", processor.isTokenValid(createRequest(tokens[1])));
+        assertTrue("newest", processor.isTokenValid(createRequest(tokens[2])));
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Create a request in our session that submits the specified token.
+     */
+    private MockHttpServletRequest createRequest(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest(session);
+
+        if (token != null) {
+            request.addParameter(Globals.TOKEN_KEY, token);
+        }
+
+        return request;
+    }
+
+    /**
+     * Use a session that is slow to read attributes.
+     */
+    private void useSlowSession() {
+        session =
+            new MockHttpSession() {
+                    public String getId() {
+                        return "session";
+                    }
+
+                    public Object getAttribute(String name) {
+                        Object value = super.getAttribute(name);
+
+                        // Widen the window between reading and updating
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        return value;
+                    }
+                };
+    }
+
+    /**
+     * Submit the specified token from two threads at once, resetting it, and
+     * return the number of submissions found valid.
+     */
+    private int submitTwice(final String token)
+        throws InterruptedException {
+        final int[] valid = new int[1];
+        final int[] gate = new int[2];
+        Thread[] threads = new Thread[2];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] =
+                new Thread() {
+                        public void run() {
+                            await(gate);
+
+                            if (processor.isTokenValid(createRequest(token),
+                                        true)) {
+                                synchronized (valid) {
+                                    valid[0]++;
+                                }
+                            }
+                        }
+                    };
+            threads[i].start();
+        }
+
+        release(gate, threads.length);
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        return valid[0];
+    }
+
+    /**
+     * Wait at the specified gate until it is opened.  The first element of
+     * the gate counts the waiting threads, the second is set when open.
+     */
+    private static void await(int[] gate) {
+        synchronized (gate) {
+            gate[0]++;
+            gate.notifyAll();
+
+            while (gate[1] == 0) {
+                try {
+                    gate.wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Open the specified gate once the specified number of threads wait at
+     * it, so that they all start at once.
+     */
+    private static void release(int[] gate, int threads)
+        throws InterruptedException {
+        synchronized (gate) {
+            while (gate[0] < threads) {
+                gate.wait();
+            }
+
+            gate[1] = 1;
+            gate.notifyAll();
+        }
+    }
+
+    /**
+     * Return the most recently saved token of our session.
+     */
+    private String getSavedToken() {
+        return (String) session.getAttribute(Globals.TRANSACTION_TOKEN_KEY);
+    }
+}
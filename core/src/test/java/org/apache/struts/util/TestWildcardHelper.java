@@ -0,0 +1,132 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Unit tests for <code>org.apache.struts.util.WildcardHelper</code>.</p>
+ *
+ * @version $Rev$
+ */
+public class TestWildcardHelper extends TestCase {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The patterns checked by each test.
+     */
+    private static final String[] PATTERNS =
+        {
+            "foo*", "*/*", "**", "a/**/b", "*.do", "/x\\*y/*", "a*b*c", "exact"
+        };
+
+    /**
+     * The paths checked against every pattern.
+     */
+    private static final String[] PATHS =
+        {
+            "", "foo", "fooBar", "foo/bar", "a/b", "a/x/y/b", "list.do",
+            "dir/list.do", "/x*y/z", "abc", "aXbYc", "aXbY", "exact", "exactly"
+        };
+
+    /**
+     * The helper we'll test.
+     */
+    private WildcardHelper helper = null;
+
+    // ----------------------------------------------------------------- Basics
+    public TestWildcardHelper(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestWildcardHelper.class.getName()
+            });
+    }
+
+    public static Test suite() {
+        return (new TestSuite(TestWildcardHelper.class));
+    }
+
+    // ----------------------------------------------------- Setup and Teardown
+    public void setUp() {
+        helper = new WildcardHelper();
+    }
+
+    public void tearDown() {
+        helper = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Verify that matching into a result buffer agrees with matching into a
+     * map, for both the outcome and the matched groups.
+     */
+    public void testResultMatchesMap() {
+        WildcardMatchResult result = new WildcardMatchResult();
+
+        for (int i = 0; i < PATTERNS.length; i++) {
+            int[] expr = helper.compilePattern(PATTERNS[i]);
+
+            for (int j = 0; j < PATHS.length; j++) {
+                String label = PATTERNS[i] + " ~ " + PATHS[j];
+                Map expected = new HashMap();
+                boolean matched = helper.match(expected, PATHS[j], expr);
+
+                assertEquals(label, matched,
+                    helper.match(result, PATHS[j], expr));
+
+                if (matched) {
+                    Map actual = new HashMap();
+
+                    result.putGroups(actual);
+                    assertEquals(label, expected, actual);
+                }
+            }
+        }
+    }
+
+    /**
+     * Verify placeholder substitution from a result buffer.
+     */
+    public void testSubstitute() {
+        WildcardMatchResult result = new WildcardMatchResult();
+
+        assertTrue(helper.match(result, "edit/user",
+                helper.compilePattern("*/*")));
+        assertEquals("user", result.getGroup(2));
+        assertEquals("/user/edit.jsp",
+            result.substitute("/{2}/{1}.jsp"));
+        assertEquals("{5} kept", result.substitute("{5} kept"));
+
+        String plain = "no placeholders";
+
+        assertSame(plain, result.substitute(plain));
+        assertNull(result.substitute(null));
+    }
+}
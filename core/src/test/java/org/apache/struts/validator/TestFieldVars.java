@@ -0,0 +1,285 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.commons.validator.Field;
+import org.apache.commons.validator.GenericTypeValidator;
+import org.apache.commons.validator.GenericValidator;
+import org.apache.commons.validator.Validator;
+import org.apache.commons.validator.ValidatorResources;
+import org.apache.commons.validator.Var;
+
+/**
+ * <p>Unit tests for <code>org.apache.struts.validator.FieldVars</code>.</p>
+ *
+ * @version $Rev$
+ */
+public class TestFieldVars extends TestCase {
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The values we'll test.
+     */
+    private FieldVars vars = null;
+
+    /**
+     * A validator of the module of the values.
+     */
+    private Validator validator = null;
+
+    /**
+     * A validator without values.
+     */
+    private Validator plain = null;
+
+    /**
+     * A field with numeric variables.
+     */
+    private Field field = null;
+
+    // ----------------------------------------------------------------- Basics
+    public TestFieldVars(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestFieldVars.class.getName()
+            });
+    }
+
+    public static Test suite() {
+        return (new TestSuite(TestFieldVars.class));
+    }
+
+    // ----------------------------------------------------- Setup and Teardown
+    public void setUp() {
+        vars = new FieldVars();
+        validator = new Validator(new ValidatorResources());
+        validator.setParameter(Resources.FIELD_VARS_PARAM, vars);
+        plain = new Validator(new ValidatorResources());
+
+        field = new Field();
+        field.setProperty("code");
+        field.setDepends("intRange,maxlength");
+        field.addVar("min", "1", null);
+        field.addVar("max", "9", null);
+        field.addVar("maxlength", "5", null);
+    }
+
+    public void tearDown() {
+        vars.clear();
+        vars = null;
+        validator = null;
+        plain = null;
+        field = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Test that masks match the same values as
+     * <code>GenericValidator.matchRegexp()</code>.
+     */
+    public void testMatchMask() {
+        String[] masks =
+            new String[] {
+                "^[a-zA-Z]*$", "^\\d{5}(-\\d{4})?$", "b", "a/b", "^(?i)abc$",
+                ""
+            };
+        String[] values =
+            new String[] { "abc", "ABC", "12345", "12345-6789", "1234", "cab",
+                "xa/by", "" };
+
+        for (int i = 0; i < masks.length; i++) {
+            Field masked = new Field();
+
+            masked.addVar("mask", masks[i], null);
+
+            for (int j = 0; j < values.length; j++) {
+                assertEquals(masks[i] + " ~ " + values[j],
+                    GenericValidator.matchRegexp(values[j], masks[i]),
+                    FieldVars.matchMask(values[j],
+                        FieldVars.getMask(masked, validator, null)));
+            }
+        }
+
+        assertSame("cached", vars.getMask("b"), vars.getMask("b"));
+
+        Field invalid = new Field();
+
+        invalid.addVar("mask", "[a-", null);
+
+        try {
+            FieldVars.getMask(invalid, validator, null);
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test reading numbers that have not been parsed before.
+     */
+    public void testNumbers() {
+        field.addVar("long", "-5000000000", null);
+        field.addVar("float", "1.5", null);
+        field.addVar("double", "2.25", null);
+        field.addVar("blank", "", null);
+
+        assertEquals(1, FieldVars.getInt("min", field, validator, null));
+        assertEquals(9, FieldVars.getInt("max", field, plain, null));
+        assertEquals(-5000000000L,
+            FieldVars.getLong("long", field, validator, null));
+        assertEquals(1.5f, FieldVars.getFloat("float", field, validator, null),
+            0);
+        assertEquals(2.25,
+            FieldVars.getDouble("double", field, validator, null), 0);
+        assertEquals(new Integer(5),
+            FieldVars.getOptionalInt("maxlength", field, validator, null));
+        assertNull("blank",
+            FieldVars.getOptionalInt("blank", field, validator, null));
+        assertNull("missing",
+            FieldVars.getOptionalInt("lineEndLength", field, validator, null));
+
+        try {
+            FieldVars.getInt("float", field, validator, null);
+            fail("Should have thrown NumberFormatException");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+
+        try {
+            FieldVars.getInt("missing", field, validator, null);
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that the variables of a compiled field are read as parsed, by
+     * the validators of the module only, and that copies of the field are
+     * parsed again.
+     */
+    public void testCompiledValues() {
+        assertEquals("parsed", 3, vars.compile(field));
+
+        Field copy = (Field) field.clone();
+
+        field.getVar("min").setValue("2");
+        field.getVar("maxlength").setValue("6");
+
+        assertEquals("kept", 1, FieldVars.getInt("min", field, validator, null));
+        assertEquals("kept", new Integer(5),
+            FieldVars.getOptionalInt("maxlength", field, validator, null));
+        assertEquals("other module", 2,
+            FieldVars.getInt("min", field, plain, null));
+        assertEquals("copy", 1, FieldVars.getInt("min", copy, validator, null));
+
+        vars.clear();
+        assertEquals("cleared", 2,
+            FieldVars.getInt("min", field, validator, null));
+    }
+
+    /**
+     * Test that dates are parsed as by
+     * <code>GenericTypeValidator.formatDate()</code>.
+     */
+    public void testParseDate() {
+        String[] values =
+            new String[] { "12/31/2005", "2/3/2005", "02/03/2005", "13/01/2005",
+                "junk", "" };
+
+        for (int i = 0; i < values.length; i++) {
+            for (int strict = 0; strict < 2; strict++) {
+                Object expected =
+                    GenericTypeValidator.formatDate(values[i], "MM/dd/yyyy",
+                        strict == 1);
+
+                assertEquals(values[i] + " strict " + strict, expected,
+                    FieldVars.parseDate(values[i], "MM/dd/yyyy", strict == 1,
+                        validator));
+                assertEquals(values[i] + " strict " + strict, expected,
+                    FieldVars.parseDate(values[i], "MM/dd/yyyy", strict == 1,
+                        plain));
+            }
+        }
+
+        assertNull("no pattern",
+            FieldVars.parseDate("12/31/2005", "", false, validator));
+    }
+
+    /**
+     * Test that <code>validwhen</code> tests are compiled once by the
+     * values of each module.
+     */
+    public void testValidWhenTest()
+        throws Exception {
+        FieldVars other = new FieldVars();
+        Object compiled = vars.getValidWhenTest("(*this* == 123)");
+
+        assertSame("cached", compiled, vars.getValidWhenTest("(*this* == 123)"));
+        assertSame("validator", compiled,
+            Resources.getValidWhenExpression("(*this* == 123)", validator));
+        assertNotSame("other module", compiled,
+            other.getValidWhenTest("(*this* == 123)"));
+
+        other.clear();
+        assertSame("kept", compiled, vars.getValidWhenTest("(*this* == 123)"));
+    }
+
+    /**
+     * Test parsing the variables of a field.
+     */
+    public void testCompile() {
+        Field dated = new Field();
+
+        dated.setProperty("code");
+        dated.setDepends("mask,intRange,date");
+        dated.addVar("mask", "^\\d*$", null);
+        dated.addVar("min", "1", null);
+        dated.addVar("max", "9", null);
+        dated.addVar(new Var("minlength", "x", null));
+
+        Var pattern = new Var("datePattern", "key.pattern", null);
+
+        pattern.setResource(true);
+        dated.addVar(pattern);
+
+        assertEquals("parsed", 3, vars.compile(dated));
+        assertSame("mask", FieldVars.getMask(dated, validator, null),
+            FieldVars.getMask(dated, validator, null));
+
+        dated.addVar("max", "nine", null);
+
+        try {
+            vars.compile(dated);
+            fail("Should have thrown NumberFormatException");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.commons.validator.Field;
+import org.apache.commons.validator.Validator;
+import org.apache.commons.validator.ValidatorResources;
+import org.apache.struts.Globals;
+import org.apache.struts.action.ActionMessage;
+import org.apache.struts.action.ActionMessages;
+import org.apache.struts.mock.MockHttpServletRequest;
+import org.apache.struts.mock.MockHttpSession;
+import org.apache.struts.mock.MockServletContext;
+import org.apache.struts.util.MessageResources;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>Unit tests for <code>org.apache.struts.validator.ParallelValidator</code>.
+ * </p>
+ *
+ * @version $Rev$
+ */
+public class TestParallelValidator extends TestCase {
+    /**
+     * The number of fields of the test form.
+     */
+    private static final int FIELDS = 40;
+
+    /**
+     * The requests seen by the "request" validation method, and the threads
+     * it ran on, in pairs.
+     */
+    private static final List seen = new ArrayList();
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The resources holding the test form.
+     */
+    private ValidatorResources resources = null;
+
+    /**
+     * The pool validating fields.
+     */
+    private ValidationPool pool = null;
+
+    /**
+     * The bean being validated.
+     */
+    private Map bean = null;
+
+    // ----------------------------------------------------------------- Basics
+    public TestParallelValidator(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestParallelValidator.class.getName()
+            });
+    }
+
+    public static Test suite() {
+        return (new TestSuite(TestParallelValidator.class));
+    }
+
+    // ----------------------------------------------------- Setup and Teardown
+    public void setUp()
+        throws Exception {
+        StringBuffer xml = new StringBuffer();
+
+        xml.append("<!DOCTYPE form-validation PUBLIC"
+            + " \"-//Apache Software Foundation//DTD Commons Validator Rules"
+            + " Configuration 1.3.0//EN\""
+            + " \"http://jakarta.apache.org/commons/dtds/validator_1_3_0.dtd\">"
+            + "<form-validation><global>"
+            + "<validator name=\"check\""
+            + " classname=\"" + getClass().getName() + "\""
+            + " method=\"check\" methodParams=\"java.lang.Object,"
+            + "org.apache.commons.validator.Field,"
+            + "org.apache.struts.action.ActionMessages\" msg=\"errors.check\"/>"
+            + "<validator name=\"validwhen\""
+            + " classname=\"" + getClass().getName() + "\""
+            + " method=\"check\" methodParams=\"java.lang.Object,"
+            + "org.apache.commons.validator.Field,"
+            + "org.apache.struts.action.ActionMessages\" msg=\"errors.when\"/>"
+            + "<validator name=\"required\""
+            + " classname=\"org.apache.struts.validator.FieldChecks\""
+            + " method=\"validateRequired\" methodParams=\"java.lang.Object,"
+            + "org.apache.commons.validator.ValidatorAction,"
+            + "org.apache.commons.validator.Field,"
+            + "org.apache.struts.action.ActionMessages,"
+            + "org.apache.commons.validator.Validator,"
+            + "javax.servlet.http.HttpServletRequest\""
+            + " msg=\"errors.required\"/>"
+            + "<validator name=\"request\""
+            + " classname=\"" + getClass().getName() + "\""
+            + " method=\"request\" methodParams=\"java.lang.Object,"
+            + "org.apache.commons.validator.Field,"
+            + "javax.servlet.http.HttpServletRequest\" msg=\"errors.request\"/>"
+            + "</global><formset><form name=\"request\">");
+
+        for (int i = 0; i < FIELDS; i++) {
+            xml.append("<field property=\"f" + i + "\" depends=\""
+                + (((i % 7) == 0) ? "validwhen" : "required,request")
+                + "\"><arg key=\"label.f" + i + "\" position=\"0\"/></field>");
+        }
+
+        xml.append("</form><form name=\"test\">");
+
+        for (int i = 0; i < FIELDS; i++) {
+            xml.append("<field property=\"f" + i + "\" page=\"" + (i % 3)
+                + "\" depends=\"" + (((i % 7) == 0) ? "validwhen" : "check")
+                + "\"/>");
+        }
+
+        xml.append("</form></formset></form-validation>");
+
+        resources =
+            new ValidatorResources(new ByteArrayInputStream(xml.toString()
+                                                               .getBytes("UTF-8")));
+        pool = new ValidationPool(4, "test");
+        bean = new HashMap();
+
+        for (int i = 0; i < FIELDS; i++) {
+            bean.put("f" + i, (((i % 5) == 3) ? "bad" : "good"));
+        }
+    }
+
+    public void tearDown() {
+        synchronized (seen) {
+            seen.clear();
+        }
+
+        pool.shutdown();
+        pool = null;
+        resources = null;
+        bean = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Test that messages are those of serial validation, in the same order.
+     */
+    public void testSameMessages()
+        throws Exception {
+        for (int page = 0; page < 3; page++) {
+            for (int run = 0; run < 20; run++) {
+                assertEquals("page " + page, validate(null, page),
+                    validate(Boolean.FALSE, page));
+            }
+        }
+    }
+
+    /**
+     * Test that only the first field in error is reported.
+     */
+    public void testStopOnFirstError()
+        throws Exception {
+        List expected = validate(null, 2).subList(0, 1);
+
+        for (int run = 0; run < 20; run++) {
+            assertEquals(expected, validate(Boolean.TRUE, 2));
+        }
+
+        bean.put("f0", "bad");
+        assertEquals("serial field", validate(null, 2).subList(0, 1),
+            validate(Boolean.TRUE, 2));
+    }
+
+    /**
+     * Test that rules using the request report the same messages, in the
+     * locale of the user, and that the threads of the pool do not use the
+     * request itself.
+     */
+    public void testRequestRules()
+        throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        MockHttpServletRequest request = new MockHttpServletRequest(session);
+
+        session.setAttribute(Globals.LOCALE_KEY, Locale.FRENCH);
+        request.setLocale(Locale.US);
+        request.setAttribute(Globals.MESSAGES_KEY,
+            new MessageResources(null, null) {
+                public String getMessage(Locale locale, String key) {
+                    return key + "@" + locale;
+                }
+            });
+
+        for (int i = 0; i < FIELDS; i++) {
+            bean.put("f" + i, (((i % 5) == 3) ? "" : "good"));
+        }
+
+        List expected = validateRequest(request, false);
+
+        assertTrue(expected.contains("f3:errors.required[label.f3@fr]"));
+
+        int helped = 0;
+
+        // The pool may not get to any field on a given run
+        for (int run = 0; (run < 20) || ((helped == 0) && (run < 1000));
+            run++) {
+            assertEquals(expected, validateRequest(request, true));
+
+            synchronized (seen) {
+                for (int i = 0; i < seen.size(); i += 2) {
+                    HttpServletRequest used = (HttpServletRequest) seen.get(i);
+
+                    if (seen.get(i + 1) == Thread.currentThread()) {
+                        assertSame(request, used);
+                    } else {
+                        helped++;
+                        assertTrue("pool thread got the request",
+                            used instanceof ValidationRequest);
+                        assertNotNull(used.getAttribute(Globals.MESSAGES_KEY));
+                        assertEquals(Locale.FRENCH, used.getLocale());
+                        assertNull(used.getSession(false));
+                    }
+                }
+
+                seen.clear();
+            }
+        }
+
+        assertTrue("no field validated by the pool", helped > 0);
+    }
+
+    // ----------------------------------------------------- Validation Methods
+
+    /**
+     * Record a message for a field whose value is "bad".
+     *
+     * @param bean   The bean being validated
+     * @param field  The field
+     * @param errors The messages of the request
+     * @return Whether the value is valid
+     */
+    public static boolean check(Object bean, Field field, ActionMessages errors) {
+        if ("bad".equals(((Map) bean).get(field.getProperty()))) {
+            errors.add(field.getKey(), new ActionMessage("bad"));
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Record the request a field is validated with, and the current thread.
+     *
+     * @param bean    The bean being validated
+     * @param field   The field
+     * @param request The request
+     * @return <code>true</code>
+     */
+    public static boolean request(Object bean, Field field,
+        HttpServletRequest request) {
+        synchronized (seen) {
+            seen.add(request);
+            seen.add(Thread.currentThread());
+        }
+
+        return true;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Validate the test bean against the "request" form as
+     * <code>Resources.initValidator</code> would, and return its messages as
+     * "property:key[values]" strings.
+     *
+     * @param request  The request
+     * @param parallel Whether to validate in parallel
+     */
+    private List validateRequest(HttpServletRequest request, boolean parallel)
+        throws Exception {
+        Validator validator =
+            parallel ? new ParallelValidator(resources, "request", pool, false)
+                     : new Validator(resources, "request");
+        ActionMessages errors = new ActionMessages();
+
+        validator.setParameter(Resources.SERVLET_CONTEXT_PARAM,
+            new MockServletContext());
+        validator.setParameter(Resources.HTTP_SERVLET_REQUEST_PARAM, request);
+        validator.setParameter(Validator.LOCALE_PARAM, Locale.FRENCH);
+        validator.setParameter(Resources.ACTION_MESSAGES_PARAM, errors);
+        validator.setParameter(Validator.BEAN_PARAM, bean);
+        validator.validate();
+
+        List messages = new ArrayList();
+        Iterator properties = errors.properties();
+
+        while (properties.hasNext()) {
+            String property = (String) properties.next();
+            Iterator items = errors.get(property);
+
+            while (items.hasNext()) {
+                ActionMessage message = (ActionMessage) items.next();
+
+                messages.add(property + ":" + message.getKey()
+                    + Arrays.asList(message.getValues()));
+            }
+        }
+
+        return messages;
+    }
+
+    /**
+     * Validate the test bean and return its messages as "property:key"
+     * strings.
+     *
+     * @param stopOnFirstError <code>null</code> to validate serially,
+     *                         otherwise whether to stop on the first error
+     * @param page             The page
+     */
+    private List validate(Boolean stopOnFirstError, int page)
+        throws Exception {
+        Validator validator =
+            (stopOnFirstError == null) ? new Validator(resources, "test")
+                                       : new ParallelValidator(resources,
+                "test", pool, stopOnFirstError.booleanValue());
+        ActionMessages errors = new ActionMessages();
+
+        validator.setPage(page);
+        validator.setParameter(Validator.BEAN_PARAM, bean);
+        validator.setParameter("org.apache.struts.action.ActionMessages",
+            errors);
+        validator.validate();
+
+        List messages = new ArrayList();
+        Iterator properties = errors.properties();
+
+        while (properties.hasNext()) {
+            String property = (String) properties.next();
+            Iterator items = errors.get(property);
+
+            while (items.hasNext()) {
+                messages.add(property + ":"
+                    + ((ActionMessage) items.next()).getKey());
+            }
+        }
+
+        return messages;
+    }
+}
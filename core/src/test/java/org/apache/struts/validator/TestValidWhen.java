@@ -27,6 +27,7 @@ import junit.framework.TestSuite;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.validator.util.ValidatorUtils;
+import org.apache.struts.validator.validwhen.ValidWhenExpression;
 import org.apache.struts.validator.validwhen.ValidWhenLexer;
 import org.apache.struts.validator.validwhen.ValidWhenParser;
 
@@ -291,6 +292,37 @@ public class TestValidWhen extends TestCase {
         doParse("(stringArray[1] == 'one')", testBean, 1, "stringArray[1]", true);
     }
 
+    /**
+     * Test that compiled tests evaluate, and that invalid tests are
+     * rejected as they are by the parser.
+     */
+    public void testCompiled() throws Exception {
+        ValidWhenExpression expression =
+            ValidWhenExpression.compile("(*this* == 123)");
+
+        assertEquals("test", "(*this* == 123)", expression.toString());
+        assertTrue("evaluate", expression.evaluate(testBean, "123", 0));
+        assertFalse("evaluate again", expression.evaluate(testBean, "12", 0));
+
+        String[] invalid =
+            {
+                "*this* == 123", "(*this* == 123", "(*this* == 123) extra",
+                "(*this*)", "((*this* == 1) and (*this* == 2) or (*this* == 3))",
+                "(beans[1.5] == 1)", "(*this* = 1)"
+            };
+
+        for (int i = 0; i < invalid.length; i++) {
+            doParseFail(invalid[i], testBean, 0, "intValue1");
+
+            try {
+                ValidWhenExpression.compile(invalid[i]);
+                fail("Compiling " + invalid[i] + " didn't throw exception");
+            } catch (Exception expected) {
+                // ignore exception - expected result
+            }
+        }
+    }
+
     /**
      * Parse the expression and check that the expected result (either true or
      * false) occurs - fail if an exception is thrown opr the wrong result
@@ -371,6 +403,14 @@ public class TestValidWhen extends TestCase {
 
         parser.expression();
 
-        return parser.getResult();
+        boolean result = parser.getResult();
+
+        // The compiled test must agree with the parser
+        ValidWhenExpression expression = ValidWhenExpression.compile(test);
+
+        assertEquals("Compiled " + test + " for property '" + property + "'",
+            result, expression.evaluate(bean, value, index));
+
+        return result;
     }
 }
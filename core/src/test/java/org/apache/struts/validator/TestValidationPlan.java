@@ -0,0 +1,488 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.validator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.commons.validator.Field;
+import org.apache.commons.validator.Validator;
+import org.apache.commons.validator.ValidatorAction;
+import org.apache.commons.validator.ValidatorResources;
+import org.apache.commons.validator.ValidatorResult;
+import org.apache.commons.validator.ValidatorResults;
+import org.apache.struts.action.ActionMessage;
+import org.apache.struts.action.ActionMessages;
+
+import java.io.ByteArrayInputStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Unit tests for <code>org.apache.struts.validator.ValidationPlan</code>.
+ * </p>
+ *
+ * @version $Rev$
+ */
+public class TestValidationPlan extends TestCase {
+    /**
+     * The resources holding the test forms.
+     */
+    private ValidatorResources resources = null;
+
+    /**
+     * The plans of the test forms.
+     */
+    private ValidationPlans plans = null;
+
+    /**
+     * The bean being validated.
+     */
+    private Map bean = null;
+
+    /**
+     * The validator last handed to the "remember" action.
+     */
+    private static Validator remembered = null;
+
+    // ----------------------------------------------------------------- Basics
+    public TestValidationPlan(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestValidationPlan.class.getName()
+            });
+    }
+
+    public static Test suite() {
+        return (new TestSuite(TestValidationPlan.class));
+    }
+
+    // ----------------------------------------------------- Setup and Teardown
+    public void setUp()
+        throws Exception {
+        String check =
+            " classname=\"" + getClass().getName() + "\""
+            + " methodParams=\"java.lang.Object,"
+            + "org.apache.commons.validator.Field,"
+            + "org.apache.commons.validator.ValidatorAction,"
+            + "org.apache.struts.action.ActionMessages\"";
+        String xml =
+            "<!DOCTYPE form-validation PUBLIC"
+            + " \"-//Apache Software Foundation//DTD Commons Validator Rules"
+            + " Configuration 1.3.0//EN\""
+            + " \"http://jakarta.apache.org/commons/dtds/validator_1_3_0.dtd\">"
+            + "<form-validation><global>"
+            + "<validator name=\"required\" method=\"check\"" + check
+            + " msg=\"errors.required\"/>"
+            + "<validator name=\"short\" method=\"check\"" + check
+            + " depends=\"required\" msg=\"errors.short\"/>"
+            + "<validator name=\"word\" method=\"check\"" + check
+            + " depends=\"required,short\" msg=\"errors.word\"/>"
+            + "<validator name=\"broken\" method=\"missing\"" + check
+            + " msg=\"errors.broken\"/>"
+            + "<validator name=\"seen\" method=\"seen\""
+            + " classname=\"" + getClass().getName() + "\""
+            + " methodParams=\"java.lang.Object,"
+            + "org.apache.commons.validator.Field,"
+            + "org.apache.commons.validator.ValidatorResults,"
+            + "org.apache.struts.action.ActionMessages\" msg=\"errors.seen\"/>"
+            + "<validator name=\"remember\" method=\"remember\""
+            + " classname=\"" + getClass().getName() + "\""
+            + " methodParams=\"java.lang.Object,"
+            + "org.apache.commons.validator.Validator\""
+            + " msg=\"errors.remember\"/>"
+            + "<validator name=\"instance\" method=\"check\""
+            + " classname=\"" + Instance.class.getName() + "\""
+            + " methodParams=\"java.lang.Object\" msg=\"errors.instance\"/>"
+            + "</global><formset>"
+            + "<form name=\"test\">"
+            + "<field property=\"a\" depends=\"word\"/>"
+            + "<field property=\"b\" depends=\"short,required\"/>"
+            + "<field property=\"c\" depends=\"word\" page=\"1\"/>"
+            + "<field property=\"d\"/>"
+            + "<field property=\"value\" indexedListProperty=\"items\""
+            + " depends=\"word\"/>"
+            + "<field property=\"a\" depends=\"short\"/>"
+            + "</form>"
+            + "<form name=\"results\">"
+            + "<field property=\"a\" depends=\"required,seen\"/>"
+            + "<field property=\"b\" depends=\"seen\"/>"
+            + "<field property=\"value\" indexedListProperty=\"items\""
+            + " depends=\"required,seen\"/>"
+            + "</form>"
+            + "<form name=\"one\">"
+            + "<field property=\"a\" depends=\"instance\"/>"
+            + "</form>"
+            + "<form name=\"two\">"
+            + "<field property=\"b\" depends=\"instance\"/>"
+            + "</form>"
+            + "<form name=\"remember\">"
+            + "<field property=\"a\" depends=\"remember\"/>"
+            + "</form>"
+            + "<form name=\"broken\">"
+            + "<field property=\"a\" depends=\"broken\"/>"
+            + "</form>"
+            + "</formset></form-validation>";
+
+        resources =
+            new ValidatorResources(new ByteArrayInputStream(xml.getBytes(
+                        "UTF-8")));
+        plans = new ValidationPlans(resources, new FieldVars());
+        bean = new HashMap();
+    }
+
+    public void tearDown() {
+        synchronized (Instance.instances) {
+            Instance.instances.clear();
+        }
+
+        plans.clear();
+        plans = null;
+        remembered = null;
+        resources = null;
+        bean = null;
+    }
+
+    // ------------------------------------------------------- Individual Tests
+
+    /**
+     * Test that the outcome is that of a <code>Validator</code>.
+     */
+    public void testSameOutcome()
+        throws Exception {
+        String[] values = new String[] { null, "", "toolong", "ok", "no!" };
+        List items = new ArrayList();
+
+        bean.put("items", items);
+
+        for (int i = 0; i < values.length; i++) {
+            bean.put("a", values[i]);
+            bean.put("b", values[(i + 1) % values.length]);
+            bean.put("c", values[(i + 2) % values.length]);
+
+            Map item = new HashMap();
+
+            item.put("value", values[(i + 3) % values.length]);
+            items.add(item);
+
+            for (int page = 0; page < 2; page++) {
+                assertEquals("value " + i + " page " + page,
+                    validate(false, "test", page), validate(true, "test", page));
+            }
+        }
+    }
+
+    /**
+     * Test that state is reused without leaking from one request to the
+     * next.
+     */
+    public void testReuse()
+        throws Exception {
+        bean.put("a", "ok");
+        bean.put("b", "ok");
+
+        List expected = validate(false, "test", 0);
+
+        for (int run = 0; run < 5; run++) {
+            assertEquals(expected, validate(true, "test", 0));
+        }
+
+        Map other = bean;
+
+        bean = new HashMap();
+        assertEquals(validate(false, "test", 0), validate(true, "test", 0));
+        bean = other;
+        assertEquals(expected, validate(true, "test", 0));
+    }
+
+    /**
+     * Test that a validation method sees the results of the fields before
+     * its own only, as with a <code>Validator</code>.
+     */
+    public void testResultsOfEarlierFields()
+        throws Exception {
+        List items = new ArrayList();
+        Map item = new HashMap();
+
+        item.put("value", "x");
+        items.add(item);
+        items.add(item);
+        bean.put("items", items);
+        bean.put("a", "ok");
+
+        List expected = validate(false, "results", 0);
+
+        assertTrue(expected.toString(), expected.contains("b:[a]"));
+        assertEquals(expected, validate(true, "results", 0));
+    }
+
+    /**
+     * Test that the validation classes of the actions are instantiated once
+     * for every form.
+     */
+    public void testSharedInstance()
+        throws Exception {
+        validate(true, "one", 0);
+        validate(true, "two", 0);
+
+        assertEquals(1, Instance.instances.size());
+    }
+
+    /**
+     * Test that threads validating at once get the same outcome.
+     */
+    public void testConcurrentValidation()
+        throws Exception {
+        bean.put("a", "toolong");
+        bean.put("b", "ok");
+
+        final List expected = validate(false, "test", 0);
+        final Throwable[] failures = new Throwable[4];
+        Thread[] threads = new Thread[failures.length];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+
+            threads[i] =
+                new Thread() {
+                        public void run() {
+                            try {
+                                for (int j = 0; j < 500; j++) {
+                                    assertEquals(expected,
+                                        validate(true, "test", 0));
+                                }
+                            } catch (Throwable t) {
+                                failures[index] = t;
+                            }
+                        }
+                    };
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull("failure " + i, failures[i]);
+        }
+    }
+
+    /**
+     * Test that the state of a validation is reused by the next one, and
+     * discarded when the plans are cleared.
+     */
+    public void testClearDiscardsState()
+        throws Exception {
+        validate(true, "remember", 0);
+
+        Validator first = remembered;
+
+        validate(true, "remember", 0);
+        assertSame("reused", first, remembered);
+
+        plans.clear();
+        validate(true, "remember", 0);
+        assertNotSame("discarded", first, remembered);
+    }
+
+    /**
+     * Test that a form whose plan cannot be prepared is left to a
+     * <code>Validator</code>, and an unknown form has no results.
+     */
+    public void testNoPlan()
+        throws Exception {
+        ActionMessages errors = new ActionMessages();
+
+        assertNull("broken",
+            plans.validate("broken", bean, null, null, null, errors, 0));
+        assertTrue("unknown",
+            plans.validate("unknown", bean, null, null, null, errors, 0)
+                 .isEmpty());
+    }
+
+    // ----------------------------------------------------- Validation Methods
+
+    /**
+     * Record a message for a value that is missing, for the "required"
+     * action, longer than 3 characters, for the "short" action, or not made
+     * of letters, for the "word" action.
+     *
+     * @param bean   The bean being validated
+     * @param field  The field
+     * @param action The action
+     * @param errors The messages of the request
+     * @return Whether the value is valid
+     */
+    public static boolean check(Object bean, Field field,
+        ValidatorAction action, ActionMessages errors) {
+        String value = (String) ((Map) bean).get(field.getProperty());
+        boolean valid;
+
+        if ("required".equals(action.getName())) {
+            valid = (value != null) && (value.length() > 0);
+        } else if ("short".equals(action.getName())) {
+            valid = value.length() <= 3;
+        } else {
+            valid = true;
+
+            for (int i = 0; i < value.length(); i++) {
+                valid &= Character.isLetter(value.charAt(i));
+            }
+        }
+
+        if (!valid) {
+            errors.add(field.getKey(), new ActionMessage(action.getMsg()));
+        }
+
+        return valid;
+    }
+
+    /**
+     * Record a message listing the properties that have results so far.
+     *
+     * @param bean    The bean being validated
+     * @param field   The field
+     * @param results The results of the form
+     * @param errors  The messages of the request
+     * @return <code>true</code>
+     */
+    public static boolean seen(Object bean, Field field, ValidatorResults results,
+        ActionMessages errors) {
+        List properties = new ArrayList(results.getPropertyNames());
+
+        Collections.sort(properties);
+        errors.add(field.getKey(), new ActionMessage(properties.toString()));
+
+        return true;
+    }
+
+    /**
+     * Remember the validator handed to the method.
+     *
+     * @param bean      The bean being validated
+     * @param validator The validator
+     * @return <code>true</code>
+     */
+    public static boolean remember(Object bean, Validator validator) {
+        remembered = validator;
+
+        return true;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Validate the test bean and return its messages as "property:key"
+     * strings, followed by its results as "property:action=valid" strings.
+     *
+     * @param plan     Whether to validate with a plan
+     * @param formName The name of the form
+     * @param page     The page
+     */
+    private List validate(boolean plan, String formName, int page)
+        throws Exception {
+        ActionMessages errors = new ActionMessages();
+        ValidatorResults results;
+
+        if (plan) {
+            results =
+                plans.validate(formName, bean, null, null, null, errors, page);
+        } else {
+            Validator validator = new Validator(resources, formName);
+
+            validator.setPage(page);
+            validator.setParameter(Validator.BEAN_PARAM, bean);
+            validator.setParameter(Resources.ACTION_MESSAGES_PARAM, errors);
+            results = validator.validate();
+        }
+
+        List outcome = new ArrayList();
+        Iterator properties = errors.properties();
+
+        while (properties.hasNext()) {
+            String property = (String) properties.next();
+            Iterator items = errors.get(property);
+
+            while (items.hasNext()) {
+                outcome.add(property + ":"
+                    + ((ActionMessage) items.next()).getKey());
+            }
+        }
+
+        List recorded = new ArrayList();
+
+        properties = results.getPropertyNames().iterator();
+
+        while (properties.hasNext()) {
+            String property = (String) properties.next();
+            ValidatorResult result = results.getValidatorResult(property);
+            Iterator actions = result.getActions();
+
+            while (actions.hasNext()) {
+                String action = (String) actions.next();
+
+                recorded.add(property + ":" + action + "="
+                    + result.isValid(action));
+            }
+        }
+
+        Collections.sort(recorded);
+        outcome.addAll(recorded);
+
+        return outcome;
+    }
+
+    // ------------------------------------------------------------ Test Types
+
+    /**
+     * A validation class whose method is not static, which records its
+     * instances.
+     */
+    public static class Instance {
+        /**
+         * The instances that validated a value.
+         */
+        static final Set instances = new HashSet();
+
+        /**
+         * Record this instance.
+         *
+         * @param bean The bean being validated
+         * @return <code>true</code>
+         */
+        public boolean check(Object bean) {
+            synchronized (instances) {
+                instances.add(this);
+            }
+
+            return true;
+        }
+    }
+}
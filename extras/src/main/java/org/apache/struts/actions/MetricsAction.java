@@ -0,0 +1,102 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.actions;
+
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.RequestMetrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.PrintWriter;
+
+/**
+ * <p>An <strong>Action</strong> that writes the request metrics of the web
+ * application as plain text, one line per phase, action mapping or chain
+ * command, so that monitoring tools can pull them over HTTP.  Metrics are
+ * recorded when the <code>metrics</code> init-param of
+ * <code>ActionServlet</code> is set; otherwise this action responds with
+ * <code>404</code>.  A <code>POST</code> request with the parameter
+ * <code>reset=true</code> discards the statistics after writing them; the
+ * same parameter on any other request is refused with <code>405</code>, so
+ * that a link or a crawler cannot reset the statistics.</p>
+ *
+ * <p>To configure the use of this Action in your <code>struts-config.xml</code>
+ * file, create an entry like this:</p>
+ *
+ * <code> &lt;action path="/admin/metrics"
+ * type="org.apache.struts.actions.MetricsAction" roles="admin"/&gt;
+ * </code>
+ *
+ * <p>The report may reveal the action paths of the application, so the
+ * mapping should be protected.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+public class MetricsAction extends BaseAction {
+    /**
+     * Write the request metrics to the response.
+     *
+     * @param mapping  The ActionMapping used to select this instance
+     * @param form     The optional ActionForm bean for this request (if any)
+     * @param request  The HTTP request we are processing
+     * @param response The HTTP response we are creating
+     * @return <code>null</code>, since the response has been completed.
+     * @throws Exception if an error occurs
+     */
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+        HttpServletRequest request, HttpServletResponse response)
+        throws Exception {
+        RequestMetrics metrics =
+            RequestMetrics.getInstance(getServlet().getServletContext());
+
+        if (metrics == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+
+            return null;
+        }
+
+        boolean reset = "true".equals(request.getParameter("reset"));
+
+        if (reset && !"POST".equalsIgnoreCase(request.getMethod())) {
+            response.setHeader("Allow", "POST");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+
+            return null;
+        }
+
+        response.setContentType("text/plain");
+        response.setHeader("Cache-Control", "no-cache");
+
+        PrintWriter writer = response.getWriter();
+
+        metrics.writeReport(writer);
+
+        if (reset) {
+            metrics.reset();
+        }
+
+        return null;
+    }
+}
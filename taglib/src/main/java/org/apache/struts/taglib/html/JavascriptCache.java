@@ -0,0 +1,233 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.taglib.html;
+
+import org.apache.commons.validator.ValidatorResources;
+
+import javax.servlet.ServletContext;
+
+import java.io.UnsupportedEncodingException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>The JavaScript rendered by {@link JavascriptValidatorTag} for the
+ * validator resources of a module, keyed by everything the script depends
+ * on.  The cache of a module is kept in application scope, and is replaced
+ * by an empty one as soon as the tag finds that the
+ * <code>ValidatorResources</code> of the module are not those the cache was
+ * created for, which is the case once the <code>ValidatorPlugIn</code> has
+ * been reloaded.</p>
+ *
+ * @version $Rev$
+ * @since Struts 1.4
+ */
+final class JavascriptCache {
+    /**
+     * <p>Application scope key the cache of a module is stored under,
+     * followed by '.' and the module prefix.</p>
+     */
+    static final String KEY = "org.apache.struts.taglib.html.JAVASCRIPT_CACHE";
+
+    /**
+     * <p>The maximum number of scripts kept.  Once the cache is full, the
+     * script kept first is discarded for each new one.</p>
+     */
+    static final int MAX_CACHED = 500;
+
+    /**
+     * <p>The hexadecimal digits.</p>
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * <p>The resources the scripts were rendered from.</p>
+     */
+    private final ValidatorResources resources;
+
+    /**
+     * <p>The scripts, keyed by the values they were rendered from, in the
+     * order they were kept.  Replaced, never modified, once published.</p>
+     */
+    private volatile Map scripts = new LinkedHashMap();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * <p>Construct an empty cache for the specified resources.</p>
+     *
+     * @param resources The resources the scripts are rendered from
+     */
+    private JavascriptCache(ValidatorResources resources) {
+        this.resources = resources;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Return the cache of a module for its current resources, creating
+     * it if there is none or the resources have changed.</p>
+     *
+     * @param application The servlet context
+     * @param prefix      The module prefix
+     * @param resources   The current validator resources of the module
+     * @return The cache
+     */
+    static JavascriptCache getInstance(ServletContext application,
+        String prefix, ValidatorResources resources) {
+        String key = KEY + '.' + prefix;
+        JavascriptCache cache = (JavascriptCache) application.getAttribute(key);
+
+        if ((cache == null) || (cache.resources != resources)) {
+            synchronized (JavascriptCache.class) {
+                cache = (JavascriptCache) application.getAttribute(key);
+
+                if ((cache == null) || (cache.resources != resources)) {
+                    cache = new JavascriptCache(resources);
+                    application.setAttribute(key, cache);
+                }
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * <p>Return the script rendered for the specified key.</p>
+     *
+     * @param key The values the script was rendered from
+     * @return The script, or <code>null</code> if it is not cached
+     */
+    Script get(String key) {
+        return (Script) scripts.get(key);
+    }
+
+    /**
+     * <p>Keep a script rendered for the specified key, discarding the oldest
+     * script if the cache is full.  A script another page kept for the same
+     * key in the meantime is kept instead.</p>
+     *
+     * @param key    The values the script was rendered from
+     * @param script The script
+     * @return The script kept, to be written
+     */
+    synchronized Script put(String key, String script) {
+        Script value = (Script) scripts.get(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        value = new Script(script);
+
+        Map updated = new LinkedHashMap(scripts);
+
+        if (updated.size() >= MAX_CACHED) {
+            Iterator oldest = updated.keySet().iterator();
+
+            oldest.next();
+            oldest.remove();
+        }
+
+        updated.put(key, value);
+        scripts = updated;
+
+        return value;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * <p>A rendered script and its entity tag.</p>
+     */
+    static final class Script {
+        /**
+         * <p>The script.</p>
+         */
+        private final String text;
+
+        /**
+         * <p>The entity tag of the script, computed on first use.</p>
+         */
+        private volatile String etag = null;
+
+        /**
+         * <p>Construct a rendered script.</p>
+         *
+         * @param text The script
+         */
+        Script(String text) {
+            this.text = text;
+        }
+
+        /**
+         * <p>Return the script.</p>
+         *
+         * @return The script
+         */
+        String getText() {
+            return text;
+        }
+
+        /**
+         * <p>Return a strong entity tag for the script, a quoted SHA-1
+         * digest of its text, which only changes when the text does.</p>
+         *
+         * @return The entity tag
+         */
+        String getETag() {
+            if (etag == null) {
+                byte[] digest;
+
+                try {
+                    digest =
+                        MessageDigest.getInstance("SHA-1").digest(text.getBytes(
+                                "UTF-8"));
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e.toString());
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e.toString());
+                }
+
+                char[] chars = new char[(digest.length * 2) + 2];
+
+                chars[0] = '"';
+                chars[chars.length - 1] = '"';
+
+                for (int i = 0; i < digest.length; i++) {
+                    chars[(i * 2) + 1] = HEX[(digest[i] >> 4) & 0xf];
+                    chars[(i * 2) + 2] = HEX[digest[i] & 0xf];
+                }
+
+                etag = new String(chars);
+            }
+
+            return etag;
+        }
+    }
+}
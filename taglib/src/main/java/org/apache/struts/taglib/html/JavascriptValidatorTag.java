@@ -35,6 +35,7 @@ import org.apache.struts.validator.ValidatorPlugIn;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.PageContext;
@@ -184,6 +185,31 @@ public class JavascriptValidatorTag extends BodyTagSupport {
      */
     protected String cdata = "true";
 
+    /**
+     * Keep the rendered JavaScript for later pages when "true".
+     *
+     * @since Struts 1.4
+     */
+    protected String cache = "false";
+
+    /**
+     * Send an entity tag for the static JavaScript when "true".
+     *
+     * @since Struts 1.4
+     */
+    protected String etag = "false";
+
+    /**
+     * Whether the client already has the current static JavaScript.
+     */
+    private boolean notModified = false;
+
+    /**
+     * The script last returned by <code>renderJavascript()</code>, whose
+     * entity tag is reused when its text is written unchanged.
+     */
+    private JavascriptCache.Script rendered = null;
+
     /**
      * Gets the key (form name) that will be used to retrieve a set of
      * validation rules to be performed on the bean passed in for validation.
@@ -345,8 +371,43 @@ public class JavascriptValidatorTag extends BodyTagSupport {
     public int doStartTag() throws JspException {
         JspWriter writer = pageContext.getOut();
 
+        notModified = false;
+
         try {
-            writer.print(this.renderJavascript());
+            if ("true".equalsIgnoreCase(etag)
+                && !"true".equalsIgnoreCase(dynamicJavascript)) {
+                String text = this.renderJavascript();
+                HttpServletRequest request =
+                    (HttpServletRequest) pageContext.getRequest();
+                HttpServletResponse response =
+                    (HttpServletResponse) pageContext.getResponse();
+
+                // Once the response is committed, its status and headers
+                // can no longer be changed
+                if (!response.isCommitted()) {
+                    String tag = this.getETag(text);
+                    String match = request.getHeader("If-None-Match");
+
+                    response.setHeader("ETag", tag);
+
+                    if ((match != null)
+                        && (match.equals("*") || (match.indexOf(tag) >= 0))) {
+                        // Discard what the page wrote before the tag
+                        if (writer.getBufferSize() != 0) {
+                            writer.clearBuffer();
+                        }
+
+                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        notModified = true;
+
+                        return SKIP_BODY;
+                    }
+                }
+
+                writer.print(text);
+            } else {
+                writer.print(this.renderJavascript());
+            }
         } catch (IOException e) {
             throw new JspException(e.getMessage(), e);
         }
@@ -354,12 +415,58 @@ public class JavascriptValidatorTag extends BodyTagSupport {
         return EVAL_BODY_TAG;
     }
 
+    /**
+     * Skip the rest of the page if the client already has the current
+     * static JavaScript.
+     *
+     * @throws JspException if a JSP exception has occurred
+     * @since Struts 1.4
+     */
+    public int doEndTag() throws JspException {
+        if (notModified) {
+            notModified = false;
+
+            return SKIP_PAGE;
+        }
+
+        return super.doEndTag();
+    }
+
     /**
      * Returns fully rendered JavaScript.
      *
      * @since Struts 1.2
      */
     protected String renderJavascript()
+        throws JspException {
+        rendered = this.renderScript();
+
+        return rendered.getText();
+    }
+
+    /**
+     * Returns the entity tag of the specified JavaScript, reusing the one of
+     * the cached script when the text is the one last rendered by this tag.
+     *
+     * @param text The JavaScript to be written
+     */
+    private String getETag(String text) {
+        JavascriptCache.Script script = rendered;
+
+        rendered = null;
+
+        if ((script == null) || (script.getText() != text)) {
+            script = new JavascriptCache.Script(text);
+        }
+
+        return script.getETag();
+    }
+
+    /**
+     * Returns fully rendered JavaScript, from the cache of the module when
+     * it is kept there.
+     */
+    private JavascriptCache.Script renderScript()
         throws JspException {
         StringBuffer results = new StringBuffer();
 
@@ -379,6 +486,23 @@ public class JavascriptValidatorTag extends BodyTagSupport {
         Locale locale =
             TagUtils.getInstance().getUserLocale(this.pageContext, null);
 
+        JavascriptCache cache = null;
+        String key = null;
+
+        if ("true".equalsIgnoreCase(this.cache)
+            || "true".equalsIgnoreCase(etag)) {
+            cache =
+                JavascriptCache.getInstance(pageContext.getServletContext(),
+                    config.getPrefix(), resources);
+            key = this.getCacheKey(config, locale);
+
+            JavascriptCache.Script script = cache.get(key);
+
+            if (script != null) {
+                return script;
+            }
+        }
+
         Form form = null;
         if ("true".equalsIgnoreCase(dynamicJavascript)) {
             form = resources.getForm(locale, formName);
@@ -414,7 +538,37 @@ public class JavascriptValidatorTag extends BodyTagSupport {
             results.append(getJavascriptEnd());
         }
 
-        return results.toString();
+        if (cache == null) {
+            return new JavascriptCache.Script(results.toString());
+        }
+
+        return cache.put(key, results.toString());
+    }
+
+    /**
+     * Returns the key the JavaScript rendered by this tag is cached under,
+     * made of every value it depends on besides the validator resources and
+     * module.
+     *
+     * @param config The <code>ModuleConfig</code> of the page
+     * @param locale The Locale of the user
+     */
+    private String getCacheKey(ModuleConfig config, Locale locale) {
+        StringBuffer key = new StringBuffer(getClass().getName());
+        String[] values =
+            new String[] {
+                formName, String.valueOf(page), String.valueOf(locale),
+                bundle, methodName, staticJavascript, dynamicJavascript,
+                htmlComment, cdata, src, String.valueOf(scriptLanguage),
+                String.valueOf(this.isXhtml()),
+                String.valueOf(this.stopOnError(config))
+            };
+
+        for (int i = 0; i < values.length; i++) {
+            key.append('\n').append(values[i]);
+        }
+
+        return key.toString();
     }
 
     /**
@@ -736,6 +890,10 @@ public class JavascriptValidatorTag extends BodyTagSupport {
         htmlComment = "true";
         cdata = "true";
         src = null;
+        cache = "false";
+        etag = "false";
+        notModified = false;
+        rendered = null;
     }
 
     /**
@@ -903,4 +1061,54 @@ public class JavascriptValidatorTag extends BodyTagSupport {
     public void setScriptLanguage(boolean scriptLanguage) {
         this.scriptLanguage = scriptLanguage;
     }
+
+    /**
+     * Returns the cache setting "true" or "false".
+     *
+     * @return String - "true" if the rendered JavaScript is kept for later
+     *         pages
+     * @since Struts 1.4
+     */
+    public String getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets whether the rendered JavaScript is kept, in application scope,
+     * for later pages that render the same form, page, locale and bundle
+     * with the same settings.  Kept scripts are discarded when the
+     * <code>ValidatorPlugIn</code> of the module is reloaded, but not when
+     * the messages of the bundle change.
+     *
+     * @param cache The cache setting to set
+     * @since Struts 1.4
+     */
+    public void setCache(String cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the etag setting "true" or "false".
+     *
+     * @return String - "true" if an entity tag is sent for the static
+     *         JavaScript
+     * @since Struts 1.4
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Sets whether an entity tag is sent for the static JavaScript, so that
+     * a page rendering only the static JavaScript can be served with a 304
+     * (Not Modified) response, skipping the rest of the page, to a browser
+     * that already has it.  Implies caching the script, and is ignored when
+     * the dynamic JavaScript is rendered.
+     *
+     * @param etag The etag setting to set
+     * @since Struts 1.4
+     */
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
 }
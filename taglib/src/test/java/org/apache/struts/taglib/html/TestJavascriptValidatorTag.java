@@ -0,0 +1,460 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.struts.taglib.html;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.apache.commons.validator.ValidatorResources;
+import org.apache.struts.mock.MockHttpServletRequest;
+import org.apache.struts.mock.MockHttpServletResponse;
+import org.apache.struts.mock.MockHttpSession;
+import org.apache.struts.mock.MockPageContext;
+import org.apache.struts.taglib.TagTestBase;
+import org.apache.struts.validator.ValidatorPlugIn;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.tagext.BodyTag;
+import javax.servlet.jsp.tagext.Tag;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Unit tests for the caching of the JavaScript rendered by
+ * <code>JavascriptValidatorTag</code>.
+ */
+public class TestJavascriptValidatorTag extends TagTestBase {
+    /**
+     * The tag under test.
+     */
+    private JavascriptValidatorTag tag = null;
+
+    /**
+     * The request of the page, and its If-None-Match header.
+     */
+    private HeaderRequest headerRequest = null;
+
+    /**
+     * The response of the page.
+     */
+    private StatusResponse response = null;
+
+    /**
+     * What the page wrote.
+     */
+    private Output out = null;
+
+    public TestJavascriptValidatorTag(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.awtui.TestRunner.main(new String[] {
+                TestJavascriptValidatorTag.class.getName()
+            });
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestJavascriptValidatorTag.class);
+    }
+
+    public void setUp() {
+        super.setUp();
+        headerRequest = new HeaderRequest();
+        response = new StatusResponse();
+        out = new Output();
+        pageContext =
+            new MockPageContext(servletConfig, headerRequest, response) {
+                    public JspWriter getOut() {
+                        return out;
+                    }
+                };
+        tag = new JavascriptValidatorTag();
+        tag.setPageContext(pageContext);
+        tag.setDynamicJavascript("false");
+    }
+
+    public void tearDown() {
+        super.tearDown();
+        tag = null;
+        headerRequest = null;
+        response = null;
+        out = null;
+    }
+
+    /**
+     * Test that the static JavaScript is only kept when asked to.
+     */
+    public void testNoCache()
+        throws Exception {
+        putResources("one");
+
+        String script = tag.renderJavascript();
+
+        assertTrue(script, script.indexOf("one") >= 0);
+        assertNotSame(script, tag.renderJavascript());
+        assertEquals(script, tag.renderJavascript());
+    }
+
+    /**
+     * Test that the static JavaScript is kept, and discarded when the
+     * validator resources change.
+     */
+    public void testCache()
+        throws Exception {
+        tag.setCache("true");
+        putResources("one");
+
+        String script = tag.renderJavascript();
+
+        assertSame(script, tag.renderJavascript());
+
+        tag.setHtmlComment("false");
+        assertNotSame("other settings", script, tag.renderJavascript());
+
+        tag.setHtmlComment("true");
+        assertSame(script, tag.renderJavascript());
+
+        putResources("two");
+
+        String reloaded = tag.renderJavascript();
+
+        assertTrue(reloaded, reloaded.indexOf("two") >= 0);
+        assertSame(reloaded, tag.renderJavascript());
+    }
+
+    /**
+     * Test that the entity tag only depends on the script.
+     */
+    public void testETag() {
+        JavascriptCache.Script one = new JavascriptCache.Script("one");
+        String etag = one.getETag();
+
+        assertTrue(etag, etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(42, etag.length());
+        assertEquals(etag, new JavascriptCache.Script("one").getETag());
+        assertFalse(etag.equals(new JavascriptCache.Script("two").getETag()));
+    }
+
+    /**
+     * Test that a page whose static JavaScript the client already has is
+     * answered with a 304 (Not Modified) response, and skipped.
+     */
+    public void testNotModified()
+        throws Exception {
+        tag.setEtag("true");
+        putResources("one");
+
+        assertEquals(BodyTag.EVAL_BODY_TAG, tag.doStartTag());
+        assertEquals(Tag.EVAL_PAGE, tag.doEndTag());
+
+        String etag = response.etag;
+
+        assertNotNull(etag);
+        assertTrue(out.toString(), out.toString().indexOf("one") >= 0);
+        assertEquals(0, response.status);
+
+        out.print("<html>");
+        headerRequest.ifNoneMatch = etag;
+
+        assertEquals(Tag.SKIP_BODY, tag.doStartTag());
+        assertEquals(Tag.SKIP_PAGE, tag.doEndTag());
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+        assertEquals(etag, response.etag);
+        assertEquals("buffer cleared", "", out.toString());
+
+        headerRequest.ifNoneMatch = "\"other\"";
+
+        assertEquals(BodyTag.EVAL_BODY_TAG, tag.doStartTag());
+        assertEquals(Tag.EVAL_PAGE, tag.doEndTag());
+    }
+
+    /**
+     * Test that the script is written when the response is committed,
+     * whatever the client has.
+     */
+    public void testNotModifiedCommitted()
+        throws Exception {
+        tag.setEtag("true");
+        putResources("one");
+        headerRequest.ifNoneMatch = "*";
+        response.committed = true;
+        out.print("<html>");
+
+        assertEquals(BodyTag.EVAL_BODY_TAG, tag.doStartTag());
+        assertEquals(Tag.EVAL_PAGE, tag.doEndTag());
+        assertEquals(0, response.status);
+        assertNull(response.etag);
+        assertTrue(out.toString(), out.toString().startsWith("<html>"));
+        assertTrue(out.toString(), out.toString().indexOf("one") >= 0);
+    }
+
+    /**
+     * Test that the entity tag is computed from the JavaScript of a
+     * subclass that overrides <code>renderJavascript()</code>.
+     */
+    public void testETagOfSubclass()
+        throws Exception {
+        tag =
+            new JavascriptValidatorTag() {
+                    protected String renderJavascript()
+                        throws JspException {
+                        return super.renderJavascript() + "custom";
+                    }
+                };
+        tag.setPageContext(pageContext);
+        tag.setDynamicJavascript("false");
+        tag.setEtag("true");
+        putResources("one");
+
+        assertEquals(BodyTag.EVAL_BODY_TAG, tag.doStartTag());
+        assertTrue(out.toString(), out.toString().endsWith("custom"));
+        assertEquals(new JavascriptCache.Script(out.toString()).getETag(),
+            response.etag);
+    }
+
+    /**
+     * Test that a full cache discards its oldest script for a new one.
+     */
+    public void testCacheFull() {
+        JavascriptCache cache =
+            JavascriptCache.getInstance(servletContext, "/full", null);
+
+        for (int i = 0; i <= JavascriptCache.MAX_CACHED; i++) {
+            cache.put("key" + i, "script" + i);
+        }
+
+        assertNull(cache.get("key0"));
+        assertEquals("script1", cache.get("key1").getText());
+
+        String last = "key" + JavascriptCache.MAX_CACHED;
+
+        assertNotNull(cache.get(last));
+        assertSame(cache.get(last), cache.put(last, "other"));
+    }
+
+    /**
+     * Put validator resources whose only action has the specified
+     * JavaScript in application scope.
+     */
+    private void putResources(String javascript)
+        throws Exception {
+        String xml =
+            "<!DOCTYPE form-validation PUBLIC"
+            + " \"-//Apache Software Foundation//DTD Commons Validator Rules"
+            + " Configuration 1.3.0//EN\""
+            + " \"http://jakarta.apache.org/commons/dtds/validator_1_3_0.dtd\">"
+            + "<form-validation><global>"
+            + "<validator name=\"check\" classname=\"java.lang.Object\""
+            + " method=\"toString\" methodParams=\"\" msg=\"errors.check\">"
+            + "<javascript>function " + javascript + "() {}</javascript>"
+            + "</validator></global></form-validation>";
+
+        servletContext.setAttribute(ValidatorPlugIn.VALIDATOR_KEY,
+            new ValidatorResources(new ByteArrayInputStream(xml.getBytes(
+                        "UTF-8"))));
+    }
+
+    /**
+     * A request with an If-None-Match header.
+     */
+    private static class HeaderRequest extends MockHttpServletRequest {
+        /**
+         * The If-None-Match header.
+         */
+        String ifNoneMatch = null;
+
+        HeaderRequest() {
+            super(new MockHttpSession());
+        }
+
+        public String getHeader(String name) {
+            return "If-None-Match".equalsIgnoreCase(name) ? ifNoneMatch : null;
+        }
+    }
+
+    /**
+     * A response recording its status and entity tag.
+     */
+    private static class StatusResponse extends MockHttpServletResponse {
+        /**
+         * The status set, or 0.
+         */
+        int status = 0;
+
+        /**
+         * The ETag header set.
+         */
+        String etag = null;
+
+        /**
+         * Whether the response is committed.
+         */
+        boolean committed = false;
+
+        public void setHeader(String name, String value) {
+            if ("ETag".equals(name)) {
+                etag = value;
+            }
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public boolean isCommitted() {
+            return committed;
+        }
+    }
+
+    /**
+     * A buffered writer keeping what is written.
+     */
+    private static class Output extends JspWriter {
+        /**
+         * What was written and not cleared.
+         */
+        private final StringBuffer buffer = new StringBuffer();
+
+        Output() {
+            super(8192, false);
+        }
+
+        public String toString() {
+            return buffer.toString();
+        }
+
+        public void write(char[] cbuf, int off, int len) {
+            buffer.append(cbuf, off, len);
+        }
+
+        public void newLine() {
+            buffer.append('\n');
+        }
+
+        public void print(boolean b) {
+            buffer.append(b);
+        }
+
+        public void print(char c) {
+            buffer.append(c);
+        }
+
+        public void print(int i) {
+            buffer.append(i);
+        }
+
+        public void print(long l) {
+            buffer.append(l);
+        }
+
+        public void print(float f) {
+            buffer.append(f);
+        }
+
+        public void print(double d) {
+            buffer.append(d);
+        }
+
+        public void print(char[] s) {
+            buffer.append(s);
+        }
+
+        public void print(String s) {
+            buffer.append(s);
+        }
+
+        public void print(Object obj) {
+            buffer.append(obj);
+        }
+
+        public void println() {
+            newLine();
+        }
+
+        public void println(boolean x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(char x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(int x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(long x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(float x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(double x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(char[] x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(String x) {
+            print(x);
+            newLine();
+        }
+
+        public void println(Object x) {
+            print(x);
+            newLine();
+        }
+
+        public void clear()
+            throws IOException {
+            clearBuffer();
+        }
+
+        public void clearBuffer() {
+            buffer.setLength(0);
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+
+        public int getRemaining() {
+            return bufferSize - buffer.length();
+        }
+    }
+}